@@ -0,0 +1,143 @@
+package foc.departamento.benchmark;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import foc.departamento.dao.ConexionBD;
+import foc.departamento.dao.DepartamentoDAO;
+import foc.departamento.dao.MigracionesBD;
+import foc.departamento.model.Departamento;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Prepara la base de datos de los benchmarks.
+ * Si se indica {@code -Dbench.db.url} (y opcionalmente {@code bench.db.usuario} y {@code bench.db.password})
+ * se usa esa base de datos; si no, se arranca un MariaDB embebido con MariaDB4j en un puerto libre.
+ * En ambos casos la configuración se pasa a la aplicación mediante las propiedades
+ * {@code departamento.db.*}, que deben fijarse antes de usar el DAO por primera vez.
+ * <p>
+ * Los benchmarks vacían las tablas {@code departamentos} y {@code departamentos_cambios} y borran
+ * las altas que hacen. Con una base que no es la embebida (la de {@code bench.db.url}, o la de
+ * {@code departamento.db.url} si ya viene fijada) sólo se empieza si además se indica
+ * {@code -Dbench.db.destructivo=true}, para no vaciar por descuido una base con datos.
+ */
+final class BaseDatosBenchmark {
+    private static final boolean DESTRUCTIVO = Boolean.getBoolean("bench.db.destructivo");
+
+    private static DB embebida;
+    // La URL de departamento.db.url es la del MariaDB embebido arrancado aquí
+    private static boolean propia;
+
+    private BaseDatosBenchmark() {
+        // Esta clase no debe ser instanciada
+    }
+
+    /**
+     * Arranca (o localiza) la base de datos y configura la aplicación para usarla.
+     *
+     * @throws IllegalStateException Si la base no es la embebida y no se ha indicado
+     *                               {@code -Dbench.db.destructivo=true}
+     */
+    static synchronized void iniciar() throws Exception {
+        String configurada = System.getProperty("departamento.db.url");
+        if (configurada != null) {
+            if (!propia) {
+                comprobarDestructivo(configurada);
+            }
+            return;
+        }
+        String url = System.getProperty("bench.db.url");
+        if (url != null) {
+            comprobarDestructivo(url);
+            System.setProperty("departamento.db.url", url);
+            System.setProperty("departamento.db.usuario", System.getProperty("bench.db.usuario", "root"));
+            System.setProperty("departamento.db.password", System.getProperty("bench.db.password", ""));
+            return;
+        }
+
+        DBConfigurationBuilder configuracion = DBConfigurationBuilder.newBuilder();
+        configuracion.setPort(0);
+        if ("root".equals(System.getProperty("user.name"))) {
+            // mariadbd se niega a arrancar como root si no se indica explícitamente
+            configuracion.addArg("--user=root");
+        }
+        embebida = DB.newEmbeddedDB(configuracion.build());
+        embebida.start();
+        propia = true;
+        String servidor = "jdbc:mariadb://localhost:" + configuracion.getPort() + "/";
+        // Se crea por JDBC: DB.createDB() usa el cliente mariadb, que depende de libncurses
+        try (Connection conn = DriverManager.getConnection(servidor, "root", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE DATABASE IF NOT EXISTS departamentos");
+        }
+        System.setProperty("departamento.db.url", servidor
+                + "departamentos?useServerPrepStmts=true&useAffectedRows=true&useBulkStmtsForInserts=false");
+        System.setProperty("departamento.db.usuario", "root");
+        System.setProperty("departamento.db.password", "");
+    }
+
+    private static void comprobarDestructivo(String url) {
+        if (!DESTRUCTIVO) {
+            throw new IllegalStateException("Los benchmarks vacían las tablas departamentos y departamentos_cambios de "
+                    + url + "; si es una base de pruebas, indique -Dbench.db.destructivo=true");
+        }
+    }
+
+    /**
+     * Aplica las migraciones del esquema y deja la tabla con exactamente {@code filas}
+     * departamentos con códigos {@link #codigo(int)} de 0 a filas - 1. También vacía el registro
+     * de cambios, que si no crecería con cada ejecución.
+     */
+    static void prepararTabla(int filas) throws SQLException {
+        new MigracionesBD().migrar();
+        try (Connection conn = ConexionBD.getInstancia().getConexion();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("TRUNCATE TABLE departamentos");
+            stmt.execute("TRUNCATE TABLE departamentos_cambios");
+        }
+
+        DepartamentoDAO dao = new DepartamentoDAO();
+        List<Departamento> lote = new ArrayList<>(10_000);
+        for (int i = 0; i < filas; i++) {
+            lote.add(departamento(codigo(i), i));
+            if (lote.size() == 10_000) {
+                dao.insertarLote(lote);
+                lote.clear();
+            }
+        }
+        if (!lote.isEmpty()) {
+            dao.insertarLote(lote);
+        }
+    }
+
+    /**
+     * Borra las filas insertadas por los benchmarks de escritura (prefijo "B").
+     */
+    static void borrarInsertados() throws SQLException {
+        try (Connection conn = ConexionBD.getInstancia().getConexion();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM departamentos WHERE codigo LIKE 'B%'");
+        }
+    }
+
+    static synchronized void detener() throws Exception {
+        ConexionBD.getInstancia().cerrarConexion();
+        if (embebida != null) {
+            embebida.stop();
+            embebida = null;
+        }
+    }
+
+    static String codigo(int i) {
+        return String.format("D%08d", i);
+    }
+
+    static Departamento departamento(String codigo, int i) {
+        return new Departamento(codigo, "Departamento " + i, i % 100, i % 1000);
+    }
+}
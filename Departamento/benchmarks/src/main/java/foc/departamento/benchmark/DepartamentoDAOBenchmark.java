@@ -0,0 +1,111 @@
+package foc.departamento.benchmark;
+
+import foc.departamento.dao.DepartamentoDAO;
+import foc.departamento.dao.FiltroDepartamentos;
+import foc.departamento.dao.ResultadoLote;
+import foc.departamento.model.Departamento;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Benchmarks de DepartamentoDAO contra MariaDB con distintos tamaños de tabla.
+ * La caché de departamentos se desactiva para medir el acceso real a la base de datos.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Ddepartamento.cache.tamano=0", "-Xms1g", "-Xmx1g"})
+public class DepartamentoDAOBenchmark {
+    private static final int TAMANO_LOTE = 100;
+
+    @Param({"1000", "10000", "100000"})
+    public int tamanoTabla;
+
+    private final AtomicInteger secuencia = new AtomicInteger();
+    private DepartamentoDAO dao;
+    private FiltroDepartamentos filtroLocalizacion;
+
+    @Setup(Level.Trial)
+    public void iniciar() throws Exception {
+        BaseDatosBenchmark.iniciar();
+        BaseDatosBenchmark.prepararTabla(tamanoTabla);
+        dao = new DepartamentoDAO();
+        filtroLocalizacion = new FiltroDepartamentos().idLocalizacion(42);
+    }
+
+    @TearDown(Level.Iteration)
+    public void limpiarInsertados() throws SQLException {
+        BaseDatosBenchmark.borrarInsertados();
+    }
+
+    @TearDown(Level.Trial)
+    public void detener() throws Exception {
+        BaseDatosBenchmark.detener();
+    }
+
+    private Departamento nuevoDepartamento() {
+        int n = secuencia.incrementAndGet();
+        return BaseDatosBenchmark.departamento(String.format("B%09d", n), n);
+    }
+
+    @Benchmark
+    public boolean insertarUno() throws SQLException {
+        return dao.insertar(nuevoDepartamento());
+    }
+
+    /**
+     * Inserta TAMANO_LOTE filas por invocación; el tiempo se informa por fila
+     * para compararlo directamente con {@link #insertarUno()}.
+     */
+    @Benchmark
+    @OperationsPerInvocation(TAMANO_LOTE)
+    public ResultadoLote insertarLote() throws SQLException {
+        List<Departamento> lote = new ArrayList<>(TAMANO_LOTE);
+        for (int i = 0; i < TAMANO_LOTE; i++) {
+            lote.add(nuevoDepartamento());
+        }
+        return dao.insertarLote(lote);
+    }
+
+    @Benchmark
+    public Departamento buscarPorCodigo() throws SQLException {
+        return dao.buscarPorCodigo(BaseDatosBenchmark.codigo(ThreadLocalRandom.current().nextInt(tamanoTabla)));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Departamento> listarTodos() throws SQLException {
+        return dao.listarTodos();
+    }
+
+    @Benchmark
+    public List<Departamento> listarPrimeraPagina() throws SQLException {
+        return dao.listarPagina("", 200);
+    }
+
+    @Benchmark
+    public List<Departamento> filtrarPorLocalizacion() throws SQLException {
+        return dao.filtrar(filtroLocalizacion, "", 200);
+    }
+}
@@ -0,0 +1,27 @@
+package foc.departamento.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Punto de entrada de los benchmarks.
+ * Ejecuta todos los benchmarks con el perfilador de GC (incluye la tasa de asignación
+ * por operación, gc.alloc.rate.norm) y escribe los resultados en JSON para poder
+ * compararlos entre versiones. Acepta las mismas opciones que la línea de comandos de JMH,
+ * que tienen prioridad sobre estos valores por defecto (p. ej. {@code -p tamanoTabla=1000}).
+ */
+public class EjecutorBenchmarks {
+    public static void main(String[] args) throws Exception {
+        Options opciones = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("bench.resultado", "target/jmh-resultados.json"))
+                .build();
+        new Runner(opciones).run();
+    }
+}
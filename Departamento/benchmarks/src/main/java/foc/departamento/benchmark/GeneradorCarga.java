@@ -0,0 +1,606 @@
+package foc.departamento.benchmark;
+
+import foc.departamento.config.DatabaseConfig;
+import foc.departamento.controller.DepartamentoController;
+import foc.departamento.dao.ConexionBD;
+import foc.departamento.dao.DepartamentoDAO;
+import foc.departamento.model.Departamento;
+import foc.departamento.servicio.ServicioHttp;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generador de carga: simula clientes concurrentes que ejecutan una mezcla de altas,
+ * modificaciones, bajas, búsquedas por código y listados por páginas, y mide el rendimiento y
+ * los percentiles de latencia (HdrHistogram) para ver hasta dónde escalan ConexionBD y el DAO.
+ * <p>
+ * Dos modelos de carga:
+ * <ul>
+ *     <li><b>cerrado</b>: {@code carga.clientes} clientes en bucle, cada uno con una operación en
+ *     curso y {@code carga.pausaMs} de pausa entre operaciones, como operadores frente a la
+ *     aplicación. Si el sistema se atasca, los clientes dejan de pedir y las peticiones que no
+ *     llegan a hacerse no cuentan (omisión coordinada). Se detecta con el intervalo esperado
+ *     entre operaciones de un cliente (la pausa, o la mediana del calentamiento si no hay pausa):
+ *     cada operación más larga implica peticiones que no se hicieron, que se añaden al
+ *     histograma corregido ({@code recordValueWithExpectedInterval}).</li>
+ *     <li><b>abierto</b>: llegadas a {@code carga.tasa} operaciones por segundo (Poisson o
+ *     constantes), cada una en su hilo virtual, sin esperar a las anteriores, como clientes
+ *     independientes de una API. La latencia de respuesta se mide desde el momento en que debía
+ *     empezar la operación, así que los atascos cuentan entero; también se informa del tiempo
+ *     de servicio y de cuánto se retrasa el propio generador.</li>
+ * </ul>
+ * Las operaciones pasan por {@code carga.capa}: {@code controlador} (métodos asíncronos de
+ * DepartamentoController), {@code dao} (DepartamentoDAO directamente) o {@code http}
+ * (API de {@link ServicioHttp} en {@code carga.url}, o un servicio arrancado en el proceso).
+ * Usa la misma base de datos que los benchmarks ({@link BaseDatosBenchmark}), salvo con
+ * {@code carga.url}: entonces no se toca ninguna base de datos local, sólo se empieza si el servicio
+ * ya tiene las filas de partida (las de {@code BaseDatosBenchmark.prepararTabla}, con el mismo
+ * {@code carga.filas}), porque las modificaciones se envían con PUT, que da de alta el código si no
+ * existe, y al terminar se dan de baja por la API las altas de la carga que siguen en la tabla:
+ * <pre>
+ *     java -Dcarga.clientes=200 -Dcarga.modo=abierto -Dcarga.tasa=5000 \
+ *          -cp target/benchmarks.jar foc.departamento.benchmark.GeneradorCarga
+ * </pre>
+ */
+public class GeneradorCarga {
+    private static final int CLIENTES = Integer.getInteger("carga.clientes", 50);
+    private static final String MODO = System.getProperty("carga.modo", "cerrado");
+    private static final double TASA = Double.parseDouble(System.getProperty("carga.tasa", "1000"));
+    private static final String LLEGADAS = System.getProperty("carga.llegadas", "poisson");
+    private static final long PAUSA_MS = Long.getLong("carga.pausaMs", 0L);
+    private static final int MAX_EN_VUELO = Integer.getInteger("carga.maxEnVuelo", 20_000);
+    private static final long CALENTAMIENTO_S = Long.getLong("carga.calentamientoS", 10L);
+    private static final long DURACION_S = Long.getLong("carga.duracionS", 60L);
+    private static final String MEZCLA = System.getProperty("carga.mezcla",
+            "insertar=10,modificar=10,eliminar=5,buscar=60,listar=15");
+    private static final String CAPA = System.getProperty("carga.capa", "controlador");
+    private static final String URL = System.getProperty("carga.url");
+    private static final int FILAS = Integer.getInteger("carga.filas", 100_000);
+    private static final boolean PREPARAR_TABLA = Boolean.parseBoolean(System.getProperty("carga.prepararTabla", "true"));
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    /**
+     * Operaciones de la mezcla.
+     */
+    private enum Operacion {
+        INSERTAR, MODIFICAR, ELIMINAR, BUSCAR, LISTAR
+    }
+
+    /**
+     * Las operaciones sobre la capa elegida. Un fallo es cualquier excepción.
+     */
+    private interface Destino {
+        void insertar(Departamento dep) throws Exception;
+
+        void modificar(Departamento dep) throws Exception;
+
+        void eliminar(String codigo) throws Exception;
+
+        void buscar(String codigo) throws Exception;
+
+        void listar(String despuesDeCodigo) throws Exception;
+    }
+
+    /**
+     * Latencias y errores de una operación. En el modelo cerrado {@code respuesta} es el
+     * histograma corregido; en el abierto, la latencia desde el inicio previsto.
+     */
+    private static final class Medidas {
+        private final Histogram servicio = new ConcurrentHistogram(3);
+        private final Histogram respuesta = new ConcurrentHistogram(3);
+        private final LongAdder errores = new LongAdder();
+
+        void reiniciar() {
+            servicio.reset();
+            respuesta.reset();
+            errores.reset();
+        }
+    }
+
+    private final Map<Operacion, Medidas> medidas = new EnumMap<>(Operacion.class);
+    private final Histogram retrasoGenerador = new ConcurrentHistogram(3);
+    private final Operacion[] mezcla;
+    private final Destino destino;
+    // Altas hechas por el generador, para que las bajas borren filas que existen
+    private final ConcurrentLinkedQueue<String> insertados = new ConcurrentLinkedQueue<>();
+    private final AtomicLong secuencia = new AtomicLong();
+    // Intervalo esperado entre operaciones de un cliente del modelo cerrado; 0 mientras se calienta
+    private volatile long intervaloEsperadoNanos;
+    private volatile boolean midiendo;
+
+    private GeneradorCarga(Operacion[] mezcla, Destino destino) {
+        this.mezcla = mezcla;
+        this.destino = destino;
+        for (Operacion operacion : Operacion.values()) {
+            medidas.put(operacion, new Medidas());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Operacion[] mezcla = leerMezcla(MEZCLA);
+        if ("http".equals(CAPA) && URL != null) {
+            cargarServicioRemoto(mezcla, URL);
+        } else {
+            cargarLocal(mezcla);
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Carga sobre la base de datos de los benchmarks, directamente o con un servicio en el proceso.
+     */
+    private static void cargarLocal(Operacion[] mezcla) throws Exception {
+        BaseDatosBenchmark.iniciar();
+        ServicioHttp servicio = null;
+        try {
+            if (PREPARAR_TABLA) {
+                BaseDatosBenchmark.prepararTabla(FILAS);
+            }
+            Destino destino;
+            switch (CAPA) {
+                case "dao" -> destino = destinoDAO(new DepartamentoDAO());
+                case "controlador" -> destino = destinoControlador(DepartamentoController.crearAsync().join());
+                case "http" -> {
+                    servicio = new ServicioHttp(DepartamentoController.crearAsync().join(),
+                            new InetSocketAddress("localhost", 0));
+                    servicio.iniciar();
+                    destino = destinoHttp("http://localhost:" + servicio.getDireccion().getPort());
+                }
+                default -> throw new IllegalArgumentException("carga.capa desconocida: " + CAPA);
+            }
+
+            new GeneradorCarga(mezcla, destino).medir("pool de " + DatabaseConfig.POOL_MAXIMO + " conexiones");
+            System.out.println(ConexionBD.getInstancia().getEstadisticas());
+        } finally {
+            if (servicio != null) {
+                servicio.detener(1);
+            }
+            if (PREPARAR_TABLA) {
+                BaseDatosBenchmark.borrarInsertados();
+            }
+            BaseDatosBenchmark.detener();
+        }
+    }
+
+    /**
+     * Carga sobre un servicio remoto, cuya base de datos no es la de los benchmarks: no se prepara
+     * ni se limpia nada localmente.
+     */
+    private static void cargarServicioRemoto(Operacion[] mezcla, String url) throws Exception {
+        comprobarFilasDePartida(url);
+        GeneradorCarga generador = new GeneradorCarga(mezcla, destinoHttp(url));
+        try {
+            generador.medir("servicio " + url);
+        } finally {
+            generador.borrarAltasRestantes();
+        }
+    }
+
+    /**
+     * Comprueba que el servicio tiene el primer y el último código de las filas de partida, que
+     * son los que modifica, busca y lista la carga.
+     *
+     * @throws IllegalStateException Si falta alguno
+     */
+    private static void comprobarFilasDePartida(String url) throws IOException, InterruptedException {
+        HttpClient cliente = HttpClient.newHttpClient();
+        for (String codigo : List.of(BaseDatosBenchmark.codigo(0), BaseDatosBenchmark.codigo(FILAS - 1))) {
+            HttpResponse<Void> respuesta = cliente.send(HttpRequest.newBuilder(
+                    URI.create(url + "/departamentos/" + codigo)).GET().build(), HttpResponse.BodyHandlers.discarding());
+            if (respuesta.statusCode() != 200) {
+                throw new IllegalStateException("El servicio de " + url + " no tiene las filas de partida ("
+                        + codigo + ": HTTP " + respuesta.statusCode() + "). Prepare su tabla con "
+                        + BaseDatosBenchmark.codigo(0) + ".." + BaseDatosBenchmark.codigo(FILAS - 1)
+                        + " o ajuste carga.filas; la carga modificaría con PUT códigos inexistentes, que los da de alta");
+            }
+        }
+    }
+
+    /**
+     * Ejecuta el modelo de carga elegido e informa de lo medido.
+     *
+     * @param entorno Contra qué se mide, para la cabecera del informe
+     */
+    private void medir(String entorno) throws InterruptedException {
+        System.out.printf(Locale.ROOT, "Modelo %s, capa %s, %s, mezcla %s, %d filas, %s%n",
+                MODO, CAPA, "abierto".equals(MODO) ? TASA + " op/s (" + LLEGADAS + ")"
+                        : CLIENTES + " clientes, pausa " + PAUSA_MS + " ms",
+                MEZCLA, FILAS, entorno);
+        long duracionNanos = "abierto".equals(MODO) ? ejecutarAbierto() : ejecutarCerrado();
+        informar(duracionNanos);
+    }
+
+    /**
+     * Da de baja por el destino las altas de la carga que no ha borrado la propia mezcla.
+     */
+    private void borrarAltasRestantes() {
+        int borradas = 0;
+        int fallidas = 0;
+        String codigo;
+        while ((codigo = insertados.poll()) != null) {
+            try {
+                destino.eliminar(codigo);
+                borradas++;
+            } catch (Exception e) {
+                fallidas++;
+            }
+        }
+        System.out.printf(Locale.ROOT, "Altas de la carga dadas de baja al terminar: %d%s%n", borradas,
+                fallidas > 0 ? " (" + fallidas + " fallidas; quedan códigos con prefijo B)" : "");
+    }
+
+    /**
+     * Clientes en bucle: operación, pausa y vuelta a empezar.
+     *
+     * @return Duración de la medición en nanosegundos
+     */
+    private long ejecutarCerrado() throws InterruptedException {
+        long inicio = System.nanoTime();
+        long inicioMedicion = inicio + TimeUnit.SECONDS.toNanos(CALENTAMIENTO_S);
+        long fin = inicioMedicion + TimeUnit.SECONDS.toNanos(DURACION_S);
+        try (ExecutorService clientes = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < CLIENTES; i++) {
+                clientes.submit(() -> {
+                    while (System.nanoTime() < fin) {
+                        long empieza = System.nanoTime();
+                        ejecutar(elegir(), empieza, empieza);
+                        if (PAUSA_MS > 0) {
+                            Thread.sleep(PAUSA_MS);
+                        }
+                    }
+                    return null;
+                });
+            }
+            esperarHasta(inicioMedicion);
+            iniciarMedicion();
+        }
+        return fin - inicioMedicion;
+    }
+
+    /**
+     * Llegadas a la tasa indicada, independientes de lo que tarden las anteriores. Si hay más
+     * de {@code carga.maxEnVuelo} en curso el generador espera, pero la latencia se sigue
+     * contando desde el inicio previsto.
+     *
+     * @return Duración de la medición en nanosegundos
+     */
+    private long ejecutarAbierto() throws InterruptedException {
+        long inicio = System.nanoTime();
+        long inicioMedicion = inicio + TimeUnit.SECONDS.toNanos(CALENTAMIENTO_S);
+        long fin = inicioMedicion + TimeUnit.SECONDS.toNanos(DURACION_S);
+        double intervaloMedioNanos = TimeUnit.SECONDS.toNanos(1) / TASA;
+        Semaphore enVuelo = new Semaphore(MAX_EN_VUELO);
+        try (ExecutorService llegadas = Executors.newVirtualThreadPerTaskExecutor()) {
+            double previsto = inicio;
+            while (previsto < fin) {
+                if (!midiendo && previsto >= inicioMedicion) {
+                    iniciarMedicion();
+                }
+                long empiezaPrevisto = (long) previsto;
+                esperarHasta(empiezaPrevisto);
+                enVuelo.acquire();
+                Operacion operacion = elegir();
+                llegadas.submit(() -> {
+                    try {
+                        long empieza = System.nanoTime();
+                        if (midiendo) {
+                            retrasoGenerador.recordValue(Math.max(0, empieza - empiezaPrevisto));
+                        }
+                        ejecutar(operacion, empiezaPrevisto, empieza);
+                    } finally {
+                        enVuelo.release();
+                    }
+                });
+                previsto += "constantes".equals(LLEGADAS) ? intervaloMedioNanos
+                        : -Math.log(1 - ThreadLocalRandom.current().nextDouble()) * intervaloMedioNanos;
+            }
+        }
+        return fin - inicioMedicion;
+    }
+
+    /**
+     * Descarta lo medido durante el calentamiento. En el modelo cerrado fija el intervalo esperado
+     * entre operaciones de un cliente para corregir la omisión coordinada.
+     */
+    private void iniciarMedicion() {
+        Histogram calentamiento = new Histogram(3);
+        for (Medidas medida : medidas.values()) {
+            calentamiento.add(medida.servicio);
+            medida.reiniciar();
+        }
+        retrasoGenerador.reset();
+        // Sin pausa ni calentamiento no hay referencia y no se corrige (intervalo 0)
+        intervaloEsperadoNanos = PAUSA_MS > 0 ? TimeUnit.MILLISECONDS.toNanos(PAUSA_MS)
+                : calentamiento.getValueAtPercentile(50);
+        midiendo = true;
+    }
+
+    /**
+     * @param previsto Momento en que debía empezar la operación
+     * @param empieza Momento en que empieza de verdad
+     */
+    private void ejecutar(Operacion operacion, long previsto, long empieza) {
+        Medidas medida = medidas.get(operacion);
+        try {
+            switch (operacion) {
+                case INSERTAR -> {
+                    long n = secuencia.incrementAndGet();
+                    String codigo = String.format("B%09d", n);
+                    destino.insertar(BaseDatosBenchmark.departamento(codigo, (int) n));
+                    insertados.add(codigo);
+                }
+                case MODIFICAR -> {
+                    int i = ThreadLocalRandom.current().nextInt(FILAS);
+                    destino.modificar(new Departamento(BaseDatosBenchmark.codigo(i), "Modificado " + i,
+                            ThreadLocalRandom.current().nextInt(100), ThreadLocalRandom.current().nextInt(1000)));
+                }
+                case ELIMINAR -> {
+                    String codigo = insertados.poll();
+                    destino.eliminar(codigo != null ? codigo : "B-inexistente");
+                }
+                case BUSCAR -> destino.buscar(BaseDatosBenchmark.codigo(ThreadLocalRandom.current().nextInt(FILAS)));
+                case LISTAR -> destino.listar(BaseDatosBenchmark.codigo(ThreadLocalRandom.current().nextInt(FILAS)));
+            }
+        } catch (Exception e) {
+            if (midiendo) {
+                medida.errores.increment();
+            }
+        }
+        long termina = System.nanoTime();
+        if (!midiendo) {
+            // Durante el calentamiento sólo se mide el servicio, para estimar el intervalo esperado
+            medida.servicio.recordValue(termina - empieza);
+            return;
+        }
+        medida.servicio.recordValue(termina - empieza);
+        if ("abierto".equals(MODO)) {
+            medida.respuesta.recordValue(termina - previsto);
+        } else {
+            medida.respuesta.recordValueWithExpectedInterval(termina - empieza, intervaloEsperadoNanos);
+        }
+    }
+
+    private Operacion elegir() {
+        return mezcla[ThreadLocalRandom.current().nextInt(mezcla.length)];
+    }
+
+    private void informar(long duracionNanos) {
+        double segundos = duracionNanos / 1e9;
+        Histogram totalServicio = new Histogram(3);
+        Histogram totalRespuesta = new Histogram(3);
+        long totalErrores = 0;
+        String respuesta = "abierto".equals(MODO) ? "respuesta" : "corregido";
+
+        System.out.printf(Locale.ROOT, "%n%-10s %10s %10s %8s  %-10s %9s %9s %9s %9s %9s %9s  (ms)%n",
+                "operación", "ops", "ops/s", "errores", "latencia", "p50", "p90", "p99", "p99.9", "p99.99", "máx");
+        for (Map.Entry<Operacion, Medidas> entrada : medidas.entrySet()) {
+            Medidas medida = entrada.getValue();
+            if (medida.servicio.getTotalCount() == 0) {
+                continue;
+            }
+            String nombre = entrada.getKey().name().toLowerCase(Locale.ROOT);
+            imprimir(nombre, medida.servicio, medida.errores.sum(), segundos, "servicio");
+            imprimir("", medida.respuesta, -1, segundos, respuesta);
+            totalServicio.add(medida.servicio);
+            totalRespuesta.add(medida.respuesta);
+            totalErrores += medida.errores.sum();
+        }
+        imprimir("total", totalServicio, totalErrores, segundos, "servicio");
+        imprimir("", totalRespuesta, -1, segundos, respuesta);
+
+        System.out.println();
+        if ("abierto".equals(MODO)) {
+            double conseguida = totalServicio.getTotalCount() / segundos;
+            System.out.printf(Locale.ROOT, "Tasa pedida %.0f op/s, conseguida %.0f op/s; retraso del generador p99 %.3f ms%n",
+                    TASA, conseguida, retrasoGenerador.getValueAtPercentile(99) / 1e6);
+            if (conseguida < TASA * 0.95) {
+                System.out.println("AVISO: no se ha alcanzado la tasa pedida; el sistema (o el generador) está saturado.");
+            }
+            long p99Servicio = totalServicio.getValueAtPercentile(99);
+            long p99Respuesta = totalRespuesta.getValueAtPercentile(99);
+            if (p99Respuesta > 2 * p99Servicio) {
+                System.out.printf(Locale.ROOT, "Colas: p99 de respuesta %.3f ms frente a %.3f ms de servicio; "
+                                + "un generador en bucle cerrado habría ocultado esa espera.%n",
+                        p99Respuesta / 1e6, p99Servicio / 1e6);
+            }
+        } else {
+            long omitidas = totalRespuesta.getTotalCount() - totalServicio.getTotalCount();
+            if (intervaloEsperadoNanos == 0) {
+                System.out.println("Sin pausa ni calentamiento no se puede estimar la omisión coordinada.");
+            } else if (omitidas > 0) {
+                System.out.printf(Locale.ROOT, "Intervalo esperado por cliente %.3f ms%n", intervaloEsperadoNanos / 1e6);
+                System.out.printf(Locale.ROOT, "OMISIÓN COORDINADA: %d operaciones (%.1f %%) no se llegaron a pedir "
+                                + "durante los atascos; p99 medido %.3f ms, corregido %.3f ms.%n",
+                        omitidas, 100.0 * omitidas / totalRespuesta.getTotalCount(),
+                        totalServicio.getValueAtPercentile(99) / 1e6, totalRespuesta.getValueAtPercentile(99) / 1e6);
+            } else {
+                System.out.println("Sin omisión coordinada apreciable.");
+            }
+        }
+    }
+
+    private static void imprimir(String nombre, Histogram histograma, long errores, double segundos, String tipo) {
+        StringBuilder linea = new StringBuilder(String.format(Locale.ROOT, "%-10s %10s %10s %8s  %-10s",
+                nombre,
+                errores < 0 ? "" : Long.toString(histograma.getTotalCount()),
+                errores < 0 ? "" : String.format(Locale.ROOT, "%.0f", histograma.getTotalCount() / segundos),
+                errores < 0 ? "" : Long.toString(errores),
+                tipo));
+        for (double percentil : PERCENTILES) {
+            linea.append(String.format(Locale.ROOT, " %9.3f", histograma.getValueAtPercentile(percentil) / 1e6));
+        }
+        linea.append(String.format(Locale.ROOT, " %9.3f", histograma.getMaxValue() / 1e6));
+        System.out.println(linea);
+    }
+
+    /**
+     * Convierte "operacion=peso,..." en una tabla con cada operación repetida según su peso.
+     */
+    private static Operacion[] leerMezcla(String texto) {
+        List<Operacion> tabla = new ArrayList<>();
+        for (String parte : texto.split(",")) {
+            String[] operacionPeso = parte.strip().split("=");
+            if (operacionPeso.length != 2) {
+                throw new IllegalArgumentException("carga.mezcla: se esperaba operacion=peso y no '" + parte + "'");
+            }
+            Operacion operacion = Operacion.valueOf(operacionPeso[0].strip().toUpperCase(Locale.ROOT));
+            int peso = Integer.parseInt(operacionPeso[1].strip());
+            for (int i = 0; i < peso; i++) {
+                tabla.add(operacion);
+            }
+        }
+        if (tabla.isEmpty()) {
+            throw new IllegalArgumentException("carga.mezcla no tiene ninguna operación con peso");
+        }
+        return tabla.toArray(Operacion[]::new);
+    }
+
+    private static void esperarHasta(long nanos) throws InterruptedException {
+        long falta;
+        while ((falta = nanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(falta);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    private static Destino destinoDAO(DepartamentoDAO dao) {
+        return new Destino() {
+            @Override
+            public void insertar(Departamento dep) throws Exception {
+                dao.insertar(dep);
+            }
+
+            @Override
+            public void modificar(Departamento dep) throws Exception {
+                dao.modificar(dep);
+            }
+
+            @Override
+            public void eliminar(String codigo) throws Exception {
+                dao.eliminar(codigo);
+            }
+
+            @Override
+            public void buscar(String codigo) throws Exception {
+                dao.buscarPorCodigo(codigo);
+            }
+
+            @Override
+            public void listar(String despuesDeCodigo) throws Exception {
+                dao.listarPagina(despuesDeCodigo, DatabaseConfig.TAMANO_PAGINA);
+            }
+        };
+    }
+
+    /**
+     * Los métodos síncronos del controlador muestran los errores en diálogos de JavaFX; se usan
+     * los asíncronos, como la vista, esperando al resultado.
+     */
+    private static Destino destinoControlador(DepartamentoController controller) {
+        return new Destino() {
+            @Override
+            public void insertar(Departamento dep) {
+                controller.insertarDepartamentoAsync(dep).join();
+            }
+
+            @Override
+            public void modificar(Departamento dep) {
+                controller.modificarDepartamentoAsync(dep).join();
+            }
+
+            @Override
+            public void eliminar(String codigo) {
+                controller.eliminarDepartamentoAsync(codigo).join();
+            }
+
+            @Override
+            public void buscar(String codigo) {
+                controller.buscarDepartamentoAsync(codigo).join();
+            }
+
+            @Override
+            public void listar(String despuesDeCodigo) {
+                controller.listarPaginaAsync(despuesDeCodigo).join();
+            }
+        };
+    }
+
+    /**
+     * Clientes de la API HTTP con conexiones persistentes. Cualquier respuesta de error salvo
+     * 404 (baja o búsqueda de un código que ya no existe) cuenta como fallo.
+     */
+    private static Destino destinoHttp(String url) {
+        HttpClient cliente = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        String base = url + "/departamentos";
+        return new Destino() {
+            @Override
+            public void insertar(Departamento dep) throws Exception {
+                enviar(HttpRequest.newBuilder(URI.create(base)).POST(cuerpo(dep)));
+            }
+
+            @Override
+            public void modificar(Departamento dep) throws Exception {
+                enviar(HttpRequest.newBuilder(URI.create(base + "/" + dep.getCodigo())).PUT(cuerpo(dep)));
+            }
+
+            @Override
+            public void eliminar(String codigo) throws Exception {
+                enviar(HttpRequest.newBuilder(URI.create(base + "/" + codigo)).DELETE());
+            }
+
+            @Override
+            public void buscar(String codigo) throws Exception {
+                enviar(HttpRequest.newBuilder(URI.create(base + "/" + codigo)).GET());
+            }
+
+            @Override
+            public void listar(String despuesDeCodigo) throws Exception {
+                enviar(HttpRequest.newBuilder(URI.create(base + "?despuesDe=" + despuesDeCodigo)).GET());
+            }
+
+            private void enviar(HttpRequest.Builder peticion) throws IOException, InterruptedException {
+                HttpResponse<Void> respuesta = cliente.send(peticion.header("Accept-Encoding", "gzip")
+                        .header("Content-Type", "application/json").build(), HttpResponse.BodyHandlers.discarding());
+                if (respuesta.statusCode() >= 400 && respuesta.statusCode() != 404) {
+                    throw new IOException("HTTP " + respuesta.statusCode());
+                }
+            }
+        };
+    }
+
+    /**
+     * Los códigos y nombres generados no llevan caracteres que haya que escapar en JSON.
+     */
+    private static HttpRequest.BodyPublisher cuerpo(Departamento dep) {
+        return HttpRequest.BodyPublishers.ofString(String.format(Locale.ROOT,
+                "{\"codigo\":\"%s\",\"nombre\":\"%s\",\"idLocalizacion\":%d,\"idManager\":%d}",
+                dep.getCodigo(), dep.getNombre(), dep.getIdLocalizacion(), dep.getIdManager()));
+    }
+}
@@ -9,6 +9,8 @@ import javafx.application.Application;
  */
 public class Main {
     public static void main(String[] args) {
+        // La conexión con la base de datos se prepara mientras arranca JavaFX
+        DepartamentoView.prepararControlador();
         Application.launch(DepartamentoView.class, args);
     }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package foc.departamento.app;
+
+import foc.departamento.config.DatabaseConfig;
+import foc.departamento.controller.DepartamentoController;
+import foc.departamento.dao.ConexionBD;
+import foc.departamento.servicio.ServicioHttp;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.logging.Logger;
+
+/**
+ * Punto de entrada sin interfaz gráfica.
+ * Expone las operaciones del controlador como API HTTP con JSON ({@link ServicioHttp})
+ * en {@link DatabaseConfig#SERVICIO_DIRECCION}:{@link DatabaseConfig#SERVICIO_PUERTO}.
+ * Sigue el registro de cambios para que la caché de departamentos no sirva lo que han cambiado
+ * otros clientes, o la desactiva si no puede.
+ */
+public class MainServicio {
+    private static final Logger LOGGER = Logger.getLogger(MainServicio.class.getName());
+
+    public static void main(String[] args) throws IOException {
+        // El servidor del JDK cierra las conexiones keep-alive que superan este número; con miles
+        // de clientes el valor por defecto (200) obligaría a reconectar. Se lee al crear el primer servidor
+        System.getProperties().putIfAbsent("sun.net.httpserver.maxIdleConnections",
+                Integer.toString(DatabaseConfig.SERVICIO_COLA_CONEXIONES));
+
+        DepartamentoController controller = DepartamentoController.crearAsync().join();
+        // Sin interfaz nadie más sigue los cambios de otros clientes y nodos
+        controller.sincronizarCacheAsync().join();
+        ServicioHttp servicio = new ServicioHttp(controller,
+                new InetSocketAddress(DatabaseConfig.SERVICIO_DIRECCION, DatabaseConfig.SERVICIO_PUERTO));
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            LOGGER.info("Deteniendo el servicio");
+            servicio.detener(5);
+            controller.detenerSincronizacion();
+            ConexionBD.getInstancia().cerrarConexion();
+        }, "parada-servicio"));
+        servicio.iniciar();
+    }
+}
@@ -1,38 +1,115 @@
 package foc.departamento.config;
 
 import java.beans.Transient;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * Clase de configuración para almacenar las propiedades de la base de datos.
  * Centraliza los valores de configuración en una sola clase.
  */
 public class DatabaseConfig {
-    // Constantes de configuración de la base de datos
+    // Constantes de configuración de la base de datos (sobrescribibles con -Ddepartamento.db.*)
     public static final String DRIVER = "org.mariadb.jdbc.Driver";
-    public static final String URL = "jdbc:mariadb://localhost:3306/departamentos";
-    public static final String USUARIO = "root";
-    public static final String PASSWORD = "password";
+    // useServerPrepStmts: las sentencias se preparan en el servidor, así la caché de sentencias evita el parseo.
+    // useAffectedRows: las escrituras cuentan las filas cambiadas y no las encontradas, así guardar()
+    // distingue una fila que ya tenía esos valores de una insertada.
+    // useBulkStmtsForInserts=false: MariaDB 10.11 pierde filas con el protocolo bulk si la tabla
+    // tiene triggers, como los del registro de cambios. Los batches de DepartamentoDAO ya lo evitan
+    // por su cuenta; esto cubre cualquier otro batch de INSERT que se envíe por el pool
+    public static final String URL = System.getProperty("departamento.db.url",
+            "jdbc:mariadb://localhost:3306/departamentos?useServerPrepStmts=true&useAffectedRows=true"
+                    + "&useBulkStmtsForInserts=false");
+    public static final String USUARIO = System.getProperty("departamento.db.usuario", "root");
+    public static final String PASSWORD = System.getProperty("departamento.db.password", "password");
+    // Crear y evolucionar el esquema al arrancar (MigracionesBD, scripts de db/). La base de datos
+    // tiene que existir; se desactiva si el usuario de la aplicación no tiene permisos de DDL
+    public static final boolean MIGRAR_AL_ARRANCAR = Boolean.parseBoolean(
+            System.getProperty("departamento.db.migrar", "true"));
+
+    // Réplicas de lectura: URLs separadas por comas, con el mismo usuario y contraseña que el
+    // primario (sin ninguna todo va al primario). Las consultas de departamentos van a las réplicas
+    // elegidas por "latencia" o por "rotacion", con el primario como respaldo; las escrituras, al
+    // primario. REPLICAS_RETRASO_MAX_MS es el retraso de replicación que se tolera: tras una
+    // escritura propia las lecturas siguen en el primario durante ese tiempo, para ver lo escrito,
+    // y una réplica que va más retrasada (Seconds_Behind_Master de SHOW SLAVE STATUS, para lo que
+    // el usuario necesita el permiso REPLICATION CLIENT o SLAVE MONITOR) deja de usarse hasta
+    // que se pone al día
+    public static final List<String> URLS_REPLICAS = Arrays.stream(
+                    System.getProperty("departamento.db.replicas", "").split(","))
+            .map(String::strip)
+            .filter(url -> !url.isEmpty())
+            .toList();
+    public static final String REPLICAS_SELECCION = System.getProperty("departamento.db.replicas.seleccion", "latencia");
+    public static final long REPLICAS_COMPROBACION_MS = Long.getLong("departamento.db.replicas.comprobacionMs", 5_000L);
+    public static final long REPLICAS_RETRASO_MAX_MS = Long.getLong("departamento.db.replicas.retrasoMaxMs", 5_000L);
+
+    // Parámetros del pool de conexiones (sobrescribibles con -Ddepartamento.pool.*)
+    public static final int POOL_MINIMO = Integer.getInteger("departamento.pool.minimo", 2);
+    public static final int POOL_MAXIMO = Integer.getInteger("departamento.pool.maximo", 10);
+    public static final long POOL_ESPERA_MAX_MS = Long.getLong("departamento.pool.esperaMaxMs", 5_000L);
+    public static final long POOL_INACTIVIDAD_MAX_MS = Long.getLong("departamento.pool.inactividadMaxMs", 300_000L);
+    public static final long POOL_VIDA_MAX_MS = Long.getLong("departamento.pool.vidaMaxMs", 1_800_000L);
+    public static final long POOL_VALIDACION_MS = Long.getLong("departamento.pool.validacionMs", 1_000L);
+    public static final long POOL_DETECCION_FUGAS_MS = Long.getLong("departamento.pool.deteccionFugasMs", 30_000L);
+    // Aviso si una conexión se retiene más de este tiempo (0 lo desactiva). Las operaciones
+    // interactivas la retienen milisegundos; sólo las importaciones y exportaciones completas
+    // pueden superarlo
+    public static final long POOL_RETENCION_MAX_MS = Long.getLong("departamento.pool.retencionMaxMs", 2_000L);
+    // Capturar la pila de cada préstamo para que los avisos de fuga y de retención digan dónde se
+    // pidió la conexión. Cuesta una traza por préstamo, así que sólo para diagnosticar; sin ella
+    // los avisos muestran dónde está el hilo que la retiene
+    public static final boolean POOL_TRAZAR_PRESTAMOS = Boolean.parseBoolean(
+            System.getProperty("departamento.pool.trazarPrestamos", "false"));
+    public static final long POOL_MANTENIMIENTO_MS = Long.getLong("departamento.pool.mantenimientoMs", 5_000L);
+    // Sentencias preparadas en caché por conexión (0 la desactiva)
+    public static final int POOL_CACHE_SENTENCIAS = Integer.getInteger("departamento.pool.cacheSentencias", 32);
+
+    // Paginación de listados: filas por página y filas que el driver trae en cada viaje de red
+    public static final int TAMANO_PAGINA = Integer.getInteger("departamento.listado.tamanoPagina", 200);
+    public static final int FETCH_SIZE = Integer.getInteger("departamento.listado.fetchSize", 200);
+
+    // Códigos por consulta IN en las búsquedas de varios códigos. Muy por debajo del límite de
+    // 65535 marcadores por sentencia y de max_allowed_packet, y sin planes de ejecución enormes
+    public static final int MAX_CODIGOS_POR_CONSULTA = Integer.getInteger("departamento.listado.maxCodigosPorConsulta", 256);
+
+    // Filas por transacción en las inserciones por lotes
+    public static final int TAMANO_LOTE = Integer.getInteger("departamento.lote.tamano", 1000);
+
+    // Caché de departamentos por código: entradas máximas (0 la desactiva) y tiempo de vida
+    public static final int CACHE_TAMANO = Integer.getInteger("departamento.cache.tamano", 10_000);
+    public static final long CACHE_TTL_MS = Long.getLong("departamento.cache.ttlMs", 60_000L);
+
+    // Intervalo del volcado de métricas de acceso a datos al log (0 lo desactiva)
+    public static final long METRICAS_VOLCADO_MS = Long.getLong("departamento.metricas.volcadoMs", 60_000L);
+
+    // Sincronización con los cambios de otros clientes (db/cambios_departamentos.sql):
+    // intervalo de sondeo (0 la desactiva), cambios por consulta, espera máxima por un hueco de
+    // versiones aún sin confirmar y antigüedad de los cambios que se conservan en el registro
+    public static final long SYNC_INTERVALO_MS = Long.getLong("departamento.sync.intervaloMs", 2_000L);
+    public static final int SYNC_LOTE = Integer.getInteger("departamento.sync.lote", 500);
+    public static final long SYNC_HUECO_MAX_MS = Long.getLong("departamento.sync.huecoMaxMs", 10_000L);
+    public static final long SYNC_RETENCION_MS = Long.getLong("departamento.sync.retencionMs", 86_400_000L);
+
+    // Copia local de los departamentos cargados (InstantaneaDepartamentos): se muestra al arrancar
+    // antes de conectar, se pone al día con el registro de cambios y sirve las búsquedas por código
+    // si la base de datos no responde. Una cadena vacía la desactiva
+    public static final String INSTANTANEA_FICHERO = System.getProperty("departamento.instantanea.fichero",
+            Path.of(System.getProperty("user.home"), ".departamentos", "departamentos.instantanea").toString());
+
+    // Servicio HTTP sin interfaz (MainServicio): dirección y puerto, conexiones TCP pendientes de
+    // aceptar, tamaño máximo del cuerpo de una petición y tamaño a partir del cual se comprimen las
+    // respuestas. Las peticiones comparten el pool: para muchas simultáneas conviene subir
+    // departamento.pool.maximo hasta lo que admita el servidor
+    public static final String SERVICIO_DIRECCION = System.getProperty("departamento.servicio.direccion", "localhost");
+    public static final int SERVICIO_PUERTO = Integer.getInteger("departamento.servicio.puerto", 8080);
+    public static final int SERVICIO_COLA_CONEXIONES = Integer.getInteger("departamento.servicio.colaConexiones", 4096);
+    public static final int SERVICIO_CUERPO_MAX_BYTES = Integer.getInteger("departamento.servicio.cuerpoMaxBytes", 16 * 1024 * 1024);
+    public static final int SERVICIO_GZIP_MIN_BYTES = Integer.getInteger("departamento.servicio.gzipMinBytes", 1024);
 
     // Constructor privado para evitar instancias
     private DatabaseConfig() {
         // Esta clase no debe ser instanciada
     }
 }
-/*
-You must insert this code in MySQL before running the program and provide your username and password in the parameters.
-__________________________________________________________________________________________________
--- Create the database with the ID name
-CREATE DATABASE IF NOT EXISTS `departments`;
-
--- Use the database
-USE `departments`;
-
--- Create the Departments table
-CREATE TABLE Departments (
-code INT PRIMARY KEY,
-name VARCHAR(50),
-location_id INT,
-manager_id INT
-);
-___________________________________________________________________________________________________
- */
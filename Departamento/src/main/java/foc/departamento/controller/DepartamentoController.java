@@ -1,23 +1,506 @@
 package foc.departamento.controller;
 
+import foc.departamento.config.DatabaseConfig;
+import foc.departamento.dao.CacheDepartamentos;
+import foc.departamento.dao.CambioDepartamento;
+import foc.departamento.dao.ConexionBD;
 import foc.departamento.dao.DepartamentoDAO;
+import foc.departamento.dao.ExportadorDepartamentos;
+import foc.departamento.dao.FiltroDepartamentos;
+import foc.departamento.dao.FormatoExportacion;
+import foc.departamento.dao.ImportadorCSV;
+import foc.departamento.dao.InstantaneaDepartamentos;
+import foc.departamento.dao.MigracionesBD;
+import foc.departamento.dao.ProgresoImportacion;
+import foc.departamento.dao.ResultadoFila;
+import foc.departamento.dao.ResultadoImportacion;
+import foc.departamento.dao.ResultadoLote;
+import foc.departamento.dao.SesionLectura;
+import foc.departamento.dao.SincronizadorCambios;
+import foc.departamento.dao.UnidadTrabajo;
 import foc.departamento.model.Departamento;
 import util.AlertUtils;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Controlador que maneja la lógica entre la vista y el modelo.
+ * Además de los métodos síncronos, ofrece variantes asíncronas (sufijo {@code Async}) que
+ * ejecutan el trabajo JDBC en hilos virtuales para no bloquear el hilo de JavaFX.
+ * En modo unidad de trabajo las inserciones, modificaciones, guardados y eliminaciones no van a la base
+ * de datos: se acumulan en memoria y se aplican juntas en una transacción al confirmar.
  */
 public class DepartamentoController {
+    private static final Logger LOGGER = Logger.getLogger(DepartamentoController.class.getName());
     private final DepartamentoDAO departamentoDAO;
+    private final ImportadorCSV importadorCSV;
+    private final ExportadorDepartamentos exportador;
+    private final SincronizadorCambios sincronizador;
+    // Cambios acumulados en modo unidad de trabajo, o null si los cambios se aplican al momento
+    private volatile UnidadTrabajo unidadTrabajo;
+    // Un hilo virtual por operación: bloquearse en JDBC no ocupa hilos de plataforma
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
 
     public DepartamentoController() {
         this.departamentoDAO = new DepartamentoDAO();
+        this.importadorCSV = new ImportadorCSV(departamentoDAO);
+        this.exportador = new ExportadorDepartamentos(departamentoDAO);
+        this.sincronizador = new SincronizadorCambios(departamentoDAO);
+        // Ningún hilo debe esperar la respuesta a un diálogo con una conexión del pool prestada
+        AlertUtils.setComprobacionAntesDeEsperar(
+                () -> ConexionBD.comprobarSinConexionPrestada("esperar a un diálogo"));
+    }
+
+    /**
+     * Crea el controlador en un hilo virtual. Cargar el driver, publicar las métricas por JMX y
+     * crear el pool lleva cientos de milisegundos que no deben retrasar la primera ventana.
+     * Antes de usarlo se aplican las migraciones pendientes del esquema si
+     * {@link DatabaseConfig#MIGRAR_AL_ARRANCAR}; con el esquema al día es una sola consulta.
+     * Al terminar se abren las conexiones mínimas del pool en otro hilo, en paralelo con las
+     * primeras consultas, sin esperar a que acaben. Si la base de datos no responde el controlador
+     * se crea igual, para consultar la copia local ({@link #abrirInstantaneaAsync()}); las
+     * migraciones quedan para el siguiente arranque.
+     *
+     * @return Futuro con el controlador listo para usarse, o fallido con la SQLException de la migración
+     */
+    public static CompletableFuture<DepartamentoController> crearAsync() {
+        CompletableFuture<DepartamentoController> creado = new CompletableFuture<>();
+        Thread.ofVirtual().name("arranque-controlador").start(() -> {
+            try {
+                DepartamentoController controller = new DepartamentoController();
+                if (DatabaseConfig.MIGRAR_AL_ARRANCAR) {
+                    migrarSiHayConexion();
+                }
+                Thread.ofVirtual().name("arranque-pool").start(ConexionBD.getInstancia()::precalentar);
+                creado.complete(controller);
+            } catch (SQLException | RuntimeException | Error e) {
+                creado.completeExceptionally(e);
+            }
+        });
+        return creado;
+    }
+
+    private static void migrarSiHayConexion() throws SQLException {
+        try {
+            new MigracionesBD().migrar();
+        } catch (SQLException e) {
+            if (!ConexionBD.esFalloConexion(e)) {
+                throw e;
+            }
+            LOGGER.log(Level.WARNING, "Sin conexión con la base de datos, no se aplican las migraciones: {0}",
+                    e.getMessage());
+        }
+    }
+
+    /**
+     * Abre en un hilo virtual la copia local de los últimos departamentos cargados
+     * ({@link DatabaseConfig#INSTANTANEA_FICHERO}). No necesita la base de datos, así que puede
+     * mostrarse mientras se crea el controlador.
+     *
+     * @return Futuro con la copia, o con null si está desactivada, no existe o no se puede leer
+     */
+    public static CompletableFuture<InstantaneaDepartamentos> abrirInstantaneaAsync() {
+        if (DatabaseConfig.INSTANTANEA_FICHERO.isBlank()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<InstantaneaDepartamentos> abierta = new CompletableFuture<>();
+        Thread.ofVirtual().name("arranque-instantanea").start(() -> {
+            try {
+                abierta.complete(InstantaneaDepartamentos.abrir(Path.of(DatabaseConfig.INSTANTANEA_FICHERO)));
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "No se puede leer la copia local de departamentos: {0}", e.getMessage());
+                abierta.complete(null);
+            }
+        });
+        return abierta;
+    }
+
+    /**
+     * Operación de base de datos que puede lanzar SQLException (o IOException si lee ficheros).
+     */
+    @FunctionalInterface
+    private interface OperacionBD<T> {
+        T ejecutar() throws SQLException, IOException;
+    }
+
+    /**
+     * Ejecuta una operación en un hilo virtual.
+     * Los errores no se muestran aquí: el futuro se completa con una CompletionException
+     * cuya causa es la SQLException (o UncheckedIOException) original, y es la vista quien decide cómo informar.
+     */
+    private <T> CompletableFuture<T> enSegundoPlano(OperacionBD<T> operacion) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return operacion.ejecutar();
+            } catch (SQLException e) {
+                throw new CompletionException(e);
+            } catch (IOException e) {
+                throw new CompletionException(new UncheckedIOException(e));
+            }
+        }, ejecutor);
+    }
+
+    /**
+     * DAO con el que atender a un cliente que lleva su propia sesión de lectura, como cada
+     * petición del servicio HTTP; la interfaz usa la del DAO del controlador.
+     */
+    private DepartamentoDAO dao(SesionLectura sesion) {
+        return departamentoDAO.enSesion(sesion);
+    }
+
+    public CompletableFuture<Boolean> insertarDepartamentoAsync(Departamento departamento) {
+        return insertarDepartamentoAsync(departamento, departamentoDAO.getSesion());
+    }
+
+    /**
+     * Inserta el departamento anotando la escritura en la sesión del cliente.
+     *
+     * @param departamento Departamento a insertar
+     * @param sesion Sesión del cliente: sus lecturas posteriores verán el alta
+     * @return Futuro con true si se ha insertado (o acumulado en la unidad de trabajo)
+     */
+    public CompletableFuture<Boolean> insertarDepartamentoAsync(Departamento departamento, SesionLectura sesion) {
+        UnidadTrabajo unidad = unidadTrabajo;
+        if (unidad != null) {
+            return CompletableFuture.completedFuture(unidad.insertar(departamento));
+        }
+        DepartamentoDAO dao = dao(sesion);
+        return enSegundoPlano(() -> dao.insertar(departamento));
+    }
+
+    /**
+     * Inserta o modifica el departamento según exista, en un solo viaje a la base de datos.
+     *
+     * @param departamento Departamento a guardar
+     * @return Futuro con lo que ocurrió con la fila: {@code PENDIENTE} si se ha acumulado en la unidad de
+     *         trabajo, o {@code RECHAZADO} si ésta no lo admite
+     */
+    public CompletableFuture<ResultadoFila.Estado> guardarDepartamentoAsync(Departamento departamento) {
+        return guardarDepartamentoAsync(departamento, departamentoDAO.getSesion());
+    }
+
+    /**
+     * Como {@link #guardarDepartamentoAsync(Departamento)}, anotando la escritura en la sesión del cliente.
+     */
+    public CompletableFuture<ResultadoFila.Estado> guardarDepartamentoAsync(Departamento departamento, SesionLectura sesion) {
+        UnidadTrabajo unidad = unidadTrabajo;
+        if (unidad != null) {
+            return CompletableFuture.completedFuture(acumularGuardado(unidad, departamento));
+        }
+        DepartamentoDAO dao = dao(sesion);
+        return enSegundoPlano(() -> dao.guardar(departamento));
+    }
+
+    private static ResultadoFila.Estado acumularGuardado(UnidadTrabajo unidad, Departamento departamento) {
+        return unidad.guardar(departamento) ? ResultadoFila.Estado.PENDIENTE : ResultadoFila.Estado.RECHAZADO;
+    }
+
+    public CompletableFuture<ResultadoLote> guardarLoteAsync(Collection<Departamento> departamentos) {
+        return guardarLoteAsync(departamentos, departamentoDAO.getSesion());
+    }
+
+    public CompletableFuture<ResultadoLote> guardarLoteAsync(Collection<Departamento> departamentos, SesionLectura sesion) {
+        DepartamentoDAO dao = dao(sesion);
+        return enSegundoPlano(() -> dao.guardarLote(departamentos));
+    }
+
+    public CompletableFuture<ResultadoLote> insertarLoteAsync(Collection<Departamento> departamentos) {
+        return enSegundoPlano(() -> departamentoDAO.insertarLote(departamentos));
+    }
+
+    /**
+     * Importa un fichero CSV en segundo plano.
+     *
+     * @param fichero Fichero CSV ({@code codigo,nombre,id_localizacion,id_manager})
+     * @param progreso Recibe el avance desde el hilo de la importación; puede ser null
+     * @return Futuro con el resultado de la importación
+     */
+    public CompletableFuture<ResultadoImportacion> importarCsvAsync(Path fichero, Consumer<ProgresoImportacion> progreso) {
+        return enSegundoPlano(() -> importadorCSV.importar(fichero, progreso));
+    }
+
+    /**
+     * Exporta la tabla completa en segundo plano.
+     *
+     * @param destino Fichero de destino
+     * @param formato CSV o JSON Lines
+     * @param gzip true para comprimir con gzip
+     * @param progreso Recibe las filas escritas desde el hilo de la exportación; puede ser null
+     * @return Futuro con el número de filas exportadas
+     */
+    public CompletableFuture<Long> exportarAsync(Path destino, FormatoExportacion formato, boolean gzip,
+                                                 LongConsumer progreso) {
+        return enSegundoPlano(() -> exportador.exportar(destino, formato, gzip, progreso));
+    }
+
+    /**
+     * Empieza a seguir los cambios que hacen otros clientes. El futuro se completa cuando se ha
+     * leído la versión de partida, así que los datos deben cargarse después.
+     *
+     * @param oyente Recibe los cambios desde el hilo de la sincronización
+     * @return Futuro con true si la sincronización está activa
+     */
+    public CompletableFuture<Boolean> iniciarSincronizacionAsync(SincronizadorCambios.Oyente oyente) {
+        return enSegundoPlano(() -> sincronizador.iniciar(oyente));
+    }
+
+    /**
+     * Mantiene al día la caché de departamentos con los cambios de otros clientes cuando nadie
+     * sigue el registro de cambios para mostrarlos, como en el servicio HTTP: la caché ya la
+     * actualiza {@link DepartamentoDAO#leerCambios}, así que el oyente sólo la vacía si se han
+     * perdido cambios. Si no se puede sincronizar se desactiva la caché, que si no serviría
+     * durante {@link DatabaseConfig#CACHE_TTL_MS} filas borradas o modificadas por otros.
+     *
+     * @return Futuro con true si la sincronización está activa
+     */
+    public CompletableFuture<Boolean> sincronizarCacheAsync() {
+        CacheDepartamentos cache = CacheDepartamentos.getInstancia();
+        return iniciarSincronizacionAsync(new SincronizadorCambios.Oyente() {
+            @Override
+            public void aplicar(List<CambioDepartamento> cambios) {
+                // leerCambios ya los ha llevado a la caché
+            }
+
+            @Override
+            public void recargar() {
+                cache.invalidarTodo();
+            }
+        }).thenApply(activa -> {
+            if (!activa) {
+                LOGGER.warning("Sin sincronización de cambios: se desactiva la caché de departamentos");
+                cache.desactivar();
+            }
+            return activa;
+        });
+    }
+
+    /**
+     * Pone al día los datos de una copia local: sigue los cambios de otros clientes desde la
+     * versión de la copia, y el primer sondeo entrega enseguida los ocurridos desde que se guardó.
+     * A partir de entonces las búsquedas por código usan la copia si la base de datos no responde.
+     *
+     * @param oyente Recibe los cambios desde el hilo de la sincronización
+     * @param instantanea Copia local ya mostrada
+     * @return Futuro con true si la copia se pone al día con los cambios, o false si hay que
+     *         cargar los datos completos; falla con la SQLException si la base de datos no responde
+     */
+    public CompletableFuture<Boolean> reconciliarInstantaneaAsync(SincronizadorCambios.Oyente oyente,
+                                                                 InstantaneaDepartamentos instantanea) {
+        departamentoDAO.usarInstantanea(instantanea);
+        return enSegundoPlano(() -> sincronizador.iniciarDesde(oyente, instantanea.getVersionCambios()));
+    }
+
+    /**
+     * Guarda la copia local de los departamentos cargados, para mostrarlos en el próximo arranque.
+     * No se guarda nada con cambios pendientes en la unidad de trabajo, porque la tabla los muestra
+     * ya aplicados. Los errores sólo se registran: la copia es prescindible.
+     *
+     * @param departamentos Departamentos cargados
+     * @param versionCambios Versión del registro de cambios hasta la que están al día
+     * @param completa true si son todos los de la tabla
+     * @return true si se ha guardado
+     */
+    public boolean guardarInstantanea(Collection<Departamento> departamentos, long versionCambios, boolean completa) {
+        if (DatabaseConfig.INSTANTANEA_FICHERO.isBlank() || getCambiosPendientes() > 0) {
+            return false;
+        }
+        try {
+            InstantaneaDepartamentos.guardar(Path.of(DatabaseConfig.INSTANTANEA_FICHERO), departamentos,
+                    versionCambios, completa);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "No se ha podido guardar la copia local de departamentos: {0}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Deja de seguir los cambios de otros clientes.
+     */
+    public void detenerSincronizacion() {
+        sincronizador.detener();
+    }
+
+    public CompletableFuture<Boolean> modificarDepartamentoAsync(Departamento departamento) {
+        return modificarDepartamentoAsync(departamento, departamentoDAO.getSesion());
+    }
+
+    public CompletableFuture<Boolean> modificarDepartamentoAsync(Departamento departamento, SesionLectura sesion) {
+        UnidadTrabajo unidad = unidadTrabajo;
+        if (unidad != null) {
+            return CompletableFuture.completedFuture(unidad.modificar(departamento));
+        }
+        DepartamentoDAO dao = dao(sesion);
+        return enSegundoPlano(() -> dao.modificar(departamento));
+    }
+
+    public CompletableFuture<Boolean> eliminarDepartamentoAsync(String codigo) {
+        return eliminarDepartamentoAsync(codigo, departamentoDAO.getSesion());
+    }
+
+    public CompletableFuture<Boolean> eliminarDepartamentoAsync(String codigo, SesionLectura sesion) {
+        UnidadTrabajo unidad = unidadTrabajo;
+        if (unidad != null) {
+            return CompletableFuture.completedFuture(unidad.eliminar(codigo));
+        }
+        DepartamentoDAO dao = dao(sesion);
+        return enSegundoPlano(() -> dao.eliminar(codigo));
+    }
+
+    /**
+     * Activa el modo unidad de trabajo: a partir de ahora las inserciones, modificaciones y
+     * eliminaciones se acumulan hasta confirmarlas o descartarlas. Si ya estaba activo no hace nada.
+     */
+    public synchronized void iniciarUnidadTrabajo() {
+        if (unidadTrabajo == null) {
+            unidadTrabajo = new UnidadTrabajo();
+        }
+    }
+
+    /**
+     * @return true si el modo unidad de trabajo está activo
+     */
+    public boolean hayUnidadTrabajo() {
+        return unidadTrabajo != null;
+    }
+
+    /**
+     * @return Número de códigos con cambios pendientes de confirmar (0 fuera del modo unidad de trabajo)
+     */
+    public int getCambiosPendientes() {
+        UnidadTrabajo unidad = unidadTrabajo;
+        return unidad == null ? 0 : unidad.tamano();
+    }
+
+    /**
+     * Aplica los cambios acumulados en una transacción y sale del modo unidad de trabajo.
+     * La unidad sale del controlador antes de empezar, de modo que mientras dura la transacción
+     * no puede volver a confirmarse ni descartarse. Si la transacción falla no se aplica nada y
+     * los cambios vuelven a quedar pendientes.
+     *
+     * @return Futuro con el número de códigos con cambios aplicados
+     */
+    public CompletableFuture<Integer> confirmarUnidadTrabajoAsync() {
+        UnidadTrabajo unidad = sacarUnidadTrabajo();
+        if (unidad == null) {
+            return CompletableFuture.completedFuture(0);
+        }
+        return enSegundoPlano(() -> {
+            try {
+                return departamentoDAO.aplicar(unidad);
+            } catch (SQLException | RuntimeException e) {
+                devolverUnidadTrabajo(unidad);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Descarta los cambios acumulados y sale del modo unidad de trabajo.
+     */
+    public void descartarUnidadTrabajo() {
+        UnidadTrabajo unidad = sacarUnidadTrabajo();
+        if (unidad != null) {
+            unidad.descartar();
+        }
+    }
+
+    /**
+     * Sale del modo unidad de trabajo.
+     *
+     * @return Unidad que estaba activa, o null si no había ninguna
+     */
+    private synchronized UnidadTrabajo sacarUnidadTrabajo() {
+        UnidadTrabajo unidad = unidadTrabajo;
+        unidadTrabajo = null;
+        return unidad;
+    }
+
+    /**
+     * Vuelve a dejar pendientes los cambios de una unidad que no se ha podido aplicar, salvo que
+     * entretanto se haya empezado otra.
+     */
+    private synchronized void devolverUnidadTrabajo(UnidadTrabajo unidad) {
+        if (unidadTrabajo == null) {
+            unidadTrabajo = unidad;
+        }
+    }
+
+    public CompletableFuture<Departamento> buscarDepartamentoAsync(String codigo) {
+        return buscarDepartamentoAsync(codigo, departamentoDAO.getSesion());
+    }
+
+    /**
+     * Busca un departamento leyendo del primario si la sesión ha escrito hace poco.
+     *
+     * @param codigo Código a buscar
+     * @param sesion Sesión del cliente
+     * @return Futuro con el departamento, o null si no existe
+     */
+    public CompletableFuture<Departamento> buscarDepartamentoAsync(String codigo, SesionLectura sesion) {
+        DepartamentoDAO dao = dao(sesion);
+        return enSegundoPlano(() -> dao.buscarPorCodigo(codigo));
+    }
+
+    /**
+     * Busca varios departamentos por código en segundo plano, con una consulta por cada
+     * trozo de códigos que no estén en la caché.
+     *
+     * @param codigos Códigos a buscar
+     * @return Futuro con los departamentos encontrados por código
+     */
+    public CompletableFuture<Map<String, Departamento>> buscarDepartamentosAsync(Collection<String> codigos) {
+        return buscarDepartamentosAsync(codigos, departamentoDAO.getSesion());
+    }
+
+    public CompletableFuture<Map<String, Departamento>> buscarDepartamentosAsync(Collection<String> codigos,
+                                                                                SesionLectura sesion) {
+        DepartamentoDAO dao = dao(sesion);
+        return enSegundoPlano(() -> dao.buscarPorCodigos(codigos));
+    }
+
+    public CompletableFuture<List<Departamento>> listarTodosDepartamentosAsync() {
+        return enSegundoPlano(departamentoDAO::listarTodos);
+    }
+
+    public CompletableFuture<List<Departamento>> listarPaginaAsync(String despuesDeCodigo) {
+        return listarPaginaAsync(despuesDeCodigo, departamentoDAO.getSesion());
+    }
+
+    public CompletableFuture<List<Departamento>> listarPaginaAsync(String despuesDeCodigo, SesionLectura sesion) {
+        DepartamentoDAO dao = dao(sesion);
+        return enSegundoPlano(() -> dao.listarPagina(despuesDeCodigo, DatabaseConfig.TAMANO_PAGINA));
+    }
+
+    public CompletableFuture<List<Departamento>> filtrarAsync(FiltroDepartamentos filtro, String despuesDeCodigo) {
+        return filtrarAsync(filtro, despuesDeCodigo, departamentoDAO.getSesion());
+    }
+
+    public CompletableFuture<List<Departamento>> filtrarAsync(FiltroDepartamentos filtro, String despuesDeCodigo,
+                                                              SesionLectura sesion) {
+        DepartamentoDAO dao = dao(sesion);
+        return enSegundoPlano(() -> dao.filtrar(filtro, despuesDeCodigo, DatabaseConfig.TAMANO_PAGINA));
     }
 
     public boolean insertarDepartamento(Departamento departamento) {
+        UnidadTrabajo unidad = unidadTrabajo;
+        if (unidad != null) {
+            return unidad.insertar(departamento);
+        }
         try {
             return departamentoDAO.insertar(departamento);
         } catch (SQLException e) {
@@ -26,7 +509,93 @@ public class DepartamentoController {
         }
     }
 
+    /**
+     * Inserta varios departamentos por lotes.
+     *
+     * @param departamentos Departamentos a insertar
+     * @return Resultado de cada fila o null si se perdió la conexión
+     */
+    public ResultadoLote insertarLote(Collection<Departamento> departamentos) {
+        try {
+            return departamentoDAO.insertarLote(departamentos);
+        } catch (SQLException e) {
+            AlertUtils.mostrarError("Error al insertar lote", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Inserta o modifica el departamento según exista.
+     *
+     * @param departamento Departamento a guardar
+     * @return Lo que ocurrió con la fila, como {@link #guardarDepartamentoAsync}, o null si hubo un error
+     */
+    public ResultadoFila.Estado guardarDepartamento(Departamento departamento) {
+        UnidadTrabajo unidad = unidadTrabajo;
+        if (unidad != null) {
+            return acumularGuardado(unidad, departamento);
+        }
+        try {
+            return departamentoDAO.guardar(departamento);
+        } catch (SQLException e) {
+            AlertUtils.mostrarError("Error al guardar", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Inserta o modifica varios departamentos por lotes.
+     *
+     * @param departamentos Departamentos a guardar
+     * @return Resultado de cada fila o null si se perdió la conexión
+     */
+    public ResultadoLote guardarLote(Collection<Departamento> departamentos) {
+        try {
+            return departamentoDAO.guardarLote(departamentos);
+        } catch (SQLException e) {
+            AlertUtils.mostrarError("Error al guardar lote", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Importa un fichero CSV de departamentos.
+     *
+     * @param fichero Fichero CSV ({@code codigo,nombre,id_localizacion,id_manager})
+     * @param progreso Recibe el avance de la lectura; puede ser null
+     * @return Resultado de la importación o null si hubo un error
+     */
+    public ResultadoImportacion importarCsv(Path fichero, Consumer<ProgresoImportacion> progreso) {
+        try {
+            return importadorCSV.importar(fichero, progreso);
+        } catch (SQLException | IOException e) {
+            AlertUtils.mostrarError("Error al importar", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Exporta la tabla completa de departamentos.
+     *
+     * @param destino Fichero de destino
+     * @param formato CSV o JSON Lines
+     * @param gzip true para comprimir con gzip
+     * @return Filas exportadas o -1 si hubo un error
+     */
+    public long exportar(Path destino, FormatoExportacion formato, boolean gzip) {
+        try {
+            return exportador.exportar(destino, formato, gzip, null);
+        } catch (SQLException | IOException e) {
+            AlertUtils.mostrarError("Error al exportar", e.getMessage());
+            return -1;
+        }
+    }
+
     public boolean modificarDepartamento(Departamento departamento) {
+        UnidadTrabajo unidad = unidadTrabajo;
+        if (unidad != null) {
+            return unidad.modificar(departamento);
+        }
         try {
             return departamentoDAO.modificar(departamento);
         } catch (SQLException e) {
@@ -36,6 +605,10 @@ public class DepartamentoController {
     }
 
     public boolean eliminarDepartamento(String codigo) {
+        UnidadTrabajo unidad = unidadTrabajo;
+        if (unidad != null) {
+            return unidad.eliminar(codigo);
+        }
         try {
             return departamentoDAO.eliminar(codigo);
         } catch (SQLException e) {
@@ -44,6 +617,25 @@ public class DepartamentoController {
         }
     }
 
+    /**
+     * Aplica los cambios acumulados en una transacción y sale del modo unidad de trabajo.
+     *
+     * @return Número de códigos con cambios aplicados, o -1 si hubo un error (los cambios siguen pendientes)
+     */
+    public int confirmarUnidadTrabajo() {
+        UnidadTrabajo unidad = sacarUnidadTrabajo();
+        if (unidad == null) {
+            return 0;
+        }
+        try {
+            return departamentoDAO.aplicar(unidad);
+        } catch (SQLException e) {
+            devolverUnidadTrabajo(unidad);
+            AlertUtils.mostrarError("Error al confirmar los cambios", e.getMessage());
+            return -1;
+        }
+    }
+
     public Departamento buscarDepartamento(String codigo) {
         try {
             return departamentoDAO.buscarPorCodigo(codigo);
@@ -70,4 +662,35 @@ public class DepartamentoController {
             return null;
         }
     }
+
+    /**
+     * Busca departamentos que cumplen el filtro, por páginas.
+     *
+     * @param filtro Criterios de búsqueda
+     * @param despuesDeCodigo Último código ya cargado, o "" para la primera página
+     * @return Página de departamentos (vacía si no hay más) o null si hubo un error
+     */
+    public List<Departamento> filtrarDepartamentos(FiltroDepartamentos filtro, String despuesDeCodigo) {
+        try {
+            return departamentoDAO.filtrar(filtro, despuesDeCodigo, DatabaseConfig.TAMANO_PAGINA);
+        } catch (SQLException e) {
+            AlertUtils.mostrarError("Error al filtrar", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Obtiene la página de departamentos que sigue al código indicado.
+     *
+     * @param despuesDeCodigo Último código ya cargado, o "" para la primera página
+     * @return Página de departamentos (vacía si no hay más) o null si hubo un error
+     */
+    public List<Departamento> listarPagina(String despuesDeCodigo) {
+        try {
+            return departamentoDAO.listarPagina(despuesDeCodigo, DatabaseConfig.TAMANO_PAGINA);
+        } catch (SQLException e) {
+            AlertUtils.mostrarError("Error al listar", e.getMessage());
+            return null;
+        }
+    }
 }
\ No newline at end of file
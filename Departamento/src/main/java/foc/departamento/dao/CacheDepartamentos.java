@@ -0,0 +1,158 @@
+package foc.departamento.dao;
+
+import foc.departamento.config.DatabaseConfig;
+import foc.departamento.model.Departamento;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché en memoria de departamentos por código, compartida por todos los DAO del proceso.
+ * Implementa el patrón Singleton como {@link ConexionBD}. Está acotada por número de
+ * entradas (se expulsa la menos usada recientemente) y por tiempo de vida de cada entrada.
+ * Guarda y devuelve copias, de modo que modificar un objeto obtenido no altera la caché.
+ */
+public class CacheDepartamentos {
+    private static CacheDepartamentos instancia;
+
+    // 0 si está desactivada, desde el principio o con desactivar()
+    private volatile int capacidad;
+    private final long ttlMs;
+    private final LinkedHashMap<String, Entrada> entradas;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder expulsiones = new LongAdder();
+    private final LongAdder expiraciones = new LongAdder();
+
+    private record Entrada(Departamento departamento, long caducaEn) {
+    }
+
+    CacheDepartamentos(int capacidad, long ttlMs) {
+        this.capacidad = capacidad;
+        this.ttlMs = ttlMs;
+        // accessOrder = true para que la entrada más antigua sea la menos usada recientemente
+        this.entradas = new LinkedHashMap<>(Math.min(capacidad, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+                if (size() > CacheDepartamentos.this.capacidad) {
+                    expulsiones.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Obtiene la única instancia de la caché (Singleton).
+     *
+     * @return Instancia única de CacheDepartamentos
+     */
+    public static synchronized CacheDepartamentos getInstancia() {
+        if (instancia == null) {
+            instancia = new CacheDepartamentos(DatabaseConfig.CACHE_TAMANO, DatabaseConfig.CACHE_TTL_MS);
+        }
+        return instancia;
+    }
+
+    /**
+     * Busca un departamento en la caché.
+     *
+     * @param codigo Código del departamento
+     * @return Copia del departamento, o null si no está o ha caducado
+     */
+    public Departamento obtener(String codigo) {
+        if (capacidad <= 0) {
+            fallos.increment();
+            return null;
+        }
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(codigo);
+            if (entrada == null) {
+                fallos.increment();
+                return null;
+            }
+            if (System.currentTimeMillis() > entrada.caducaEn()) {
+                entradas.remove(codigo);
+                expiraciones.increment();
+                fallos.increment();
+                return null;
+            }
+            aciertos.increment();
+            return copiar(entrada.departamento());
+        }
+    }
+
+    /**
+     * Guarda o actualiza un departamento en la caché.
+     *
+     * @param departamento Departamento leído o escrito en la base de datos
+     */
+    public void guardar(Departamento departamento) {
+        if (capacidad <= 0 || departamento == null) {
+            return;
+        }
+        Entrada entrada = new Entrada(copiar(departamento), System.currentTimeMillis() + ttlMs);
+        synchronized (entradas) {
+            entradas.put(departamento.getCodigo(), entrada);
+        }
+    }
+
+    /**
+     * Guarda varios departamentos, por ejemplo los de un listado.
+     *
+     * @param departamentos Departamentos leídos de la base de datos
+     */
+    public void guardarTodos(Iterable<Departamento> departamentos) {
+        for (Departamento departamento : departamentos) {
+            guardar(departamento);
+        }
+    }
+
+    /**
+     * Elimina un departamento de la caché.
+     *
+     * @param codigo Código del departamento
+     */
+    public void invalidar(String codigo) {
+        synchronized (entradas) {
+            entradas.remove(codigo);
+        }
+    }
+
+    /**
+     * Vacía la caché por completo.
+     */
+    public void invalidarTodo() {
+        synchronized (entradas) {
+            entradas.clear();
+        }
+    }
+
+    /**
+     * Vacía la caché y deja de guardar nada, para cuando no hay forma de saber qué cambian otros
+     * clientes y lo guardado podría servirse desfasado durante todo su tiempo de vida.
+     */
+    public void desactivar() {
+        capacidad = 0;
+        invalidarTodo();
+    }
+
+    /**
+     * @return Instantánea de aciertos, fallos, expulsiones y tamaño actual
+     */
+    public EstadisticasCache getEstadisticas() {
+        int tamano;
+        synchronized (entradas) {
+            tamano = entradas.size();
+        }
+        return new EstadisticasCache(aciertos.sum(), fallos.sum(), expulsiones.sum(), expiraciones.sum(),
+                tamano, capacidad);
+    }
+
+    private static Departamento copiar(Departamento dep) {
+        return new Departamento(dep.getCodigo(), dep.getNombre(), dep.getIdLocalizacion(), dep.getIdManager());
+    }
+}
@@ -0,0 +1,271 @@
+package foc.departamento.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Caché LRU de sentencias preparadas asociada a una conexión física del pool.
+ * La clave es el texto SQL; la sentencia se prepara una sola vez en el servidor
+ * y se reutiliza en los siguientes préstamos de la misma conexión.
+ * Las sentencias entregadas son proxies: cerrarlas las devuelve a la caché.
+ */
+class CacheSentencias {
+    private static final Logger LOGGER = Logger.getLogger(CacheSentencias.class.getName());
+    // Métodos que cambian propiedades de la sentencia que se restauran al devolverla
+    private static final Set<String> PROPIEDADES_RESTAURABLES = Set.of(
+            "setFetchSize", "setFetchDirection", "setMaxRows", "setLargeMaxRows", "setMaxFieldSize",
+            "setQueryTimeout");
+    // Métodos que cambian un estado que no se puede leer para restaurarlo
+    private static final Set<String> PROPIEDADES_IRRECUPERABLES = Set.of(
+            "setEscapeProcessing", "setCursorName", "setPoolable", "closeOnCompletion");
+
+    private final Connection real;
+    private final Map<String, Contadores> contadores;
+    private final LinkedHashMap<String, Entrada> entradas;
+    // Expulsadas de la caché mientras estaban prestadas; se cierran al devolverlas
+    private final List<Entrada> expulsadasPrestadas = new ArrayList<>();
+
+    /**
+     * @param real Conexión física sobre la que se preparan las sentencias
+     * @param capacidad Número máximo de sentencias en caché
+     * @param contadores Contadores de aciertos/fallos por SQL, compartidos por todo el pool
+     */
+    CacheSentencias(Connection real, int capacidad, Map<String, Contadores> contadores) {
+        this.real = real;
+        this.contadores = contadores;
+        // accessOrder = true: el orden de iteración va del menos al más recientemente usado
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+                if (size() > capacidad) {
+                    eldest.getValue().expulsar();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Devuelve la sentencia preparada para el SQL dado, reutilizándola si ya estaba en caché.
+     *
+     * @param sql Texto SQL
+     * @param conexion Conexión prestada que debe devolver {@code getConnection()} de la sentencia
+     * @return Sentencia preparada; al cerrarla vuelve a la caché
+     * @throws SQLException Si falla la preparación
+     */
+    PreparedStatement preparar(String sql, Connection conexion) throws SQLException {
+        Contadores contador = contadores.computeIfAbsent(sql, k -> new Contadores());
+        Entrada entrada = entradas.get(sql);
+        if (entrada != null && entrada.propietario == null) {
+            contador.aciertos.increment();
+        } else {
+            contador.fallos.increment();
+            if (entrada != null) {
+                // La misma sentencia ya está abierta en este préstamo: se entrega una sin caché
+                return real.prepareStatement(sql);
+            }
+            entrada = new Entrada(sql, real.prepareStatement(sql));
+            entradas.put(sql, entrada);
+        }
+        ManejadorSentencia manejador = new ManejadorSentencia(entrada, conexion);
+        entrada.propietario = manejador;
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class},
+                manejador);
+    }
+
+    /**
+     * Marca como libres todas las sentencias; se llama al devolver la conexión al pool.
+     * También cierra las expulsadas mientras estaban prestadas, que ya no están en la caché.
+     */
+    void liberarTodas() {
+        Iterator<Entrada> iterador = entradas.values().iterator();
+        while (iterador.hasNext()) {
+            Entrada entrada = iterador.next();
+            if (!entrada.liberar(entrada.propietario)) {
+                iterador.remove();
+            }
+        }
+        for (Entrada entrada : expulsadasPrestadas.toArray(new Entrada[0])) {
+            entrada.liberar(entrada.propietario);
+        }
+    }
+
+    /**
+     * Contadores de aciertos y fallos de la caché para un texto SQL.
+     */
+    static final class Contadores {
+        final LongAdder aciertos = new LongAdder();
+        final LongAdder fallos = new LongAdder();
+
+        EstadisticasCacheSentencias instantanea() {
+            return new EstadisticasCacheSentencias(aciertos.sum(), fallos.sum());
+        }
+    }
+
+    /**
+     * Sentencia real en caché junto con su estado y las propiedades con que se preparó, para
+     * restaurarlas al devolverla: el siguiente préstamo no debe heredar, por ejemplo, el
+     * {@code fetchSize} que fijó un recorrido completo.
+     */
+    private final class Entrada {
+        private final String sql;
+        private final PreparedStatement sentencia;
+        private final int fetchSizeInicial;
+        private final int fetchDirectionInicial;
+        private final int maxRowsInicial;
+        private final int maxFieldSizeInicial;
+        private final int queryTimeoutInicial;
+        // Manejador que la tiene prestada ahora mismo, o null si está libre
+        private ManejadorSentencia propietario;
+        private boolean expulsada;
+        // Se ha llamado a un método que cambia las propiedades de la sentencia
+        private boolean propiedadesCambiadas;
+        // Se ha cambiado algo que no se puede leer para restaurarlo: no vuelve a la caché
+        private boolean irrecuperable;
+
+        private Entrada(String sql, PreparedStatement sentencia) throws SQLException {
+            this.sql = sql;
+            this.sentencia = sentencia;
+            // El driver guarda estas propiedades en la sentencia; leerlas no va al servidor
+            this.fetchSizeInicial = sentencia.getFetchSize();
+            this.fetchDirectionInicial = sentencia.getFetchDirection();
+            this.maxRowsInicial = sentencia.getMaxRows();
+            this.maxFieldSizeInicial = sentencia.getMaxFieldSize();
+            this.queryTimeoutInicial = sentencia.getQueryTimeout();
+        }
+
+        /**
+         * @return false si la sentencia se ha cerrado y ya no debe estar en la caché
+         */
+        private boolean liberar(ManejadorSentencia manejador) {
+            if (propietario == null || propietario != manejador) {
+                return !expulsada;
+            }
+            propietario = null;
+            manejador.cerrada = true;
+            if (expulsada) {
+                expulsadasPrestadas.remove(this);
+                cerrarSentencia();
+                return false;
+            }
+            try {
+                sentencia.clearParameters();
+                sentencia.clearBatch();
+                if (irrecuperable) {
+                    cerrarSentencia();
+                    return false;
+                }
+                if (propiedadesCambiadas) {
+                    sentencia.setFetchSize(fetchSizeInicial);
+                    sentencia.setFetchDirection(fetchDirectionInicial);
+                    sentencia.setMaxRows(maxRowsInicial);
+                    sentencia.setMaxFieldSize(maxFieldSizeInicial);
+                    sentencia.setQueryTimeout(queryTimeoutInicial);
+                    propiedadesCambiadas = false;
+                }
+                return true;
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Sentencia descartada de la caché al limpiarla: {0}", e.getMessage());
+                cerrarSentencia();
+                return false;
+            }
+        }
+
+        /**
+         * Sale de la caché y se cierra si está libre, o al devolverla si está prestada.
+         */
+        private void expulsar() {
+            expulsada = true;
+            if (propietario == null) {
+                cerrarSentencia();
+            } else {
+                expulsadasPrestadas.add(this);
+            }
+        }
+
+        /**
+         * Quita de la caché una sentencia que {@link #liberar} ha cerrado.
+         */
+        private void descartar() {
+            entradas.remove(sql, this);
+        }
+
+        private void cerrarSentencia() {
+            try {
+                sentencia.close();
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Error al cerrar una sentencia expulsada: {0}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Intercepta {@code close()} para devolver la sentencia a la caché en lugar de cerrarla.
+     */
+    private static final class ManejadorSentencia implements InvocationHandler {
+        private final Entrada entrada;
+        private final Connection conexion;
+        private boolean cerrada;
+
+        private ManejadorSentencia(Entrada entrada, Connection conexion) {
+            this.entrada = entrada;
+            this.conexion = conexion;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!cerrada) {
+                        cerrada = true;
+                        if (!entrada.liberar(this)) {
+                            entrada.descartar();
+                        }
+                    }
+                    return null;
+                case "isClosed":
+                    return cerrada || entrada.sentencia.isClosed();
+                case "getConnection":
+                    return conexion;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "SentenciaEnCache[" + entrada.sentencia + "]";
+                default:
+                    break;
+            }
+            if (cerrada) {
+                throw new SQLException("La sentencia ya se ha devuelto a la caché");
+            }
+            if (PROPIEDADES_RESTAURABLES.contains(method.getName())) {
+                entrada.propiedadesCambiadas = true;
+            } else if (PROPIEDADES_IRRECUPERABLES.contains(method.getName())) {
+                entrada.irrecuperable = true;
+            }
+            try {
+                return method.invoke(entrada.sentencia, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package foc.departamento.dao;
+
+import foc.departamento.model.Departamento;
+
+/**
+ * Cambio de un departamento leído del registro de cambios, con el estado actual de la fila.
+ *
+ * @param version Versión del cambio en el registro
+ * @param codigo Código del departamento afectado
+ * @param departamento Datos actuales del departamento, o null si ya no existe
+ */
+public record CambioDepartamento(long version, String codigo, Departamento departamento) {
+
+    /**
+     * @return true si el departamento se ha eliminado (o ha cambiado de código)
+     */
+    public boolean eliminado() {
+        return departamento == null;
+    }
+}
@@ -3,25 +3,51 @@ package foc.departamento.dao;
 import foc.departamento.config.DatabaseConfig;
 
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
- * Clase singleton que gestiona la conexión a la base de datos.
- * Implementa el patrón Singleton para asegurar una única instancia de conexión.
+ * Clase singleton que gestiona el acceso a la base de datos.
+ * Implementa el patrón Singleton sobre un pool acotado de conexiones: cada llamada a
+ * {@link #getConexion()} presta una conexión y cerrarla la devuelve al pool, de modo que
+ * no se repite el handshake con MariaDB en cada operación.
+ * Si hay réplicas configuradas ({@link DatabaseConfig#URLS_REPLICAS}), {@link #getConexionLectura}
+ * presta conexiones de ellas para las consultas que admiten datos con un ligero retraso, salvo
+ * justo después de una escritura de la misma sesión ({@link SesionLectura}), para que cada
+ * cliente vea enseguida lo que ha cambiado él.
  */
 public class ConexionBD {
     private static final Logger LOGGER = Logger.getLogger(ConexionBD.class.getName());
     private static ConexionBD instancia;
-    private Connection conexion;
+    private final PoolConexiones pool;
+    private final MetricaOperacion metricaObtener;
+    private final ReplicasLectura replicas;
+    private final MetricaOperacion metricaObtenerLectura;
 
     /**
      * Constructor privado para implementar el patrón Singleton.
-     * Carga el driver JDBC al inicializar.
+     * Carga el driver JDBC y crea el pool al inicializar.
      */
     private ConexionBD() {
+        this(DatabaseConfig.URL, DatabaseConfig.URLS_REPLICAS, true);
+    }
+
+    /**
+     * Crea un acceso independiente de la instancia única, para las pruebas que necesitan otro
+     * primario u otras réplicas. Sus pools no se publican por JMX.
+     *
+     * @param url URL JDBC del primario
+     * @param urlsReplicas URLs JDBC de las réplicas; vacía para leer siempre del primario
+     */
+    ConexionBD(String url, List<String> urlsReplicas) {
+        this(url, urlsReplicas, false);
+    }
+
+    private ConexionBD(String url, List<String> urlsReplicas, boolean publicar) {
         try {
             // Cargar el driver
             Class.forName(DatabaseConfig.DRIVER);
@@ -29,6 +55,50 @@ public class ConexionBD {
         } catch (ClassNotFoundException e) {
             LOGGER.log(Level.SEVERE, "Error al cargar el driver: {0}", e.getMessage());
         }
+
+        pool = crearPool(url);
+        MetricasDAO metricas = MetricasDAO.getInstancia();
+        if (publicar) {
+            metricas.registrarPool(pool);
+        }
+        metricaObtener = metricas.operacion("ConexionBD.getConexion");
+
+        if (urlsReplicas.isEmpty()) {
+            replicas = null;
+            metricaObtenerLectura = null;
+        } else {
+            ReplicasLectura.Seleccion seleccion = "rotacion".equalsIgnoreCase(DatabaseConfig.REPLICAS_SELECCION)
+                    ? ReplicasLectura.Seleccion.ROTACION : ReplicasLectura.Seleccion.MENOR_LATENCIA;
+            replicas = new ReplicasLectura(urlsReplicas, urlReplica -> {
+                PoolConexiones poolReplica = crearPool(urlReplica);
+                if (publicar) {
+                    metricas.registrarPoolReplica(poolReplica);
+                }
+                return poolReplica;
+            }, seleccion, DatabaseConfig.REPLICAS_COMPROBACION_MS, DatabaseConfig.REPLICAS_RETRASO_MAX_MS);
+            metricaObtenerLectura = metricas.operacion("ConexionBD.getConexionLectura");
+            LOGGER.log(Level.INFO, "Lecturas repartidas entre {0} réplicas ({1})",
+                    new Object[]{urlsReplicas.size(), seleccion});
+        }
+    }
+
+    private static PoolConexiones crearPool(String url) {
+        return new PoolConexiones(
+                url,
+                DatabaseConfig.USUARIO,
+                DatabaseConfig.PASSWORD,
+                DatabaseConfig.POOL_MINIMO,
+                DatabaseConfig.POOL_MAXIMO,
+                DatabaseConfig.POOL_ESPERA_MAX_MS,
+                DatabaseConfig.POOL_INACTIVIDAD_MAX_MS,
+                DatabaseConfig.POOL_VIDA_MAX_MS,
+                DatabaseConfig.POOL_VALIDACION_MS,
+                DatabaseConfig.POOL_DETECCION_FUGAS_MS,
+                DatabaseConfig.POOL_RETENCION_MAX_MS,
+                DatabaseConfig.POOL_TRAZAR_PRESTAMOS,
+                DatabaseConfig.POOL_MANTENIMIENTO_MS,
+                DatabaseConfig.POOL_CACHE_SENTENCIAS
+        );
     }
 
     /**
@@ -44,45 +114,131 @@ public class ConexionBD {
     }
 
     /**
-     * Obtiene una conexión a la base de datos.
-     * Si la conexión está cerrada o es nula, crea una nueva.
+     * Obtiene una conexión del pool.
+     * Debe cerrarse (preferiblemente con try-with-resources) para devolverla al pool.
+     * El tiempo de espera se mide en {@link MetricasDAO}.
      *
      * @return Conexión a la base de datos
-     * @throws SQLException Si ocurre un error al establecer la conexión
+     * @throws SQLException Si ocurre un error al establecer la conexión o se agota la espera
      */
     public Connection getConexion() throws SQLException {
-        if (conexion == null || conexion.isClosed()) {
-            try {
-                // Reconectar si es necesario
-                conexion = DriverManager.getConnection(
-                        DatabaseConfig.URL,
-                        DatabaseConfig.USUARIO,
-                        DatabaseConfig.PASSWORD
-                );
-                LOGGER.info("Conexión establecida con éxito");
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error al conectar con la base de datos: {0}", e.getMessage());
-                throw e;
+        try (MetricaOperacion.Medicion medicion = metricaObtener.iniciar()) {
+            Connection conexion = pool.obtener();
+            medicion.exito(0);
+            return conexion;
+        }
+    }
+
+    /**
+     * Obtiene una conexión para consultas que admiten el retraso de replicación: de una réplica
+     * si las hay, o del primario si no hay ninguna disponible o la sesión ha escrito hace menos
+     * de {@link DatabaseConfig#REPLICAS_RETRASO_MAX_MS} milisegundos.
+     * Debe cerrarse igual que la de {@link #getConexion()}, y no debe usarse para escribir.
+     *
+     * @param sesion Sesión del cliente que lee
+     * @return Conexión para leer
+     * @throws SQLException Si hay que recurrir al primario y no da conexión
+     */
+    public Connection getConexionLectura(SesionLectura sesion) throws SQLException {
+        if (replicas == null || sesion.escribioHaceMenosDe(DatabaseConfig.REPLICAS_RETRASO_MAX_MS)) {
+            return getConexion();
+        }
+        // Si ninguna réplica da conexión la medición cuenta como error y se lee del primario
+        try (MetricaOperacion.Medicion medicion = metricaObtenerLectura.iniciar()) {
+            Connection conexion = replicas.obtener();
+            if (conexion != null) {
+                medicion.exito(0);
+                return conexion;
             }
         }
-        return conexion;
+        return getConexion();
+    }
+
+    /**
+     * @param conexion Conexión obtenida de {@link #getConexion()} o {@link #getConexionLectura}
+     * @return true si es del primario, de modo que lo leído con ella está al día
+     */
+    boolean esDelPrimario(Connection conexion) {
+        return replicas == null || pool.presto(conexion);
+    }
+
+    /**
+     * Distingue los errores por no poder hablar con el servidor (caído, inalcanzable o sin
+     * conexiones libres a tiempo) de los de la propia sentencia.
+     *
+     * @param e Error de una operación de base de datos
+     * @return true si la base de datos no estaba disponible
+     */
+    public static boolean esFalloConexion(SQLException e) {
+        return e instanceof SQLTransientConnectionException
+                || e instanceof SQLNonTransientConnectionException
+                || e.getSQLState() != null && e.getSQLState().startsWith("08");
+    }
+
+    /**
+     * @return true si hay réplicas de lectura configuradas
+     */
+    public boolean hayReplicas() {
+        return replicas != null;
+    }
+
+    /**
+     * Comprueba que el hilo actual no tiene ninguna conexión prestada, para las acciones que
+     * pueden esperar indefinidamente, como un diálogo que aguarda la respuesta del usuario.
+     * No crea el pool si aún no existe.
+     *
+     * @param accion Descripción de la acción, para el mensaje de error
+     * @throws IllegalStateException Si el hilo retiene alguna conexión
+     */
+    public static void comprobarSinConexionPrestada(String accion) {
+        ConexionBD actual;
+        synchronized (ConexionBD.class) {
+            actual = instancia;
+        }
+        if (actual != null && (actual.pool.prestadasAlHiloActual() > 0
+                || actual.replicas != null && actual.replicas.prestadasAlHiloActual() > 0)) {
+            throw new IllegalStateException("No se puede " + accion + " con una conexión de la base de datos prestada");
+        }
     }
 
     /**
-     * Cierra la conexión a la base de datos.
+     * Abre por adelantado las conexiones mínimas del pool y de las réplicas.
+     */
+    public void precalentar() {
+        pool.precalentar();
+        if (replicas != null) {
+            replicas.precalentar();
+        }
+    }
+
+    /**
+     * Obtiene las estadísticas actuales del pool de conexiones.
+     *
+     * @return Instantánea con conexiones activas, libres y tiempos de espera
+     */
+    public EstadisticasPool getEstadisticas() {
+        return pool.getEstadisticas();
+    }
+
+    /**
+     * Obtiene los aciertos y fallos de la caché de sentencias preparadas para un SQL.
+     *
+     * @param sql Texto SQL de la sentencia
+     * @return Estadísticas acumuladas en todas las conexiones del pool y de las réplicas
+     */
+    public EstadisticasCacheSentencias getEstadisticasSentencia(String sql) {
+        EstadisticasCacheSentencias estadisticas = pool.getEstadisticasSentencia(sql);
+        return replicas == null ? estadisticas : estadisticas.sumar(replicas.getEstadisticasSentencia(sql));
+    }
+
+    /**
+     * Cierra el pool, los de las réplicas y todas sus conexiones libres.
      */
     public void cerrarConexion() {
-        if (conexion != null) {
-            try {
-                if (!conexion.isClosed()) {
-                    conexion.close();
-                    LOGGER.info("Conexión cerrada correctamente");
-                }
-            } catch (SQLException e) {
-                LOGGER.log(Level.SEVERE, "Error al cerrar la conexión: {0}", e.getMessage());
-            } finally {
-                conexion = null;
-            }
+        pool.cerrar();
+        if (replicas != null) {
+            replicas.cerrar();
         }
+        LOGGER.info("Pool de conexiones cerrado correctamente");
     }
-}
\ No newline at end of file
+}
@@ -1,32 +1,198 @@
 package foc.departamento.dao;
 
+import foc.departamento.config.DatabaseConfig;
 import foc.departamento.model.Departamento;
 import org.jetbrains.annotations.Contract;
 import org.jetbrains.annotations.NotNull;
-import util.AlertUtils;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import static util.AlertUtils.mostrarAdvertencia;
-import static util.AlertUtils.mostrarConfirmacion;
-
 /**
  * Clase que implementa las operaciones CRUD (Create, Read, Update, Delete)
  * para la entidad Departamento utilizando JDBC.
+ * <p>
+ * Ningún método interactúa con el usuario: cada conexión se pide al pool y se devuelve dentro
+ * de la misma llamada, sin esperas por medio, así que las confirmaciones se piden en la vista
+ * antes de llamar al DAO. El pool mide cuánto se retiene cada conexión y
+ * {@link util.AlertUtils} se niega a mostrar un diálogo si el hilo tiene una prestada.
+ * <p>
+ * Las consultas de departamentos usan {@link ConexionBD#getConexionLectura(SesionLectura)}, que
+ * puede ir a una réplica; las escrituras y el registro de cambios usan siempre el primario. Cada
+ * DAO lleva la {@link SesionLectura} de un cliente y anota en ella cada escritura confirmada, para
+ * que las lecturas siguientes de ese cliente vean el cambio; {@link #enSesion} da un DAO para otra.
+ * La caché de departamentos es de todo el proceso, así que sólo se llena con lo leído del primario.
  */
 public class DepartamentoDAO {
     private static final Logger LOGGER = Logger.getLogger(DepartamentoDAO.class.getName());
+
+    // Sentencias SQL constantes: al ser siempre el mismo texto, el pool las reutiliza de su caché
+    private static final String SQL_INSERTAR =
+            "INSERT INTO departamentos (codigo, nombre, id_localizacion, id_manager) VALUES (?, ?, ?, ?)";
+    private static final String SQL_MODIFICAR =
+            "UPDATE departamentos SET nombre = ?, id_localizacion = ?, id_manager = ? WHERE codigo = ?";
+    // Alta o modificación en un solo viaje. Con useAffectedRows cuenta 1 fila si inserta, 2 si
+    // modifica y 0 si la fila ya tenía esos valores
+    private static final String SQL_GUARDAR = SQL_INSERTAR
+            + " ON DUPLICATE KEY UPDATE nombre = VALUES(nombre), id_localizacion = VALUES(id_localizacion),"
+            + " id_manager = VALUES(id_manager)";
+    private static final String SQL_EXISTE = "SELECT 1 FROM departamentos WHERE codigo = ?";
+    private static final String SQL_ELIMINAR = "DELETE FROM departamentos WHERE codigo = ?";
+    private static final String SQL_BUSCAR_POR_CODIGO = "SELECT * FROM departamentos WHERE codigo = ?";
+    private static final String SQL_LISTAR_TODOS = "SELECT * FROM departamentos";
+    private static final String SQL_RECORRER_TODOS =
+            "SELECT codigo, nombre, id_localizacion, id_manager FROM departamentos ORDER BY codigo";
+    // El nombre de fichero no se usa: el driver envía el flujo asignado a la sentencia
+    private static final String SQL_CARGAR_DATOS =
+            "LOAD DATA LOCAL INFILE 'departamentos.tsv' INTO TABLE departamentos CHARACTER SET utf8mb4 "
+                    + "FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' "
+                    + "(codigo, nombre, id_localizacion, id_manager)";
+    // Paginación por clave (keyset): usa el índice de la clave primaria en lugar de OFFSET
+    private static final String SQL_LISTAR_PAGINA =
+            "SELECT codigo, nombre, id_localizacion, id_manager FROM departamentos "
+                    + "WHERE codigo > ? ORDER BY codigo LIMIT ?";
+
+    // Registro de cambios (db/cambios_departamentos.sql): cada cambio se devuelve con el estado
+    // actual de la fila, o con nulos si ya no existe
+    private static final String SQL_VERSION_CAMBIOS = "SELECT COALESCE(MAX(version), 0) FROM departamentos_cambios";
+    // Versión anterior a los cambios de los últimos ? segundos: la primera de ellos menos uno o,
+    // si no hay, la última
+    private static final String SQL_VERSION_CAMBIOS_ANTERIOR =
+            "SELECT COALESCE((SELECT MIN(version) - 1 FROM departamentos_cambios WHERE momento >= NOW(3) - INTERVAL ? SECOND),"
+                    + " (SELECT MAX(version) FROM departamentos_cambios), 0)";
+    private static final String SQL_PRIMERA_VERSION_CAMBIOS = "SELECT MIN(version) FROM departamentos_cambios";
+    private static final String SQL_LEER_CAMBIOS =
+            "SELECT c.version, c.codigo, d.codigo, d.nombre, d.id_localizacion, d.id_manager "
+                    + "FROM departamentos_cambios c LEFT JOIN departamentos d ON d.codigo = c.codigo "
+                    + "WHERE c.version > ? ORDER BY c.version LIMIT ?";
+    private static final String SQL_PURGAR_CAMBIOS =
+            "DELETE FROM departamentos_cambios WHERE momento < NOW(3) - INTERVAL ? SECOND";
+
+    // Filtrado: el SQL se genera una vez por combinación de criterios y se guarda, de modo que
+    // el texto es siempre el mismo y la caché de sentencias del pool lo reutiliza
+    private static final String SQL_FILTRAR_BASE =
+            "SELECT codigo, nombre, id_localizacion, id_manager FROM departamentos WHERE codigo > ?";
+    private static final int FILTRO_NOMBRE_PREFIJO = 1;
+    private static final int FILTRO_NOMBRE_CONTIENE = 1 << 1;
+    private static final int FILTRO_LOCALIZACION = 1 << 2;
+    private static final int FILTRO_MANAGER = 1 << 3;
+    private static final int FILTRO_CODIGO_DESDE = 1 << 4;
+    private static final int FILTRO_CODIGO_HASTA = 1 << 5;
+    private static final Map<Integer, String> SQL_FILTRADO = new ConcurrentHashMap<>();
+
+    // Búsqueda de varios códigos: una sentencia por número de marcadores del IN. Los trozos se
+    // rellenan hasta el siguiente tamaño de la serie 4, 16, 64... para que haya pocas sentencias
+    // distintas y la caché de sentencias las reutilice
+    private static final String SQL_BUSCAR_POR_CODIGOS_BASE = "SELECT * FROM departamentos WHERE codigo IN (";
+    private static final int CODIGOS_TAMANO_MINIMO = 4;
+    private static final Map<Integer, String> SQL_BUSCAR_POR_CODIGOS = new ConcurrentHashMap<>();
+
+    // Sentencias que usa cada método, para agrupar las estadísticas de la caché de sentencias
+    private static final Map<String, List<String>> SENTENCIAS_POR_METODO = new LinkedHashMap<>();
+
+    static {
+        SENTENCIAS_POR_METODO.put("insertar", List.of(SQL_INSERTAR));
+        SENTENCIAS_POR_METODO.put("insertarLote", List.of(SQL_INSERTAR));
+        SENTENCIAS_POR_METODO.put("modificar", List.of(SQL_MODIFICAR, SQL_EXISTE));
+        SENTENCIAS_POR_METODO.put("guardar", List.of(SQL_GUARDAR));
+        SENTENCIAS_POR_METODO.put("eliminar", List.of(SQL_ELIMINAR));
+        SENTENCIAS_POR_METODO.put("buscarPorCodigo", List.of(SQL_BUSCAR_POR_CODIGO));
+        SENTENCIAS_POR_METODO.put("listarTodos", List.of(SQL_LISTAR_TODOS));
+        SENTENCIAS_POR_METODO.put("listarPagina", List.of(SQL_LISTAR_PAGINA));
+        SENTENCIAS_POR_METODO.put("leerCambios", List.of(SQL_LEER_CAMBIOS));
+    }
+
+    // Latencia, llamadas, errores y filas de cada método público, publicadas por JMX
+    private static final MetricaOperacion METRICA_INSERTAR = metrica("insertar");
+    private static final MetricaOperacion METRICA_INSERTAR_LOTE = metrica("insertarLote");
+    private static final MetricaOperacion METRICA_CARGAR_DATOS = metrica("cargarDatosLocales");
+    private static final MetricaOperacion METRICA_MODIFICAR = metrica("modificar");
+    private static final MetricaOperacion METRICA_ELIMINAR = metrica("eliminar");
+    private static final MetricaOperacion METRICA_GUARDAR = metrica("guardar");
+    private static final MetricaOperacion METRICA_GUARDAR_LOTE = metrica("guardarLote");
+    private static final MetricaOperacion METRICA_APLICAR = metrica("aplicar");
+    private static final MetricaOperacion METRICA_BUSCAR_POR_CODIGO = metrica("buscarPorCodigo");
+    private static final MetricaOperacion METRICA_BUSCAR_POR_CODIGOS = metrica("buscarPorCodigos");
+    private static final MetricaOperacion METRICA_LISTAR_TODOS = metrica("listarTodos");
+    private static final MetricaOperacion METRICA_RECORRER_TODOS = metrica("recorrerTodos");
+    private static final MetricaOperacion METRICA_LISTAR_PAGINA = metrica("listarPagina");
+    private static final MetricaOperacion METRICA_FILTRAR = metrica("filtrar");
+    private static final MetricaOperacion METRICA_VERSION_CAMBIOS = metrica("versionCambios");
+    private static final MetricaOperacion METRICA_LEER_CAMBIOS = metrica("leerCambios");
+    private static final MetricaOperacion METRICA_PURGAR_CAMBIOS = metrica("purgarCambios");
+
     private final ConexionBD conexionBD;
+    private final CacheDepartamentos cache;
+    private final SesionLectura sesion;
+    // Copia local con la que responder a las búsquedas por código si la base de datos no responde
+    private volatile InstantaneaDepartamentos instantanea;
 
     /**
-     * Constructor que inicializa el DAO con la instancia de conexión.
+     * Constructor que inicializa el DAO con la instancia de conexión, la caché compartida y una
+     * sesión de lectura propia.
      */
     public DepartamentoDAO() {
-        this.conexionBD = ConexionBD.getInstancia();
+        this(new SesionLectura());
+    }
+
+    /**
+     * @param sesion Sesión del cliente que usa el DAO: sus lecturas ven sus propias escrituras
+     */
+    public DepartamentoDAO(SesionLectura sesion) {
+        this(ConexionBD.getInstancia(), CacheDepartamentos.getInstancia(), sesion);
+    }
+
+    /**
+     * Crea un DAO con otro acceso a la base de datos y otra caché, para las pruebas.
+     */
+    DepartamentoDAO(ConexionBD conexionBD, CacheDepartamentos cache, SesionLectura sesion) {
+        this.conexionBD = conexionBD;
+        this.cache = cache;
+        this.sesion = Objects.requireNonNull(sesion, "sesion");
+    }
+
+    /**
+     * Obtiene un DAO que lee y escribe con otra sesión, con la misma caché y la misma copia local.
+     *
+     * @param otra Sesión del cliente
+     * @return Este DAO si ya usa esa sesión, o uno nuevo que la usa
+     */
+    public DepartamentoDAO enSesion(SesionLectura otra) {
+        if (otra == sesion) {
+            return this;
+        }
+        DepartamentoDAO dao = new DepartamentoDAO(conexionBD, cache, otra);
+        dao.instantanea = instantanea;
+        return dao;
+    }
+
+    /**
+     * @return Sesión con la que este DAO lee y anota sus escrituras
+     */
+    public SesionLectura getSesion() {
+        return sesion;
+    }
+
+    /**
+     * Indica la copia local con la que responder a {@link #buscarPorCodigo} y {@link #buscarPorCodigos}
+     * cuando no se puede conectar con la base de datos. Los datos pueden estar desfasados, pero
+     * permiten seguir consultando sin conexión; las escrituras siguen fallando.
+     *
+     * @param instantanea Copia local, o null para no usar ninguna
+     */
+    public void usarInstantanea(InstantaneaDepartamentos instantanea) {
+        this.instantanea = instantanea;
     }
 
     /**
@@ -37,25 +203,181 @@ public class DepartamentoDAO {
      * @throws SQLException Si ocurre un error en la base de datos
      */
     public boolean insertar(Departamento dep) throws SQLException {
-        String sql = "INSERT INTO departamentos (codigo, nombre, id_localizacion, id_manager) VALUES (?, ?, ?, ?)";
-
-        try (Connection conn = conexionBD.getConexion();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (MetricaOperacion.Medicion medicion = METRICA_INSERTAR.iniciar();
+             Connection conn = conexionBD.getConexion();
+             PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR)) {
 
-            stmt.setString(1, dep.getCodigo());
-            stmt.setString(2, dep.getNombre());
-            stmt.setInt(3, dep.getIdLocalizacion());
-            stmt.setInt(4, dep.getIdManager());
+            asignarParametrosInsercion(stmt, dep);
 
             int filasAfectadas = stmt.executeUpdate();
+            sesion.registrarEscritura();
+            if (filasAfectadas > 0) {
+                cache.guardar(dep);
+            }
+            medicion.exito(filasAfectadas);
             return filasAfectadas > 0;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error al insertar departamento: {0}", e.getMessage());
             throw e;
+        }
+    }
+
+    /**
+     * Inserta varios departamentos por lotes, usando el tamaño de lote configurado.
+     *
+     * @param departamentos Departamentos a insertar
+     * @return Resultado de cada fila, en el mismo orden
+     * @throws SQLException Si se pierde la conexión con la base de datos
+     * @see #insertarLote(Collection, int)
+     */
+    public ResultadoLote insertarLote(Collection<Departamento> departamentos) throws SQLException {
+        return insertarLote(departamentos, DatabaseConfig.TAMANO_LOTE);
+    }
+
+    /**
+     * Inserta varios departamentos por lotes.
+     * Cada trozo de {@code tamanoLote} filas se envía como un único batch JDBC (el driver de MariaDB
+     * encadena las sentencias sin esperar cada respuesta) y se confirma en una única transacción.
+     * Si el trozo falla, se deshace y se reintenta fila a fila dentro de otra transacción
+     * para identificar las filas rechazadas sin perder las válidas.
+     *
+     * @param departamentos Departamentos a insertar
+     * @param tamanoLote Filas por trozo y transacción
+     * @return Resultado de cada fila, en el mismo orden
+     * @throws SQLException Si se pierde la conexión; los trozos ya confirmados permanecen
+     */
+    public ResultadoLote insertarLote(Collection<Departamento> departamentos, int tamanoLote) throws SQLException {
+        if (tamanoLote < 1) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser positivo: " + tamanoLote);
+        }
+        ResultadoLote resultado = new ResultadoLote(departamentos.size());
+        List<Departamento> trozo = new ArrayList<>(Math.min(tamanoLote, departamentos.size()));
+
+        try (MetricaOperacion.Medicion medicion = METRICA_INSERTAR_LOTE.iniciar();
+             Connection conn = conexionBD.getConexion()) {
+            conn.setAutoCommit(false);
+            try {
+                for (Departamento dep : departamentos) {
+                    trozo.add(dep);
+                    if (trozo.size() == tamanoLote) {
+                        insertarTrozo(conn, trozo, resultado);
+                        trozo.clear();
+                    }
+                }
+                if (!trozo.isEmpty()) {
+                    insertarTrozo(conn, trozo, resultado);
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            medicion.exito(resultado.contar(ResultadoFila.Estado.INSERTADO));
+            return resultado;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al insertar lote de departamentos: {0}", e.getMessage());
+            throw e;
+        }
+    }
 
+    /**
+     * Inserta un trozo del lote como un batch en una transacción.
+     */
+    private void insertarTrozo(Connection conn, List<Departamento> trozo, ResultadoLote resultado) throws SQLException {
+        int[] cuentas;
+        try (PreparedStatement stmt = prepararBatchInsercion(conn, SQL_INSERTAR)) {
+            for (Departamento dep : trozo) {
+                asignarParametrosInsercion(stmt, dep);
+                stmt.addBatch();
+            }
+            cuentas = stmt.executeBatch();
+            conn.commit();
+            sesion.registrarEscritura();
+        } catch (BatchUpdateException e) {
+            conn.rollback();
+            LOGGER.log(Level.FINE, "Lote rechazado, se reintenta fila a fila: {0}", e.getMessage());
+            insertarFilaAFila(conn, trozo, resultado);
+            return;
+        }
+
+        for (int i = 0; i < trozo.size(); i++) {
+            ResultadoFila.Estado estado = cuentas[i] == Statement.EXECUTE_FAILED
+                    ? ResultadoFila.Estado.RECHAZADO
+                    : ResultadoFila.Estado.INSERTADO;
+            if (estado == ResultadoFila.Estado.INSERTADO) {
+                cache.guardar(trozo.get(i));
+            }
+            resultado.agregar(new ResultadoFila(trozo.get(i), estado, null));
         }
     }
 
+    /**
+     * Prepara una sentencia INSERT para ejecutarla como batch sin el protocolo bulk del driver,
+     * que en MariaDB 10.11 sólo guarda la primera fila del batch si la tabla tiene triggers (los
+     * del registro de cambios) y aun así informa de todas como insertadas. Pidiendo claves
+     * generadas el driver envía el batch encadenado, con el número de filas de cada sentencia,
+     * sea cual sea {@code useBulkStmtsForInserts} en la URL.
+     */
+    private static PreparedStatement prepararBatchInsercion(Connection conn, String sql) throws SQLException {
+        return conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+    }
+
+    /**
+     * Inserta cada fila del trozo por separado, dentro de una misma transacción,
+     * anotando las rechazadas.
+     */
+    private void insertarFilaAFila(Connection conn, List<Departamento> trozo, ResultadoLote resultado) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_INSERTAR)) {
+            for (Departamento dep : trozo) {
+                try {
+                    asignarParametrosInsercion(stmt, dep);
+                    stmt.executeUpdate();
+                    cache.guardar(dep);
+                    resultado.agregar(new ResultadoFila(dep, ResultadoFila.Estado.INSERTADO, null));
+                } catch (SQLIntegrityConstraintViolationException | SQLDataException e) {
+                    resultado.agregar(new ResultadoFila(dep, ResultadoFila.Estado.RECHAZADO, e.getMessage()));
+                }
+            }
+            conn.commit();
+            sesion.registrarEscritura();
+        }
+    }
+
+    /**
+     * Carga departamentos con {@code LOAD DATA LOCAL INFILE} leyendo del flujo indicado, sin
+     * fichero intermedio. El flujo debe tener una línea por departamento con los campos
+     * separados por tabuladores y escapados con barra invertida. Los códigos que ya existen
+     * se ignoran (MariaDB trata LOCAL como IGNORE).
+     *
+     * @param datos Flujo con las filas; el driver lo lee hasta el final
+     * @return Filas insertadas
+     * @throws SQLException Si el servidor no admite LOAD DATA LOCAL o falla la carga;
+     *                      la sentencia es atómica y en ese caso no inserta nada
+     */
+    public long cargarDatosLocales(InputStream datos) throws SQLException {
+        try (MetricaOperacion.Medicion medicion = METRICA_CARGAR_DATOS.iniciar();
+             Connection conn = conexionBD.getConexion();
+             Statement stmt = conn.createStatement()) {
+
+            stmt.unwrap(org.mariadb.jdbc.Statement.class).setLocalInfileInputStream(datos);
+            long insertadas = stmt.executeLargeUpdate(SQL_CARGAR_DATOS);
+            sesion.registrarEscritura();
+            medicion.exito(insertadas);
+            return insertadas;
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error al cargar departamentos con LOAD DATA: {0}", e.getMessage());
+            throw e;
+        }
+    }
+
+    private void asignarParametrosInsercion(PreparedStatement stmt, Departamento dep) throws SQLException {
+        stmt.setString(1, dep.getCodigo());
+        stmt.setString(2, dep.getNombre());
+        stmt.setInt(3, dep.getIdLocalizacion());
+        stmt.setInt(4, dep.getIdManager());
+    }
+
     /**
      * Modifica un departamento existente en la base de datos.
      *
@@ -64,14 +386,9 @@ public class DepartamentoDAO {
      * @throws SQLException Si ocurre un error en la base de datos
      */
     public boolean modificar(Departamento dep) throws SQLException {
-        String sql = "UPDATE departamentos SET nombre = ?, id_localizacion = ?, id_manager = ? WHERE codigo = ?";
-
-        if (!AlertUtils.mostrarAdvertencia("Confirmar acción", "¿Estás seguro de modificar el departamento con código: " + dep.getCodigo() + "?")) {
-            return false;
-        }
-
-        try (Connection conn = conexionBD.getConexion();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (MetricaOperacion.Medicion medicion = METRICA_MODIFICAR.iniciar();
+             Connection conn = conexionBD.getConexion();
+             PreparedStatement stmt = conn.prepareStatement(SQL_MODIFICAR)) {
 
             stmt.setString(1, dep.getNombre());
             stmt.setInt(2, dep.getIdLocalizacion());
@@ -79,10 +396,14 @@ public class DepartamentoDAO {
             stmt.setString(4, dep.getCodigo());
 
             int filasAfectadas = stmt.executeUpdate();
-            if (filasAfectadas > 0) {
-                mostrarConfirmacion("Confirmación", "Departamento modificado con éxito.");
+            sesion.registrarEscritura();
+            medicion.exito(filasAfectadas);
+            // Con useAffectedRows, 0 filas también puede ser una fila que ya tenía esos valores
+            if (filasAfectadas > 0 || existe(conn, dep.getCodigo())) {
+                cache.guardar(dep);
                 return true;
             } else {
+                cache.invalidar(dep.getCodigo());
                 return false;
             }
 
@@ -93,6 +414,166 @@ public class DepartamentoDAO {
     }
 
 
+    private boolean existe(Connection conn, String codigo) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_EXISTE)) {
+            stmt.setString(1, codigo);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * Inserta el departamento si su código no existe y si existe lo modifica, en una sola
+     * sentencia {@code INSERT ... ON DUPLICATE KEY UPDATE}: un único viaje a la base de datos
+     * y sin la carrera entre comprobar si existe y escribir.
+     *
+     * @param dep Departamento a guardar
+     * @return {@link ResultadoFila.Estado#INSERTADO}, {@link ResultadoFila.Estado#ACTUALIZADO} o
+     *         {@link ResultadoFila.Estado#SIN_CAMBIOS} si ya tenía esos valores (sólo con
+     *         {@code useAffectedRows=true} en la URL; sin él se informa como insertado)
+     * @throws SQLException Si ocurre un error en la base de datos
+     */
+    public ResultadoFila.Estado guardar(Departamento dep) throws SQLException {
+        try (MetricaOperacion.Medicion medicion = METRICA_GUARDAR.iniciar();
+             Connection conn = conexionBD.getConexion();
+             PreparedStatement stmt = conn.prepareStatement(SQL_GUARDAR)) {
+
+            asignarParametrosInsercion(stmt, dep);
+
+            ResultadoFila.Estado estado = estadoGuardado(stmt.executeUpdate());
+            sesion.registrarEscritura();
+            cache.guardar(dep);
+            medicion.exito(1);
+            return estado;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al guardar departamento: {0}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Guarda varios departamentos por lotes, usando el tamaño de lote configurado.
+     *
+     * @param departamentos Departamentos a guardar
+     * @return Resultado de cada fila, en el mismo orden
+     * @throws SQLException Si se pierde la conexión con la base de datos
+     * @see #guardarLote(Collection, int)
+     */
+    public ResultadoLote guardarLote(Collection<Departamento> departamentos) throws SQLException {
+        return guardarLote(departamentos, DatabaseConfig.TAMANO_LOTE);
+    }
+
+    /**
+     * Guarda varios departamentos por lotes con {@code INSERT ... ON DUPLICATE KEY UPDATE},
+     * informando de cada fila si se insertó, se modificó o no cambió.
+     * Cada trozo se envía como un batch JDBC y se confirma en una transacción, como en
+     * {@link #insertarLote(Collection, int)}, encadenado y no con el protocolo bulk
+     * ({@link #prepararBatchInsercion}), que además no devuelve las filas afectadas de cada sentencia.
+     *
+     * @param departamentos Departamentos a guardar
+     * @param tamanoLote Filas por trozo y transacción
+     * @return Resultado de cada fila, en el mismo orden
+     * @throws SQLException Si se pierde la conexión; los trozos ya confirmados permanecen
+     */
+    public ResultadoLote guardarLote(Collection<Departamento> departamentos, int tamanoLote) throws SQLException {
+        if (tamanoLote < 1) {
+            throw new IllegalArgumentException("El tamaño de lote debe ser positivo: " + tamanoLote);
+        }
+        ResultadoLote resultado = new ResultadoLote(departamentos.size());
+        List<Departamento> trozo = new ArrayList<>(Math.min(tamanoLote, departamentos.size()));
+
+        try (MetricaOperacion.Medicion medicion = METRICA_GUARDAR_LOTE.iniciar();
+             Connection conn = conexionBD.getConexion()) {
+            conn.setAutoCommit(false);
+            try {
+                for (Departamento dep : departamentos) {
+                    trozo.add(dep);
+                    if (trozo.size() == tamanoLote) {
+                        guardarTrozo(conn, trozo, resultado);
+                        trozo.clear();
+                    }
+                }
+                if (!trozo.isEmpty()) {
+                    guardarTrozo(conn, trozo, resultado);
+                }
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+            medicion.exito(departamentos.size() - resultado.getRechazadas().size());
+            return resultado;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al guardar lote de departamentos: {0}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Guarda un trozo del lote como un batch en una transacción; si se rechaza, se deshace y
+     * se reintenta fila a fila.
+     */
+    private void guardarTrozo(Connection conn, List<Departamento> trozo, ResultadoLote resultado) throws SQLException {
+        int[] cuentas;
+        try (PreparedStatement stmt = prepararBatchInsercion(conn, SQL_GUARDAR)) {
+            for (Departamento dep : trozo) {
+                asignarParametrosInsercion(stmt, dep);
+                stmt.addBatch();
+            }
+            cuentas = stmt.executeBatch();
+            conn.commit();
+            sesion.registrarEscritura();
+        } catch (BatchUpdateException e) {
+            conn.rollback();
+            LOGGER.log(Level.FINE, "Lote rechazado, se reintenta fila a fila: {0}", e.getMessage());
+            guardarFilaAFila(conn, trozo, resultado);
+            return;
+        }
+
+        for (int i = 0; i < trozo.size(); i++) {
+            ResultadoFila.Estado estado = estadoGuardado(cuentas[i]);
+            if (estado != ResultadoFila.Estado.RECHAZADO) {
+                cache.guardar(trozo.get(i));
+            }
+            resultado.agregar(new ResultadoFila(trozo.get(i), estado, null));
+        }
+    }
+
+    /**
+     * Guarda cada fila del trozo por separado, dentro de una misma transacción,
+     * anotando las rechazadas.
+     */
+    private void guardarFilaAFila(Connection conn, List<Departamento> trozo, ResultadoLote resultado) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_GUARDAR)) {
+            for (Departamento dep : trozo) {
+                try {
+                    asignarParametrosInsercion(stmt, dep);
+                    ResultadoFila.Estado estado = estadoGuardado(stmt.executeUpdate());
+                    cache.guardar(dep);
+                    resultado.agregar(new ResultadoFila(dep, estado, null));
+                } catch (SQLIntegrityConstraintViolationException | SQLDataException e) {
+                    resultado.agregar(new ResultadoFila(dep, ResultadoFila.Estado.RECHAZADO, e.getMessage()));
+                }
+            }
+            conn.commit();
+            sesion.registrarEscritura();
+        }
+    }
+
+    /**
+     * Traduce las filas afectadas por {@link #SQL_GUARDAR} al resultado de la fila.
+     */
+    private static ResultadoFila.Estado estadoGuardado(int filasAfectadas) {
+        return switch (filasAfectadas) {
+            case Statement.EXECUTE_FAILED -> ResultadoFila.Estado.RECHAZADO;
+            case 0 -> ResultadoFila.Estado.SIN_CAMBIOS;
+            case 2 -> ResultadoFila.Estado.ACTUALIZADO;
+            default -> ResultadoFila.Estado.INSERTADO;
+        };
+    }
+
     /**
      * Elimina un departamento de la base de datos.
      *
@@ -101,59 +582,269 @@ public class DepartamentoDAO {
      * @throws SQLException Si ocurre un error en la base de datos
      */
     public boolean eliminar(String codigo) throws SQLException {
-        String sql = "DELETE FROM departamentos WHERE codigo = ?";
-
-        try (Connection conn = conexionBD.getConexion();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (MetricaOperacion.Medicion medicion = METRICA_ELIMINAR.iniciar();
+             Connection conn = conexionBD.getConexion();
+             PreparedStatement stmt = conn.prepareStatement(SQL_ELIMINAR)) {
 
             stmt.setString(1, codigo);
 
-            if (AlertUtils.mostrarAdvertencia("Confirmar acción", "¿Estás seguro de eliminar el departamento con código: " + codigo + "?")) {
-                int filasAfectadas = stmt.executeUpdate();
+            int filasAfectadas = stmt.executeUpdate();
+            sesion.registrarEscritura();
+            medicion.exito(filasAfectadas);
+            cache.invalidar(codigo);
+            return filasAfectadas > 0;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al eliminar departamento: {0}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Aplica los cambios acumulados en una unidad de trabajo en una única transacción:
+     * primero las bajas (y la parte de baja de las sustituciones), luego las altas, los guardados
+     * y por último las modificaciones, cada grupo como un batch JDBC. Si cualquier sentencia falla se deshace
+     * todo y la unidad conserva sus cambios; si se confirma, la unidad queda vacía.
+     *
+     * @param unidad Cambios a aplicar
+     * @return Número de códigos con cambios aplicados
+     * @throws SQLException Si ocurre un error en la base de datos; no se aplica ningún cambio
+     */
+    public int aplicar(UnidadTrabajo unidad) throws SQLException {
+        List<String> bajas = unidad.codigosAEliminar();
+        List<Departamento> altas = unidad.departamentosAInsertar();
+        List<Departamento> guardados = unidad.departamentosAGuardar();
+        List<Departamento> modificaciones = unidad.departamentosAModificar();
+        int cambios = unidad.tamano();
 
-                if (filasAfectadas > 0) {
-                    mostrarConfirmacion("Confirmación", "Departamento eliminado con éxito.");
-                    return true;
-                } else {
-                    return false;
+        try (MetricaOperacion.Medicion medicion = METRICA_APLICAR.iniciar();
+             Connection conn = conexionBD.getConexion()) {
+            conn.setAutoCommit(false);
+            try {
+                if (!bajas.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(SQL_ELIMINAR)) {
+                        for (String codigo : bajas) {
+                            stmt.setString(1, codigo);
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
                 }
-            } else {
-                return false;
+                if (!altas.isEmpty()) {
+                    try (PreparedStatement stmt = prepararBatchInsercion(conn, SQL_INSERTAR)) {
+                        for (Departamento dep : altas) {
+                            asignarParametrosInsercion(stmt, dep);
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                }
+                if (!guardados.isEmpty()) {
+                    try (PreparedStatement stmt = prepararBatchInsercion(conn, SQL_GUARDAR)) {
+                        for (Departamento dep : guardados) {
+                            asignarParametrosInsercion(stmt, dep);
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                }
+                if (!modificaciones.isEmpty()) {
+                    try (PreparedStatement stmt = conn.prepareStatement(SQL_MODIFICAR)) {
+                        for (Departamento dep : modificaciones) {
+                            stmt.setString(1, dep.getNombre());
+                            stmt.setInt(2, dep.getIdLocalizacion());
+                            stmt.setInt(3, dep.getIdManager());
+                            stmt.setString(4, dep.getCodigo());
+                            stmt.addBatch();
+                        }
+                        stmt.executeBatch();
+                    }
+                }
+                conn.commit();
+                sesion.registrarEscritura();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
 
+            bajas.forEach(cache::invalidar);
+            altas.forEach(cache::guardar);
+            guardados.forEach(cache::guardar);
+            modificaciones.forEach(cache::guardar);
+            unidad.descartar();
+            medicion.exito(cambios);
+            return cambios;
         } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error al eliminar departamento: {0}", e.getMessage());
+            LOGGER.log(Level.SEVERE, "Error al aplicar la unidad de trabajo: {0}", e.getMessage());
             throw e;
         }
     }
 
     /**
      * Busca un departamento por su código.
+     * Se sirve desde la caché si está; si no, se lee de la base de datos y se guarda en ella.
      *
      * @param codigo Código del departamento a buscar
      * @return Departamento encontrado o null si no existe
      * @throws SQLException Si ocurre un error en la base de datos
      */
     public Departamento buscarPorCodigo(String codigo) throws SQLException {
-        String sql = "SELECT * FROM departamentos WHERE codigo = ?";
+        try (MetricaOperacion.Medicion medicion = METRICA_BUSCAR_POR_CODIGO.iniciar()) {
+            Departamento enCache = cache.obtener(codigo);
+            if (enCache != null) {
+                medicion.exito(1);
+                return enCache;
+            }
 
-        try (Connection conn = conexionBD.getConexion();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+            try (Connection conn = conexionBD.getConexionLectura(sesion);
+                 PreparedStatement stmt = conn.prepareStatement(SQL_BUSCAR_POR_CODIGO)) {
 
-            stmt.setString(1, codigo);
+                stmt.setString(1, codigo);
+
+                try (ResultSet rs = stmt.executeQuery()) {
+                    if (rs.next()) {
+                        Departamento dep = mapearDepartamento(rs);
+                        if (conexionBD.esDelPrimario(conn)) {
+                            cache.guardar(dep);
+                        }
+                        medicion.exito(1);
+                        return dep;
+                    }
+                    medicion.exito(0);
+                    return null;
+                }
+            } catch (SQLException e) {
+                InstantaneaDepartamentos copia = instantanea;
+                if (copia == null || !ConexionBD.esFalloConexion(e)) {
+                    LOGGER.log(Level.SEVERE, "Error al buscar departamento: {0}", e.getMessage());
+                    throw e;
+                }
+                Departamento guardado = buscarEnInstantanea(copia, codigo, e);
+                medicion.exito(guardado == null ? 0 : 1);
+                return guardado;
+            }
+        }
+    }
+
+    /**
+     * Busca varios departamentos por código con el mínimo de viajes a la base de datos.
+     * Los que están en la caché se sirven de ella; el resto se piden con consultas
+     * {@code WHERE codigo IN (...)} de hasta {@link DatabaseConfig#MAX_CODIGOS_POR_CONSULTA}
+     * códigos, todas con la misma conexión.
+     *
+     * @param codigos Códigos a buscar; los repetidos se buscan una vez
+     * @return Departamentos encontrados por código, en el orden de {@code codigos}; los que no existen no aparecen
+     * @throws SQLException Si ocurre un error en la base de datos
+     */
+    public Map<String, Departamento> buscarPorCodigos(Collection<String> codigos) throws SQLException {
+        try (MetricaOperacion.Medicion medicion = METRICA_BUSCAR_POR_CODIGOS.iniciar()) {
+            Map<String, Departamento> encontrados = new LinkedHashMap<>();
+            List<String> pendientes = new ArrayList<>();
+            for (String codigo : new LinkedHashSet<>(codigos)) {
+                Departamento enCache = cache.obtener(codigo);
+                // Se reserva el hueco para conservar el orden de entrada
+                encontrados.put(codigo, enCache);
+                if (enCache == null) {
+                    pendientes.add(codigo);
+                }
+            }
 
+            if (!pendientes.isEmpty()) {
+                try (Connection conn = conexionBD.getConexionLectura(sesion)) {
+                    int maximo = Math.max(DatabaseConfig.MAX_CODIGOS_POR_CONSULTA, 1);
+                    for (int desde = 0; desde < pendientes.size(); desde += maximo) {
+                        buscarTrozo(conn, pendientes.subList(desde, Math.min(desde + maximo, pendientes.size())),
+                                encontrados);
+                    }
+                } catch (SQLException e) {
+                    InstantaneaDepartamentos copia = instantanea;
+                    if (copia == null || !ConexionBD.esFalloConexion(e)) {
+                        LOGGER.log(Level.SEVERE, "Error al buscar departamentos: {0}", e.getMessage());
+                        throw e;
+                    }
+                    for (String codigo : pendientes) {
+                        if (encontrados.get(codigo) == null) {
+                            encontrados.put(codigo, buscarEnInstantanea(copia, codigo, e));
+                        }
+                    }
+                }
+            }
+            encontrados.values().removeIf(Objects::isNull);
+            medicion.exito(encontrados.size());
+            return encontrados;
+        }
+    }
+
+    /**
+     * Responde a una búsqueda con la copia local porque la base de datos no responde. Si la copia
+     * sólo tiene las primeras páginas y el código no está, no se sabe si existe y se relanza el error.
+     *
+     * @param error Error de conexión que se relanza si la copia también falla o no puede responder
+     */
+    private Departamento buscarEnInstantanea(InstantaneaDepartamentos copia, String codigo, SQLException error)
+            throws SQLException {
+        LOGGER.log(Level.WARNING, "Sin conexión ({0}); se busca {1} en la copia local",
+                new Object[]{error.getMessage(), codigo});
+        Departamento guardado;
+        try {
+            guardado = copia.buscar(codigo);
+        } catch (IOException e) {
+            error.addSuppressed(e);
+            throw error;
+        }
+        if (guardado == null && !copia.isCompleta()) {
+            throw error;
+        }
+        return guardado;
+    }
+
+    /**
+     * Busca un trozo de códigos con una única consulta IN, repitiendo el último código
+     * hasta completar el número de marcadores de la sentencia.
+     */
+    private void buscarTrozo(Connection conn, List<String> trozo, Map<String, Departamento> encontrados)
+            throws SQLException {
+        boolean delPrimario = conexionBD.esDelPrimario(conn);
+        int marcadores = marcadoresPara(trozo.size());
+        String sql = SQL_BUSCAR_POR_CODIGOS.computeIfAbsent(marcadores, DepartamentoDAO::construirSqlBuscarPorCodigos);
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < marcadores; i++) {
+                stmt.setString(i + 1, trozo.get(Math.min(i, trozo.size() - 1)));
+            }
             try (ResultSet rs = stmt.executeQuery()) {
-                if (rs.next()) {
-                    return mapearDepartamento(rs);
+                while (rs.next()) {
+                    Departamento dep = mapearDepartamento(rs);
+                    if (delPrimario) {
+                        cache.guardar(dep);
+                    }
+                    encontrados.put(dep.getCodigo(), dep);
                 }
-                return null;
             }
-        } catch (SQLException e) {
-            LOGGER.log(Level.SEVERE, "Error al buscar departamento: {0}", e.getMessage());
-            throw e;
         }
     }
 
+    /**
+     * @return Marcadores de la sentencia para un trozo de {@code codigos} códigos: el primer
+     *         tamaño de la serie 4, 16, 64... que los admite, sin pasar del máximo configurado
+     */
+    private static int marcadoresPara(int codigos) {
+        int maximo = Math.max(DatabaseConfig.MAX_CODIGOS_POR_CONSULTA, 1);
+        int marcadores = CODIGOS_TAMANO_MINIMO;
+        while (marcadores < codigos && marcadores < maximo) {
+            marcadores *= 4;
+        }
+        return Math.min(marcadores, maximo);
+    }
+
+    private static String construirSqlBuscarPorCodigos(int marcadores) {
+        StringBuilder sql = new StringBuilder(SQL_BUSCAR_POR_CODIGOS_BASE);
+        for (int i = 0; i < marcadores; i++) {
+            sql.append(i == 0 ? "?" : ", ?");
+        }
+        return sql.append(')').toString();
+    }
+
     /**
      * Lista todos los departamentos de la base de datos.
      *
@@ -162,15 +853,16 @@ public class DepartamentoDAO {
      */
     public List<Departamento> listarTodos() throws SQLException {
         List<Departamento> departamentos = new ArrayList<>();
-        String sql = "SELECT * FROM departamentos";
-
-        try (Connection conn = conexionBD.getConexion();
-             PreparedStatement stmt = conn.prepareStatement(sql);
+        try (MetricaOperacion.Medicion medicion = METRICA_LISTAR_TODOS.iniciar();
+             Connection conn = conexionBD.getConexionLectura(sesion);
+             PreparedStatement stmt = conn.prepareStatement(SQL_LISTAR_TODOS);
              ResultSet rs = stmt.executeQuery()) {
 
             while (rs.next()) {
                 departamentos.add(mapearDepartamento(rs));
             }
+            guardarEnCache(conn, departamentos);
+            medicion.exito(departamentos.size());
             return departamentos;
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Error al listar departamentos: {0}", e.getMessage());
@@ -178,6 +870,372 @@ public class DepartamentoDAO {
         }
     }
 
+    /**
+     * Guarda en la caché lo leído del primario. Lo leído de una réplica puede ser anterior a una
+     * escritura de otra sesión, y guardarlo sustituiría en la caché compartida el valor nuevo por
+     * el antiguo: esa sesión lo leería de la caché aunque sus lecturas vayan al primario.
+     */
+    private void guardarEnCache(Connection conn, List<Departamento> departamentos) {
+        if (conexionBD.esDelPrimario(conn)) {
+            cache.guardarTodos(departamentos);
+        }
+    }
+
+    /**
+     * Recibe los campos de una fila sin crear un objeto Departamento por fila.
+     */
+    @FunctionalInterface
+    public interface ProcesadorFila {
+        void procesar(String codigo, String nombre, int idLocalizacion, int idManager) throws IOException;
+    }
+
+    /**
+     * Recorre todos los departamentos ordenados por código pasando cada fila al procesador
+     * a medida que llega del servidor. El ResultSet es de sólo avance y sólo lectura, y el
+     * driver lo trae por bloques de {@link DatabaseConfig#FETCH_SIZE} filas, así que la memoria
+     * no depende del tamaño de la tabla. No pasa por la caché de departamentos.
+     *
+     * @param procesador Recibe cada fila; mientras se ejecuta la conexión sigue ocupada
+     * @return Número de filas recorridas
+     * @throws SQLException Si ocurre un error en la base de datos
+     * @throws IOException Si el procesador falla; se deja de leer
+     */
+    public long recorrerTodos(ProcesadorFila procesador) throws SQLException, IOException {
+        try (MetricaOperacion.Medicion medicion = METRICA_RECORRER_TODOS.iniciar();
+             Connection conn = conexionBD.getConexionLectura(sesion);
+             PreparedStatement stmt = conn.prepareStatement(SQL_RECORRER_TODOS,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            stmt.setFetchSize(DatabaseConfig.FETCH_SIZE);
+            long filas = 0;
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    procesador.procesar(rs.getString(1), rs.getString(2), rs.getInt(3), rs.getInt(4));
+                    filas++;
+                }
+            }
+            medicion.exito(filas);
+            return filas;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al recorrer departamentos: {0}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Lista una página de departamentos ordenados por código, empezando justo después
+     * del código indicado (paginación por clave). Para la primera página se pasa una cadena vacía.
+     * El coste de cada página es constante, independientemente de lo avanzada que esté.
+     *
+     * @param despuesDeCodigo Último código de la página anterior, o "" para la primera
+     * @param tamano Número máximo de departamentos de la página
+     * @return Departamentos de la página; una lista vacía indica que no hay más
+     * @throws SQLException Si ocurre un error en la base de datos
+     */
+    public List<Departamento> listarPagina(String despuesDeCodigo, int tamano) throws SQLException {
+        List<Departamento> departamentos = new ArrayList<>(tamano);
+        try (MetricaOperacion.Medicion medicion = METRICA_LISTAR_PAGINA.iniciar();
+             Connection conn = conexionBD.getConexionLectura(sesion);
+             PreparedStatement stmt = conn.prepareStatement(SQL_LISTAR_PAGINA)) {
+
+            stmt.setFetchSize(Math.min(tamano, DatabaseConfig.FETCH_SIZE));
+            stmt.setString(1, despuesDeCodigo == null ? "" : despuesDeCodigo);
+            stmt.setInt(2, tamano);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    departamentos.add(mapearDepartamento(rs));
+                }
+            }
+            guardarEnCache(conn, departamentos);
+            medicion.exito(departamentos.size());
+            return departamentos;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al listar página de departamentos: {0}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Busca departamentos que cumplen todos los criterios del filtro, por páginas ordenadas por código.
+     * El filtrado se hace en MariaDB con SQL parametrizado; sólo viajan las filas que cumplen el filtro.
+     *
+     * @param filtro Criterios de búsqueda; los vacíos no se aplican
+     * @param despuesDeCodigo Último código de la página anterior, o "" para la primera
+     * @param limite Número máximo de departamentos a devolver
+     * @return Departamentos que cumplen el filtro; una lista vacía indica que no hay más
+     * @throws SQLException Si ocurre un error en la base de datos
+     */
+    public List<Departamento> filtrar(FiltroDepartamentos filtro, String despuesDeCodigo, int limite) throws SQLException {
+        String sql = SQL_FILTRADO.computeIfAbsent(combinacionDe(filtro), DepartamentoDAO::construirSqlFiltro);
+        List<Departamento> departamentos = new ArrayList<>(Math.min(limite, DatabaseConfig.TAMANO_PAGINA));
+
+        try (MetricaOperacion.Medicion medicion = METRICA_FILTRAR.iniciar();
+             Connection conn = conexionBD.getConexionLectura(sesion);
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            int i = 1;
+            stmt.setFetchSize(Math.min(limite, DatabaseConfig.FETCH_SIZE));
+            stmt.setString(i++, despuesDeCodigo == null ? "" : despuesDeCodigo);
+            if (filtro.getNombreEmpiezaPor() != null) {
+                stmt.setString(i++, escaparLike(filtro.getNombreEmpiezaPor()) + "%");
+            }
+            if (filtro.getNombreContiene() != null) {
+                stmt.setString(i++, "%" + escaparLike(filtro.getNombreContiene()) + "%");
+            }
+            if (filtro.getIdLocalizacion() != null) {
+                stmt.setInt(i++, filtro.getIdLocalizacion());
+            }
+            if (filtro.getIdManager() != null) {
+                stmt.setInt(i++, filtro.getIdManager());
+            }
+            if (filtro.getCodigoDesde() != null) {
+                stmt.setString(i++, filtro.getCodigoDesde());
+            }
+            if (filtro.getCodigoHasta() != null) {
+                stmt.setString(i++, filtro.getCodigoHasta());
+            }
+            stmt.setInt(i, limite);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    departamentos.add(mapearDepartamento(rs));
+                }
+            }
+            guardarEnCache(conn, departamentos);
+            medicion.exito(departamentos.size());
+            return departamentos;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al filtrar departamentos: {0}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Obtiene la última versión del registro de cambios. Quien vaya a seguir los cambios debe
+     * leerla antes de cargar los datos, para no perder los que ocurran mientras tanto.
+     *
+     * @return Última versión registrada, o 0 si el registro está vacío
+     * @throws SQLException Si ocurre un error o el registro de cambios no está instalado
+     */
+    public long versionCambios() throws SQLException {
+        return leerVersion(METRICA_VERSION_CAMBIOS, SQL_VERSION_CAMBIOS);
+    }
+
+    /**
+     * Obtiene la última versión del registro de cambios anterior a un margen de tiempo. Se usa
+     * en lugar de {@link #versionCambios()} cuando los datos se cargan de réplicas que pueden ir
+     * retrasadas: los cambios del margen se vuelven a leer del primario, y como cada cambio trae
+     * el estado actual, aplicar alguno que la réplica ya tenía no tiene efecto.
+     *
+     * @param margenMs Antigüedad de los cambios que se vuelven a leer
+     * @return Versión desde la que seguir los cambios, o 0 si el registro está vacío
+     * @throws SQLException Si ocurre un error o el registro de cambios no está instalado
+     */
+    public long versionCambios(long margenMs) throws SQLException {
+        try (MetricaOperacion.Medicion medicion = METRICA_VERSION_CAMBIOS.iniciar();
+             Connection conn = conexionBD.getConexion();
+             PreparedStatement stmt = conn.prepareStatement(SQL_VERSION_CAMBIOS_ANTERIOR)) {
+
+            // En segundos, redondeando hacia arriba para no quedarse corto
+            stmt.setLong(1, (margenMs + 999) / 1000);
+            try (ResultSet rs = stmt.executeQuery()) {
+                long version = rs.next() ? rs.getLong(1) : 0;
+                medicion.exito(1);
+                return version;
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al leer la versión del registro de cambios: {0}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Obtiene la versión más antigua que conserva el registro de cambios tras las purgas.
+     *
+     * @return Primera versión conservada, o 0 si el registro está vacío
+     * @throws SQLException Si ocurre un error en la base de datos
+     */
+    public long primeraVersionCambios() throws SQLException {
+        return leerVersion(METRICA_VERSION_CAMBIOS, SQL_PRIMERA_VERSION_CAMBIOS);
+    }
+
+    private long leerVersion(MetricaOperacion metrica, String sql) throws SQLException {
+        try (MetricaOperacion.Medicion medicion = metrica.iniciar();
+             Connection conn = conexionBD.getConexion();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            long version = rs.next() ? rs.getLong(1) : 0;
+            medicion.exito(1);
+            return version;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al leer la versión del registro de cambios: {0}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Lee los cambios posteriores a una versión, en orden de versión, junto con el estado actual
+     * de cada departamento afectado, y actualiza la caché con ellos. Como se devuelve el estado
+     * actual y no el del momento del cambio, aplicar dos veces el mismo cambio no tiene efecto.
+     *
+     * @param despuesDeVersion Última versión ya aplicada
+     * @param limite Número máximo de cambios a devolver
+     * @return Cambios leídos; una lista vacía indica que no hay más
+     * @throws SQLException Si ocurre un error en la base de datos
+     */
+    public List<CambioDepartamento> leerCambios(long despuesDeVersion, int limite) throws SQLException {
+        List<CambioDepartamento> cambios = new ArrayList<>();
+        try (MetricaOperacion.Medicion medicion = METRICA_LEER_CAMBIOS.iniciar();
+             Connection conn = conexionBD.getConexion();
+             PreparedStatement stmt = conn.prepareStatement(SQL_LEER_CAMBIOS)) {
+
+            stmt.setLong(1, despuesDeVersion);
+            stmt.setInt(2, limite);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String codigo = rs.getString(2);
+                    Departamento dep = rs.getString(3) == null ? null
+                            : new Departamento(rs.getString(3), rs.getString(4), rs.getInt(5), rs.getInt(6));
+                    if (dep == null) {
+                        cache.invalidar(codigo);
+                    } else {
+                        cache.guardar(dep);
+                    }
+                    cambios.add(new CambioDepartamento(rs.getLong(1), codigo, dep));
+                }
+            }
+            medicion.exito(cambios.size());
+            return cambios;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al leer el registro de cambios: {0}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Borra del registro los cambios más antiguos que la retención indicada.
+     *
+     * @param retencionMs Antigüedad máxima de los cambios que se conservan
+     * @return Cambios borrados
+     * @throws SQLException Si ocurre un error en la base de datos
+     */
+    public int purgarCambios(long retencionMs) throws SQLException {
+        try (MetricaOperacion.Medicion medicion = METRICA_PURGAR_CAMBIOS.iniciar();
+             Connection conn = conexionBD.getConexion();
+             PreparedStatement stmt = conn.prepareStatement(SQL_PURGAR_CAMBIOS)) {
+
+            stmt.setLong(1, retencionMs / 1000);
+            int borrados = stmt.executeUpdate();
+            medicion.exito(borrados);
+            return borrados;
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al purgar el registro de cambios: {0}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Calcula qué criterios del filtro están presentes, como máscara de bits.
+     */
+    private static int combinacionDe(FiltroDepartamentos filtro) {
+        int combinacion = 0;
+        if (filtro.getNombreEmpiezaPor() != null) {
+            combinacion |= FILTRO_NOMBRE_PREFIJO;
+        }
+        if (filtro.getNombreContiene() != null) {
+            combinacion |= FILTRO_NOMBRE_CONTIENE;
+        }
+        if (filtro.getIdLocalizacion() != null) {
+            combinacion |= FILTRO_LOCALIZACION;
+        }
+        if (filtro.getIdManager() != null) {
+            combinacion |= FILTRO_MANAGER;
+        }
+        if (filtro.getCodigoDesde() != null) {
+            combinacion |= FILTRO_CODIGO_DESDE;
+        }
+        if (filtro.getCodigoHasta() != null) {
+            combinacion |= FILTRO_CODIGO_HASTA;
+        }
+        return combinacion;
+    }
+
+    /**
+     * Construye el SQL parametrizado para una combinación de criterios.
+     * El orden de los parámetros debe coincidir con el de {@link #filtrar}.
+     */
+    private static String construirSqlFiltro(int combinacion) {
+        StringBuilder sql = new StringBuilder(SQL_FILTRAR_BASE);
+        if ((combinacion & FILTRO_NOMBRE_PREFIJO) != 0) {
+            sql.append(" AND nombre LIKE ?");
+        }
+        if ((combinacion & FILTRO_NOMBRE_CONTIENE) != 0) {
+            sql.append(" AND nombre LIKE ?");
+        }
+        if ((combinacion & FILTRO_LOCALIZACION) != 0) {
+            sql.append(" AND id_localizacion = ?");
+        }
+        if ((combinacion & FILTRO_MANAGER) != 0) {
+            sql.append(" AND id_manager = ?");
+        }
+        if ((combinacion & FILTRO_CODIGO_DESDE) != 0) {
+            sql.append(" AND codigo >= ?");
+        }
+        if ((combinacion & FILTRO_CODIGO_HASTA) != 0) {
+            sql.append(" AND codigo <= ?");
+        }
+        return sql.append(" ORDER BY codigo LIMIT ?").toString();
+    }
+
+    /**
+     * Escapa los comodines de LIKE para que el texto del usuario se busque literalmente.
+     */
+    private static String escaparLike(String texto) {
+        return texto.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static MetricaOperacion metrica(String metodo) {
+        return MetricasDAO.getInstancia().operacion("DepartamentoDAO." + metodo);
+    }
+
+    /**
+     * Obtiene las estadísticas de la caché de departamentos (aciertos, fallos y expulsiones).
+     *
+     * @return Instantánea de las estadísticas
+     */
+    public EstadisticasCache getEstadisticasCache() {
+        return cache.getEstadisticas();
+    }
+
+    /**
+     * Obtiene el ratio de aciertos de la caché de sentencias preparadas para cada método del DAO.
+     *
+     * @return Estadísticas por nombre de método, en el orden en que se declaran
+     */
+    public Map<String, EstadisticasCacheSentencias> getEstadisticasCacheSentencias() {
+        Map<String, EstadisticasCacheSentencias> estadisticas = new LinkedHashMap<>();
+        SENTENCIAS_POR_METODO.forEach((metodo, sentencias) -> {
+            EstadisticasCacheSentencias total = new EstadisticasCacheSentencias(0, 0);
+            for (String sql : sentencias) {
+                total = total.sumar(conexionBD.getEstadisticasSentencia(sql));
+            }
+            estadisticas.put(metodo, total);
+        });
+        EstadisticasCacheSentencias filtrado = new EstadisticasCacheSentencias(0, 0);
+        for (String sql : SQL_FILTRADO.values()) {
+            filtrado = filtrado.sumar(conexionBD.getEstadisticasSentencia(sql));
+        }
+        estadisticas.put("filtrar", filtrado);
+        EstadisticasCacheSentencias porCodigos = new EstadisticasCacheSentencias(0, 0);
+        for (String sql : SQL_BUSCAR_POR_CODIGOS.values()) {
+            porCodigos = porCodigos.sumar(conexionBD.getEstadisticasSentencia(sql));
+        }
+        estadisticas.put("buscarPorCodigos", porCodigos);
+        return estadisticas;
+    }
+
     /**
      * Mapea un ResultSet a un objeto Departamento.
      *
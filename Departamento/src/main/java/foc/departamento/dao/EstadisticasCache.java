@@ -0,0 +1,35 @@
+package foc.departamento.dao;
+
+/**
+ * Instantánea de las estadísticas de la caché de departamentos.
+ *
+ * @param aciertos Búsquedas servidas desde la caché
+ * @param fallos Búsquedas que tuvieron que ir a la base de datos
+ * @param expulsiones Entradas expulsadas por falta de espacio
+ * @param expiraciones Entradas descartadas por superar su tiempo de vida
+ * @param tamano Entradas actuales
+ * @param capacidad Entradas máximas configuradas
+ */
+public record EstadisticasCache(
+        long aciertos,
+        long fallos,
+        long expulsiones,
+        long expiraciones,
+        int tamano,
+        int capacidad
+) {
+
+    /**
+     * @return Proporción de aciertos entre 0 y 1, o 0 si aún no se ha consultado
+     */
+    public double ratioAciertos() {
+        long total = aciertos + fallos;
+        return total == 0 ? 0 : aciertos / (double) total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Caché: aciertos=%d, fallos=%d, ratio=%.1f%%, expulsiones=%d, expiraciones=%d, tamaño=%d/%d",
+                aciertos, fallos, ratioAciertos() * 100, expulsiones, expiraciones, tamano, capacidad);
+    }
+}
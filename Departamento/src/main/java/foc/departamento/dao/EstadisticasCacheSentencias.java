@@ -0,0 +1,30 @@
+package foc.departamento.dao;
+
+/**
+ * Aciertos y fallos de la caché de sentencias preparadas para una sentencia SQL.
+ *
+ * @param aciertos Veces que se reutilizó una sentencia ya preparada
+ * @param fallos Veces que hubo que prepararla en el servidor
+ */
+public record EstadisticasCacheSentencias(long aciertos, long fallos) {
+
+    /**
+     * @return Proporción de aciertos entre 0 y 1, o 0 si aún no se ha usado
+     */
+    public double ratioAciertos() {
+        long total = aciertos + fallos;
+        return total == 0 ? 0 : aciertos / (double) total;
+    }
+
+    /**
+     * Suma dos estadísticas, para agrupar varias sentencias de un mismo método.
+     */
+    public EstadisticasCacheSentencias sumar(EstadisticasCacheSentencias otra) {
+        return new EstadisticasCacheSentencias(aciertos + otra.aciertos, fallos + otra.fallos);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("aciertos=%d, fallos=%d, ratio=%.1f%%", aciertos, fallos, ratioAciertos() * 100);
+    }
+}
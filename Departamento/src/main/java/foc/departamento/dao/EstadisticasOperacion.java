@@ -0,0 +1,37 @@
+package foc.departamento.dao;
+
+/**
+ * Instantánea de las métricas de una operación del acceso a datos.
+ * Los percentiles salen de un histograma con error relativo menor del 12,5 %.
+ *
+ * @param llamadas Llamadas terminadas, con o sin error
+ * @param errores Llamadas que terminaron lanzando una excepción
+ * @param filas Filas devueltas o afectadas en total
+ * @param p50Ms Mediana de la latencia
+ * @param p95Ms Percentil 95 de la latencia
+ * @param p99Ms Percentil 99 de la latencia
+ * @param maxMs Latencia máxima observada
+ */
+public record EstadisticasOperacion(
+        long llamadas,
+        long errores,
+        long filas,
+        double p50Ms,
+        double p95Ms,
+        double p99Ms,
+        double maxMs
+) {
+
+    /**
+     * @return Filas medias por llamada, o 0 si aún no se ha llamado
+     */
+    public double filasPorLlamada() {
+        return llamadas == 0 ? 0 : filas / (double) llamadas;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("llamadas=%d, errores=%d, filas/llamada=%.1f, p50=%.3f ms, p95=%.3f ms, p99=%.3f ms, máx=%.3f ms",
+                llamadas, errores, filasPorLlamada(), p50Ms, p95Ms, p99Ms, maxMs);
+    }
+}
@@ -0,0 +1,46 @@
+package foc.departamento.dao;
+
+/**
+ * Instantánea de las estadísticas del pool de conexiones.
+ * Sirve para dimensionar el pool: si {@code esperando} o {@code esperaMediaMs} crecen,
+ * el máximo se queda corto; si {@code libres} es alto de forma sostenida, sobra.
+ *
+ * @param activas Conexiones prestadas en este momento
+ * @param libres Conexiones abiertas a la espera de ser prestadas
+ * @param total Conexiones físicas abiertas (activas + libres)
+ * @param maximo Tamaño máximo configurado
+ * @param esperando Hilos bloqueados esperando una conexión
+ * @param prestamos Número total de préstamos realizados
+ * @param esperaMediaMs Tiempo medio de espera para obtener una conexión
+ * @param esperaMaxMs Tiempo máximo de espera observado
+ * @param timeouts Préstamos que agotaron el tiempo de espera
+ * @param fugasDetectadas Conexiones retenidas más allá del umbral de detección de fugas
+ * @param retencionesLargas Préstamos devueltos tras superar el tiempo máximo de retención
+ * @param creadas Conexiones físicas creadas desde el arranque
+ * @param destruidas Conexiones físicas cerradas desde el arranque
+ */
+public record EstadisticasPool(
+        int activas,
+        int libres,
+        int total,
+        int maximo,
+        int esperando,
+        long prestamos,
+        double esperaMediaMs,
+        double esperaMaxMs,
+        long timeouts,
+        long fugasDetectadas,
+        long retencionesLargas,
+        long creadas,
+        long destruidas
+) {
+    @Override
+    public String toString() {
+        return String.format(
+                "Pool: activas=%d, libres=%d, total=%d/%d, esperando=%d, préstamos=%d, "
+                        + "espera media=%.3f ms, espera máx=%.3f ms, timeouts=%d, fugas=%d, retenciones largas=%d, "
+                        + "creadas=%d, destruidas=%d",
+                activas, libres, total, maximo, esperando, prestamos,
+                esperaMediaMs, esperaMaxMs, timeouts, fugasDetectadas, retencionesLargas, creadas, destruidas);
+    }
+}
@@ -0,0 +1,170 @@
+package foc.departamento.dao;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.function.LongConsumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exporta la tabla de departamentos completa a CSV o JSON Lines, opcionalmente comprimida con gzip.
+ * Las filas se escriben según llegan de {@link DepartamentoDAO#recorrerTodos}, a través de un
+ * búfer de tamaño fijo sobre un {@link FileChannel}, así que la memoria usada es constante.
+ * Se escribe en un fichero temporal junto al destino y se renombra al terminar, de modo que
+ * una exportación fallida no deja un fichero a medias.
+ */
+public class ExportadorDepartamentos {
+    private static final Logger LOGGER = Logger.getLogger(ExportadorDepartamentos.class.getName());
+    private static final int TAMANO_BUFER = 64 * 1024;
+    private static final int FILAS_POR_AVISO = 1000;
+
+    private final DepartamentoDAO departamentoDAO;
+
+    public ExportadorDepartamentos() {
+        this(new DepartamentoDAO());
+    }
+
+    public ExportadorDepartamentos(DepartamentoDAO departamentoDAO) {
+        this.departamentoDAO = departamentoDAO;
+    }
+
+    /**
+     * Exporta todos los departamentos ordenados por código.
+     *
+     * @param destino Fichero de destino; se sustituye si existe
+     * @param formato Formato de las filas
+     * @param gzip true para comprimir con gzip
+     * @param progreso Recibe el número de filas escritas cada {@value #FILAS_POR_AVISO} y al terminar; puede ser null
+     * @return Número de filas exportadas
+     * @throws IOException Si falla la escritura
+     * @throws SQLException Si falla la lectura de la base de datos
+     */
+    public long exportar(Path destino, FormatoExportacion formato, boolean gzip, LongConsumer progreso)
+            throws IOException, SQLException {
+        Path temporal = destino.resolveSibling(destino.getFileName() + ".tmp");
+        long filas;
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             Writer salida = abrirEscritor(canal, gzip)) {
+
+            if (formato == FormatoExportacion.CSV) {
+                salida.write("codigo,nombre,id_localizacion,id_manager\n");
+            }
+            long[] escritas = {0};
+            filas = departamentoDAO.recorrerTodos((codigo, nombre, idLocalizacion, idManager) -> {
+                if (formato == FormatoExportacion.CSV) {
+                    escribirCsv(salida, codigo, nombre, idLocalizacion, idManager);
+                } else {
+                    escribirJson(salida, codigo, nombre, idLocalizacion, idManager);
+                }
+                if (++escritas[0] % FILAS_POR_AVISO == 0 && progreso != null) {
+                    progreso.accept(escritas[0]);
+                }
+            });
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+        Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (progreso != null) {
+            progreso.accept(filas);
+        }
+        LOGGER.log(Level.INFO, "Exportados {0} departamentos a {1}", new Object[]{filas, destino});
+        return filas;
+    }
+
+    private static Writer abrirEscritor(FileChannel canal, boolean gzip) throws IOException {
+        OutputStream salida = Channels.newOutputStream(canal);
+        if (gzip) {
+            salida = new GZIPOutputStream(salida, TAMANO_BUFER);
+        }
+        return new BufferedWriter(new OutputStreamWriter(salida, StandardCharsets.UTF_8), TAMANO_BUFER);
+    }
+
+    private static void escribirCsv(Writer salida, String codigo, String nombre, int idLocalizacion, int idManager)
+            throws IOException {
+        escribirCampoCsv(salida, codigo);
+        salida.write(',');
+        escribirCampoCsv(salida, nombre);
+        salida.write(',');
+        salida.write(Integer.toString(idLocalizacion));
+        salida.write(',');
+        salida.write(Integer.toString(idManager));
+        salida.write('\n');
+    }
+
+    private static void escribirCampoCsv(Writer salida, String valor) throws IOException {
+        if (valor == null) {
+            return;
+        }
+        boolean entreComillas = false;
+        for (int i = 0; i < valor.length() && !entreComillas; i++) {
+            char c = valor.charAt(i);
+            entreComillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!entreComillas) {
+            salida.write(valor);
+            return;
+        }
+        salida.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            if (c == '"') {
+                salida.write('"');
+            }
+            salida.write(c);
+        }
+        salida.write('"');
+    }
+
+    private static void escribirJson(Writer salida, String codigo, String nombre, int idLocalizacion, int idManager)
+            throws IOException {
+        salida.write("{\"codigo\":");
+        escribirCadenaJson(salida, codigo);
+        salida.write(",\"nombre\":");
+        escribirCadenaJson(salida, nombre);
+        salida.write(",\"idLocalizacion\":");
+        salida.write(Integer.toString(idLocalizacion));
+        salida.write(",\"idManager\":");
+        salida.write(Integer.toString(idManager));
+        salida.write("}\n");
+    }
+
+    private static void escribirCadenaJson(Writer salida, String valor) throws IOException {
+        if (valor == null) {
+            salida.write("null");
+            return;
+        }
+        salida.write('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"' -> salida.write("\\\"");
+                case '\\' -> salida.write("\\\\");
+                case '\n' -> salida.write("\\n");
+                case '\r' -> salida.write("\\r");
+                case '\t' -> salida.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        salida.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        salida.write(c);
+                    }
+                }
+            }
+        }
+        salida.write('"');
+    }
+}
@@ -0,0 +1,86 @@
+package foc.departamento.dao;
+
+/**
+ * Criterios de búsqueda de departamentos, combinables entre sí.
+ * Los criterios sin valor (null) no se aplican. Se traduce a SQL parametrizado
+ * en {@link DepartamentoDAO#filtrar(FiltroDepartamentos, String, int)}, de modo que el
+ * filtrado lo hace MariaDB usando los índices secundarios de {@code db/indices_departamentos.sql}.
+ */
+public class FiltroDepartamentos {
+    private String nombreEmpiezaPor;
+    private String nombreContiene;
+    private Integer idLocalizacion;
+    private Integer idManager;
+    private String codigoDesde;
+    private String codigoHasta;
+
+    /**
+     * Nombre que empieza por el texto dado (puede usar el índice sobre {@code nombre}).
+     */
+    public FiltroDepartamentos nombreEmpiezaPor(String prefijo) {
+        this.nombreEmpiezaPor = vacioANull(prefijo);
+        return this;
+    }
+
+    /**
+     * Nombre que contiene el texto dado en cualquier posición.
+     */
+    public FiltroDepartamentos nombreContiene(String texto) {
+        this.nombreContiene = vacioANull(texto);
+        return this;
+    }
+
+    public FiltroDepartamentos idLocalizacion(Integer idLocalizacion) {
+        this.idLocalizacion = idLocalizacion;
+        return this;
+    }
+
+    public FiltroDepartamentos idManager(Integer idManager) {
+        this.idManager = idManager;
+        return this;
+    }
+
+    /**
+     * Rango de códigos, ambos extremos incluidos; cualquiera de los dos puede omitirse.
+     */
+    public FiltroDepartamentos codigoEntre(String desde, String hasta) {
+        this.codigoDesde = vacioANull(desde);
+        this.codigoHasta = vacioANull(hasta);
+        return this;
+    }
+
+    public String getNombreEmpiezaPor() {
+        return nombreEmpiezaPor;
+    }
+
+    public String getNombreContiene() {
+        return nombreContiene;
+    }
+
+    public Integer getIdLocalizacion() {
+        return idLocalizacion;
+    }
+
+    public Integer getIdManager() {
+        return idManager;
+    }
+
+    public String getCodigoDesde() {
+        return codigoDesde;
+    }
+
+    public String getCodigoHasta() {
+        return codigoHasta;
+    }
+
+    private static String vacioANull(String texto) {
+        return texto == null || texto.isEmpty() ? null : texto;
+    }
+
+    @Override
+    public String toString() {
+        return "Filtro{nombreEmpiezaPor=" + nombreEmpiezaPor + ", nombreContiene=" + nombreContiene
+                + ", idLocalizacion=" + idLocalizacion + ", idManager=" + idManager
+                + ", codigo=[" + codigoDesde + ", " + codigoHasta + "]}";
+    }
+}
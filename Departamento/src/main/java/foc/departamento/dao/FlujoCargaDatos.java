@@ -0,0 +1,91 @@
+package foc.departamento.dao;
+
+import foc.departamento.model.Departamento;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Flujo que genera bajo demanda el texto de {@code LOAD DATA LOCAL INFILE} a partir de las
+ * filas válidas del lector: una línea por departamento, campos separados por tabuladores
+ * y escapados con barra invertida. Sólo tiene en memoria la fila que se está enviando.
+ */
+class FlujoCargaDatos extends InputStream {
+    private final LectorCSVDepartamentos lector;
+    private final StringBuilder fila = new StringBuilder();
+    private byte[] pendiente = new byte[0];
+    private int posicion;
+    private long filasEnviadas;
+    private boolean terminado;
+
+    FlujoCargaDatos(LectorCSVDepartamentos lector) {
+        this.lector = lector;
+    }
+
+    /**
+     * @return Filas entregadas hasta ahora al driver
+     */
+    long getFilasEnviadas() {
+        return filasEnviadas;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!hayDatos()) {
+            return -1;
+        }
+        return pendiente[posicion++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] destino, int desde, int longitud) throws IOException {
+        if (longitud == 0) {
+            return 0;
+        }
+        int copiados = 0;
+        while (copiados < longitud && hayDatos()) {
+            int n = Math.min(longitud - copiados, pendiente.length - posicion);
+            System.arraycopy(pendiente, posicion, destino, desde + copiados, n);
+            posicion += n;
+            copiados += n;
+        }
+        return copiados == 0 ? -1 : copiados;
+    }
+
+    private boolean hayDatos() throws IOException {
+        if (posicion < pendiente.length) {
+            return true;
+        }
+        if (terminado) {
+            return false;
+        }
+        Departamento dep = lector.siguiente();
+        if (dep == null) {
+            terminado = true;
+            return false;
+        }
+        fila.setLength(0);
+        escapar(dep.getCodigo());
+        fila.append('\t');
+        escapar(dep.getNombre());
+        fila.append('\t').append(dep.getIdLocalizacion()).append('\t').append(dep.getIdManager()).append('\n');
+        pendiente = fila.toString().getBytes(StandardCharsets.UTF_8);
+        posicion = 0;
+        filasEnviadas++;
+        return true;
+    }
+
+    private void escapar(String valor) {
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '\\' -> fila.append("\\\\");
+                case '\t' -> fila.append("\\t");
+                case '\n' -> fila.append("\\n");
+                case '\r' -> fila.append("\\r");
+                default -> fila.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package foc.departamento.dao;
+
+/**
+ * Formatos de exportación de la tabla de departamentos.
+ */
+public enum FormatoExportacion {
+    /**
+     * CSV con cabecera, el mismo formato que lee {@link ImportadorCSV}.
+     */
+    CSV(".csv"),
+    /**
+     * Un objeto JSON por línea (JSON Lines).
+     */
+    JSONL(".jsonl");
+
+    private final String extension;
+
+    FormatoExportacion(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return Extensión habitual del fichero, con el punto
+     */
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,92 @@
+package foc.departamento.dao;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histograma de latencias en nanosegundos con cubos log-lineales: cada potencia de dos se divide
+ * en {@value #SUBCUBOS} cubos, así que los percentiles tienen un error relativo menor del 12,5 %
+ * con una memoria fija (unos 4 KB) y sin reservar memoria al registrar.
+ * Registrar es seguro desde varios hilos y no bloquea.
+ */
+class HistogramaLatencias {
+    private static final int BITS_SUBCUBO = 3;
+    private static final int SUBCUBOS = 1 << BITS_SUBCUBO;
+    private static final int NUM_CUBOS = (Long.SIZE - BITS_SUBCUBO + 1) * SUBCUBOS;
+
+    private final AtomicLongArray cubos = new AtomicLongArray(NUM_CUBOS);
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * @param nanos Duración observada; los valores negativos se cuentan como 0
+     */
+    void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        cubos.incrementAndGet(cubo(valor));
+        maximo.accumulateAndGet(valor, Math::max);
+    }
+
+    /**
+     * Calcula varios percentiles en una sola pasada sobre los cubos.
+     *
+     * @param percentiles Percentiles entre 0 y 100, en orden creciente
+     * @return Límite superior del cubo de cada percentil en nanosegundos (0 si no hay muestras)
+     */
+    long[] percentiles(double... percentiles) {
+        long[] cuentas = new long[NUM_CUBOS];
+        long total = 0;
+        for (int i = 0; i < NUM_CUBOS; i++) {
+            cuentas[i] = cubos.get(i);
+            total += cuentas[i];
+        }
+        long[] valores = new long[percentiles.length];
+        if (total == 0) {
+            return valores;
+        }
+        long max = maximo.get();
+        long acumulado = 0;
+        int p = 0;
+        for (int i = 0; i < NUM_CUBOS && p < percentiles.length; i++) {
+            acumulado += cuentas[i];
+            while (p < percentiles.length && acumulado >= Math.ceil(total * percentiles[p] / 100.0)) {
+                valores[p++] = Math.min(limiteSuperior(i), max);
+            }
+        }
+        return valores;
+    }
+
+    /**
+     * @return Mayor duración registrada en nanosegundos
+     */
+    long maximo() {
+        return maximo.get();
+    }
+
+    /**
+     * Pone a cero todos los cubos. Las muestras registradas a la vez pueden perderse.
+     */
+    void reiniciar() {
+        for (int i = 0; i < NUM_CUBOS; i++) {
+            cubos.set(i, 0);
+        }
+        maximo.set(0);
+    }
+
+    private static int cubo(long valor) {
+        if (valor < SUBCUBOS) {
+            return (int) valor;
+        }
+        int exponente = 63 - Long.numberOfLeadingZeros(valor);
+        int subcubo = (int) (valor >>> (exponente - BITS_SUBCUBO)) & (SUBCUBOS - 1);
+        return (exponente - BITS_SUBCUBO + 1) * SUBCUBOS + subcubo;
+    }
+
+    private static long limiteSuperior(int cubo) {
+        if (cubo < SUBCUBOS) {
+            return cubo;
+        }
+        int desplazamiento = cubo / SUBCUBOS - 1;
+        long inferior = (long) (SUBCUBOS + cubo % SUBCUBOS) << desplazamiento;
+        return inferior + (1L << desplazamiento) - 1;
+    }
+}
@@ -0,0 +1,100 @@
+package foc.departamento.dao;
+
+import foc.departamento.config.DatabaseConfig;
+import foc.departamento.model.Departamento;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Importa departamentos desde un fichero CSV sin cargarlo entero en memoria.
+ * Las filas válidas se envían a MariaDB con {@code LOAD DATA LOCAL INFILE} desde un flujo
+ * generado sobre la marcha; si el servidor o el driver no lo permiten, se vuelve a leer
+ * el fichero y se inserta por lotes con {@link DepartamentoDAO#insertarLote(java.util.Collection, int)}.
+ */
+public class ImportadorCSV {
+    private static final Logger LOGGER = Logger.getLogger(ImportadorCSV.class.getName());
+
+    private final DepartamentoDAO departamentoDAO;
+
+    public ImportadorCSV() {
+        this(new DepartamentoDAO());
+    }
+
+    public ImportadorCSV(DepartamentoDAO departamentoDAO) {
+        this.departamentoDAO = departamentoDAO;
+    }
+
+    /**
+     * Importa el fichero. Los códigos que ya existen no se modifican.
+     *
+     * @param fichero Fichero CSV en UTF-8 ({@code codigo,nombre,id_localizacion,id_manager})
+     * @param progreso Recibe el avance de la lectura; puede ser null
+     * @return Filas insertadas, duplicadas y rechazadas
+     * @throws IOException Si no se puede leer el fichero
+     * @throws SQLException Si falla también la inserción por lotes
+     */
+    public ResultadoImportacion importar(Path fichero, Consumer<ProgresoImportacion> progreso)
+            throws IOException, SQLException {
+        ResultadoImportacion resultado = new ResultadoImportacion();
+        try (LectorCSVDepartamentos lector = new LectorCSVDepartamentos(fichero, resultado, progreso)) {
+            FlujoCargaDatos flujo = new FlujoCargaDatos(lector);
+            long insertadas = departamentoDAO.cargarDatosLocales(flujo);
+            resultado.setMetodo(ResultadoImportacion.Metodo.LOAD_DATA);
+            resultado.sumarInsertadas(insertadas);
+            // LOAD DATA LOCAL ignora las claves duplicadas en lugar de fallar
+            resultado.sumarDuplicadas(flujo.getFilasEnviadas() - insertadas);
+            LOGGER.info(resultado.toString());
+            return resultado;
+        } catch (SQLException e) {
+            // La sentencia es atómica: si falla no queda nada insertado y se puede repetir por lotes
+            LOGGER.log(Level.WARNING, "LOAD DATA LOCAL INFILE no disponible, se importa por lotes: {0}", e.getMessage());
+        }
+        return importarPorLotes(fichero, progreso);
+    }
+
+    private ResultadoImportacion importarPorLotes(Path fichero, Consumer<ProgresoImportacion> progreso)
+            throws IOException, SQLException {
+        ResultadoImportacion resultado = new ResultadoImportacion();
+        resultado.setMetodo(ResultadoImportacion.Metodo.LOTES);
+        int tamanoLote = DatabaseConfig.TAMANO_LOTE;
+        List<Departamento> trozo = new ArrayList<>(tamanoLote);
+        long[] lineas = new long[tamanoLote];
+
+        try (LectorCSVDepartamentos lector = new LectorCSVDepartamentos(fichero, resultado, progreso)) {
+            Departamento dep;
+            while ((dep = lector.siguiente()) != null) {
+                lineas[trozo.size()] = lector.getNumeroLinea();
+                trozo.add(dep);
+                if (trozo.size() == tamanoLote) {
+                    insertarTrozo(trozo, lineas, resultado);
+                    trozo.clear();
+                }
+            }
+            if (!trozo.isEmpty()) {
+                insertarTrozo(trozo, lineas, resultado);
+            }
+        }
+        LOGGER.info(resultado.toString());
+        return resultado;
+    }
+
+    private void insertarTrozo(List<Departamento> trozo, long[] lineas, ResultadoImportacion resultado)
+            throws SQLException {
+        List<ResultadoFila> filas = departamentoDAO.insertarLote(trozo, trozo.size()).getFilas();
+        for (int i = 0; i < filas.size(); i++) {
+            ResultadoFila fila = filas.get(i);
+            if (fila.correcta()) {
+                resultado.sumarInsertadas(1);
+            } else {
+                resultado.rechazar(lineas[i], fila.error());
+            }
+        }
+    }
+}
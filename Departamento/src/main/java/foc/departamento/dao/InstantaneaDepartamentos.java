@@ -0,0 +1,265 @@
+package foc.departamento.dao;
+
+import foc.departamento.model.Departamento;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Copia local de los últimos departamentos cargados, en un fichero binario compacto que se lee
+ * con un {@link MappedByteBuffer}: abrirla sólo mapea el fichero y las filas se decodifican al
+ * pedirlas, así que la tabla puede llenarse antes de conectar con MariaDB.
+ * <p>
+ * Formato (big endian): cabecera con {@value #MAGICO}, versión del formato, versión del registro
+ * de cambios con la que coinciden los datos, momento de la copia, número de filas y si están
+ * todas; después la posición de cada fila y las filas ({@code codigo} y {@code nombre} en UTF-8
+ * precedidos de su longitud, y los dos IDs). Las filas van ordenadas por los bytes del código,
+ * que es {@link foc.departamento.model.AlmacenDepartamentos#ORDEN_CODIGOS} y el de la columna,
+ * para buscar por búsqueda binaria y mostrarlas como las primeras páginas.
+ * <p>
+ * Se escribe en un fichero temporal y se renombra. Si el sistema no deja sustituir el fichero
+ * mientras está mapeado (Windows), la copia nueva queda pendiente junto a él y ocupa su lugar
+ * la próxima vez que se abre. Una vez abierta es inmutable y segura para uso concurrente.
+ */
+public class InstantaneaDepartamentos {
+    private static final Logger LOGGER = Logger.getLogger(InstantaneaDepartamentos.class.getName());
+    private static final int MAGICO = 0x44505431; // "DPT1"
+    private static final int FORMATO = 1;
+    // magico, formato, versionCambios, momento, filas, completa
+    private static final int TAMANO_CABECERA = 4 + 4 + 8 + 8 + 4 + 1;
+    private static final Comparator<byte[]> POR_BYTES = Arrays::compareUnsigned;
+
+    private final MappedByteBuffer datos;
+    private final long versionCambios;
+    private final long momento;
+    private final int filas;
+    private final boolean completa;
+
+    private InstantaneaDepartamentos(MappedByteBuffer datos, long versionCambios, long momento, int filas,
+                                     boolean completa) {
+        this.datos = datos;
+        this.versionCambios = versionCambios;
+        this.momento = momento;
+        this.filas = filas;
+        this.completa = completa;
+    }
+
+    /**
+     * Mapea la copia guardada en un fichero, tras poner en su sitio la pendiente si la hay.
+     *
+     * @param fichero Fichero de la copia
+     * @return Copia abierta, o null si no existe
+     * @throws IOException Si no se puede leer o no tiene el formato esperado
+     */
+    public static InstantaneaDepartamentos abrir(Path fichero) throws IOException {
+        Path pendiente = pendiente(fichero);
+        if (Files.exists(pendiente)) {
+            Files.move(pendiente, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        if (!Files.exists(fichero)) {
+            return null;
+        }
+        MappedByteBuffer datos;
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            // El mapeo sigue siendo válido después de cerrar el canal
+            datos = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+        }
+        try {
+            if (datos.getInt(0) != MAGICO || datos.getInt(4) != FORMATO) {
+                throw new IOException("No es una instantánea de departamentos: " + fichero);
+            }
+            int filas = datos.getInt(24);
+            if (filas < 0 || datos.capacity() < TAMANO_CABECERA + 4L * filas) {
+                throw new IOException("Instantánea de departamentos truncada: " + fichero);
+            }
+            return new InstantaneaDepartamentos(datos, datos.getLong(8), datos.getLong(16), filas,
+                    datos.get(28) != 0);
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Instantánea de departamentos truncada: " + fichero, e);
+        }
+    }
+
+    /**
+     * Guarda una copia de los departamentos, sustituyendo la anterior.
+     *
+     * @param fichero Fichero de la copia; se crea su directorio si no existe
+     * @param departamentos Departamentos a guardar, en cualquier orden
+     * @param versionCambios Versión del registro de cambios hasta la que están aplicados los cambios
+     *                       en los datos (0 si no se siguen los cambios)
+     * @param completa true si son todos los departamentos de la tabla y no sólo las primeras páginas
+     * @throws IOException Si falla la escritura
+     */
+    public static void guardar(Path fichero, Collection<Departamento> departamentos, long versionCambios,
+                               boolean completa) throws IOException {
+        List<byte[][]> codificadas = new ArrayList<>(departamentos.size());
+        long tamano = TAMANO_CABECERA + 4L * departamentos.size();
+        for (Departamento dep : departamentos) {
+            byte[] codigo = dep.getCodigo().getBytes(StandardCharsets.UTF_8);
+            byte[] nombre = dep.getNombre().getBytes(StandardCharsets.UTF_8);
+            codificadas.add(new byte[][]{codigo, nombre, ByteBuffer.allocate(8)
+                    .putInt(dep.getIdLocalizacion()).putInt(dep.getIdManager()).array()});
+            tamano += 2 + codigo.length + 2 + nombre.length + 8;
+        }
+        if (tamano > Integer.MAX_VALUE) {
+            throw new IOException("Demasiados departamentos para una instantánea (" + tamano + " bytes)");
+        }
+        codificadas.sort((a, b) -> POR_BYTES.compare(a[0], b[0]));
+
+        ByteBuffer bufer = ByteBuffer.allocate((int) tamano);
+        bufer.putInt(MAGICO).putInt(FORMATO).putLong(versionCambios).putLong(System.currentTimeMillis())
+                .putInt(codificadas.size()).put((byte) (completa ? 1 : 0));
+        int posicion = TAMANO_CABECERA + 4 * codificadas.size();
+        for (byte[][] fila : codificadas) {
+            bufer.putInt(posicion);
+            posicion += 2 + fila[0].length + 2 + fila[1].length + 8;
+        }
+        for (byte[][] fila : codificadas) {
+            bufer.putShort((short) fila[0].length).put(fila[0])
+                    .putShort((short) fila[1].length).put(fila[1])
+                    .put(fila[2]);
+        }
+        bufer.flip();
+
+        if (fichero.getParent() != null) {
+            Files.createDirectories(fichero.getParent());
+        }
+        Path temporal = fichero.resolveSibling(fichero.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporal, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (bufer.hasRemaining()) {
+                canal.write(bufer);
+            }
+            canal.force(false);
+        } catch (IOException e) {
+            Files.deleteIfExists(temporal);
+            throw e;
+        }
+        try {
+            Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileSystemException e) {
+            // La copia anterior sigue mapeada en este proceso
+            Files.move(temporal, pendiente(fichero), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOGGER.log(Level.FINE, "Instantánea en uso; la nueva se aplicará al abrirla: {0}", e.getMessage());
+        }
+    }
+
+    private static Path pendiente(Path fichero) {
+        return fichero.resolveSibling(fichero.getFileName() + ".pendiente");
+    }
+
+    /**
+     * @return Versión del registro de cambios con la que coinciden los datos (0 si se desconoce)
+     */
+    public long getVersionCambios() {
+        return versionCambios;
+    }
+
+    /**
+     * @return Momento en que se guardó la copia, en milisegundos desde la época
+     */
+    public long getMomento() {
+        return momento;
+    }
+
+    /**
+     * @return true si contiene toda la tabla; false si sólo las primeras páginas por código
+     */
+    public boolean isCompleta() {
+        return completa;
+    }
+
+    /**
+     * @return Número de departamentos guardados
+     */
+    public int tamano() {
+        return filas;
+    }
+
+    /**
+     * @param fila Posición de la fila, en orden de código
+     * @return Departamento nuevo con los datos de la fila
+     * @throws IOException Si la fila no se puede decodificar
+     */
+    public Departamento obtener(int fila) throws IOException {
+        if (fila < 0 || fila >= filas) {
+            throw new IndexOutOfBoundsException("Fila " + fila + " fuera de 0.." + (filas - 1));
+        }
+        try {
+            // Se trabaja sobre una vista propia para no compartir la posición entre hilos
+            int inicio = datos.getInt(TAMANO_CABECERA + 4 * fila);
+            ByteBuffer lector = datos.slice(inicio, datos.capacity() - inicio);
+            String codigo = leerTexto(lector);
+            String nombre = leerTexto(lector);
+            return new Departamento(codigo, nombre, lector.getInt(), lector.getInt());
+        } catch (IndexOutOfBoundsException | BufferUnderflowException e) {
+            throw new IOException("Fila " + fila + " de la instantánea dañada", e);
+        }
+    }
+
+    /**
+     * @return Todos los departamentos guardados, en orden de código
+     * @throws IOException Si alguna fila no se puede decodificar
+     */
+    public List<Departamento> leerTodos() throws IOException {
+        List<Departamento> departamentos = new ArrayList<>(filas);
+        for (int i = 0; i < filas; i++) {
+            departamentos.add(obtener(i));
+        }
+        return departamentos;
+    }
+
+    /**
+     * Busca un código por búsqueda binaria comparando los bytes del fichero, sin decodificar
+     * más fila que la encontrada.
+     *
+     * @param codigo Código a buscar
+     * @return Departamento guardado con ese código, o null si no está en la copia
+     * @throws IOException Si la copia está dañada
+     */
+    public Departamento buscar(String codigo) throws IOException {
+        byte[] clave = codigo.getBytes(StandardCharsets.UTF_8);
+        int bajo = 0;
+        int alto = filas - 1;
+        try {
+            while (bajo <= alto) {
+                int medio = (bajo + alto) >>> 1;
+                int inicio = datos.getInt(TAMANO_CABECERA + 4 * medio);
+                byte[] guardado = new byte[Short.toUnsignedInt(datos.getShort(inicio))];
+                datos.get(inicio + 2, guardado);
+                int comparacion = POR_BYTES.compare(guardado, clave);
+                if (comparacion < 0) {
+                    bajo = medio + 1;
+                } else if (comparacion > 0) {
+                    alto = medio - 1;
+                } else {
+                    return obtener(medio);
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("Instantánea de departamentos dañada", e);
+        }
+        return null;
+    }
+
+    private static String leerTexto(ByteBuffer lector) {
+        byte[] bytes = new byte[Short.toUnsignedInt(lector.getShort())];
+        lector.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,180 @@
+package foc.departamento.dao;
+
+import foc.departamento.model.Departamento;
+import foc.departamento.view.util.ValidatorUtils;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Lee un fichero CSV de departamentos línea a línea y entrega sólo las filas válidas.
+ * Formato: {@code codigo,nombre,id_localizacion,id_manager}, con cabecera opcional y campos
+ * entre comillas dobles si contienen comas. Cada línea se valida con las reglas de
+ * {@link ValidatorUtils} y las inválidas se anotan en el resultado, así que la memoria
+ * usada no depende del tamaño del fichero.
+ */
+class LectorCSVDepartamentos implements Closeable {
+    private static final int NUM_CAMPOS = 4;
+    private static final int LINEAS_POR_AVISO = 1000;
+
+    private final ContadorBytes contador;
+    private final BufferedReader lector;
+    private final long bytesTotales;
+    private final ResultadoImportacion resultado;
+    private final Consumer<ProgresoImportacion> progreso;
+    private final String[] campos = new String[NUM_CAMPOS];
+    private final StringBuilder campo = new StringBuilder();
+    private long numeroLinea;
+
+    /**
+     * @param fichero Fichero CSV en UTF-8
+     * @param resultado Resultado donde anotar las líneas leídas y rechazadas
+     * @param progreso Recibe el avance cada {@value #LINEAS_POR_AVISO} líneas y al terminar; puede ser null
+     * @throws IOException Si no se puede abrir el fichero
+     */
+    LectorCSVDepartamentos(Path fichero, ResultadoImportacion resultado, Consumer<ProgresoImportacion> progreso)
+            throws IOException {
+        this.bytesTotales = Files.size(fichero);
+        this.contador = new ContadorBytes(Files.newInputStream(fichero));
+        this.lector = new BufferedReader(new InputStreamReader(contador, StandardCharsets.UTF_8));
+        this.resultado = resultado;
+        this.progreso = progreso;
+    }
+
+    /**
+     * @return El siguiente departamento válido, o null al llegar al final del fichero
+     * @throws IOException Si falla la lectura
+     */
+    Departamento siguiente() throws IOException {
+        String linea;
+        while ((linea = lector.readLine()) != null) {
+            numeroLinea++;
+            if (numeroLinea % LINEAS_POR_AVISO == 0) {
+                avisar();
+            }
+            // Marca de orden de bytes que añaden algunas hojas de cálculo al exportar a UTF-8
+            if (numeroLinea == 1 && !linea.isEmpty() && linea.charAt(0) == '\uFEFF') {
+                linea = linea.substring(1);
+            }
+            if (linea.isBlank()) {
+                continue;
+            }
+            String error = separar(linea);
+            if (error == null && numeroLinea == 1 && "codigo".equalsIgnoreCase(campos[0].trim())) {
+                continue;
+            }
+            if (error == null) {
+                error = ValidatorUtils.validarDepartamento(campos[0], campos[1], campos[2], campos[3]);
+            }
+            if (error != null) {
+                resultado.rechazar(numeroLinea, error);
+                continue;
+            }
+            return new Departamento(
+                    campos[0].trim(),
+                    campos[1].trim(),
+                    Integer.parseInt(campos[2].trim()),
+                    Integer.parseInt(campos[3].trim()));
+        }
+        resultado.setLineasLeidas(numeroLinea);
+        avisar();
+        return null;
+    }
+
+    /**
+     * @return Número de línea del último departamento devuelto
+     */
+    long getNumeroLinea() {
+        return numeroLinea;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lector.close();
+    }
+
+    /**
+     * Separa la línea en {@link #campos}.
+     *
+     * @return Mensaje de error si la línea no tiene el formato esperado, o null
+     */
+    private String separar(String linea) {
+        int numCampos = 0;
+        boolean entreComillas = false;
+        campo.setLength(0);
+        for (int i = 0; i < linea.length(); i++) {
+            char c = linea.charAt(i);
+            if (entreComillas) {
+                if (c != '"') {
+                    campo.append(c);
+                } else if (i + 1 < linea.length() && linea.charAt(i + 1) == '"') {
+                    campo.append('"');
+                    i++;
+                } else {
+                    entreComillas = false;
+                }
+            } else if (c == '"') {
+                entreComillas = true;
+            } else if (c == ',') {
+                if (numCampos == NUM_CAMPOS - 1) {
+                    return "Se esperaban " + NUM_CAMPOS + " campos separados por comas";
+                }
+                campos[numCampos++] = campo.toString();
+                campo.setLength(0);
+            } else {
+                campo.append(c);
+            }
+        }
+        if (entreComillas) {
+            return "Comillas sin cerrar";
+        }
+        if (numCampos != NUM_CAMPOS - 1) {
+            return "Se esperaban " + NUM_CAMPOS + " campos separados por comas";
+        }
+        campos[numCampos] = campo.toString();
+        return null;
+    }
+
+    private void avisar() {
+        if (progreso != null) {
+            progreso.accept(new ProgresoImportacion(numeroLinea, contador.leidos, bytesTotales));
+        }
+    }
+
+    /**
+     * Cuenta los bytes leídos del fichero para informar del avance.
+     */
+    private static final class ContadorBytes extends FilterInputStream {
+        private long leidos;
+
+        private ContadorBytes(InputStream entrada) {
+            super(entrada);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                leidos++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                leidos += n;
+            }
+            return n;
+        }
+    }
+}
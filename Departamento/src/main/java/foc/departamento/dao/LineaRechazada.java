@@ -0,0 +1,15 @@
+package foc.departamento.dao;
+
+/**
+ * Línea de un fichero de importación que no se cargó.
+ *
+ * @param numeroLinea Número de línea en el fichero, empezando en 1
+ * @param motivo Causa del rechazo
+ */
+public record LineaRechazada(long numeroLinea, String motivo) {
+
+    @Override
+    public String toString() {
+        return "Línea " + numeroLinea + ": " + motivo;
+    }
+}
@@ -0,0 +1,135 @@
+package foc.departamento.dao;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Métricas de una operación: histograma de latencias y contadores de llamadas, errores y filas.
+ * Se mide con {@link #iniciar()} dentro de un try-with-resources; si la operación no llega a
+ * llamar a {@link Medicion#exito(long)} se cuenta como error.
+ */
+class MetricaOperacion implements MetricaOperacionMXBean {
+    private static final double NANOS_POR_MS = 1_000_000.0;
+
+    private final HistogramaLatencias latencias = new HistogramaLatencias();
+    private final LongAdder llamadas = new LongAdder();
+    private final LongAdder errores = new LongAdder();
+    private final LongAdder filas = new LongAdder();
+
+    /**
+     * Empieza a medir una llamada.
+     *
+     * @return Medición que registra la latencia al cerrarse
+     */
+    Medicion iniciar() {
+        return new Medicion(this, System.nanoTime());
+    }
+
+    /**
+     * @return Instantánea de las métricas actuales
+     */
+    EstadisticasOperacion getEstadisticas() {
+        long[] percentiles = latencias.percentiles(50, 95, 99);
+        return new EstadisticasOperacion(
+                llamadas.sum(),
+                errores.sum(),
+                filas.sum(),
+                percentiles[0] / NANOS_POR_MS,
+                percentiles[1] / NANOS_POR_MS,
+                percentiles[2] / NANOS_POR_MS,
+                latencias.maximo() / NANOS_POR_MS
+        );
+    }
+
+    /**
+     * Registra una llamada medida por otros medios, p. ej. el tiempo que se retuvo una conexión.
+     *
+     * @param nanos Duración de la llamada
+     * @param filasLlamada Filas devueltas o afectadas
+     * @param correcta false para contarla como error
+     */
+    void registrar(long nanos, long filasLlamada, boolean correcta) {
+        latencias.registrar(nanos);
+        llamadas.increment();
+        if (correcta) {
+            filas.add(filasLlamada);
+        } else {
+            errores.increment();
+        }
+    }
+
+    @Override
+    public long getLlamadas() {
+        return llamadas.sum();
+    }
+
+    @Override
+    public long getErrores() {
+        return errores.sum();
+    }
+
+    @Override
+    public long getFilas() {
+        return filas.sum();
+    }
+
+    @Override
+    public double getFilasPorLlamada() {
+        return getEstadisticas().filasPorLlamada();
+    }
+
+    @Override
+    public double getP50Ms() {
+        return getEstadisticas().p50Ms();
+    }
+
+    @Override
+    public double getP95Ms() {
+        return getEstadisticas().p95Ms();
+    }
+
+    @Override
+    public double getP99Ms() {
+        return getEstadisticas().p99Ms();
+    }
+
+    @Override
+    public double getMaxMs() {
+        return latencias.maximo() / NANOS_POR_MS;
+    }
+
+    @Override
+    public void reiniciar() {
+        latencias.reiniciar();
+        llamadas.reset();
+        errores.reset();
+        filas.reset();
+    }
+
+    /**
+     * Medición en curso de una llamada.
+     */
+    static final class Medicion implements AutoCloseable {
+        private final MetricaOperacion metrica;
+        private final long inicio;
+        private long filas = -1;
+
+        private Medicion(MetricaOperacion metrica, long inicio) {
+            this.metrica = metrica;
+            this.inicio = inicio;
+        }
+
+        /**
+         * Marca la llamada como correcta.
+         *
+         * @param filas Filas devueltas o afectadas
+         */
+        void exito(long filas) {
+            this.filas = filas;
+        }
+
+        @Override
+        public void close() {
+            metrica.registrar(System.nanoTime() - inicio, filas, filas >= 0);
+        }
+    }
+}
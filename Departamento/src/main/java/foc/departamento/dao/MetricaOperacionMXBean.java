@@ -0,0 +1,28 @@
+package foc.departamento.dao;
+
+/**
+ * Vista JMX de las métricas de una operación del acceso a datos.
+ * Se publica como {@code foc.departamento:type=OperacionDAO,name=<operación>}.
+ */
+public interface MetricaOperacionMXBean {
+    long getLlamadas();
+
+    long getErrores();
+
+    long getFilas();
+
+    double getFilasPorLlamada();
+
+    double getP50Ms();
+
+    double getP95Ms();
+
+    double getP99Ms();
+
+    double getMaxMs();
+
+    /**
+     * Pone a cero contadores e histograma.
+     */
+    void reiniciar();
+}
@@ -0,0 +1,154 @@
+package foc.departamento.dao;
+
+import foc.departamento.config.DatabaseConfig;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registro singleton de las métricas del acceso a datos: latencias, llamadas, errores y filas
+ * de cada operación del DAO y de la obtención de conexiones.
+ * Cada operación y el pool se publican como MXBeans en el servidor JMX de la plataforma
+ * (dominio {@code foc.departamento}), y un hilo en segundo plano vuelca un resumen al log
+ * cada {@link DatabaseConfig#METRICAS_VOLCADO_MS} milisegundos si ha habido actividad.
+ */
+public class MetricasDAO {
+    private static final Logger LOGGER = Logger.getLogger(MetricasDAO.class.getName());
+    private static final String DOMINIO_JMX = "foc.departamento";
+    private static MetricasDAO instancia;
+
+    private final Map<String, MetricaOperacion> operaciones = new ConcurrentHashMap<>();
+    private volatile PoolConexiones pool;
+    private final List<PoolConexiones> poolsReplicas = new CopyOnWriteArrayList<>();
+    private long llamadasUltimoVolcado;
+
+    private MetricasDAO() {
+        if (DatabaseConfig.METRICAS_VOLCADO_MS > 0) {
+            ScheduledExecutorService volcado = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread hilo = new Thread(r, "metricas-dao-volcado");
+                hilo.setDaemon(true);
+                return hilo;
+            });
+            volcado.scheduleWithFixedDelay(this::volcarSiHayActividad,
+                    DatabaseConfig.METRICAS_VOLCADO_MS, DatabaseConfig.METRICAS_VOLCADO_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Obtiene la única instancia de la clase (Singleton).
+     *
+     * @return Instancia única de MetricasDAO
+     */
+    public static synchronized MetricasDAO getInstancia() {
+        if (instancia == null) {
+            instancia = new MetricasDAO();
+        }
+        return instancia;
+    }
+
+    /**
+     * Obtiene (o crea y publica por JMX) las métricas de una operación.
+     *
+     * @param nombre Nombre de la operación, p. ej. {@code DepartamentoDAO.insertar}
+     * @return Métricas de la operación, compartidas por todas las instancias que la midan
+     */
+    MetricaOperacion operacion(String nombre) {
+        return operaciones.computeIfAbsent(nombre, n -> {
+            MetricaOperacion metrica = new MetricaOperacion();
+            publicar(metrica, "type=OperacionDAO,name=" + n);
+            return metrica;
+        });
+    }
+
+    /**
+     * Publica el pool por JMX y lo incluye en el volcado periódico.
+     */
+    void registrarPool(PoolConexiones pool) {
+        this.pool = pool;
+        publicar(pool, "type=PoolConexiones");
+    }
+
+    /**
+     * Publica por JMX el pool de una réplica de lectura ({@code name=replicaN}) y lo incluye en el volcado.
+     */
+    void registrarPoolReplica(PoolConexiones poolReplica) {
+        poolsReplicas.add(poolReplica);
+        publicar(poolReplica, "type=PoolConexiones,name=replica" + poolsReplicas.size());
+    }
+
+    /**
+     * Obtiene las métricas de todas las operaciones medidas hasta ahora.
+     *
+     * @return Estadísticas por nombre de operación, en orden alfabético
+     */
+    public Map<String, EstadisticasOperacion> getEstadisticas() {
+        Map<String, EstadisticasOperacion> estadisticas = new TreeMap<>();
+        operaciones.forEach((nombre, metrica) -> estadisticas.put(nombre, metrica.getEstadisticas()));
+        return estadisticas;
+    }
+
+    /**
+     * Genera el resumen de texto que se vuelca periódicamente al log.
+     *
+     * @return Una línea por operación, precedidas del estado del pool y de las réplicas si los hay
+     */
+    public String volcar() {
+        StringBuilder texto = new StringBuilder("Métricas de acceso a datos");
+        PoolConexiones poolActual = pool;
+        if (poolActual != null) {
+            texto.append(System.lineSeparator()).append("  ").append(poolActual.getEstadisticas());
+        }
+        for (int i = 0; i < poolsReplicas.size(); i++) {
+            texto.append(System.lineSeparator()).append("  replica").append(i + 1).append(": ")
+                    .append(poolsReplicas.get(i).getEstadisticas());
+        }
+        getEstadisticas().forEach((nombre, estadisticas) ->
+                texto.append(System.lineSeparator()).append("  ").append(nombre).append(": ").append(estadisticas));
+        return texto.toString();
+    }
+
+    private void volcarSiHayActividad() {
+        try {
+            long llamadas = 0;
+            for (MetricaOperacion metrica : operaciones.values()) {
+                llamadas += metrica.getLlamadas();
+            }
+            if (llamadas != llamadasUltimoVolcado) {
+                llamadasUltimoVolcado = llamadas;
+                LOGGER.info(volcar());
+            }
+        } catch (RuntimeException e) {
+            // Una excepción cancelaría las siguientes ejecuciones de la tarea programada
+            LOGGER.log(Level.WARNING, "Error al volcar las métricas: {0}", e.getMessage());
+        }
+    }
+
+    private static void publicar(Object mbean, String propiedades) {
+        MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName nombre = new ObjectName(DOMINIO_JMX + ":" + propiedades);
+            try {
+                servidor.registerMBean(mbean, nombre);
+            } catch (InstanceAlreadyExistsException e) {
+                // Un pool recreado sustituye al anterior
+                servidor.unregisterMBean(nombre);
+                servidor.registerMBean(mbean, nombre);
+            }
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "No se pudo publicar por JMX {0}: {1}", new Object[]{propiedades, e.getMessage()});
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package foc.departamento.dao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Crea y evoluciona el esquema de la base de datos aplicando en orden los scripts de
+ * {@code db/} que aún no se hayan aplicado. Cada migración aplicada queda anotada en la tabla
+ * {@code esquema_migraciones} con una suma de control de sus sentencias, de modo que cada
+ * cliente sólo ejecuta las nuevas y se detecta si se ha modificado un script ya aplicado.
+ * <p>
+ * El esquema sólo se añade al final de {@link #MIGRACIONES}: un cambio sobre lo ya aplicado
+ * es una migración nueva. MariaDB confirma cada sentencia DDL por separado, así que una
+ * migración que falla a medias no se deshace; por eso los scripts deben poder repetirse
+ * ({@code IF NOT EXISTS}, {@code CREATE OR REPLACE}) y se vuelven a ejecutar enteros en el
+ * siguiente arranque. Un bloqueo con nombre evita que dos clientes que arrancan a la vez
+ * apliquen la misma migración.
+ */
+public class MigracionesBD {
+    private static final Logger LOGGER = Logger.getLogger(MigracionesBD.class.getName());
+    private static final String BLOQUEO = "departamentos_migraciones";
+    private static final int ESPERA_BLOQUEO_S = 60;
+
+    /**
+     * Migración del esquema: versión, descripción y script (recurso del classpath).
+     */
+    private record Migracion(int version, String descripcion, String script) {
+    }
+
+    private static final List<Migracion> MIGRACIONES = List.of(
+            new Migracion(1, "Tabla de departamentos", "/db/tabla_departamentos.sql"),
+            new Migracion(2, "Índices secundarios para el filtrado", "/db/indices_departamentos.sql"),
+            new Migracion(3, "Registro de cambios para la sincronización", "/db/cambios_departamentos.sql"),
+            new Migracion(4, "Orden binario del código", "/db/codigo_binario.sql")
+    );
+
+    private static final String SQL_CREAR_REGISTRO = "CREATE TABLE IF NOT EXISTS esquema_migraciones ("
+            + "version INT NOT NULL PRIMARY KEY, "
+            + "descripcion VARCHAR(100) NOT NULL, "
+            + "suma_control BIGINT NOT NULL, "
+            + "aplicada TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)";
+    private static final String SQL_LEER_REGISTRO = "SELECT version, suma_control FROM esquema_migraciones";
+    private static final String SQL_ANOTAR =
+            "INSERT INTO esquema_migraciones (version, descripcion, suma_control) VALUES (?, ?, ?)";
+    private static final String SQL_BLOQUEAR = "SELECT GET_LOCK(?, ?)";
+    private static final String SQL_DESBLOQUEAR = "SELECT RELEASE_LOCK(?)";
+
+    private final ConexionBD conexionBD;
+
+    /**
+     * Constructor que aplica las migraciones sobre el primario de {@link ConexionBD}.
+     */
+    public MigracionesBD() {
+        this.conexionBD = ConexionBD.getInstancia();
+    }
+
+    /**
+     * Aplica las migraciones pendientes. Las réplicas las reciben por la replicación.
+     *
+     * @return Número de migraciones aplicadas (0 si el esquema ya estaba al día)
+     * @throws SQLException Si falla una migración, no se obtiene el bloqueo o un script ya
+     *                      aplicado ha cambiado
+     */
+    public int migrar() throws SQLException {
+        try (Connection conn = conexionBD.getConexion()) {
+            bloquear(conn);
+            try {
+                return aplicarPendientes(conn);
+            } finally {
+                desbloquear(conn);
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.SEVERE, "Error al migrar el esquema de la base de datos: {0}", e.getMessage());
+            throw e;
+        }
+    }
+
+    private int aplicarPendientes(Connection conn) throws SQLException {
+        Map<Integer, Long> aplicadas = new HashMap<>();
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute(SQL_CREAR_REGISTRO);
+            try (ResultSet rs = stmt.executeQuery(SQL_LEER_REGISTRO)) {
+                while (rs.next()) {
+                    aplicadas.put(rs.getInt(1), rs.getLong(2));
+                }
+            }
+        }
+
+        int aplicadasAhora = 0;
+        for (Migracion migracion : MIGRACIONES) {
+            List<String> sentencias = leerScript(migracion.script());
+            long sumaControl = sumaControl(sentencias);
+            Long anotada = aplicadas.remove(migracion.version());
+            if (anotada != null) {
+                if (anotada != sumaControl) {
+                    throw new SQLException("El script " + migracion.script() + " de la migración "
+                            + migracion.version() + " ha cambiado después de aplicarse");
+                }
+                continue;
+            }
+
+            long inicio = System.nanoTime();
+            try (Statement stmt = conn.createStatement()) {
+                for (String sentencia : sentencias) {
+                    stmt.execute(sentencia);
+                }
+            }
+            try (PreparedStatement stmt = conn.prepareStatement(SQL_ANOTAR)) {
+                stmt.setInt(1, migracion.version());
+                stmt.setString(2, migracion.descripcion());
+                stmt.setLong(3, sumaControl);
+                stmt.executeUpdate();
+            }
+            aplicadasAhora++;
+            LOGGER.log(Level.INFO, "Migración {0} aplicada ({1}) en {2} ms", new Object[]{
+                    migracion.version(), migracion.descripcion(), (System.nanoTime() - inicio) / 1_000_000});
+        }
+        if (!aplicadas.isEmpty()) {
+            // Otro cliente más reciente ya ha evolucionado el esquema
+            LOGGER.log(Level.WARNING, "La base de datos tiene migraciones que esta versión no conoce: {0}",
+                    aplicadas.keySet());
+        }
+        return aplicadasAhora;
+    }
+
+    private static void bloquear(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_BLOQUEAR)) {
+            stmt.setString(1, BLOQUEO);
+            stmt.setInt(2, ESPERA_BLOQUEO_S);
+            try (ResultSet rs = stmt.executeQuery()) {
+                if (!rs.next() || rs.getInt(1) != 1) {
+                    throw new SQLException("No se ha obtenido el bloqueo de las migraciones en "
+                            + ESPERA_BLOQUEO_S + " s: otro cliente está migrando el esquema");
+                }
+            }
+        }
+    }
+
+    private static void desbloquear(Connection conn) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(SQL_DESBLOQUEAR)) {
+            stmt.setString(1, BLOQUEO);
+            stmt.executeQuery().close();
+        }
+    }
+
+    /**
+     * Suma de control de las sentencias, sin comentarios ni líneas en blanco, para que
+     * documentar un script ya aplicado no cuente como un cambio.
+     */
+    private static long sumaControl(List<String> sentencias) {
+        CRC32 crc = new CRC32();
+        for (String sentencia : sentencias) {
+            crc.update(sentencia.getBytes(StandardCharsets.UTF_8));
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Lee las sentencias de un script. Cada sentencia termina en la primera línea que acaba
+     * en punto y coma, así que los scripts no pueden usar bloques BEGIN ... END.
+     */
+    private static List<String> leerScript(String recurso) throws SQLException {
+        try (InputStream entrada = MigracionesBD.class.getResourceAsStream(recurso)) {
+            if (entrada == null) {
+                throw new SQLException("No se encuentra el script " + recurso);
+            }
+            List<String> sentencias = new ArrayList<>();
+            StringBuilder actual = new StringBuilder();
+            for (String linea : new String(entrada.readAllBytes(), StandardCharsets.UTF_8).split("\n")) {
+                String limpia = linea.strip();
+                if (limpia.isEmpty() || limpia.startsWith("--")) {
+                    continue;
+                }
+                actual.append(limpia).append('\n');
+                if (limpia.endsWith(";")) {
+                    sentencias.add(actual.substring(0, actual.lastIndexOf(";")));
+                    actual.setLength(0);
+                }
+            }
+            if (!actual.isEmpty()) {
+                throw new SQLException("El script " + recurso + " termina sin punto y coma");
+            }
+            return sentencias;
+        } catch (IOException e) {
+            throw new SQLException("Error al leer el script " + recurso, e);
+        }
+    }
+}
@@ -0,0 +1,547 @@
+package foc.departamento.dao;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Pool acotado de conexiones JDBC.
+ * Mantiene entre {@code minimo} y {@code maximo} conexiones físicas abiertas, valida las
+ * conexiones al prestarlas, expulsa las inactivas y avisa de las que no se devuelven.
+ * Mide cuánto tiempo se retiene cada préstamo y avisa de los que superan {@code retencionMaxMs}.
+ * Las conexiones prestadas son proxies: al cerrarlas vuelven al pool en lugar de cerrarse,
+ * y cada conexión física conserva su propia caché de sentencias preparadas.
+ * Implementa {@link PoolConexionesMXBean} para poder consultarse por JMX.
+ */
+class PoolConexiones implements PoolConexionesMXBean {
+    private static final Logger LOGGER = Logger.getLogger(PoolConexiones.class.getName());
+
+    private final String url;
+    private final String usuario;
+    private final String password;
+    private final int minimo;
+    private final int maximo;
+    private final long esperaMaxMs;
+    private final long inactividadMaxMs;
+    private final long vidaMaxMs;
+    private final long validacionMs;
+    private final long deteccionFugasMs;
+    private final long retencionMaxMs;
+    private final boolean trazarPrestamos;
+    private final int capacidadCacheSentencias;
+
+    // Conexiones libres, la más reciente primero (LIFO) para reutilizar las que están "calientes"
+    private final LinkedBlockingDeque<ConexionFisica> libres = new LinkedBlockingDeque<>();
+    private final Set<ConexionFisica> prestadas = ConcurrentHashMap.newKeySet();
+    // Un permiso por cada conexión que se puede prestar; acota el total de conexiones físicas
+    private final Semaphore permisos;
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService mantenimiento;
+    private volatile boolean cerrado;
+
+    // Estadísticas
+    private final LongAdder prestamos = new LongAdder();
+    private final LongAdder esperaTotalNanos = new LongAdder();
+    private final AtomicLong esperaMaxNanos = new AtomicLong();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder fugas = new LongAdder();
+    private final LongAdder retencionesLargas = new LongAdder();
+    private final MetricaOperacion metricaRetencion = MetricasDAO.getInstancia().operacion("ConexionBD.retencion");
+    private final LongAdder creadas = new LongAdder();
+    private final LongAdder destruidas = new LongAdder();
+    private final Map<String, CacheSentencias.Contadores> contadoresSentencias = new ConcurrentHashMap<>();
+
+    PoolConexiones(String url, String usuario, String password, int minimo, int maximo,
+                   long esperaMaxMs, long inactividadMaxMs, long vidaMaxMs,
+                   long validacionMs, long deteccionFugasMs, long retencionMaxMs, boolean trazarPrestamos,
+                   long mantenimientoMs, int capacidadCacheSentencias) {
+        if (minimo < 0 || maximo < 1 || minimo > maximo) {
+            throw new IllegalArgumentException("Tamaño de pool inválido: mínimo=" + minimo + ", máximo=" + maximo);
+        }
+        this.url = url;
+        this.usuario = usuario;
+        this.password = password;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.esperaMaxMs = esperaMaxMs;
+        this.inactividadMaxMs = inactividadMaxMs;
+        this.vidaMaxMs = vidaMaxMs;
+        this.validacionMs = validacionMs;
+        this.deteccionFugasMs = deteccionFugasMs;
+        this.retencionMaxMs = retencionMaxMs;
+        this.trazarPrestamos = trazarPrestamos;
+        this.capacidadCacheSentencias = capacidadCacheSentencias;
+        this.permisos = new Semaphore(maximo, true);
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "pool-conexiones-mantenimiento");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        mantenimiento.scheduleWithFixedDelay(this::mantener, mantenimientoMs, mantenimientoMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Presta una conexión del pool, creando una nueva si no hay libres y no se ha alcanzado el máximo.
+     *
+     * @return Conexión prestada; al cerrarla se devuelve al pool
+     * @throws SQLException Si se agota el tiempo de espera o no se puede conectar
+     */
+    Connection obtener() throws SQLException {
+        if (cerrado) {
+            throw new SQLException("El pool de conexiones está cerrado");
+        }
+        long inicio = System.nanoTime();
+        try {
+            if (!permisos.tryAcquire(esperaMaxMs, TimeUnit.MILLISECONDS)) {
+                timeouts.increment();
+                throw new SQLTransientConnectionException(
+                        "Tiempo de espera agotado (" + esperaMaxMs + " ms) al obtener una conexión del pool");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrumpido mientras se esperaba una conexión", e);
+        }
+
+        try {
+            ConexionFisica fisica;
+            while ((fisica = libres.pollFirst()) != null && !esValida(fisica)) {
+                destruir(fisica);
+            }
+            // Con un permiso y sin libres siempre queda hueco: cada conexión que no está libre
+            // la tiene quien tiene un permiso
+            if (fisica == null && (fisica = crear(maximo)) == null) {
+                throw new SQLTransientConnectionException("El pool ya tiene " + maximo + " conexiones");
+            }
+            registrarEspera(System.nanoTime() - inicio);
+            fisica.prestar(trazarPrestamos);
+            prestadas.add(fisica);
+            return fisica.nuevoProxy();
+        } catch (SQLException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @param conexion Conexión obtenida de algún pool
+     * @return true si la ha prestado este pool
+     */
+    boolean presto(Connection conexion) {
+        return Proxy.isProxyClass(conexion.getClass())
+                && Proxy.getInvocationHandler(conexion) instanceof ManejadorPrestamo manejador
+                && manejador.pool() == this;
+    }
+
+    /**
+     * @return Conexiones prestadas al hilo actual y aún no devueltas
+     */
+    int prestadasAlHiloActual() {
+        Thread actual = Thread.currentThread();
+        int cuenta = 0;
+        for (ConexionFisica fisica : prestadas) {
+            if (fisica.prestadaA == actual) {
+                cuenta++;
+            }
+        }
+        return cuenta;
+    }
+
+    /**
+     * Crea por adelantado las conexiones mínimas del pool. Lo llaman a la vez el arranque y el
+     * mantenimiento: cada conexión se crea con un permiso, como las de {@link #obtener()}, y con
+     * su hueco reservado en el total, así que entre todos no se pasa del mínimo ni del máximo.
+     * Si no hay permisos libres no espera: el pool ya está en uso.
+     */
+    void precalentar() {
+        while (!cerrado && permisos.tryAcquire()) {
+            try {
+                ConexionFisica fisica = crear(minimo);
+                if (fisica == null) {
+                    return;
+                }
+                libres.offerLast(fisica);
+            } catch (SQLException e) {
+                LOGGER.log(Level.WARNING, "No se pudo precalentar el pool: {0}", e.getMessage());
+                return;
+            } finally {
+                permisos.release();
+            }
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones libres y marca el pool como cerrado.
+     * Las conexiones prestadas se cierran al devolverse.
+     */
+    void cerrar() {
+        cerrado = true;
+        mantenimiento.shutdownNow();
+        ConexionFisica fisica;
+        while ((fisica = libres.pollFirst()) != null) {
+            destruir(fisica);
+        }
+    }
+
+    /**
+     * @return Instantánea de las estadísticas actuales del pool
+     */
+    EstadisticasPool getEstadisticas() {
+        long numPrestamos = prestamos.sum();
+        double esperaMediaMs = numPrestamos == 0 ? 0 : esperaTotalNanos.sum() / (double) numPrestamos / 1_000_000.0;
+        return new EstadisticasPool(
+                prestadas.size(),
+                libres.size(),
+                total.get(),
+                maximo,
+                permisos.getQueueLength(),
+                numPrestamos,
+                esperaMediaMs,
+                esperaMaxNanos.get() / 1_000_000.0,
+                timeouts.sum(),
+                fugas.sum(),
+                retencionesLargas.sum(),
+                creadas.sum(),
+                destruidas.sum()
+        );
+    }
+
+    /**
+     * Obtiene los aciertos y fallos de la caché de sentencias para un SQL,
+     * sumando todas las conexiones del pool.
+     *
+     * @param sql Texto SQL de la sentencia
+     * @return Estadísticas de la sentencia (a cero si nunca se ha preparado)
+     */
+    EstadisticasCacheSentencias getEstadisticasSentencia(String sql) {
+        CacheSentencias.Contadores contador = contadoresSentencias.get(sql);
+        return contador == null ? new EstadisticasCacheSentencias(0, 0) : contador.instantanea();
+    }
+
+    @Override
+    public int getActivas() {
+        return prestadas.size();
+    }
+
+    @Override
+    public int getLibres() {
+        return libres.size();
+    }
+
+    @Override
+    public int getTotal() {
+        return total.get();
+    }
+
+    @Override
+    public int getMaximo() {
+        return maximo;
+    }
+
+    @Override
+    public int getEsperando() {
+        return permisos.getQueueLength();
+    }
+
+    @Override
+    public long getPrestamos() {
+        return prestamos.sum();
+    }
+
+    @Override
+    public double getEsperaMediaMs() {
+        return getEstadisticas().esperaMediaMs();
+    }
+
+    @Override
+    public double getEsperaMaxMs() {
+        return esperaMaxNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    @Override
+    public long getFugasDetectadas() {
+        return fugas.sum();
+    }
+
+    @Override
+    public long getRetencionesLargas() {
+        return retencionesLargas.sum();
+    }
+
+    @Override
+    public long getCreadas() {
+        return creadas.sum();
+    }
+
+    @Override
+    public long getDestruidas() {
+        return destruidas.sum();
+    }
+
+    /**
+     * Crea una conexión física si el pool tiene menos de {@code limite}. El hueco se reserva en el
+     * total antes de conectar, para que dos hilos que crean a la vez no pasen del límite.
+     *
+     * @return La conexión creada, o null si el pool ya tiene {@code limite} conexiones
+     */
+    private ConexionFisica crear(int limite) throws SQLException {
+        int actual;
+        do {
+            actual = total.get();
+            if (actual >= limite) {
+                return null;
+            }
+        } while (!total.compareAndSet(actual, actual + 1));
+        try {
+            Connection real = DriverManager.getConnection(url, usuario, password);
+            creadas.increment();
+            LOGGER.fine("Nueva conexión física creada para el pool");
+            return new ConexionFisica(real);
+        } catch (SQLException e) {
+            total.decrementAndGet();
+            LOGGER.log(Level.SEVERE, "Error al conectar con la base de datos: {0}", e.getMessage());
+            throw e;
+        }
+    }
+
+    private void destruir(ConexionFisica fisica) {
+        total.decrementAndGet();
+        destruidas.increment();
+        try {
+            fisica.real.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.FINE, "Error al cerrar una conexión física: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Valida una conexión libre. Sólo se hace el ping al servidor si lleva un tiempo sin usarse,
+     * para que el préstamo habitual no añada un viaje de ida y vuelta.
+     */
+    private boolean esValida(ConexionFisica fisica) {
+        long ahora = System.currentTimeMillis();
+        if (ahora - fisica.creadaEn > vidaMaxMs) {
+            return false;
+        }
+        try {
+            if (fisica.real.isClosed()) {
+                return false;
+            }
+            return ahora - fisica.ultimoUso < validacionMs || fisica.real.isValid(2);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void devolver(ConexionFisica fisica) {
+        prestadas.remove(fisica);
+        registrarRetencion(fisica);
+        fisica.prestadaA = null;
+        if (fisica.sentencias != null) {
+            fisica.sentencias.liberarTodas();
+        }
+        fisica.ultimoUso = System.currentTimeMillis();
+        try {
+            if (cerrado || fisica.real.isClosed()) {
+                destruir(fisica);
+                return;
+            }
+            // Deshacer una transacción que se haya quedado abierta
+            if (!fisica.real.getAutoCommit()) {
+                fisica.real.rollback();
+                fisica.real.setAutoCommit(true);
+            }
+            libres.offerFirst(fisica);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Conexión descartada al devolverla al pool: {0}", e.getMessage());
+            destruir(fisica);
+        } finally {
+            permisos.release();
+        }
+    }
+
+    private void registrarRetencion(ConexionFisica fisica) {
+        long nanos = System.nanoTime() - fisica.prestadaEnNanos;
+        metricaRetencion.registrar(nanos, 0, true);
+        if (retencionMaxMs > 0 && nanos > TimeUnit.MILLISECONDS.toNanos(retencionMaxMs)) {
+            retencionesLargas.increment();
+            // Sin la traza del préstamo, la de la devolución: se está en el hilo que la retuvo
+            Exception origen = fisica.origenPrestamo != null ? fisica.origenPrestamo
+                    : new Exception("Devolución de la conexión retenida");
+            LOGGER.log(Level.WARNING, "Conexión retenida " + TimeUnit.NANOSECONDS.toMillis(nanos)
+                    + " ms (máximo " + retencionMaxMs + " ms)", origen);
+        }
+    }
+
+    private void registrarEspera(long nanos) {
+        prestamos.increment();
+        esperaTotalNanos.add(nanos);
+        esperaMaxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Tarea periódica: expulsa conexiones inactivas o caducadas, avisa de posibles fugas
+     * y repone el mínimo de conexiones.
+     */
+    private void mantener() {
+        try {
+            long ahora = System.currentTimeMillis();
+            for (ConexionFisica fisica : libres) {
+                boolean inactiva = ahora - fisica.ultimoUso > inactividadMaxMs && total.get() > minimo;
+                boolean caducada = ahora - fisica.creadaEn > vidaMaxMs;
+                if ((inactiva || caducada) && libres.removeFirstOccurrence(fisica)) {
+                    destruir(fisica);
+                }
+            }
+
+            if (deteccionFugasMs > 0) {
+                for (ConexionFisica fisica : prestadas) {
+                    if (!fisica.fugaNotificada && ahora - fisica.prestadaEn > deteccionFugasMs) {
+                        fisica.fugaNotificada = true;
+                        fugas.increment();
+                        LOGGER.log(Level.WARNING, "Posible fuga de conexión: prestada hace más de "
+                                + deteccionFugasMs + " ms sin devolverse", origenFuga(fisica));
+                    }
+                }
+            }
+
+            precalentar();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error en el mantenimiento del pool: {0}", e.getMessage());
+        }
+    }
+
+    /**
+     * Traza del préstamo si se capturó; si no, dónde está ahora el hilo que tiene la conexión,
+     * que en una fuga suele bastar para localizarla y no cuesta nada en los préstamos normales.
+     */
+    private static Exception origenFuga(ConexionFisica fisica) {
+        if (fisica.origenPrestamo != null) {
+            return fisica.origenPrestamo;
+        }
+        Thread hilo = fisica.prestadaA;
+        if (hilo == null) {
+            return null;
+        }
+        Exception traza = new Exception("Estado actual del hilo " + hilo.getName()
+                + " que tiene la conexión (departamento.pool.trazarPrestamos=true para el origen del préstamo)");
+        traza.setStackTrace(hilo.getStackTrace());
+        return traza;
+    }
+
+    /**
+     * Conexión física del pool junto con sus marcas de tiempo.
+     */
+    private final class ConexionFisica {
+        private final Connection real;
+        private final CacheSentencias sentencias;
+        private final long creadaEn = System.currentTimeMillis();
+        private volatile long ultimoUso = creadaEn;
+        private volatile long prestadaEn;
+        private volatile long prestadaEnNanos;
+        private volatile Thread prestadaA;
+        private volatile boolean fugaNotificada;
+        // Sólo con trazarPrestamos: capturar la pila en cada préstamo es caro
+        private volatile Exception origenPrestamo;
+
+        private ConexionFisica(Connection real) {
+            this.real = real;
+            this.sentencias = capacidadCacheSentencias > 0
+                    ? new CacheSentencias(real, capacidadCacheSentencias, contadoresSentencias)
+                    : null;
+        }
+
+        private void prestar(boolean capturarOrigen) {
+            prestadaEn = System.currentTimeMillis();
+            prestadaEnNanos = System.nanoTime();
+            prestadaA = Thread.currentThread();
+            fugaNotificada = false;
+            origenPrestamo = capturarOrigen ? new Exception("Origen del préstamo de la conexión") : null;
+        }
+
+        /**
+         * Crea un proxy nuevo por préstamo, de modo que un manejador ya cerrado
+         * no pueda usar la conexión física después de devolverla.
+         */
+        private Connection nuevoProxy() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new ManejadorPrestamo(this));
+        }
+    }
+
+    /**
+     * Intercepta las llamadas a la conexión prestada: {@code close()} la devuelve al pool
+     * y cualquier uso posterior falla.
+     */
+    private final class ManejadorPrestamo implements InvocationHandler {
+        private final ConexionFisica fisica;
+        private boolean devuelta;
+
+        private ManejadorPrestamo(ConexionFisica fisica) {
+            this.fisica = fisica;
+        }
+
+        private PoolConexiones pool() {
+            return PoolConexiones.this;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!devuelta) {
+                        devuelta = true;
+                        devolver(fisica);
+                    }
+                    return null;
+                case "isClosed":
+                    return devuelta || fisica.real.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "ConexionPool[" + fisica.real + (devuelta ? ", devuelta" : "") + "]";
+                default:
+                    break;
+            }
+            if (devuelta) {
+                throw new SQLException("La conexión ya se ha devuelto al pool");
+            }
+            if (fisica.sentencias != null && args != null && args.length == 1
+                    && method.getName().equals("prepareStatement")) {
+                return fisica.sentencias.preparar((String) args[0], (Connection) proxy);
+            }
+            try {
+                return method.invoke(fisica.real, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package foc.departamento.dao;
+
+/**
+ * Vista JMX del estado del pool de conexiones.
+ * Se publica como {@code foc.departamento:type=PoolConexiones}; los campos tienen el mismo
+ * significado que en {@link EstadisticasPool}.
+ */
+public interface PoolConexionesMXBean {
+    int getActivas();
+
+    int getLibres();
+
+    int getTotal();
+
+    int getMaximo();
+
+    int getEsperando();
+
+    long getPrestamos();
+
+    double getEsperaMediaMs();
+
+    double getEsperaMaxMs();
+
+    long getTimeouts();
+
+    long getFugasDetectadas();
+
+    long getRetencionesLargas();
+
+    long getCreadas();
+
+    long getDestruidas();
+}
@@ -0,0 +1,18 @@
+package foc.departamento.dao;
+
+/**
+ * Avance de una importación en curso.
+ *
+ * @param lineasLeidas Líneas del fichero leídas hasta ahora
+ * @param bytesLeidos Bytes del fichero leídos hasta ahora
+ * @param bytesTotales Tamaño del fichero
+ */
+public record ProgresoImportacion(long lineasLeidas, long bytesLeidos, long bytesTotales) {
+
+    /**
+     * @return Fracción leída entre 0 y 1
+     */
+    public double fraccion() {
+        return bytesTotales == 0 ? 1 : Math.min(1, bytesLeidos / (double) bytesTotales);
+    }
+}
@@ -0,0 +1,224 @@
+package foc.departamento.dao;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Réplicas de solo lectura a las que {@link ConexionBD} envía las consultas, cada una con su pool.
+ * Un hilo en segundo plano comprueba periódicamente que responden y mide su latencia (media móvil
+ * del tiempo de un ping), que es lo que usa la selección por menor latencia, y su retraso de
+ * replicación ({@code Seconds_Behind_Master}).
+ * Una réplica que falla al prestar una conexión deja de usarse hasta que vuelve a responder a la
+ * comprobación, y una que va más retrasada de lo que se tolera, o que no replica, hasta que se
+ * pone al día: las sesiones que ya no leen del primario tras escribir no verían su escritura.
+ * Mientras tanto se prueba la siguiente, y sin ninguna disponible {@link #obtener()} devuelve null
+ * para que se lea del primario. Un servidor que no es réplica de otro se considera al día.
+ */
+class ReplicasLectura {
+    private static final Logger LOGGER = Logger.getLogger(ReplicasLectura.class.getName());
+    private static final int TIEMPO_PING_S = 2;
+    private static final String SQL_ESTADO_REPLICACION = "SHOW SLAVE STATUS";
+
+    /**
+     * Cómo se elige réplica para cada lectura.
+     */
+    enum Seleccion {
+        // Por turnos entre las disponibles
+        ROTACION,
+        // La disponible con menor latencia medida
+        MENOR_LATENCIA
+    }
+
+    private static final class Replica {
+        private final String url;
+        private final PoolConexiones pool;
+        private volatile boolean disponible = true;
+        // Va más retrasada de lo que se tolera, o no está replicando
+        private volatile boolean retrasada;
+        // Media móvil exponencial del ping; 0 hasta la primera medida
+        private volatile long latenciaNanos;
+
+        private Replica(String url, PoolConexiones pool) {
+            this.url = url;
+            this.pool = pool;
+        }
+    }
+
+    private final List<Replica> replicas = new ArrayList<>();
+    private final Seleccion seleccion;
+    private final long retrasoMaxMs;
+    private final AtomicInteger turno = new AtomicInteger();
+    private final ScheduledExecutorService comprobacion;
+
+    /**
+     * @param urls URLs JDBC de las réplicas
+     * @param crearPool Crea el pool de cada réplica a partir de su URL
+     * @param seleccion Cómo elegir réplica
+     * @param comprobacionMs Intervalo de la comprobación de disponibilidad, latencia y retraso
+     * @param retrasoMaxMs Retraso de replicación a partir del cual una réplica deja de usarse
+     */
+    ReplicasLectura(List<String> urls, Function<String, PoolConexiones> crearPool, Seleccion seleccion,
+                    long comprobacionMs, long retrasoMaxMs) {
+        this.seleccion = seleccion;
+        this.retrasoMaxMs = retrasoMaxMs;
+        for (String url : urls) {
+            replicas.add(new Replica(url, crearPool.apply(url)));
+        }
+        comprobacion = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "replicas-lectura-comprobacion");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        comprobacion.scheduleWithFixedDelay(this::comprobar, 0, comprobacionMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Presta una conexión de una réplica disponible.
+     *
+     * @return Conexión prestada, o null si ninguna réplica la ha podido dar
+     */
+    Connection obtener() {
+        for (Replica replica : candidatas()) {
+            try {
+                return replica.pool.obtener();
+            } catch (SQLTransientConnectionException e) {
+                // Pool agotado: la réplica funciona pero está ocupada, se prueba otra
+                LOGGER.log(Level.FINE, "Réplica {0} ocupada: {1}", new Object[]{replica.url, e.getMessage()});
+            } catch (SQLException e) {
+                if (replica.disponible) {
+                    replica.disponible = false;
+                    LOGGER.log(Level.WARNING, "Réplica {0} no disponible, se deja de usar: {1}",
+                            new Object[]{replica.url, e.getMessage()});
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return Réplicas disponibles en el orden en que deben probarse
+     */
+    private List<Replica> candidatas() {
+        List<Replica> disponibles = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica.disponible && !replica.retrasada) {
+                disponibles.add(replica);
+            }
+        }
+        if (disponibles.size() > 1) {
+            if (seleccion == Seleccion.MENOR_LATENCIA) {
+                disponibles.sort(Comparator.comparingLong(replica -> replica.latenciaNanos));
+            } else {
+                // Rotar para empezar por la siguiente a la anterior, conservando el resto como respaldo
+                int inicio = Math.floorMod(turno.getAndIncrement(), disponibles.size());
+                List<Replica> rotadas = new ArrayList<>(disponibles.subList(inicio, disponibles.size()));
+                rotadas.addAll(disponibles.subList(0, inicio));
+                return rotadas;
+            }
+        }
+        return disponibles;
+    }
+
+    private void comprobar() {
+        for (Replica replica : replicas) {
+            try (Connection conexion = replica.pool.obtener()) {
+                long inicio = System.nanoTime();
+                if (!conexion.isValid(TIEMPO_PING_S)) {
+                    throw new SQLException("No responde al ping");
+                }
+                long latencia = System.nanoTime() - inicio;
+                long anterior = replica.latenciaNanos;
+                replica.latenciaNanos = anterior == 0 ? latencia : anterior + (latencia - anterior) / 4;
+                comprobarRetraso(replica, conexion);
+                if (!replica.disponible) {
+                    replica.disponible = true;
+                    LOGGER.log(Level.INFO, "Réplica {0} disponible de nuevo", replica.url);
+                }
+            } catch (SQLException | RuntimeException e) {
+                // Una excepción cancelaría las siguientes ejecuciones de la tarea programada
+                if (replica.disponible) {
+                    replica.disponible = false;
+                    LOGGER.log(Level.WARNING, "Réplica {0} no disponible, se deja de usar: {1}",
+                            new Object[]{replica.url, e.getMessage()});
+                }
+            }
+        }
+    }
+
+    /**
+     * Marca la réplica como retrasada si su retraso llega al tolerado o si no está replicando
+     * ({@code Seconds_Behind_Master} nulo), y la vuelve a usar cuando se pone al día.
+     */
+    private void comprobarRetraso(Replica replica, Connection conexion) throws SQLException {
+        // Sin filas no es réplica de nadie; con varias fuentes cuenta la más retrasada
+        long retrasoMs = 0;
+        try (Statement stmt = conexion.createStatement();
+             ResultSet rs = stmt.executeQuery(SQL_ESTADO_REPLICACION)) {
+            while (rs.next()) {
+                long segundos = rs.getLong("Seconds_Behind_Master");
+                retrasoMs = rs.wasNull() ? Long.MAX_VALUE : Math.max(retrasoMs, TimeUnit.SECONDS.toMillis(segundos));
+            }
+        }
+        boolean retrasada = retrasoMs >= retrasoMaxMs;
+        if (retrasada != replica.retrasada) {
+            replica.retrasada = retrasada;
+            if (retrasada) {
+                LOGGER.log(Level.WARNING, "Réplica {0} retrasada ({1}), se deja de usar", new Object[]{replica.url,
+                        retrasoMs == Long.MAX_VALUE ? "no está replicando" : retrasoMs + " ms"});
+            } else {
+                LOGGER.log(Level.INFO, "Réplica {0} al día de nuevo", replica.url);
+            }
+        }
+    }
+
+    /**
+     * @return Conexiones de las réplicas prestadas al hilo actual
+     */
+    int prestadasAlHiloActual() {
+        int prestadas = 0;
+        for (Replica replica : replicas) {
+            prestadas += replica.pool.prestadasAlHiloActual();
+        }
+        return prestadas;
+    }
+
+    /**
+     * @param sql Texto SQL de la sentencia
+     * @return Aciertos y fallos de la caché de sentencias de esa sentencia en todas las réplicas
+     */
+    EstadisticasCacheSentencias getEstadisticasSentencia(String sql) {
+        EstadisticasCacheSentencias total = new EstadisticasCacheSentencias(0, 0);
+        for (Replica replica : replicas) {
+            total = total.sumar(replica.pool.getEstadisticasSentencia(sql));
+        }
+        return total;
+    }
+
+    /**
+     * Abre por adelantado las conexiones mínimas de cada réplica.
+     */
+    void precalentar() {
+        replicas.forEach(replica -> replica.pool.precalentar());
+    }
+
+    /**
+     * Detiene la comprobación y cierra los pools de las réplicas.
+     */
+    void cerrar() {
+        comprobacion.shutdownNow();
+        replicas.forEach(replica -> replica.pool.cerrar());
+    }
+}
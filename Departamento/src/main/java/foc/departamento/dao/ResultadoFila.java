@@ -0,0 +1,32 @@
+package foc.departamento.dao;
+
+import foc.departamento.model.Departamento;
+
+/**
+ * Resultado de una fila dentro de una operación por lotes.
+ *
+ * @param departamento Departamento procesado
+ * @param estado Qué ocurrió con la fila
+ * @param error Mensaje de error si la fila se rechazó, o null
+ */
+public record ResultadoFila(Departamento departamento, Estado estado, String error) {
+
+    /**
+     * Posibles resultados de una fila.
+     */
+    public enum Estado {
+        INSERTADO,
+        ACTUALIZADO,
+        SIN_CAMBIOS,
+        RECHAZADO,
+        // Acumulado en la unidad de trabajo, sin aplicar aún en la base de datos
+        PENDIENTE
+    }
+
+    /**
+     * @return true si la fila se aplicó en la base de datos o quedó pendiente de aplicar
+     */
+    public boolean correcta() {
+        return estado != Estado.RECHAZADO;
+    }
+}
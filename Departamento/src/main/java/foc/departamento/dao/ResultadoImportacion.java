@@ -0,0 +1,101 @@
+package foc.departamento.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultado de la importación de un fichero de departamentos.
+ * Para que la memoria no dependa del tamaño del fichero sólo se guardan las primeras
+ * {@value #MAX_RECHAZADAS_GUARDADAS} líneas rechazadas; el resto sólo se cuentan.
+ */
+public class ResultadoImportacion {
+    static final int MAX_RECHAZADAS_GUARDADAS = 1000;
+
+    /**
+     * Forma en que se cargaron las filas válidas.
+     */
+    public enum Metodo {
+        LOAD_DATA,
+        LOTES
+    }
+
+    private final List<LineaRechazada> rechazadas = new ArrayList<>();
+    private long lineasLeidas;
+    private long insertadas;
+    private long duplicadas;
+    private long numRechazadas;
+    private Metodo metodo;
+
+    void rechazar(long numeroLinea, String motivo) {
+        numRechazadas++;
+        if (rechazadas.size() < MAX_RECHAZADAS_GUARDADAS) {
+            rechazadas.add(new LineaRechazada(numeroLinea, motivo));
+        }
+    }
+
+    void setLineasLeidas(long lineasLeidas) {
+        this.lineasLeidas = lineasLeidas;
+    }
+
+    void sumarInsertadas(long filas) {
+        insertadas += filas;
+    }
+
+    void sumarDuplicadas(long filas) {
+        duplicadas += filas;
+    }
+
+    void setMetodo(Metodo metodo) {
+        this.metodo = metodo;
+    }
+
+    /**
+     * @return Líneas leídas del fichero, incluida la cabecera si la hay
+     */
+    public long getLineasLeidas() {
+        return lineasLeidas;
+    }
+
+    /**
+     * @return Departamentos insertados
+     */
+    public long getInsertadas() {
+        return insertadas;
+    }
+
+    /**
+     * @return Filas válidas que no se insertaron porque el código ya existía; al importar por
+     * lotes los duplicados se cuentan como rechazados, con el mensaje de la base de datos
+     */
+    public long getDuplicadas() {
+        return duplicadas;
+    }
+
+    /**
+     * @return Número total de líneas rechazadas
+     */
+    public long getNumRechazadas() {
+        return numRechazadas;
+    }
+
+    /**
+     * @return Primeras líneas rechazadas con su motivo (sólo lectura)
+     */
+    public List<LineaRechazada> getRechazadas() {
+        return Collections.unmodifiableList(rechazadas);
+    }
+
+    /**
+     * @return Forma en que se cargaron las filas
+     */
+    public Metodo getMetodo() {
+        return metodo;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Importación (%s): %d líneas, %d insertadas, %d duplicadas, %d rechazadas",
+                metodo, lineasLeidas, insertadas, duplicadas, numRechazadas);
+    }
+}
@@ -0,0 +1,57 @@
+package foc.departamento.dao;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resultado de una operación por lotes: un {@link ResultadoFila} por cada departamento,
+ * en el mismo orden en que se recibieron.
+ */
+public class ResultadoLote {
+    private final List<ResultadoFila> filas;
+    private final Map<ResultadoFila.Estado, Integer> recuento = new EnumMap<>(ResultadoFila.Estado.class);
+
+    public ResultadoLote(int capacidad) {
+        this.filas = new ArrayList<>(capacidad);
+    }
+
+    /**
+     * Añade el resultado de una fila.
+     *
+     * @param fila Resultado a añadir
+     */
+    public void agregar(ResultadoFila fila) {
+        filas.add(fila);
+        recuento.merge(fila.estado(), 1, Integer::sum);
+    }
+
+    /**
+     * @return Resultados de cada fila (sólo lectura)
+     */
+    public List<ResultadoFila> getFilas() {
+        return Collections.unmodifiableList(filas);
+    }
+
+    /**
+     * @param estado Estado a contar
+     * @return Número de filas con ese estado
+     */
+    public int contar(ResultadoFila.Estado estado) {
+        return recuento.getOrDefault(estado, 0);
+    }
+
+    /**
+     * @return Filas rechazadas, con su mensaje de error
+     */
+    public List<ResultadoFila> getRechazadas() {
+        return filas.stream().filter(fila -> !fila.correcta()).toList();
+    }
+
+    @Override
+    public String toString() {
+        return "Lote: " + filas.size() + " filas, " + recuento;
+    }
+}
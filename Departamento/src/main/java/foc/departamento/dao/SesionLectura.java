@@ -0,0 +1,57 @@
+package foc.departamento.dao;
+
+/**
+ * Momento de la última escritura confirmada de un cliente, para que sus lecturas vean lo que
+ * ha escrito aunque las réplicas vayan con retraso ({@link ConexionBD#getConexionLectura(SesionLectura)}).
+ * Cada cliente lleva la suya: la interfaz, la del DAO de su controlador; el servicio HTTP, una
+ * por petición rehecha con la marca que el cliente devuelve ({@link #desde(long)}), de modo que
+ * las escrituras de un cliente no mandan al primario las lecturas de los demás.
+ * La marca es la hora del reloj del sistema en milisegundos para que siga valiendo entre
+ * peticiones e instancias del servicio; un desfase entre relojes sólo alarga o acorta el tiempo
+ * que se lee del primario.
+ * Es seguro para uso concurrente.
+ */
+public class SesionLectura {
+    private volatile long ultimaEscrituraMs;
+
+    /**
+     * Crea una sesión sin escrituras: sus lecturas pueden ir a las réplicas.
+     */
+    public SesionLectura() {
+    }
+
+    /**
+     * Rehace la sesión de un cliente a partir de la marca de su última escritura.
+     *
+     * @param marcaEscrituraMs Valor de {@link #getMarcaEscritura()} tras la última escritura, o 0 si no ha escrito
+     * @return Sesión con esa marca
+     */
+    public static SesionLectura desde(long marcaEscrituraMs) {
+        SesionLectura sesion = new SesionLectura();
+        sesion.ultimaEscrituraMs = marcaEscrituraMs;
+        return sesion;
+    }
+
+    /**
+     * @return Hora en milisegundos de la última escritura confirmada, o 0 si no ha habido ninguna
+     */
+    public long getMarcaEscritura() {
+        return ultimaEscrituraMs;
+    }
+
+    /**
+     * Anota que se acaba de confirmar una escritura en el primario. El DAO la llama sólo después
+     * de cada commit que ha ido bien: una escritura fallida no cambia nada que haya que leer.
+     */
+    void registrarEscritura() {
+        ultimaEscrituraMs = Math.max(ultimaEscrituraMs, System.currentTimeMillis());
+    }
+
+    /**
+     * @param retrasoMaxMs Retraso de replicación que se tolera
+     * @return true si la última escritura es más reciente que ese retraso
+     */
+    boolean escribioHaceMenosDe(long retrasoMaxMs) {
+        return System.currentTimeMillis() - ultimaEscrituraMs < retrasoMaxMs;
+    }
+}
@@ -0,0 +1,256 @@
+package foc.departamento.dao;
+
+import foc.departamento.config.DatabaseConfig;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sigue los cambios que hacen otros clientes en la tabla de departamentos.
+ * Un hilo en segundo plano consulta cada {@link DatabaseConfig#SYNC_INTERVALO_MS} milisegundos
+ * el registro de cambios que mantienen los triggers de {@code db/cambios_departamentos.sql},
+ * pide sólo las versiones posteriores a la última vista y entrega los cambios al oyente
+ * (la caché de departamentos ya la actualiza {@link DepartamentoDAO#leerCambios}).
+ * <p>
+ * Las versiones se asignan al insertar en el registro, no al confirmar, así que una transacción
+ * lenta puede dejar un hueco que se rellena más tarde. La versión de referencia sólo avanza por
+ * versiones consecutivas: lo que llega detrás de un hueco se entrega, pero se vuelve a consultar
+ * hasta que el hueco se rellena o pasan {@link DatabaseConfig#SYNC_HUECO_MAX_MS} milisegundos
+ * (una transacción deshecha también consume versiones).
+ */
+public class SincronizadorCambios {
+    private static final Logger LOGGER = Logger.getLogger(SincronizadorCambios.class.getName());
+    private static final long PERIODO_PURGA_MS = 3_600_000L;
+
+    /**
+     * Recibe los cambios desde el hilo de la sincronización.
+     */
+    public interface Oyente {
+        /**
+         * @param cambios Cambios nuevos en orden de versión, uno por código, con el estado actual de cada departamento
+         */
+        void aplicar(List<CambioDepartamento> cambios);
+
+        /**
+         * Se han purgado cambios que no se llegaron a leer: hay que recargar los datos completos.
+         */
+        void recargar();
+
+        /**
+         * Ya se han entregado todos los cambios hasta una versión. Se llama al empezar y cada vez
+         * que avanza la versión de referencia, después de {@link #aplicar} y {@link #recargar}; es
+         * la versión con la que guardar una {@link InstantaneaDepartamentos} de los datos.
+         *
+         * @param version Versión del registro de cambios
+         */
+        default void alcanzada(long version) {
+        }
+    }
+
+    private final DepartamentoDAO departamentoDAO;
+    private ScheduledExecutorService programador;
+    private Oyente oyente;
+
+    // Estado del sondeo: sólo lo usa el hilo de la sincronización
+    private long versionContigua;
+    private final NavigableSet<Long> entregadasTrasHueco = new TreeSet<>();
+    private long versionHueco;
+    private long huecoDesdeNanos;
+    private long ultimaPurgaNanos;
+
+    public SincronizadorCambios(DepartamentoDAO departamentoDAO) {
+        this.departamentoDAO = departamentoDAO;
+    }
+
+    /**
+     * Lee la versión actual del registro y empieza a sondear a partir de ella. Debe llamarse
+     * antes de cargar los datos para no perder los cambios que ocurran mientras se cargan.
+     *
+     * @param oyente Recibe los cambios desde el hilo de la sincronización
+     * @return true si la sincronización está activa; false si está desactivada en la
+     *         configuración o el registro de cambios no está instalado
+     */
+    public synchronized boolean iniciar(Oyente oyente) {
+        if (DatabaseConfig.SYNC_INTERVALO_MS <= 0) {
+            return false;
+        }
+        if (programador != null) {
+            return true;
+        }
+        try {
+            // Con réplicas los datos pueden cargarse de una que vaya retrasada: se empieza por los
+            // cambios del retraso máximo tolerado, que se releen del primario
+            versionContigua = ConexionBD.getInstancia().hayReplicas()
+                    ? departamentoDAO.versionCambios(DatabaseConfig.REPLICAS_RETRASO_MAX_MS)
+                    : departamentoDAO.versionCambios();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Registro de cambios no disponible, no se sincronizará: {0}", e.getMessage());
+            return false;
+        }
+        programar(oyente, DatabaseConfig.SYNC_INTERVALO_MS);
+        return true;
+    }
+
+    /**
+     * Empieza a sondear a partir de la versión de unos datos ya cargados, como los de una
+     * {@link InstantaneaDepartamentos}: el primer sondeo, inmediato, entrega los cambios que
+     * ocurrieron desde entonces. Sólo es posible si el registro aún los conserva todos.
+     *
+     * @param oyente Recibe los cambios desde el hilo de la sincronización
+     * @param version Versión del registro con la que coinciden los datos
+     * @return true si la sincronización está activa desde esa versión; false si está desactivada,
+     *         ya estaba activa, el registro no está instalado o ya no tiene los cambios (se han
+     *         purgado o la base de datos es otra), y hay que cargar los datos completos
+     * @throws SQLException Si no se puede conectar con la base de datos
+     */
+    public synchronized boolean iniciarDesde(Oyente oyente, long version) throws SQLException {
+        if (DatabaseConfig.SYNC_INTERVALO_MS <= 0 || programador != null || version <= 0) {
+            return false;
+        }
+        try {
+            long ultima = departamentoDAO.versionCambios();
+            if (ultima < version || ultima > version && departamentoDAO.primeraVersionCambios() > version + 1) {
+                LOGGER.log(Level.INFO, "El registro de cambios ya no llega a la versión {0}", version);
+                return false;
+            }
+        } catch (SQLException e) {
+            if (ConexionBD.esFalloConexion(e)) {
+                throw e;
+            }
+            LOGGER.log(Level.WARNING, "Registro de cambios no disponible, no se sincronizará: {0}", e.getMessage());
+            return false;
+        }
+        versionContigua = version;
+        programar(oyente, 0);
+        return true;
+    }
+
+    private void programar(Oyente oyente, long retrasoInicialMs) {
+        this.oyente = oyente;
+        this.ultimaPurgaNanos = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(PERIODO_PURGA_MS);
+        oyente.alcanzada(versionContigua);
+        programador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "sincronizacion-cambios");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(this::sondear,
+                retrasoInicialMs, DatabaseConfig.SYNC_INTERVALO_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Deja de sondear.
+     */
+    public synchronized void detener() {
+        if (programador != null) {
+            programador.shutdownNow();
+            programador = null;
+        }
+    }
+
+    private void sondear() {
+        try {
+            // Si hay muchos cambios pendientes se siguen pidiendo sin esperar al siguiente intervalo
+            boolean seguir = true;
+            while (seguir) {
+                List<CambioDepartamento> cambios = departamentoDAO.leerCambios(versionContigua, DatabaseConfig.SYNC_LOTE);
+                seguir = procesar(cambios) && cambios.size() == DatabaseConfig.SYNC_LOTE;
+            }
+            purgarSiToca();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error al sincronizar cambios: {0}", e.getMessage());
+        } catch (RuntimeException e) {
+            // Una excepción cancelaría las siguientes ejecuciones de la tarea programada
+            LOGGER.log(Level.WARNING, "Error al aplicar cambios sincronizados", e);
+        }
+    }
+
+    /**
+     * Avanza la versión de referencia y entrega al oyente los cambios que no había recibido.
+     *
+     * @return true si la versión de referencia llegó hasta el último cambio leído
+     */
+    private boolean procesar(List<CambioDepartamento> cambios) throws SQLException {
+        if (cambios.isEmpty()) {
+            return false;
+        }
+        long ultimaLeida = cambios.get(cambios.size() - 1).version();
+        if (cambios.get(0).version() > versionContigua + 1 && versionHueco != versionContigua + 1
+                && departamentoDAO.primeraVersionCambios() > versionContigua + 1) {
+            LOGGER.log(Level.WARNING, "Se han purgado cambios posteriores a la versión {0}; se recargan los datos",
+                    versionContigua);
+            versionContigua = ultimaLeida;
+            entregadasTrasHueco.clear();
+            oyente.recargar();
+            oyente.alcanzada(versionContigua);
+            return true;
+        }
+        long anterior = versionContigua;
+
+        // Como cada cambio trae el estado actual, basta con el último de cada código
+        Map<String, CambioDepartamento> nuevos = new LinkedHashMap<>();
+        boolean contigua = true;
+        for (CambioDepartamento cambio : cambios) {
+            if (contigua && (cambio.version() == versionContigua + 1 || huecoCaducado(versionContigua + 1))) {
+                versionContigua = cambio.version();
+            } else {
+                contigua = false;
+            }
+            // Lo entregado detrás de un hueco se vuelve a leer mientras el hueco siga abierto
+            if (cambio.version() <= versionContigua ? !entregadasTrasHueco.contains(cambio.version())
+                    : entregadasTrasHueco.add(cambio.version())) {
+                nuevos.remove(cambio.codigo());
+                nuevos.put(cambio.codigo(), cambio);
+            }
+        }
+        entregadasTrasHueco.headSet(versionContigua, true).clear();
+        if (!nuevos.isEmpty()) {
+            oyente.aplicar(new ArrayList<>(nuevos.values()));
+        }
+        if (versionContigua != anterior) {
+            oyente.alcanzada(versionContigua);
+        }
+        return versionContigua == ultimaLeida;
+    }
+
+    /**
+     * Lleva la cuenta del tiempo que lleva abierto el hueco en una versión.
+     *
+     * @return true si ya se ha esperado lo suficiente y se da la versión por perdida
+     */
+    private boolean huecoCaducado(long version) {
+        long ahora = System.nanoTime();
+        if (version != versionHueco) {
+            versionHueco = version;
+            huecoDesdeNanos = ahora;
+            LOGGER.log(Level.FINE, "Hueco en la versión {0} del registro de cambios", version);
+        }
+        if (ahora - huecoDesdeNanos < TimeUnit.MILLISECONDS.toNanos(DatabaseConfig.SYNC_HUECO_MAX_MS)) {
+            return false;
+        }
+        LOGGER.log(Level.FINE, "La versión {0} no ha llegado; se da por deshecha", version);
+        return true;
+    }
+
+    private void purgarSiToca() throws SQLException {
+        long ahora = System.nanoTime();
+        if (ahora - ultimaPurgaNanos < TimeUnit.MILLISECONDS.toNanos(PERIODO_PURGA_MS)) {
+            return;
+        }
+        ultimaPurgaNanos = ahora;
+        int borrados = departamentoDAO.purgarCambios(DatabaseConfig.SYNC_RETENCION_MS);
+        if (borrados > 0) {
+            LOGGER.log(Level.FINE, "Purgados {0} cambios antiguos del registro", borrados);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package foc.departamento.dao;
+
+import foc.departamento.model.Departamento;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cambios de departamentos acumulados en memoria para aplicarlos juntos en una transacción
+ * con {@link DepartamentoDAO#aplicar(UnidadTrabajo)}.
+ * Sólo se guarda la operación neta de cada código: insertar y luego modificar es una inserción,
+ * insertar y luego eliminar no deja nada, eliminar y luego insertar es una sustitución, etc.
+ * Guardar un código del que no hay nada pendiente se aplica como alta o modificación según exista.
+ * Las operaciones que la base de datos rechazaría según lo ya acumulado (insertar un código
+ * pendiente de insertar, modificar uno pendiente de eliminar...) se rechazan al acumularlas.
+ * Es seguro para uso concurrente.
+ */
+public class UnidadTrabajo {
+
+    /**
+     * Operación neta pendiente sobre un código.
+     */
+    enum Operacion {
+        INSERTAR,
+        MODIFICAR,
+        ELIMINAR,
+        // Eliminar la fila existente e insertar la nueva
+        SUSTITUIR,
+        // Insertar o modificar según exista (DepartamentoDAO#guardar)
+        GUARDAR
+    }
+
+    private record Pendiente(Operacion operacion, Departamento departamento) {
+    }
+
+    private final Map<String, Pendiente> pendientes = new LinkedHashMap<>();
+
+    /**
+     * @return true si se acumuló; false si el código ya está pendiente de insertar, modificar o guardar
+     */
+    public synchronized boolean insertar(Departamento dep) {
+        Pendiente actual = pendientes.get(dep.getCodigo());
+        if (actual == null) {
+            return poner(Operacion.INSERTAR, dep);
+        }
+        return actual.operacion() == Operacion.ELIMINAR && poner(Operacion.SUSTITUIR, dep);
+    }
+
+    /**
+     * @return true si se acumuló; false si el código está pendiente de eliminar
+     */
+    public synchronized boolean modificar(Departamento dep) {
+        Pendiente actual = pendientes.get(dep.getCodigo());
+        if (actual == null) {
+            return poner(Operacion.MODIFICAR, dep);
+        }
+        return actual.operacion() != Operacion.ELIMINAR && poner(actual.operacion(), dep);
+    }
+
+    /**
+     * Acumula un alta o modificación según exista el código, como {@link DepartamentoDAO#guardar}.
+     * Sobre un código pendiente de insertar, sustituir o guardar se mantiene la operación con los
+     * datos nuevos; sobre uno pendiente de eliminar pasa a sustitución, y sobre uno pendiente de
+     * modificar pasa a guardar, porque la modificación no haría nada si la fila ya no existe al aplicarla.
+     *
+     * @return true si se acumuló, como {@link #insertar} y {@link #modificar}; guardar admite
+     *         cualquier operación pendiente, así que de momento siempre se acumula
+     */
+    public synchronized boolean guardar(Departamento dep) {
+        Pendiente actual = pendientes.get(dep.getCodigo());
+        if (actual == null) {
+            return poner(Operacion.GUARDAR, dep);
+        }
+        return switch (actual.operacion()) {
+            case INSERTAR, SUSTITUIR, GUARDAR -> poner(actual.operacion(), dep);
+            case ELIMINAR -> poner(Operacion.SUSTITUIR, dep);
+            case MODIFICAR -> poner(Operacion.GUARDAR, dep);
+        };
+    }
+
+    /**
+     * @return true si se acumuló; false si el código ya está pendiente de eliminar
+     */
+    public synchronized boolean eliminar(String codigo) {
+        Pendiente actual = pendientes.get(codigo);
+        if (actual == null || actual.operacion() == Operacion.MODIFICAR || actual.operacion() == Operacion.SUSTITUIR
+                || actual.operacion() == Operacion.GUARDAR) {
+            pendientes.put(codigo, new Pendiente(Operacion.ELIMINAR, null));
+            return true;
+        }
+        if (actual.operacion() == Operacion.INSERTAR) {
+            // La fila nunca llegó a la base de datos
+            pendientes.remove(codigo);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Número de códigos con cambios pendientes
+     */
+    public synchronized int tamano() {
+        return pendientes.size();
+    }
+
+    /**
+     * @return true si no hay cambios pendientes
+     */
+    public synchronized boolean estaVacia() {
+        return pendientes.isEmpty();
+    }
+
+    /**
+     * Descarta todos los cambios pendientes.
+     */
+    public synchronized void descartar() {
+        pendientes.clear();
+    }
+
+    /**
+     * @return Códigos a eliminar antes de insertar (bajas y sustituciones)
+     */
+    synchronized List<String> codigosAEliminar() {
+        List<String> codigos = new ArrayList<>();
+        pendientes.forEach((codigo, pendiente) -> {
+            if (pendiente.operacion() == Operacion.ELIMINAR || pendiente.operacion() == Operacion.SUSTITUIR) {
+                codigos.add(codigo);
+            }
+        });
+        return codigos;
+    }
+
+    /**
+     * @return Departamentos a insertar (altas y sustituciones)
+     */
+    synchronized List<Departamento> departamentosAInsertar() {
+        return departamentosCon(Operacion.INSERTAR, Operacion.SUSTITUIR);
+    }
+
+    /**
+     * @return Departamentos a insertar o modificar según existan
+     */
+    synchronized List<Departamento> departamentosAGuardar() {
+        return departamentosCon(Operacion.GUARDAR, Operacion.GUARDAR);
+    }
+
+    /**
+     * @return Departamentos a modificar
+     */
+    synchronized List<Departamento> departamentosAModificar() {
+        return departamentosCon(Operacion.MODIFICAR, Operacion.MODIFICAR);
+    }
+
+    private List<Departamento> departamentosCon(Operacion una, Operacion otra) {
+        List<Departamento> departamentos = new ArrayList<>();
+        for (Pendiente pendiente : pendientes.values()) {
+            if (pendiente.operacion() == una || pendiente.operacion() == otra) {
+                departamentos.add(pendiente.departamento());
+            }
+        }
+        return departamentos;
+    }
+
+    private boolean poner(Operacion operacion, Departamento dep) {
+        // Copia: el llamador puede seguir modificando su objeto
+        pendientes.put(dep.getCodigo(), new Pendiente(operacion,
+                new Departamento(dep.getCodigo(), dep.getNombre(), dep.getIdLocalizacion(), dep.getIdManager())));
+        return true;
+    }
+}
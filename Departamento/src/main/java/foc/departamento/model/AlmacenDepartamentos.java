@@ -0,0 +1,286 @@
+package foc.departamento.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Almacén compacto de departamentos organizado por columnas.
+ * Los IDs se guardan en arrays {@code int[]} y los códigos y los nombres en UTF-8 en columnas con
+ * diccionario, de modo que cada fila ocupa unas pocas decenas de bytes en lugar de un objeto
+ * Departamento con dos String. Los objetos Departamento se crean sólo al pedirlos
+ * ({@link #obtener(int)}); para ordenar se comparan las filas sobre las propias columnas
+ * ({@link #compararCodigo}, {@link #compararNombre}). El diccionario de códigos hace de índice
+ * hash código → fila ({@link #indiceDe(String)}).
+ * No es seguro para uso concurrente.
+ */
+public class AlmacenDepartamentos {
+    private static final int CAPACIDAD_INICIAL = 64;
+
+    /**
+     * Orden de los códigos: por puntos de código, que es el de sus bytes UTF-8 y el de la columna
+     * {@code codigo} ({@code utf8mb4_nopad_bin}), así que coincide con el {@code ORDER BY codigo}
+     * de las páginas y con la copia local. {@link String#compareTo} compara unidades UTF-16 y
+     * difiere con los caracteres fuera del plano básico.
+     */
+    public static final Comparator<String> ORDEN_CODIGOS = AlmacenDepartamentos::compararCodigos;
+
+    private ColumnaTexto codigos = new ColumnaTexto(true);
+    private ColumnaTexto nombres = new ColumnaTexto(true);
+    private int[] codigo = new int[CAPACIDAD_INICIAL];
+    private int[] nombre = new int[CAPACIDAD_INICIAL];
+    private int[] idLocalizacion = new int[CAPACIDAD_INICIAL];
+    private int[] idManager = new int[CAPACIDAD_INICIAL];
+    private int tamano;
+    // filaDeEntrada[entrada del código] = fila, o -1 si ninguna fila tiene ya ese código. Las
+    // filas desplazadas por una inserción o un borrado se reindexan en la siguiente búsqueda
+    private int[] filaDeEntrada = new int[CAPACIDAD_INICIAL];
+    private int primeraPendiente;
+
+    /**
+     * @return Número de filas
+     */
+    public int tamano() {
+        return tamano;
+    }
+
+    public String getCodigo(int fila) {
+        return codigos.obtener(codigo[comprobar(fila)]);
+    }
+
+    public String getNombre(int fila) {
+        return nombres.obtener(nombre[comprobar(fila)]);
+    }
+
+    public int getIdLocalizacion(int fila) {
+        return idLocalizacion[comprobar(fila)];
+    }
+
+    public int getIdManager(int fila) {
+        return idManager[comprobar(fila)];
+    }
+
+    /**
+     * @param fila Posición de la fila
+     * @return Departamento nuevo con los datos de la fila; modificarlo no afecta al almacén
+     */
+    public Departamento obtener(int fila) {
+        return new Departamento(getCodigo(fila), getNombre(fila), idLocalizacion[fila], idManager[fila]);
+    }
+
+    /**
+     * Inserta un departamento en una posición, desplazando las siguientes.
+     */
+    public void insertar(int fila, Departamento dep) {
+        if (fila < 0 || fila > tamano) {
+            throw new IndexOutOfBoundsException("Fila " + fila + " fuera de 0.." + tamano);
+        }
+        asegurarCapacidad(tamano + 1);
+        int desplazadas = tamano - fila;
+        System.arraycopy(codigo, fila, codigo, fila + 1, desplazadas);
+        System.arraycopy(nombre, fila, nombre, fila + 1, desplazadas);
+        System.arraycopy(idLocalizacion, fila, idLocalizacion, fila + 1, desplazadas);
+        System.arraycopy(idManager, fila, idManager, fila + 1, desplazadas);
+        tamano++;
+        escribir(fila, dep);
+        primeraPendiente = Math.min(primeraPendiente, fila + 1);
+    }
+
+    /**
+     * Añade departamentos al final.
+     */
+    public void agregarTodos(List<Departamento> departamentos) {
+        boolean indiceAlDia = primeraPendiente == tamano;
+        asegurarCapacidad(tamano + departamentos.size());
+        for (Departamento dep : departamentos) {
+            escribir(tamano++, dep);
+        }
+        if (indiceAlDia) {
+            primeraPendiente = tamano;
+        }
+    }
+
+    /**
+     * Sustituye los datos de una fila.
+     */
+    public void reemplazar(int fila, Departamento dep) {
+        comprobar(fila);
+        olvidarCodigo(fila);
+        escribir(fila, dep);
+        compactarSiHaceFalta();
+    }
+
+    /**
+     * Elimina una fila, desplazando las siguientes.
+     */
+    public void eliminar(int fila) {
+        comprobar(fila);
+        olvidarCodigo(fila);
+        int desplazadas = tamano - fila - 1;
+        System.arraycopy(codigo, fila + 1, codigo, fila, desplazadas);
+        System.arraycopy(nombre, fila + 1, nombre, fila, desplazadas);
+        System.arraycopy(idLocalizacion, fila + 1, idLocalizacion, fila, desplazadas);
+        System.arraycopy(idManager, fila + 1, idManager, fila, desplazadas);
+        tamano--;
+        primeraPendiente = Math.min(primeraPendiente, fila);
+        compactarSiHaceFalta();
+    }
+
+    /**
+     * Busca la fila de un código con el índice hash, sin decodificar textos.
+     *
+     * @param buscado Código a buscar
+     * @return Posición del código, o -1 si no está
+     */
+    public int indiceDe(String buscado) {
+        return indiceDe(buscado.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Busca un código con el índice hash y, si no está, calcula dónde iría por búsqueda binaria
+     * comparando bytes. El punto de inserción sólo es válido si las filas están ordenadas por
+     * {@link #ORDEN_CODIGOS}.
+     *
+     * @param buscado Código a buscar
+     * @return Posición del código, o {@code -(punto de inserción) - 1} si no está
+     */
+    public int buscarCodigo(String buscado) {
+        byte[] clave = buscado.getBytes(StandardCharsets.UTF_8);
+        int fila = indiceDe(clave);
+        if (fila >= 0) {
+            return fila;
+        }
+        int bajo = 0;
+        int alto = tamano - 1;
+        while (bajo <= alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (codigos.comparar(codigo[medio], clave) < 0) {
+                bajo = medio + 1;
+            } else {
+                alto = medio - 1;
+            }
+        }
+        return -(bajo + 1);
+    }
+
+    /**
+     * Compara los códigos de dos filas en el orden de {@link #ORDEN_CODIGOS}, sin decodificarlos.
+     */
+    public int compararCodigo(int filaA, int filaB) {
+        return codigos.comparar(codigo[comprobar(filaA)], codigo[comprobar(filaB)]);
+    }
+
+    /**
+     * Compara los nombres de dos filas por puntos de código, sin decodificarlos.
+     */
+    public int compararNombre(int filaA, int filaB) {
+        return nombres.comparar(nombre[comprobar(filaA)], nombre[comprobar(filaB)]);
+    }
+
+    /**
+     * Compara dos códigos por puntos de código. Sólo hace falta corregir la comparación de
+     * unidades UTF-16 cuando ambas son de U+D800 en adelante: los sustitutos (D800-DFFF)
+     * representan puntos de código mayores que los de E000-FFFF.
+     *
+     * @see #ORDEN_CODIGOS
+     */
+    public static int compararCodigos(String a, String b) {
+        int comunes = Math.min(a.length(), b.length());
+        for (int i = 0; i < comunes; i++) {
+            char ca = a.charAt(i);
+            char cb = b.charAt(i);
+            if (ca != cb) {
+                if (ca >= '\uD800' && cb >= '\uD800') {
+                    return enOrdenDePuntos(ca) - enOrdenDePuntos(cb);
+                }
+                return ca - cb;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    private static int enOrdenDePuntos(char c) {
+        return Character.isSurrogate(c) ? c + 0x2000 : c - 0x800;
+    }
+
+    /**
+     * @return Memoria aproximada que ocupan los arrays del almacén en bytes
+     */
+    public long bytesOcupados() {
+        return 16L * codigo.length + 4L * filaDeEntrada.length + codigos.bytesOcupados() + nombres.bytesOcupados();
+    }
+
+    private void escribir(int fila, Departamento dep) {
+        codigo[fila] = codigos.agregar(dep.getCodigo());
+        nombre[fila] = nombres.agregar(dep.getNombre());
+        idLocalizacion[fila] = dep.getIdLocalizacion();
+        idManager[fila] = dep.getIdManager();
+        if (codigo[fila] >= filaDeEntrada.length) {
+            int anterior = filaDeEntrada.length;
+            filaDeEntrada = Arrays.copyOf(filaDeEntrada, Math.max(codigo[fila] + 1, anterior * 2));
+            Arrays.fill(filaDeEntrada, anterior, filaDeEntrada.length, -1);
+        }
+        filaDeEntrada[codigo[fila]] = fila;
+    }
+
+    /**
+     * Quita del índice el código de una fila que se va a borrar o sustituir.
+     */
+    private void olvidarCodigo(int fila) {
+        filaDeEntrada[codigo[fila]] = -1;
+    }
+
+    private int indiceDe(byte[] clave) {
+        int entrada = codigos.buscar(clave);
+        if (entrada < 0) {
+            return -1;
+        }
+        if (primeraPendiente < tamano) {
+            for (int fila = primeraPendiente; fila < tamano; fila++) {
+                filaDeEntrada[codigo[fila]] = fila;
+            }
+        }
+        primeraPendiente = tamano;
+        return filaDeEntrada[entrada];
+    }
+
+    private void asegurarCapacidad(int necesaria) {
+        if (necesaria <= codigo.length) {
+            return;
+        }
+        int capacidad = Math.max(necesaria, codigo.length + (codigo.length >> 1));
+        codigo = Arrays.copyOf(codigo, capacidad);
+        nombre = Arrays.copyOf(nombre, capacidad);
+        idLocalizacion = Arrays.copyOf(idLocalizacion, capacidad);
+        idManager = Arrays.copyOf(idManager, capacidad);
+    }
+
+    /**
+     * Las columnas de texto no liberan entradas: si la mitad ya no las usa ninguna fila
+     * (por bajas o sustituciones), se reconstruyen sólo con las vivas.
+     */
+    private void compactarSiHaceFalta() {
+        if (codigos.numEntradas() <= 2 * tamano + CAPACIDAD_INICIAL) {
+            return;
+        }
+        ColumnaTexto nuevosCodigos = new ColumnaTexto(true);
+        ColumnaTexto nuevosNombres = new ColumnaTexto(true);
+        for (int i = 0; i < tamano; i++) {
+            codigo[i] = nuevosCodigos.agregar(codigos.obtener(codigo[i]));
+            nombre[i] = nuevosNombres.agregar(nombres.obtener(nombre[i]));
+        }
+        codigos = nuevosCodigos;
+        nombres = nuevosNombres;
+        filaDeEntrada = new int[Math.max(CAPACIDAD_INICIAL, codigos.numEntradas())];
+        Arrays.fill(filaDeEntrada, -1);
+        primeraPendiente = 0;
+    }
+
+    private int comprobar(int fila) {
+        if (fila < 0 || fila >= tamano) {
+            throw new IndexOutOfBoundsException("Fila " + fila + " fuera de 0.." + (tamano - 1));
+        }
+        return fila;
+    }
+}
@@ -0,0 +1,163 @@
+package foc.departamento.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Columna de textos empaquetados en UTF-8 en un único array de bytes.
+ * Cada texto añadido recibe un número de entrada; las filas guardan ese número en un {@code int}.
+ * Con diccionario, los textos repetidos comparten entrada (tabla hash de direccionamiento
+ * abierto sobre los propios bytes, sin objetos String). Las entradas no se liberan: quien
+ * la usa debe reconstruirla cuando acumule demasiadas sin referencias.
+ */
+final class ColumnaTexto {
+    private static final int SIN_ENTRADA = -1;
+
+    private final boolean diccionario;
+    private byte[] bytes = new byte[1024];
+    private int bytesUsados;
+    // inicios[e] es el desplazamiento de la entrada e; la entrada termina donde empieza la siguiente
+    private int[] inicios = new int[65];
+    private int numEntradas;
+    private int[] tabla;
+
+    /**
+     * @param diccionario true para que los textos repetidos compartan entrada
+     */
+    ColumnaTexto(boolean diccionario) {
+        this.diccionario = diccionario;
+        if (diccionario) {
+            tabla = new int[64];
+            Arrays.fill(tabla, SIN_ENTRADA);
+        }
+    }
+
+    /**
+     * Añade un texto (o reutiliza su entrada si ya estaba y hay diccionario).
+     *
+     * @param texto Texto a guardar; null se guarda como cadena vacía
+     * @return Número de entrada
+     */
+    int agregar(String texto) {
+        byte[] codificado = texto == null ? new byte[0] : texto.getBytes(StandardCharsets.UTF_8);
+        if (!diccionario) {
+            return nuevaEntrada(codificado);
+        }
+        int hueco = hueco(codificado);
+        if (tabla[hueco] != SIN_ENTRADA) {
+            return tabla[hueco];
+        }
+        int entrada = nuevaEntrada(codificado);
+        tabla[hueco] = entrada;
+        if (numEntradas * 2 > tabla.length) {
+            redimensionarTabla();
+        }
+        return entrada;
+    }
+
+    /**
+     * Busca un texto en el diccionario sin añadirlo.
+     *
+     * @param codificado Texto en UTF-8
+     * @return Número de entrada, o -1 si no está (o la columna no tiene diccionario)
+     */
+    int buscar(byte[] codificado) {
+        return diccionario ? tabla[hueco(codificado)] : SIN_ENTRADA;
+    }
+
+    /**
+     * @param entrada Número de entrada devuelto por {@link #agregar(String)}
+     * @return Texto de la entrada, decodificado en un String nuevo
+     */
+    String obtener(int entrada) {
+        int inicio = inicios[entrada];
+        return new String(bytes, inicio, inicios[entrada + 1] - inicio, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Compara los bytes UTF-8 de una entrada con otros sin decodificarlos.
+     * El orden de bytes UTF-8 coincide con el de los puntos de código.
+     *
+     * @return Negativo, cero o positivo según la entrada sea menor, igual o mayor
+     */
+    int comparar(int entrada, byte[] otro) {
+        return Arrays.compareUnsigned(bytes, inicios[entrada], inicios[entrada + 1], otro, 0, otro.length);
+    }
+
+    /**
+     * Compara los bytes UTF-8 de dos entradas sin decodificarlas.
+     *
+     * @return Negativo, cero o positivo según la primera entrada sea menor, igual o mayor
+     */
+    int comparar(int entradaA, int entradaB) {
+        return Arrays.compareUnsigned(bytes, inicios[entradaA], inicios[entradaA + 1],
+                bytes, inicios[entradaB], inicios[entradaB + 1]);
+    }
+
+    /**
+     * @return Número de entradas, incluidas las que ya no usa ninguna fila
+     */
+    int numEntradas() {
+        return numEntradas;
+    }
+
+    /**
+     * @return Memoria aproximada de los arrays de la columna en bytes
+     */
+    long bytesOcupados() {
+        return bytes.length + 4L * inicios.length + (tabla == null ? 0 : 4L * tabla.length);
+    }
+
+    /**
+     * @return Hueco de la tabla con la entrada del texto, o el hueco libre donde iría
+     */
+    private int hueco(byte[] codificado) {
+        int mascara = tabla.length - 1;
+        int hueco = hash(codificado, 0, codificado.length) & mascara;
+        while (tabla[hueco] != SIN_ENTRADA) {
+            int entrada = tabla[hueco];
+            if (Arrays.equals(bytes, inicios[entrada], inicios[entrada + 1], codificado, 0, codificado.length)) {
+                return hueco;
+            }
+            hueco = (hueco + 1) & mascara;
+        }
+        return hueco;
+    }
+
+    private int nuevaEntrada(byte[] codificado) {
+        if (bytesUsados + codificado.length > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, bytesUsados + codificado.length));
+        }
+        System.arraycopy(codificado, 0, bytes, bytesUsados, codificado.length);
+        bytesUsados += codificado.length;
+        if (numEntradas + 2 > inicios.length) {
+            inicios = Arrays.copyOf(inicios, inicios.length * 2);
+        }
+        numEntradas++;
+        inicios[numEntradas] = bytesUsados;
+        return numEntradas - 1;
+    }
+
+    private void redimensionarTabla() {
+        int[] nueva = new int[tabla.length * 2];
+        Arrays.fill(nueva, SIN_ENTRADA);
+        int mascara = nueva.length - 1;
+        for (int entrada = 0; entrada < numEntradas; entrada++) {
+            int hueco = hash(bytes, inicios[entrada], inicios[entrada + 1]) & mascara;
+            while (nueva[hueco] != SIN_ENTRADA) {
+                hueco = (hueco + 1) & mascara;
+            }
+            nueva[hueco] = entrada;
+        }
+        tabla = nueva;
+    }
+
+    private static int hash(byte[] datos, int desde, int hasta) {
+        int h = 1;
+        for (int i = desde; i < hasta; i++) {
+            h = 31 * h + datos[i];
+        }
+        // Mezcla los bits altos para que la máscara no descarte la información útil
+        return h ^ (h >>> 16);
+    }
+}
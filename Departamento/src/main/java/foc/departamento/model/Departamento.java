@@ -1,5 +1,7 @@
 package foc.departamento.model;
 
+import java.util.Objects;
+
 /**
  * Clase que representa la entidad Departamento.
  * Encapsula los datos de un departamento empresarial.
@@ -64,6 +66,25 @@ public class Departamento {
         this.idManager = idManager;
     }
 
+    /**
+     * Dos departamentos son iguales si tienen el mismo código, que identifica la fila. Las filas
+     * de la tabla se crean bajo demanda a partir de un almacén compacto, así que no se puede
+     * comparar por identidad; los demás campos se pueden modificar sin que un departamento deje
+     * de encontrarse en una colección. El código no debe cambiarse mientras esté en una.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        return o instanceof Departamento otro && Objects.equals(codigo, otro.codigo);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(codigo);
+    }
+
     @Override
     public String toString() {
         return "Código: " + codigo +
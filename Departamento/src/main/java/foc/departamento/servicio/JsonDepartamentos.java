@@ -0,0 +1,294 @@
+package foc.departamento.servicio;
+
+import foc.departamento.dao.ResultadoFila;
+import foc.departamento.dao.ResultadoLote;
+import foc.departamento.model.Departamento;
+import foc.departamento.view.util.ValidatorUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conversión entre departamentos y JSON para el servicio HTTP, sin dependencias externas.
+ * Escribe los mismos campos que la exportación JSON Lines ({@code codigo}, {@code nombre},
+ * {@code idLocalizacion}, {@code idManager}) y sólo lee lo que admite la API: un objeto
+ * departamento o un array de ellos, con valores de texto, número o null.
+ */
+final class JsonDepartamentos {
+
+    private JsonDepartamentos() {
+    }
+
+    static String departamento(Departamento dep) {
+        StringBuilder json = new StringBuilder(96);
+        escribir(json, dep);
+        return json.toString();
+    }
+
+    /**
+     * @param departamentos Página de departamentos
+     * @param siguiente Código desde el que pedir la página siguiente, o null si no hay más
+     */
+    static String pagina(Collection<Departamento> departamentos, String siguiente) {
+        StringBuilder json = new StringBuilder(64 + 80 * departamentos.size());
+        json.append("{\"departamentos\":");
+        escribirLista(json, departamentos);
+        json.append(",\"siguiente\":");
+        escribirCadena(json, siguiente);
+        return json.append('}').toString();
+    }
+
+    static String lista(Collection<Departamento> departamentos) {
+        StringBuilder json = new StringBuilder(2 + 80 * departamentos.size());
+        escribirLista(json, departamentos);
+        return json.toString();
+    }
+
+    static String estado(ResultadoFila.Estado estado) {
+        return "{\"estado\":\"" + estado + "\"}";
+    }
+
+    /**
+     * Recuento por estado y las filas rechazadas con su error, en el orden recibido.
+     */
+    static String lote(ResultadoLote lote) {
+        StringBuilder json = new StringBuilder(128);
+        json.append('{');
+        for (ResultadoFila.Estado estado : ResultadoFila.Estado.values()) {
+            json.append('"').append(estado).append("\":").append(lote.contar(estado)).append(',');
+        }
+        json.append("\"rechazadas\":[");
+        boolean primera = true;
+        for (ResultadoFila fila : lote.getRechazadas()) {
+            json.append(primera ? "" : ",").append("{\"codigo\":");
+            escribirCadena(json, fila.departamento().getCodigo());
+            json.append(",\"error\":");
+            escribirCadena(json, fila.error());
+            json.append('}');
+            primera = false;
+        }
+        return json.append("]}").toString();
+    }
+
+    static String error(String mensaje) {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        escribirCadena(json, mensaje);
+        return json.append('}').toString();
+    }
+
+    /**
+     * @param json Un objeto departamento
+     * @return Departamento validado con las mismas reglas que el formulario
+     * @throws IllegalArgumentException Si no es JSON válido o el departamento no es válido
+     */
+    static Departamento leerDepartamento(String json) {
+        Lector lector = new Lector(json);
+        Departamento dep = lector.departamento();
+        lector.fin();
+        return dep;
+    }
+
+    /**
+     * @param json Array de objetos departamento
+     * @return Departamentos validados, en el orden del array
+     * @throws IllegalArgumentException Si no es JSON válido o algún departamento no es válido
+     */
+    static List<Departamento> leerDepartamentos(String json) {
+        Lector lector = new Lector(json);
+        List<Departamento> departamentos = new ArrayList<>();
+        lector.esperar('[');
+        if (!lector.siguienteEs(']')) {
+            do {
+                departamentos.add(lector.departamento());
+            } while (lector.siguienteEs(','));
+            lector.esperar(']');
+        }
+        lector.fin();
+        return departamentos;
+    }
+
+    private static void escribirLista(StringBuilder json, Collection<Departamento> departamentos) {
+        json.append('[');
+        boolean primero = true;
+        for (Departamento dep : departamentos) {
+            if (!primero) {
+                json.append(',');
+            }
+            escribir(json, dep);
+            primero = false;
+        }
+        json.append(']');
+    }
+
+    private static void escribir(StringBuilder json, Departamento dep) {
+        json.append("{\"codigo\":");
+        escribirCadena(json, dep.getCodigo());
+        json.append(",\"nombre\":");
+        escribirCadena(json, dep.getNombre());
+        json.append(",\"idLocalizacion\":").append(dep.getIdLocalizacion());
+        json.append(",\"idManager\":").append(dep.getIdManager()).append('}');
+    }
+
+    private static void escribirCadena(StringBuilder json, String valor) {
+        if (valor == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        for (int i = 0; i < valor.length(); i++) {
+            char c = valor.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                case '\n' -> json.append("\\n");
+                case '\r' -> json.append("\\r");
+                case '\t' -> json.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     * Analizador descendente de lo que admite la API. Los números se guardan como texto para
+     * validarlos igual que los campos del formulario.
+     */
+    private static final class Lector {
+        private final String json;
+        private int posicion;
+
+        Lector(String json) {
+            this.json = json;
+        }
+
+        Departamento departamento() {
+            Map<String, String> campos = new HashMap<>();
+            esperar('{');
+            if (!siguienteEs('}')) {
+                do {
+                    String nombre = cadena();
+                    esperar(':');
+                    campos.put(nombre, valor());
+                } while (siguienteEs(','));
+                esperar('}');
+            }
+            String codigo = campos.get("codigo");
+            String nombre = campos.get("nombre");
+            String localizacion = campos.get("idLocalizacion");
+            String manager = campos.get("idManager");
+            String error = ValidatorUtils.validarDepartamento(codigo, nombre, localizacion, manager);
+            if (error != null) {
+                throw new IllegalArgumentException(codigo == null ? error : codigo + ": " + error);
+            }
+            return new Departamento(codigo.trim(), nombre.trim(),
+                    Integer.parseInt(localizacion.trim()), Integer.parseInt(manager.trim()));
+        }
+
+        private String valor() {
+            saltarEspacios();
+            if (posicion >= json.length()) {
+                throw error("falta un valor");
+            }
+            char c = json.charAt(posicion);
+            if (c == '"') {
+                return cadena();
+            }
+            if (json.startsWith("null", posicion)) {
+                posicion += 4;
+                return null;
+            }
+            int inicio = posicion;
+            while (posicion < json.length() && "+-.0123456789eE".indexOf(json.charAt(posicion)) >= 0) {
+                posicion++;
+            }
+            if (inicio == posicion) {
+                throw error("valor no admitido");
+            }
+            return json.substring(inicio, posicion);
+        }
+
+        private String cadena() {
+            esperar('"');
+            StringBuilder texto = new StringBuilder();
+            while (posicion < json.length()) {
+                char c = json.charAt(posicion++);
+                if (c == '"') {
+                    return texto.toString();
+                }
+                if (c != '\\') {
+                    texto.append(c);
+                    continue;
+                }
+                if (posicion >= json.length()) {
+                    break;
+                }
+                char escapado = json.charAt(posicion++);
+                switch (escapado) {
+                    case '"', '\\', '/' -> texto.append(escapado);
+                    case 'b' -> texto.append('\b');
+                    case 'f' -> texto.append('\f');
+                    case 'n' -> texto.append('\n');
+                    case 'r' -> texto.append('\r');
+                    case 't' -> texto.append('\t');
+                    case 'u' -> {
+                        if (posicion + 4 > json.length()) {
+                            throw error("escape \\u incompleto");
+                        }
+                        try {
+                            texto.append((char) Integer.parseInt(json, posicion, posicion + 4, 16));
+                        } catch (NumberFormatException e) {
+                            throw error("escape \\u no válido");
+                        }
+                        posicion += 4;
+                    }
+                    default -> throw error("escape \\" + escapado + " no válido");
+                }
+            }
+            throw error("cadena sin cerrar");
+        }
+
+        void esperar(char esperado) {
+            if (!siguienteEs(esperado)) {
+                throw error("se esperaba '" + esperado + "'");
+            }
+        }
+
+        /**
+         * Consume el carácter si es el siguiente que no es espacio.
+         */
+        boolean siguienteEs(char c) {
+            saltarEspacios();
+            if (posicion < json.length() && json.charAt(posicion) == c) {
+                posicion++;
+                return true;
+            }
+            return false;
+        }
+
+        void fin() {
+            saltarEspacios();
+            if (posicion < json.length()) {
+                throw error("contenido sobrante");
+            }
+        }
+
+        private void saltarEspacios() {
+            while (posicion < json.length() && Character.isWhitespace(json.charAt(posicion))) {
+                posicion++;
+            }
+        }
+
+        private IllegalArgumentException error(String detalle) {
+            return new IllegalArgumentException("JSON no válido en la posición " + posicion + ": " + detalle);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package foc.departamento.servicio;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import foc.departamento.config.DatabaseConfig;
+import foc.departamento.controller.DepartamentoController;
+import foc.departamento.dao.ConexionBD;
+import foc.departamento.dao.FiltroDepartamentos;
+import foc.departamento.dao.ResultadoFila;
+import foc.departamento.dao.ResultadoLote;
+import foc.departamento.dao.SesionLectura;
+import foc.departamento.model.Departamento;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * API HTTP con JSON sobre las operaciones de {@link DepartamentoController}, para que otros
+ * sistemas lean y escriban departamentos sin abrir sus propias conexiones JDBC.
+ * <pre>
+ * GET    /departamentos?despuesDe=&amp;nombreEmpiezaPor=&amp;nombreContiene=&amp;idLocalizacion=&amp;idManager=&amp;codigoDesde=&amp;codigoHasta=
+ *        Página de departamentos (filtrada si hay criterios) y el código con el que pedir la siguiente
+ * GET    /departamentos?codigos=A,B,C   Varios departamentos por código
+ * POST   /departamentos                 Alta (201; 409 si el código ya existe)
+ * POST   /departamentos/lote            Alta o modificación de un array de departamentos
+ * GET    /departamentos/{codigo}        Un departamento (404 si no existe)
+ * PUT    /departamentos/{codigo}        Alta o modificación (201 si lo crea, 200 si no)
+ * DELETE /departamentos/{codigo}        Baja (204; 404 si no existe)
+ * </pre>
+ * Usa el servidor HTTP del JDK con un hilo virtual por petición: cada petición espera a su
+ * conexión del pool compartido de {@link ConexionBD} sin ocupar un hilo de plataforma, así que
+ * miles de peticiones simultáneas sólo cuestan memoria, y el pool limita cuántas llegan a MariaDB
+ * a la vez. Si una no consigue conexión en {@link DatabaseConfig#POOL_ESPERA_MAX_MS} se responde 503.
+ * Las conexiones HTTP/1.1 se mantienen abiertas entre peticiones, y las respuestas de más de
+ * {@link DatabaseConfig#SERVICIO_GZIP_MIN_BYTES} bytes se comprimen con gzip si el cliente lo admite.
+ * <p>
+ * Si hay réplicas de lectura, un cliente ve sus propias escrituras devolviendo en la cabecera
+ * {@code X-Ultima-Escritura} el valor que recibió en la última respuesta: con ella se
+ * rehace su {@link SesionLectura} y sus lecturas van al primario mientras las réplicas puedan no
+ * tener el cambio. Las escrituras de un cliente no afectan a dónde leen los demás.
+ */
+public class ServicioHttp {
+    private static final Logger LOGGER = Logger.getLogger(ServicioHttp.class.getName());
+    private static final String RUTA = "/departamentos";
+    private static final String RUTA_LOTE = RUTA + "/lote";
+    private static final String TIPO_JSON = "application/json; charset=utf-8";
+    // Marca de la última escritura del cliente (ms desde la época), de ida y vuelta
+    static final String CABECERA_ULTIMA_ESCRITURA = "X-Ultima-Escritura";
+
+    private final DepartamentoController controller;
+    private final HttpServer servidor;
+    private final ExecutorService ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Crea el servidor sin arrancarlo.
+     *
+     * @param controller Controlador con el que se atienden las peticiones
+     * @param direccion Dirección y puerto en que escuchar
+     * @throws IOException Si no se puede abrir el puerto
+     */
+    public ServicioHttp(DepartamentoController controller, InetSocketAddress direccion) throws IOException {
+        this.controller = controller;
+        this.servidor = HttpServer.create(direccion, DatabaseConfig.SERVICIO_COLA_CONEXIONES);
+        servidor.createContext(RUTA, this::atender);
+        servidor.setExecutor(ejecutor);
+    }
+
+    public void iniciar() {
+        servidor.start();
+        LOGGER.log(Level.INFO, "Servicio HTTP escuchando en {0}", servidor.getAddress());
+    }
+
+    /**
+     * Deja de aceptar peticiones y espera a que terminen las que están en curso.
+     *
+     * @param esperaMaxSegundos Espera máxima por las peticiones en curso
+     */
+    public void detener(int esperaMaxSegundos) {
+        servidor.stop(esperaMaxSegundos);
+        ejecutor.close();
+        LOGGER.info("Servicio HTTP detenido");
+    }
+
+    /**
+     * @return Dirección en la que escucha (con el puerto asignado si se pidió el 0)
+     */
+    public InetSocketAddress getDireccion() {
+        return servidor.getAddress();
+    }
+
+    private void atender(HttpExchange intercambio) {
+        try (intercambio) {
+            Respuesta respuesta;
+            SesionLectura sesion = null;
+            try {
+                sesion = sesion(intercambio);
+                respuesta = encaminar(intercambio, sesion);
+            } catch (CompletionException e) {
+                respuesta = respuestaError(e.getCause() != null ? e.getCause() : e);
+            } catch (IllegalArgumentException e) {
+                respuesta = new Respuesta(400, JsonDepartamentos.error(e.getMessage()));
+            }
+            if (sesion != null && sesion.getMarcaEscritura() > 0) {
+                intercambio.getResponseHeaders().set(CABECERA_ULTIMA_ESCRITURA,
+                        Long.toString(sesion.getMarcaEscritura()));
+            }
+            responder(intercambio, respuesta);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Cliente desconectado antes de la respuesta: {0}", e.getMessage());
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error al atender " + intercambio.getRequestMethod() + " "
+                    + intercambio.getRequestURI(), e);
+        }
+    }
+
+    /**
+     * Sesión de lectura de la petición, con la marca de escritura que envía el cliente.
+     */
+    private static SesionLectura sesion(HttpExchange intercambio) {
+        String marca = intercambio.getRequestHeaders().getFirst(CABECERA_ULTIMA_ESCRITURA);
+        if (marca == null || marca.isBlank()) {
+            return new SesionLectura();
+        }
+        try {
+            return SesionLectura.desde(Long.parseLong(marca.strip()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(CABECERA_ULTIMA_ESCRITURA + " debe ser un número entero");
+        }
+    }
+
+    private Respuesta encaminar(HttpExchange intercambio, SesionLectura sesion) throws IOException {
+        String metodo = intercambio.getRequestMethod();
+        String ruta = intercambio.getRequestURI().getPath();
+
+        if (ruta.equals(RUTA) || ruta.equals(RUTA + "/")) {
+            return switch (metodo) {
+                case "GET" -> listar(parametros(intercambio), sesion);
+                case "POST" -> insertar(JsonDepartamentos.leerDepartamento(leerCuerpo(intercambio)), sesion);
+                default -> noPermitido(intercambio, "GET, POST");
+            };
+        }
+        if (ruta.equals(RUTA_LOTE) && metodo.equals("POST")) {
+            ResultadoLote lote = controller.guardarLoteAsync(
+                    JsonDepartamentos.leerDepartamentos(leerCuerpo(intercambio)), sesion).join();
+            return new Respuesta(200, JsonDepartamentos.lote(lote));
+        }
+        if (!ruta.startsWith(RUTA + "/") || ruta.indexOf('/', RUTA.length() + 1) >= 0) {
+            return new Respuesta(404, JsonDepartamentos.error("Ruta desconocida: " + ruta));
+        }
+
+        String codigo = ruta.substring(RUTA.length() + 1);
+        return switch (metodo) {
+            case "GET" -> {
+                Departamento dep = controller.buscarDepartamentoAsync(codigo, sesion).join();
+                yield dep == null ? noEncontrado(codigo) : new Respuesta(200, JsonDepartamentos.departamento(dep));
+            }
+            case "PUT" -> {
+                Departamento dep = JsonDepartamentos.leerDepartamento(leerCuerpo(intercambio));
+                if (!dep.getCodigo().equals(codigo)) {
+                    throw new IllegalArgumentException("El código del cuerpo (" + dep.getCodigo()
+                            + ") no coincide con el de la ruta (" + codigo + ")");
+                }
+                ResultadoFila.Estado estado = controller.guardarDepartamentoAsync(dep, sesion).join();
+                yield new Respuesta(estado == ResultadoFila.Estado.INSERTADO ? 201 : 200,
+                        JsonDepartamentos.estado(estado));
+            }
+            case "DELETE" -> Boolean.TRUE.equals(controller.eliminarDepartamentoAsync(codigo, sesion).join())
+                    ? new Respuesta(204, null) : noEncontrado(codigo);
+            default -> noPermitido(intercambio, "GET, PUT, DELETE");
+        };
+    }
+
+    private Respuesta listar(Map<String, String> parametros, SesionLectura sesion) {
+        String codigos = parametros.get("codigos");
+        if (codigos != null) {
+            List<String> lista = Arrays.stream(codigos.split(",")).map(String::strip).filter(c -> !c.isEmpty()).toList();
+            return new Respuesta(200, JsonDepartamentos.lista(controller.buscarDepartamentosAsync(lista, sesion).join().values()));
+        }
+
+        String despuesDe = parametros.getOrDefault("despuesDe", "");
+        FiltroDepartamentos filtro = new FiltroDepartamentos()
+                .nombreEmpiezaPor(parametros.get("nombreEmpiezaPor"))
+                .nombreContiene(parametros.get("nombreContiene"))
+                .idLocalizacion(entero(parametros, "idLocalizacion"))
+                .idManager(entero(parametros, "idManager"))
+                .codigoEntre(parametros.get("codigoDesde"), parametros.get("codigoHasta"));
+        boolean filtrado = filtro.getNombreEmpiezaPor() != null || filtro.getNombreContiene() != null
+                || filtro.getIdLocalizacion() != null || filtro.getIdManager() != null
+                || filtro.getCodigoDesde() != null || filtro.getCodigoHasta() != null;
+        CompletableFuture<List<Departamento>> pagina = filtrado
+                ? controller.filtrarAsync(filtro, despuesDe, sesion)
+                : controller.listarPaginaAsync(despuesDe, sesion);
+        List<Departamento> departamentos = pagina.join();
+        // Una página incompleta es la última
+        String siguiente = departamentos.size() < DatabaseConfig.TAMANO_PAGINA ? null
+                : departamentos.get(departamentos.size() - 1).getCodigo();
+        return new Respuesta(200, JsonDepartamentos.pagina(departamentos, siguiente));
+    }
+
+    private Respuesta insertar(Departamento dep, SesionLectura sesion) {
+        if (!Boolean.TRUE.equals(controller.insertarDepartamentoAsync(dep, sesion).join())) {
+            return new Respuesta(409, JsonDepartamentos.error("No se ha insertado " + dep.getCodigo()));
+        }
+        Respuesta respuesta = new Respuesta(201, JsonDepartamentos.departamento(dep));
+        respuesta.ubicacion = RUTA + "/" + dep.getCodigo();
+        return respuesta;
+    }
+
+    /**
+     * Traduce el error de una operación del controlador a un código HTTP.
+     */
+    private static Respuesta respuestaError(Throwable causa) {
+        if (causa instanceof SQLIntegrityConstraintViolationException) {
+            return new Respuesta(409, JsonDepartamentos.error(causa.getMessage()));
+        }
+        if (causa instanceof SQLDataException || causa instanceof IllegalArgumentException) {
+            return new Respuesta(400, JsonDepartamentos.error(causa.getMessage()));
+        }
+        if (causa instanceof SQLException e && ConexionBD.esFalloConexion(e)) {
+            Respuesta respuesta = new Respuesta(503, JsonDepartamentos.error(causa.getMessage()));
+            respuesta.reintentarTrasSegundos = 1;
+            return respuesta;
+        }
+        LOGGER.log(Level.SEVERE, "Error en una operación del servicio", causa);
+        return new Respuesta(500, JsonDepartamentos.error(causa.getMessage()));
+    }
+
+    private static Respuesta noEncontrado(String codigo) {
+        return new Respuesta(404, JsonDepartamentos.error("No existe el departamento " + codigo));
+    }
+
+    private static Respuesta noPermitido(HttpExchange intercambio, String permitidos) {
+        intercambio.getResponseHeaders().set("Allow", permitidos);
+        return new Respuesta(405, JsonDepartamentos.error("Método no permitido: " + intercambio.getRequestMethod()));
+    }
+
+    /**
+     * Lee el cuerpo completo; la conexión sólo puede reutilizarse si se ha consumido.
+     */
+    private static String leerCuerpo(HttpExchange intercambio) throws IOException {
+        try (InputStream entrada = intercambio.getRequestBody()) {
+            byte[] cuerpo = entrada.readNBytes(DatabaseConfig.SERVICIO_CUERPO_MAX_BYTES + 1);
+            if (cuerpo.length > DatabaseConfig.SERVICIO_CUERPO_MAX_BYTES) {
+                throw new IllegalArgumentException("El cuerpo supera " + DatabaseConfig.SERVICIO_CUERPO_MAX_BYTES + " bytes");
+            }
+            return new String(cuerpo, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static Map<String, String> parametros(HttpExchange intercambio) {
+        Map<String, String> parametros = new HashMap<>();
+        String consulta = intercambio.getRequestURI().getRawQuery();
+        if (consulta == null) {
+            return parametros;
+        }
+        for (String par : consulta.split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0) {
+                parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                        URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return parametros;
+    }
+
+    private static Integer entero(Map<String, String> parametros, String nombre) {
+        String valor = parametros.get(nombre);
+        if (valor == null || valor.isEmpty()) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(valor.strip());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(nombre + " debe ser un número entero");
+        }
+    }
+
+    private static void responder(HttpExchange intercambio, Respuesta respuesta) throws IOException {
+        var cabeceras = intercambio.getResponseHeaders();
+        if (respuesta.ubicacion != null) {
+            cabeceras.set("Location", respuesta.ubicacion);
+        }
+        if (respuesta.reintentarTrasSegundos > 0) {
+            cabeceras.set("Retry-After", Integer.toString(respuesta.reintentarTrasSegundos));
+        }
+        if (respuesta.cuerpo == null) {
+            intercambio.sendResponseHeaders(respuesta.codigo, -1);
+            return;
+        }
+        byte[] cuerpo = respuesta.cuerpo.getBytes(StandardCharsets.UTF_8);
+        cabeceras.set("Content-Type", TIPO_JSON);
+        cabeceras.set("Vary", "Accept-Encoding");
+        if (cuerpo.length >= DatabaseConfig.SERVICIO_GZIP_MIN_BYTES && admiteGzip(intercambio)) {
+            cuerpo = comprimir(cuerpo);
+            cabeceras.set("Content-Encoding", "gzip");
+        }
+        // Con la longitud conocida la conexión puede reutilizarse para la siguiente petición
+        intercambio.sendResponseHeaders(respuesta.codigo, cuerpo.length);
+        intercambio.getResponseBody().write(cuerpo);
+    }
+
+    private static boolean admiteGzip(HttpExchange intercambio) {
+        for (String valor : intercambio.getRequestHeaders().getOrDefault("Accept-Encoding", List.of())) {
+            for (String codificacion : valor.split(",")) {
+                String[] partes = codificacion.strip().split(";");
+                if (partes[0].strip().equalsIgnoreCase("gzip")
+                        && !(partes.length > 1 && partes[1].replace(" ", "").equals("q=0"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static byte[] comprimir(byte[] datos) {
+        ByteArrayOutputStream comprimidos = new ByteArrayOutputStream(datos.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(comprimidos)) {
+            gzip.write(datos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return comprimidos.toByteArray();
+    }
+
+    /**
+     * Código, cuerpo JSON (null si no lleva) y cabeceras opcionales de una respuesta.
+     */
+    private static final class Respuesta {
+        private final int codigo;
+        private final String cuerpo;
+        private String ubicacion;
+        private int reintentarTrasSegundos;
+
+        Respuesta(int codigo, String cuerpo) {
+            this.codigo = codigo;
+            this.cuerpo = cuerpo;
+        }
+    }
+}
@@ -1,31 +1,84 @@
 package foc.departamento.view;
 
+import foc.departamento.dao.CambioDepartamento;
+import foc.departamento.dao.InstantaneaDepartamentos;
+import foc.departamento.dao.ResultadoFila;
+import foc.departamento.dao.SincronizadorCambios;
 import foc.departamento.model.Departamento;
 import foc.departamento.view.components.FormPanel;
 import foc.departamento.view.components.InfoPanel;
 import foc.departamento.controller.DepartamentoController;
 import util.AlertUtils;
 import javafx.application.Application;
+import javafx.application.Platform;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
 import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressIndicator;
 import javafx.scene.control.SplitPane;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.HBox;
 import javafx.stage.Stage;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.FormatStyle;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * Vista principal de la aplicación.
+ * La ventana se muestra sin esperar a la base de datos: el controlador (carga del driver,
+ * métricas y pool) se prepara en segundo plano, normalmente desde {@link #prepararControlador()}
+ * antes incluso de arrancar JavaFX, y al estar listo se carga la primera página.
+ * Si hay una copia local de la última sesión ({@link InstantaneaDepartamentos}) la tabla se llena
+ * con ella al momento y después se pone al día con el registro de cambios; si la base de datos no
+ * responde se sigue mostrando la copia, sólo para consultar. Al cerrar se guarda la copia nueva.
  */
 public class DepartamentoView extends Application {
+    private static final Logger LOGGER = Logger.getLogger(DepartamentoView.class.getName());
+    // Para generar el archivo AppCDS: salir en cuanto se ha cargado la primera página
+    private static final boolean SALIR_TRAS_CARGA = Boolean.getBoolean("departamento.arranque.salirTrasCarga");
+    private static CompletableFuture<DepartamentoController> controladorPreparado;
+    private static CompletableFuture<InstantaneaDepartamentos> instantaneaPreparada;
+
     private DepartamentoController controller;
     private FormPanel formPanel;
     private InfoPanel infoPanel;
+    private HBox barraEstado;
+    // Operaciones de base de datos en curso; mientras haya alguna se muestra el indicador de actividad
+    private int operacionesEnCurso;
+    // Se completa, en el hilo de JavaFX, cuando la copia local está en la tabla (con null si no hay)
+    private final CompletableFuture<InstantaneaDepartamentos> instantaneaMostrada = new CompletableFuture<>();
+    // Versión del registro de cambios hasta la que la tabla está al día, para guardar la copia local
+    private long versionAplicada;
+    // Copia local mostrada al arrancar, o null si no había
+    private InstantaneaDepartamentos instantanea;
+    // La tabla muestra la copia local porque la base de datos no respondió
+    private boolean sinConexion;
+
+    /**
+     * Empieza a crear el controlador y a abrir la copia local en segundo plano, si no se ha hecho
+     * ya. Llamarlo antes de {@link Application#launch} solapa ambas cosas con el arranque de JavaFX.
+     */
+    public static synchronized void prepararControlador() {
+        if (controladorPreparado == null) {
+            instantaneaPreparada = DepartamentoController.abrirInstantaneaAsync();
+            controladorPreparado = DepartamentoController.crearAsync();
+        }
+    }
 
     @Override
     public void start(Stage primaryStage) {
         try {
-
-            controller = new DepartamentoController();
+            prepararControlador();
 
             primaryStage.setTitle("Gestión de Departamentos");
 
@@ -36,19 +89,30 @@ public class DepartamentoView extends Application {
             formPanel = new FormPanel();
             infoPanel = new InfoPanel();
 
-            // Cargar datos iniciales
-            cargarDatosIniciales();
-
-            // Configurar eventos
+            // Configurar eventos (los botones siguen deshabilitados hasta tener controlador)
             configurarEventos();
 
             // Organizar layout
             SplitPane splitPane = new SplitPane(formPanel, infoPanel);
             splitPane.setDividerPositions(0.45);
             root.setCenter(splitPane);
+            root.setBottom(crearBarraEstado());
 
             Scene scene = new Scene(root, 963, 500);
             primaryStage.setScene(scene);
+            primaryStage.setOnShown(e -> LOGGER.log(Level.INFO, "Ventana mostrada a los {0} ms del arranque",
+                    ManagementFactory.getRuntimeMXBean().getUptime()));
+
+            // Mostrar la copia local en cuanto se lea y cargar los datos cuando el controlador esté listo
+            instantaneaPreparada.thenAccept(instantanea -> Platform.runLater(() -> mostrarInstantanea(instantanea)));
+            enSegundoPlano(controladorPreparado, "Error al conectar con la base de datos").thenAccept(preparado -> {
+                if (preparado == null) {
+                    salirSiSoloCarga();
+                    return;
+                }
+                controller = preparado;
+                instantaneaMostrada.thenAccept(this::cargarDatosIniciales);
+            });
             primaryStage.show();
 
         } catch (Exception e) {
@@ -56,22 +120,179 @@ public class DepartamentoView extends Application {
         }
     }
 
+    private void salirSiSoloCarga() {
+        if (SALIR_TRAS_CARGA) {
+            Platform.exit();
+        }
+    }
+
+    /**
+     * Crea la barra inferior con el indicador de actividad, oculta mientras no haya operaciones en curso
+     */
+    private HBox crearBarraEstado() {
+        ProgressIndicator indicador = new ProgressIndicator();
+        indicador.setPrefSize(18, 18);
+        barraEstado = new HBox(8, indicador, new Label("Consultando la base de datos..."));
+        barraEstado.setAlignment(Pos.CENTER_LEFT);
+        barraEstado.setPadding(new Insets(4, 10, 4, 10));
+        barraEstado.setVisible(false);
+        return barraEstado;
+    }
+
+    /**
+     * Lleva la cuenta de operaciones en curso, mostrando el indicador y
+     * deshabilitando los botones mientras haya alguna
+     */
+    private void marcarOcupado(boolean ocupado) {
+        operacionesEnCurso += ocupado ? 1 : -1;
+        boolean hayOperaciones = operacionesEnCurso > 0;
+        barraEstado.setVisible(hayOperaciones);
+        formPanel.setBotonesHabilitados(!hayOperaciones);
+        infoPanel.setBotonesHabilitados(!hayOperaciones);
+    }
+
+    /**
+     * Acompaña una operación asíncrona del controlador: marca la vista como ocupada
+     * y devuelve el resultado en el hilo de JavaFX mediante Platform.runLater.
+     * Si la operación falla se muestra el error y el resultado es null.
+     *
+     * @param operacion Operación en curso en un hilo virtual
+     * @param tituloError Título del diálogo de error
+     * @return Futuro que se completa en el hilo de JavaFX
+     */
+    private <T> CompletableFuture<T> enSegundoPlano(CompletableFuture<T> operacion, String tituloError) {
+        marcarOcupado(true);
+        CompletableFuture<T> enInterfaz = new CompletableFuture<>();
+        operacion.whenComplete((resultado, error) -> Platform.runLater(() -> {
+            marcarOcupado(false);
+            if (error != null) {
+                Throwable causa = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                AlertUtils.mostrarError(tituloError, causa.getMessage());
+                enInterfaz.complete(null);
+            } else {
+                enInterfaz.complete(resultado);
+            }
+        }));
+        return enInterfaz;
+    }
+
     /**
-     * Carga los datos iniciales en la tabla
+     * Carga una página de departamentos sin bloquear la interfaz
      */
-    private void cargarDatosIniciales() {
-        List<Departamento> departamentos = controller.listarTodosDepartamentos();
-        if (departamentos != null) {
-            infoPanel.actualizarTabla(departamentos);
+    private CompletableFuture<List<Departamento>> cargarPagina(String despuesDeCodigo) {
+        return enSegundoPlano(controller.listarPaginaAsync(despuesDeCodigo), "Error al listar");
+    }
+
+    /**
+     * Llena la tabla con la copia local de la última sesión, si la hay, antes de conectar.
+     */
+    private void mostrarInstantanea(InstantaneaDepartamentos instantanea) {
+        if (instantanea != null) {
+            try {
+                infoPanel.mostrarInstantanea(instantanea.leerTodos(), instantanea.isCompleta());
+                LOGGER.log(Level.INFO, "Copia local de {0} departamentos mostrada a los {1} ms del arranque",
+                        new Object[]{instantanea.tamano(), ManagementFactory.getRuntimeMXBean().getUptime()});
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Copia local de departamentos dañada: {0}", e.getMessage());
+                instantanea = null;
+            }
+        }
+        this.instantanea = instantanea;
+        instantaneaMostrada.complete(instantanea);
+    }
+
+    /**
+     * Carga los datos iniciales en la tabla. Si ya muestra una copia local se intenta ponerla al
+     * día con los cambios ocurridos desde que se guardó; si no es posible se carga de nuevo.
+     */
+    private void cargarDatosIniciales(InstantaneaDepartamentos instantanea) {
+        SincronizadorCambios.Oyente oyente = new SincronizadorCambios.Oyente() {
+            @Override
+            public void aplicar(List<CambioDepartamento> cambios) {
+                Platform.runLater(() -> aplicarCambios(cambios));
+            }
+
+            @Override
+            public void recargar() {
+                Platform.runLater(() -> infoPanel.cargarPorPaginas(DepartamentoView.this::cargarPagina));
+            }
+
+            @Override
+            public void alcanzada(long version) {
+                Platform.runLater(() -> versionAplicada = version);
+            }
+        };
+        if (instantanea == null) {
+            cargarDesdeBaseDatos(oyente);
+            return;
+        }
+        controller.reconciliarInstantaneaAsync(oyente, instantanea).whenComplete((alDia, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                mostrarSinConexion(instantanea, error);
+                salirSiSoloCarga();
+                return;
+            }
+            formPanel.setSoloLectura(false);
+            if (alDia) {
+                infoPanel.continuarPorPaginas(this::cargarPagina);
+                salirSiSoloCarga();
+            } else {
+                cargarDesdeBaseDatos(oyente);
+            }
+        }));
+    }
+
+    /**
+     * Carga la primera página de la base de datos. Antes se inicia la sincronización, que anota la
+     * versión de partida del registro de cambios para no perder los que lleguen durante la carga.
+     */
+    private void cargarDesdeBaseDatos(SincronizadorCambios.Oyente oyente) {
+        controller.iniciarSincronizacionAsync(oyente).whenComplete((activa, error) -> Platform.runLater(
+                () -> infoPanel.cargarPorPaginas(this::cargarPagina).whenComplete((primera, errorCarga) -> {
+                    LOGGER.log(Level.INFO, "Primera página cargada a los {0} ms del arranque",
+                            ManagementFactory.getRuntimeMXBean().getUptime());
+                    salirSiSoloCarga();
+                })));
+    }
+
+    /**
+     * La base de datos no responde: la tabla se queda con la copia local y sólo se puede consultar.
+     * Pulsar "Mostrar Todo" vuelve a intentar ponerla al día.
+     */
+    private void mostrarSinConexion(InstantaneaDepartamentos instantanea, Throwable error) {
+        sinConexion = true;
+        formPanel.setSoloLectura(true);
+        Throwable causa = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        LOGGER.log(Level.WARNING, "Sin conexión con la base de datos, se muestra la copia local: {0}", causa.getMessage());
+        String guardada = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.MEDIUM)
+                .format(Instant.ofEpochMilli(instantanea.getMomento()).atZone(ZoneId.systemDefault()));
+        infoPanel.mostrarInformacion("SIN CONEXIÓN CON LA BASE DE DATOS\n"
+                + "Se muestran los datos guardados el " + guardada + ".\n"
+                + "Se pueden consultar, pero no modificar hasta recuperar la conexión.");
+    }
+
+    /**
+     * Aplica a la tabla los cambios hechos por otros clientes (o por este mismo, sin efecto)
+     */
+    private void aplicarCambios(List<CambioDepartamento> cambios) {
+        for (CambioDepartamento cambio : cambios) {
+            if (cambio.eliminado()) {
+                infoPanel.eliminarDepartamento(cambio.codigo());
+            } else {
+                infoPanel.agregarDepartamento(cambio.departamento());
+            }
         }
     }
 
     private void configurarEventos() {
         // Configurar eventos de los botones del formulario
-        formPanel.getBtnInsertar().setOnAction(e -> insertarDepartamento());
-        formPanel.getBtnModificar().setOnAction(e -> modificarDepartamento());
+        formPanel.getBtnGuardar().setOnAction(e -> guardarDepartamento());
         formPanel.getBtnBorrar().setOnAction(e -> borrarDepartamento());
         formPanel.getBtnLimpiar().setOnAction(e -> limpiarCampos());
+        formPanel.getChkAgruparCambios().setOnAction(e -> cambiarModoUnidadTrabajo());
+        formPanel.getBtnConfirmar().setOnAction(e -> confirmarCambios());
+        formPanel.getBtnDescartar().setOnAction(e -> descartarCambios());
         // formPanel.getBtnMostrarDepartamento().setOnAction(e -> buscarYMostrarDepartamento());
 
         // Configurar eventos de los botones del panel de información
@@ -116,36 +337,42 @@ public class DepartamentoView extends Application {
         }
     }
 
-    private void insertarDepartamento() {
-        try {
-            Departamento dept = obtenerDepartamentoDesdeFormulario();
-            if (dept == null) return;
-
-            boolean exito = controller.insertarDepartamento(dept);
-            if (exito) {
-                AlertUtils.mostrarInformacion("Éxito", "Departamento insertado correctamente.");
-                // Actualizar la información mostrada en el InfoPanel
-                actualizarInfoPanel();
-                limpiarCampos();
-            }
-        } catch (NumberFormatException e) {
-            AlertUtils.mostrarError("Error de formato", "Los campos de localización y manager deben ser números.");
+    /**
+     * Inserta o modifica el departamento del formulario según exista, con un solo viaje a la base de datos.
+     * Si el código está en la tabla se trata de una modificación y se pide confirmación antes; si no,
+     * se guarda sin preguntar, sin consultar antes la base de datos
+     */
+    private void guardarDepartamento() {
+        Departamento dept = obtenerDepartamentoDesdeFormulario();
+        if (dept == null) return;
+        // Se confirma antes de pedir nada a la base de datos, para no retener una conexión
+        // mientras el usuario decide; los cambios agrupados se confirman todos al final
+        if (!controller.hayUnidadTrabajo() && infoPanel.contieneDepartamento(dept.getCodigo())
+                && !AlertUtils.mostrarAdvertencia("Confirmar acción",
+                        "¿Estás seguro de modificar el departamento con código: " + dept.getCodigo() + "?")) {
+            return;
         }
-    }
-
-    private void modificarDepartamento() {
-        try {
-            Departamento dept = obtenerDepartamentoDesdeFormulario();
-            if (dept == null) return;
 
-            boolean exito = controller.modificarDepartamento(dept);
-            if (exito) {
-                // Actualizar la información mostrada en el InfoPanel
-                actualizarInfoPanel();
+        enSegundoPlano(controller.guardarDepartamentoAsync(dept), "Error al guardar").thenAccept(estado -> {
+            // null: error ya mostrado por enSegundoPlano
+            if (estado == null) {
+                return;
             }
-        } catch (NumberFormatException e) {
-            AlertUtils.mostrarError("Error de formato", "Los campos de localización y manager deben ser números.");
-        }
+            if (estado == ResultadoFila.Estado.RECHAZADO) {
+                informarRechazo(false);
+                return;
+            }
+            String mensaje = switch (estado) {
+                case INSERTADO -> "Departamento insertado correctamente.";
+                case ACTUALIZADO -> "Departamento modificado con éxito.";
+                case PENDIENTE -> "Departamento pendiente de confirmar.";
+                default -> "El departamento ya tenía esos datos.";
+            };
+            informarExito("Confirmación", mensaje);
+            // agregarDepartamento sustituye la fila si el código ya está en la tabla
+            infoPanel.agregarDepartamento(dept);
+            limpiarCampos();
+        });
     }
 
     /**
@@ -180,15 +407,90 @@ public class DepartamentoView extends Application {
             AlertUtils.mostrarError("Error", "Debe especificar un código de departamento.");
             return;
         }
+        if (!controller.hayUnidadTrabajo() && !AlertUtils.mostrarAdvertencia("Confirmar acción",
+                "¿Estás seguro de eliminar el departamento con código: " + codigo + "?")) {
+            return;
+        }
 
-        boolean exito = controller.eliminarDepartamento(codigo);
-        if (exito) {
-            limpiarCampos();
-            // Actualizar la información mostrada en el InfoPanel
-            actualizarInfoPanel();
+        enSegundoPlano(controller.eliminarDepartamentoAsync(codigo), "Error al eliminar").thenAccept(exito -> {
+            if (Boolean.TRUE.equals(exito)) {
+                informarExito("Confirmación", "Departamento eliminado con éxito.");
+                limpiarCampos();
+                // Quitar sólo la fila eliminada
+                infoPanel.eliminarDepartamento(codigo);
+            } else {
+                informarRechazo(exito);
+            }
+        });
+    }
+
+    /**
+     * Informa de un cambio hecho. Si se están agrupando cambios sólo se muestra cuántos hay
+     * pendientes, para no interrumpir con un diálogo en cada uno
+     */
+    private void informarExito(String titulo, String mensaje) {
+        if (controller.hayUnidadTrabajo()) {
+            infoPanel.mostrarInformacion(controller.getCambiosPendientes() + " departamentos con cambios pendientes de confirmar.");
+        } else {
+            AlertUtils.mostrarInformacion(titulo, mensaje);
+        }
+    }
+
+    /**
+     * Informa de un cambio que la unidad de trabajo no admite por chocar con otro pendiente
+     * (fuera de ella, los errores ya los muestra enSegundoPlano)
+     */
+    private void informarRechazo(Boolean exito) {
+        if (Boolean.FALSE.equals(exito) && controller.hayUnidadTrabajo()) {
+            AlertUtils.mostrarError("Cambio rechazado",
+                    "El cambio no es compatible con los cambios pendientes de ese departamento.");
+        }
+    }
+
+    /**
+     * Activa o desactiva la agrupación de cambios según la casilla del formulario
+     */
+    private void cambiarModoUnidadTrabajo() {
+        if (formPanel.getChkAgruparCambios().isSelected()) {
+            controller.iniciarUnidadTrabajo();
+            infoPanel.mostrarInformacion("Los cambios se acumularán hasta pulsar Confirmar.");
+        } else {
+            descartarCambios();
         }
     }
 
+    /**
+     * Aplica los cambios agrupados en una única transacción
+     */
+    private void confirmarCambios() {
+        enSegundoPlano(controller.confirmarUnidadTrabajoAsync(), "Error al confirmar los cambios").thenAccept(aplicados -> {
+            // Si falla, los cambios siguen pendientes para corregirlos o descartarlos
+            if (aplicados != null) {
+                formPanel.getChkAgruparCambios().setSelected(false);
+                AlertUtils.mostrarInformacion("Confirmación", "Se han aplicado los cambios de " + aplicados + " departamentos.");
+            }
+        });
+    }
+
+    /**
+     * Descarta los cambios agrupados, previa confirmación si hay alguno, y recarga la tabla,
+     * que los mostraba ya aplicados
+     */
+    private void descartarCambios() {
+        int pendientes = controller.getCambiosPendientes();
+        if (pendientes > 0 && !AlertUtils.mostrarAdvertencia("Confirmar acción",
+                "¿Descartar los cambios pendientes de " + pendientes + " departamentos?")) {
+            formPanel.getChkAgruparCambios().setSelected(true);
+            return;
+        }
+        controller.descartarUnidadTrabajo();
+        formPanel.getChkAgruparCambios().setSelected(false);
+        if (pendientes > 0) {
+            infoPanel.cargarPorPaginas(this::cargarPagina);
+        }
+        infoPanel.mostrarInformacion("Cambios descartados.");
+    }
+
     private void limpiarCampos() {
         formPanel.getTxtCodigo().clear();
         formPanel.getTxtNombre().clear();
@@ -196,13 +498,6 @@ public class DepartamentoView extends Application {
         formPanel.getTxtManager().clear();
     }
 
-    private void actualizarInfoPanel() {
-        List<Departamento> departamentos = controller.actualizarTabla();
-        if (departamentos != null) {
-            infoPanel.actualizarTabla(departamentos);
-        }
-    }
-
     /**
      * Busca un departamento por su código y muestra su información
      */
@@ -213,35 +508,54 @@ public class DepartamentoView extends Application {
             return;
         }
 
-        Departamento departamento = controller.buscarDepartamento(codigo);
-        if (departamento != null) {
-            // Mostrar la información en el formulario
-            cargarDepartamentoEnFormulario(departamento);
+        enSegundoPlano(controller.buscarDepartamentoAsync(codigo), "Error al buscar").thenAccept(departamento -> {
+            if (departamento != null) {
+                // Mostrar la información en el formulario
+                cargarDepartamentoEnFormulario(departamento);
 
-            // Seleccionar el departamento en la tabla si existe
-            infoPanel.seleccionarDepartamentoPorCodigo(codigo);
-        } else {
-            AlertUtils.mostrarError("No encontrado", "No se encontró ningún departamento con el código: " + codigo);
-        }
+                // Seleccionar el departamento en la tabla si existe
+                infoPanel.seleccionarDepartamentoPorCodigo(codigo);
+            } else {
+                AlertUtils.mostrarError("No encontrado", "No se encontró ningún departamento con el código: " + codigo);
+            }
+        });
     }
 
     /**
      * Muestra la información de todos los departamentos
      */
     private void mostrarTodosDepartamentos() {
-        List<Departamento> departamentos = controller.listarTodosDepartamentos();
-        if (departamentos != null && !departamentos.isEmpty()) {
-            infoPanel.actualizarTabla(departamentos);
-
-            StringBuilder info = new StringBuilder();
-            info.append("LISTADO DE DEPARTAMENTOS\n");
-            info.append("==========================\n");
-            info.append("Se han cargado ").append(departamentos.size()).append(" departamentos.\n");
-            info.append("Haga doble clic en un departamento para cargar sus datos en el formulario.");
+        if (sinConexion) {
+            // Se vuelve a intentar poner al día la copia sin vaciar la tabla
+            sinConexion = false;
+            cargarDatosIniciales(instantanea);
+            return;
+        }
+        infoPanel.cargarPorPaginas(this::cargarPagina).thenRun(() -> {
+            int cargados = infoPanel.getTablaDepartamentos().getItems().size();
+            if (cargados > 0) {
+                StringBuilder info = new StringBuilder();
+                info.append("LISTADO DE DEPARTAMENTOS\n");
+                info.append("==========================\n");
+                info.append("Se han cargado ").append(cargados).append(" departamentos");
+                info.append(infoPanel.hayMasPaginas() ? " (desplácese para cargar más).\n" : ".\n");
+                info.append("Haga doble clic en un departamento para cargar sus datos en el formulario.");
+
+                infoPanel.mostrarInformacion(info.toString());
+            } else {
+                infoPanel.mostrarInformacion("No hay departamentos para mostrar.");
+            }
+        });
+    }
 
-            infoPanel.mostrarInformacion(info.toString());
-        } else {
-            infoPanel.mostrarInformacion("No hay departamentos para mostrar.");
+    @Override
+    public void stop() {
+        if (controller != null) {
+            controller.detenerSincronizacion();
+            List<Departamento> cargados = infoPanel.getDepartamentosCargados();
+            if (cargados != null && !sinConexion) {
+                controller.guardarInstantanea(cargados, versionAplicada, !infoPanel.hayMasPaginas());
+            }
         }
     }
 
@@ -1,9 +1,13 @@
 package foc.departamento.view.components;
 
 import foc.departamento.view.util.StyleConstants;
+import javafx.beans.binding.BooleanBinding;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.SimpleBooleanProperty;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.control.Button;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.scene.layout.GridPane;
@@ -19,11 +23,18 @@ public class FormPanel extends VBox {
     private TextField txtNombre;
     private TextField txtLocalizacion;
     private TextField txtManager;
-    private Button btnInsertar;
-    private Button btnModificar;
+    private Button btnGuardar;
     private Button btnBorrar;
     private Button btnLimpiar;
     private Button btnMostrar;
+    // Unidad de trabajo: acumular cambios y aplicarlos juntos
+    private CheckBox chkAgruparCambios;
+    private Button btnConfirmar;
+    private Button btnDescartar;
+    // Hay una operación en curso, por ejemplo la confirmación de los cambios agrupados
+    private final BooleanProperty ocupado = new SimpleBooleanProperty(false);
+    // Sin conexión con la base de datos sólo se puede consultar
+    private final BooleanProperty soloLectura = new SimpleBooleanProperty(false);
 
     public FormPanel() {
         super(15); // Espaciado vertical entre componentes
@@ -75,26 +86,41 @@ public class FormPanel extends VBox {
         gridCampos.add(txtManager, 1, 3);
 
         // Crear botones
-        btnInsertar = new Button("Insertar");
-        btnModificar = new Button("Modificar");
+        // Un solo botón para altas y modificaciones: la base de datos decide según exista el código
+        btnGuardar = new Button("Guardar");
         btnBorrar = new Button("Borrar");
         btnLimpiar = new Button("Limpiar");
         btnMostrar = new Button("Buscar");
+        chkAgruparCambios = new CheckBox("Agrupar cambios");
+        btnConfirmar = new Button("Confirmar");
+        btnDescartar = new Button("Descartar");
+        BooleanBinding sinEscritura = ocupado.or(soloLectura);
+        btnGuardar.disableProperty().bind(sinEscritura);
+        btnBorrar.disableProperty().bind(sinEscritura);
+        chkAgruparCambios.disableProperty().bind(sinEscritura);
+        // Confirmar y Descartar sólo tienen sentido mientras se agrupan cambios, y no mientras se
+        // están aplicando: se confirmarían dos veces o se descartarían durante la transacción
+        btnConfirmar.disableProperty().bind(chkAgruparCambios.selectedProperty().not().or(sinEscritura));
+        btnDescartar.disableProperty().bind(chkAgruparCambios.selectedProperty().not().or(ocupado));
 
         // Organizar botones en contenedores
         HBox panelBotonesCRUD = new HBox(10);
         panelBotonesCRUD.setAlignment(Pos.CENTER);
-        panelBotonesCRUD.getChildren().addAll(btnInsertar, btnModificar, btnBorrar);
+        panelBotonesCRUD.getChildren().addAll(btnGuardar, btnBorrar);
 
         HBox panelBotonesUtil = new HBox(10);
         panelBotonesUtil.setAlignment(Pos.CENTER);
         panelBotonesUtil.getChildren().addAll(btnLimpiar);
 
+        HBox panelUnidadTrabajo = new HBox(10);
+        panelUnidadTrabajo.setAlignment(Pos.CENTER);
+        panelUnidadTrabajo.getChildren().addAll(chkAgruparCambios, btnConfirmar, btnDescartar);
+
         // Aplicar estilos a botones
         aplicarEstilosBotones();
 
         // Añadir todos los componentes al panel
-        getChildren().addAll(lblTitulo, gridCampos, panelBotonesCRUD, panelBotonesUtil);
+        getChildren().addAll(lblTitulo, gridCampos, panelBotonesCRUD, panelBotonesUtil, panelUnidadTrabajo);
 
         validarCamposObligatorios();
     }
@@ -103,11 +129,8 @@ public class FormPanel extends VBox {
      * Aplica estilos CSS a los botones
      */
     private void aplicarEstilosBotones() {
-        btnInsertar.setStyle(StyleConstants.BUTTON_STYLE + "-fx-background-color: #4CAF50;");
-        btnInsertar.setPrefWidth(90);
-
-        btnModificar.setStyle(StyleConstants.BUTTON_STYLE + "-fx-background-color: #2196F3;");
-        btnModificar.setPrefWidth(90);
+        btnGuardar.setStyle(StyleConstants.BUTTON_STYLE + "-fx-background-color: #4CAF50;");
+        btnGuardar.setPrefWidth(90);
 
         btnBorrar.setStyle(StyleConstants.BUTTON_STYLE + "-fx-background-color: #F44336;");
         btnBorrar.setPrefWidth(90);
@@ -117,6 +140,12 @@ public class FormPanel extends VBox {
 
         btnMostrar.setStyle(StyleConstants.BUTTON_STYLE);
         btnMostrar.setPrefWidth(90);
+
+        btnConfirmar.setStyle(StyleConstants.BUTTON_STYLE);
+        btnConfirmar.setPrefWidth(90);
+
+        btnDescartar.setStyle(StyleConstants.BUTTON_STYLE);
+        btnDescartar.setPrefWidth(90);
     }
 
     /**
@@ -125,14 +154,10 @@ public class FormPanel extends VBox {
     private void configurarEstilos() {
         // Efectos hover para los botones
         String greenHover = StyleConstants.BUTTON_STYLE_HOVER + "-fx-background-color: #45a049;";
-        String blueHover = StyleConstants.BUTTON_STYLE_HOVER + "-fx-background-color: #0b7dda;";
         String redHover = StyleConstants.BUTTON_STYLE_HOVER + "-fx-background-color: #d32f2f;";
 
-        btnInsertar.setOnMouseEntered(e -> btnInsertar.setStyle(greenHover));
-        btnInsertar.setOnMouseExited(e -> btnInsertar.setStyle(StyleConstants.BUTTON_STYLE + "-fx-background-color: #4CAF50;"));
-
-        btnModificar.setOnMouseEntered(e -> btnModificar.setStyle(blueHover));
-        btnModificar.setOnMouseExited(e -> btnModificar.setStyle(StyleConstants.BUTTON_STYLE + "-fx-background-color: #2196F3;"));
+        btnGuardar.setOnMouseEntered(e -> btnGuardar.setStyle(greenHover));
+        btnGuardar.setOnMouseExited(e -> btnGuardar.setStyle(StyleConstants.BUTTON_STYLE + "-fx-background-color: #4CAF50;"));
 
         btnBorrar.setOnMouseEntered(e -> btnBorrar.setStyle(redHover));
         btnBorrar.setOnMouseExited(e -> btnBorrar.setStyle(StyleConstants.BUTTON_STYLE + "-fx-background-color: #F44336;"));
@@ -142,6 +167,12 @@ public class FormPanel extends VBox {
 
         btnMostrar.setOnMouseEntered(e -> btnMostrar.setStyle(StyleConstants.BUTTON_STYLE_HOVER));
         btnMostrar.setOnMouseExited(e -> btnMostrar.setStyle(StyleConstants.BUTTON_STYLE));
+
+        btnConfirmar.setOnMouseEntered(e -> btnConfirmar.setStyle(StyleConstants.BUTTON_STYLE_HOVER));
+        btnConfirmar.setOnMouseExited(e -> btnConfirmar.setStyle(StyleConstants.BUTTON_STYLE));
+
+        btnDescartar.setOnMouseEntered(e -> btnDescartar.setStyle(StyleConstants.BUTTON_STYLE_HOVER));
+        btnDescartar.setOnMouseExited(e -> btnDescartar.setStyle(StyleConstants.BUTTON_STYLE));
     }
 
     /**
@@ -155,6 +186,25 @@ public class FormPanel extends VBox {
         txtManager.setEditable(editable);
     }
 
+    /**
+     * Habilita o deshabilita los botones de acción, por ejemplo mientras hay una operación en curso
+     * @param habilitados true para habilitarlos, false para deshabilitarlos
+     */
+    public void setBotonesHabilitados(boolean habilitados) {
+        btnLimpiar.setDisable(!habilitados);
+        btnMostrar.setDisable(!habilitados);
+        ocupado.set(!habilitados);
+    }
+
+    /**
+     * Deshabilita o vuelve a habilitar los botones que escriben en la base de datos, por ejemplo
+     * mientras sólo se puede consultar la copia local
+     * @param soloLectura true para deshabilitarlos
+     */
+    public void setSoloLectura(boolean soloLectura) {
+        this.soloLectura.set(soloLectura);
+    }
+
     /**
      * Valida si los campos obligatorios están completados
      */
@@ -183,12 +233,8 @@ public class FormPanel extends VBox {
         return txtManager;
     }
 
-    public Button getBtnInsertar() {
-        return btnInsertar;
-    }
-
-    public Button getBtnModificar() {
-        return btnModificar;
+    public Button getBtnGuardar() {
+        return btnGuardar;
     }
 
     public Button getBtnBorrar() {
@@ -202,4 +248,16 @@ public class FormPanel extends VBox {
     public Button getBtnMostrar() {
         return btnMostrar;
     }
+
+    public CheckBox getChkAgruparCambios() {
+        return chkAgruparCambios;
+    }
+
+    public Button getBtnConfirmar() {
+        return btnConfirmar;
+    }
+
+    public Button getBtnDescartar() {
+        return btnDescartar;
+    }
 }
\ No newline at end of file
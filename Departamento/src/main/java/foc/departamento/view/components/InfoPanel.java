@@ -1,18 +1,26 @@
 package foc.departamento.view.components;
 
+import foc.departamento.model.AlmacenDepartamentos;
 import foc.departamento.model.Departamento;
 import foc.departamento.view.util.StyleConstants;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
 import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
 
 /**
  * Panel para mostrar información de departamentos.
@@ -24,6 +32,36 @@ public class InfoPanel extends VBox {
     private Button btnMostrarTodo;
     private Button btnLimpiar;
     private TableView<Departamento> tablaDepartamentos;
+    // Lista base en orden de código, guardada por columnas; la tabla muestra una vista
+    // filtrada y ordenada según sus columnas que crea los objetos sólo para las filas visibles
+    private final ListaDepartamentosCompacta departamentos = new ListaDepartamentosCompacta();
+    private FilteredList<Departamento> filtrados;
+    private ListaOrdenadaCompacta ordenados;
+    private final Map<TableColumn<Departamento, ?>, ListaOrdenadaCompacta.ComparadorFilas> comparadoresColumna =
+            new HashMap<>();
+
+    // Estado de la carga perezosa por páginas
+    private CargadorPaginas cargadorPaginas;
+    private String ultimoCodigoCargado = "";
+    private boolean hayMasPaginas;
+    private boolean cargandoPagina;
+    // Barra vertical de la tabla, una vez creado su skin
+    private ScrollBar barraVertical;
+    // Se incrementa en cada recarga para descartar páginas que lleguen de una carga anterior
+    private int generacionCarga;
+
+    /**
+     * Fuente asíncrona de páginas de departamentos ordenadas por código.
+     */
+    @FunctionalInterface
+    public interface CargadorPaginas {
+        /**
+         * @param despuesDeCodigo Último código ya cargado, o "" para la primera página
+         * @return Futuro completado en el hilo de JavaFX con la siguiente página
+         *         (vacía si no hay más) o con null si hubo un error
+         */
+        CompletableFuture<List<Departamento>> cargarPagina(String despuesDeCodigo);
+    }
 
     public InfoPanel() {
         super(15); // Espaciado vertical entre componentes
@@ -105,9 +143,92 @@ public class InfoPanel extends VBox {
         // Añadir columnas a la tabla
         tablaDepartamentos.getColumns().addAll(colCodigo, colNombre, colLocalizacion, colManager);
 
+        // Cada columna se ordena comparando las filas sobre las columnas del almacén
+        comparadoresColumna.put(colCodigo, departamentos::compararCodigo);
+        comparadoresColumna.put(colNombre, departamentos::compararNombre);
+        comparadoresColumna.put(colLocalizacion, departamentos::compararLocalizacion);
+        comparadoresColumna.put(colManager, departamentos::compararManager);
+
+        // La tabla nunca cambia de lista: las escrituras modifican la lista base en su sitio
+        // y la vista ordenada mantiene la ordenación elegida, la selección y el desplazamiento
+        filtrados = new FilteredList<>(departamentos);
+        ordenados = new ListaOrdenadaCompacta(filtrados);
+        // El comparador de la tabla se sustituye cada vez que cambian las columnas de ordenación
+        // o su sentido; leerlo en el oyente hace que el siguiente cambio vuelva a avisar
+        tablaDepartamentos.comparatorProperty().addListener(obs ->
+                ordenados.comparadorProperty().set(comparadorDeColumnas(tablaDepartamentos.getComparator())));
+        // La vista ordenada ya sigue al comparador de la tabla; no hay que ordenar la lista
+        tablaDepartamentos.setSortPolicy(tabla -> true);
+        tablaDepartamentos.setItems(ordenados);
+
         // Configurar la tabla para que ocupe todo el espacio disponible
         VBox.setVgrow(tablaDepartamentos, Priority.ALWAYS);
         tablaDepartamentos.setPrefHeight(250);
+
+        // La barra de desplazamiento sólo existe una vez creado el skin de la tabla
+        tablaDepartamentos.skinProperty().addListener((obs, oldSkin, newSkin) -> configurarScrollPerezoso());
+    }
+
+    /**
+     * Traduce las columnas de ordenación de la tabla, con su sentido, a una comparación de filas
+     * de la lista base que no crea objetos Departamento.
+     *
+     * @param comparadorTabla Comparador actual de la tabla, o null si no se ordena por ninguna columna
+     * @return Comparador de posiciones de la lista filtrada, o null para el orden por código
+     */
+    private ListaOrdenadaCompacta.ComparadorFilas comparadorDeColumnas(Comparator<Departamento> comparadorTabla) {
+        List<TableColumn<Departamento, ?>> columnas = List.copyOf(tablaDepartamentos.getSortOrder());
+        if (comparadorTabla == null || columnas.isEmpty()) {
+            return null;
+        }
+        ListaOrdenadaCompacta.ComparadorFilas[] porColumna = new ListaOrdenadaCompacta.ComparadorFilas[columnas.size()];
+        boolean[] descendente = new boolean[columnas.size()];
+        for (int i = 0; i < porColumna.length; i++) {
+            porColumna[i] = comparadoresColumna.get(columnas.get(i));
+            descendente[i] = columnas.get(i).getSortType() == TableColumn.SortType.DESCENDING;
+        }
+        return (a, b) -> {
+            int filaA = filtrados.getSourceIndex(a);
+            int filaB = filtrados.getSourceIndex(b);
+            for (int i = 0; i < porColumna.length; i++) {
+                int resultado = porColumna[i].comparar(filaA, filaB);
+                if (resultado != 0) {
+                    return descendente[i] ? -resultado : resultado;
+                }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * Pide la siguiente página cuando el usuario se acerca al final de la tabla, o mientras
+     * las filas cargadas no llenen la tabla: sin barra de desplazamiento el usuario no puede
+     * llegar al final y no se pediría ninguna página más
+     */
+    private void configurarScrollPerezoso() {
+        for (Node nodo : tablaDepartamentos.lookupAll(".scroll-bar")) {
+            if (nodo instanceof ScrollBar barra && barra.getOrientation() == Orientation.VERTICAL) {
+                barraVertical = barra;
+                barra.valueProperty().addListener((obs, oldValue, newValue) -> {
+                    if (newValue.doubleValue() >= barra.getMax() * 0.9) {
+                        cargarSiguientePagina();
+                    }
+                });
+            }
+        }
+        // Tras cada pasada de layout (página añadida, filtro, cambio de tamaño) la barra ya
+        // refleja las filas visibles
+        tablaDepartamentos.needsLayoutProperty().addListener((obs, antes, pendiente) -> {
+            if (!pendiente) {
+                cargarSiNoLlenaLaTabla();
+            }
+        });
+    }
+
+    private void cargarSiNoLlenaLaTabla() {
+        if (barraVertical != null && !barraVertical.isVisible() && hayMasPaginas && !cargandoPagina) {
+            cargarSiguientePagina();
+        }
     }
 
     /**
@@ -163,8 +284,179 @@ public class InfoPanel extends VBox {
      * @param departamentos Lista de departamentos para mostrar en la tabla
      */
     public void actualizarTabla(List<Departamento> departamentos) {
-        ObservableList<Departamento> lista = FXCollections.observableArrayList(departamentos);
-        tablaDepartamentos.setItems(lista);
+        cargadorPaginas = null;
+        hayMasPaginas = false;
+        generacionCarga++;
+        // La lista base va en el orden de las páginas para poder insertar por búsqueda binaria
+        List<Departamento> porCodigo = new ArrayList<>(departamentos);
+        porCodigo.sort(Comparator.comparing(Departamento::getCodigo, AlmacenDepartamentos.ORDEN_CODIGOS));
+        this.departamentos.reemplazarTodo(porCodigo);
+    }
+
+    /**
+     * Vacía la tabla y la rellena por páginas bajo demanda a medida que el usuario se desplaza.
+     * Sólo se carga de inmediato la primera página, de modo que las primeras filas aparecen al momento.
+     *
+     * @param cargador Fuente de páginas de departamentos
+     * @return Futuro que se completa, en el hilo de JavaFX, cuando se ha mostrado la primera página
+     */
+    public CompletableFuture<Void> cargarPorPaginas(CargadorPaginas cargador) {
+        this.cargadorPaginas = cargador;
+        this.ultimoCodigoCargado = "";
+        this.hayMasPaginas = true;
+        this.cargandoPagina = false;
+        this.generacionCarga++;
+        departamentos.reemplazarTodo(List.of());
+        return cargarSiguientePagina();
+    }
+
+    /**
+     * Muestra los departamentos de una copia local mientras no hay conexión. Son las primeras
+     * páginas por código (o todas), así que se pueden seguir cargando las demás con
+     * {@link #continuarPorPaginas} una vez puestos al día.
+     *
+     * @param porCodigo Departamentos de la copia, en orden de código
+     * @param completa true si la copia tiene todos los departamentos
+     */
+    public void mostrarInstantanea(List<Departamento> porCodigo, boolean completa) {
+        this.cargadorPaginas = null;
+        this.ultimoCodigoCargado = porCodigo.isEmpty() ? "" : porCodigo.get(porCodigo.size() - 1).getCodigo();
+        this.hayMasPaginas = !completa;
+        this.cargandoPagina = false;
+        this.generacionCarga++;
+        departamentos.reemplazarTodo(porCodigo);
+    }
+
+    /**
+     * Sigue cargando páginas bajo demanda a partir de las filas que ya muestra la tabla, sin vaciarla.
+     *
+     * @param cargador Fuente de páginas de departamentos
+     */
+    public void continuarPorPaginas(CargadorPaginas cargador) {
+        this.cargadorPaginas = cargador;
+    }
+
+    /**
+     * @return Departamentos cargados por páginas, en orden de código, o null si la tabla no
+     *         muestra páginas de la base de datos (una copia local sin poner al día)
+     */
+    public List<Departamento> getDepartamentosCargados() {
+        return cargadorPaginas == null ? null : new ArrayList<>(departamentos);
+    }
+
+    /**
+     * Pide la página que sigue a la última cargada, si la hay, y la añade a la tabla al recibirla.
+     * Si ya hay una página en camino no se pide otra.
+     *
+     * @return Futuro que se completa, en el hilo de JavaFX, cuando la página se ha añadido
+     */
+    public CompletableFuture<Void> cargarSiguientePagina() {
+        if (cargadorPaginas == null || !hayMasPaginas || cargandoPagina) {
+            return CompletableFuture.completedFuture(null);
+        }
+        cargandoPagina = true;
+        int generacion = generacionCarga;
+        return cargadorPaginas.cargarPagina(ultimoCodigoCargado).thenAccept(pagina -> {
+            if (generacion != generacionCarga) {
+                return;
+            }
+            cargandoPagina = false;
+            if (pagina == null || pagina.isEmpty()) {
+                hayMasPaginas = false;
+                return;
+            }
+            ultimoCodigoCargado = pagina.get(pagina.size() - 1).getCodigo();
+            // Omitir filas que ya se añadieron a mano (p. ej. insertadas mientras llegaba la página)
+            departamentos.agregarAlFinal(pagina.stream().filter(dep -> departamentos.indiceDe(dep.getCodigo()) < 0).toList());
+        });
+    }
+
+    /**
+     * @return true si quedan páginas por cargar
+     */
+    public boolean hayMasPaginas() {
+        return hayMasPaginas;
+    }
+
+    /**
+     * Añade a la tabla un departamento recién insertado, en su posición por código.
+     * Si cae más allá de la última página cargada no se añade: llegará con su página.
+     * @param departamento Departamento insertado
+     */
+    public void agregarDepartamento(Departamento departamento) {
+        int posicion = departamentos.buscarCodigo(departamento.getCodigo());
+        if (posicion >= 0) {
+            reemplazarDepartamento(departamento);
+            return;
+        }
+        posicion = -posicion - 1;
+        if (posicion == departamentos.size() && hayMasPaginas) {
+            return;
+        }
+        departamentos.insertar(posicion, departamento);
+    }
+
+    /**
+     * Sustituye en la tabla la fila de un departamento modificado, conservando la selección.
+     * @param departamento Departamento con los datos actualizados
+     */
+    public void reemplazarDepartamento(Departamento departamento) {
+        int indice = departamentos.indiceDe(departamento.getCodigo());
+        if (indice < 0) {
+            return;
+        }
+        Departamento seleccionado = getDepartamentoSeleccionado();
+        departamentos.reemplazar(indice, departamento);
+        if (seleccionado != null && seleccionado.getCodigo().equals(departamento.getCodigo())) {
+            int indiceTabla = indiceEnTabla(departamento.getCodigo());
+            if (indiceTabla >= 0) {
+                tablaDepartamentos.getSelectionModel().select(indiceTabla);
+                // La fila nueva es igual a la anterior (mismo código): la selección no avisa
+                mostrarDetalleDepartamento(departamento);
+            }
+        }
+    }
+
+    /**
+     * @param codigo Código del departamento
+     * @return true si el departamento está entre las filas cargadas, aunque el filtro lo oculte
+     */
+    public boolean contieneDepartamento(String codigo) {
+        return departamentos.indiceDe(codigo) >= 0;
+    }
+
+    /**
+     * Quita de la tabla la fila de un departamento eliminado.
+     * @param codigo Código del departamento eliminado
+     */
+    public void eliminarDepartamento(String codigo) {
+        int indice = departamentos.indiceDe(codigo);
+        if (indice >= 0) {
+            departamentos.eliminar(indice);
+        }
+    }
+
+    /**
+     * Posición de un código en la tabla, pasando por la lista base y el filtro. El índice hash
+     * y la vista ordenada responden en tiempo constante; con un filtro activo, FilteredList
+     * busca la posición por búsqueda binaria
+     * @return Índice de la fila en la tabla o -1 si no está cargada o no pasa el filtro
+     */
+    private int indiceEnTabla(String codigo) {
+        int indiceBase = departamentos.indiceDe(codigo);
+        if (indiceBase < 0) {
+            return -1;
+        }
+        int indiceFiltrado = filtrados.getPredicate() == null ? indiceBase : filtrados.getViewIndex(indiceBase);
+        return indiceFiltrado < 0 ? -1 : ordenados.getViewIndex(indiceFiltrado);
+    }
+
+    /**
+     * Filtra las filas visibles de la tabla sin descartar las cargadas.
+     * @param filtro Condición que deben cumplir las filas, o null para mostrarlas todas
+     */
+    public void setFiltro(Predicate<Departamento> filtro) {
+        filtrados.setPredicate(filtro);
     }
 
     /**
@@ -183,14 +475,13 @@ public class InfoPanel extends VBox {
     public boolean seleccionarDepartamentoPorCodigo(String codigo) {
         if (codigo == null || codigo.isEmpty()) return false;
 
-        for (Departamento dept : tablaDepartamentos.getItems()) {
-            if (dept.getCodigo().equals(codigo)) {
-                tablaDepartamentos.getSelectionModel().select(dept);
-                tablaDepartamentos.scrollTo(dept);
-                return true;
-            }
+        int indice = indiceEnTabla(codigo);
+        if (indice < 0) {
+            return false;
         }
-        return false;
+        tablaDepartamentos.getSelectionModel().select(indice);
+        tablaDepartamentos.scrollTo(indice);
+        return true;
     }
 
     /**
@@ -200,6 +491,16 @@ public class InfoPanel extends VBox {
         tablaDepartamentos.getSelectionModel().clearSelection();
     }
 
+    /**
+     * Habilita o deshabilita los botones del panel, por ejemplo mientras hay una consulta en curso
+     * @param habilitados true para habilitarlos, false para deshabilitarlos
+     */
+    public void setBotonesHabilitados(boolean habilitados) {
+        btnBuscar.setDisable(!habilitados);
+        btnMostrarTodo.setDisable(!habilitados);
+        btnLimpiar.setDisable(!habilitados);
+    }
+
     /**
      * Muestra información en el área de texto
      * @param contenido Texto a mostrar
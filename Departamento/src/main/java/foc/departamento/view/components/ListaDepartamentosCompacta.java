@@ -0,0 +1,144 @@
+package foc.departamento.view.components;
+
+import foc.departamento.model.AlmacenDepartamentos;
+import foc.departamento.model.Departamento;
+import javafx.collections.ObservableListBase;
+
+import java.util.AbstractList;
+import java.util.List;
+
+/**
+ * Lista observable de departamentos respaldada por un {@link AlmacenDepartamentos}.
+ * Cada {@link #get(int)} crea el Departamento de esa fila, así que la tabla sólo tiene en
+ * memoria los objetos de las filas visibles. Se modifica con sus propios métodos, que avisan
+ * a los oyentes; los métodos de escritura de {@link List} no están soportados.
+ * Las filas se mantienen en el orden de {@link AlmacenDepartamentos#ORDEN_CODIGOS}, el mismo de
+ * las páginas de la base de datos, y se buscan por código con el índice hash del almacén.
+ */
+class ListaDepartamentosCompacta extends ObservableListBase<Departamento> {
+    private AlmacenDepartamentos almacen = new AlmacenDepartamentos();
+
+    @Override
+    public Departamento get(int index) {
+        return almacen.obtener(index);
+    }
+
+    @Override
+    public int size() {
+        return almacen.tamano();
+    }
+
+    /**
+     * @return Posición del código, o -1 si no está
+     */
+    int indiceDe(String codigo) {
+        return almacen.indiceDe(codigo);
+    }
+
+    /**
+     * @return Posición del código, o {@code -(punto de inserción) - 1} si no está
+     */
+    int buscarCodigo(String codigo) {
+        return almacen.buscarCodigo(codigo);
+    }
+
+    /**
+     * Comparaciones de filas sobre las columnas del almacén, sin crear objetos.
+     */
+    int compararCodigo(int a, int b) {
+        return almacen.compararCodigo(a, b);
+    }
+
+    int compararNombre(int a, int b) {
+        return almacen.compararNombre(a, b);
+    }
+
+    int compararLocalizacion(int a, int b) {
+        return Integer.compare(almacen.getIdLocalizacion(a), almacen.getIdLocalizacion(b));
+    }
+
+    int compararManager(int a, int b) {
+        return Integer.compare(almacen.getIdManager(a), almacen.getIdManager(b));
+    }
+
+    /**
+     * Inserta un departamento en su posición por código.
+     */
+    void insertar(int index, Departamento departamento) {
+        almacen.insertar(index, departamento);
+        beginChange();
+        nextAdd(index, index + 1);
+        endChange();
+    }
+
+    /**
+     * Añade al final departamentos cuyos códigos son mayores que los ya cargados.
+     */
+    void agregarAlFinal(List<Departamento> departamentos) {
+        if (departamentos.isEmpty()) {
+            return;
+        }
+        int desde = almacen.tamano();
+        almacen.agregarTodos(departamentos);
+        beginChange();
+        nextAdd(desde, almacen.tamano());
+        endChange();
+    }
+
+    void reemplazar(int index, Departamento departamento) {
+        Departamento anterior = almacen.obtener(index);
+        almacen.reemplazar(index, departamento);
+        beginChange();
+        nextSet(index, anterior);
+        endChange();
+    }
+
+    void eliminar(int index) {
+        Departamento anterior = almacen.obtener(index);
+        almacen.eliminar(index);
+        beginChange();
+        nextRemove(index, anterior);
+        endChange();
+    }
+
+    /**
+     * Sustituye todo el contenido. Las filas quitadas se notifican desde el almacén anterior;
+     * sus objetos sólo existen mientras se entrega el cambio a los oyentes.
+     *
+     * @param departamentos Nuevas filas, en el orden de {@link AlmacenDepartamentos#ORDEN_CODIGOS}
+     */
+    void reemplazarTodo(List<Departamento> departamentos) {
+        AlmacenDepartamentos anterior = almacen;
+        almacen = new AlmacenDepartamentos();
+        almacen.agregarTodos(departamentos);
+        beginChange();
+        if (anterior.tamano() > 0) {
+            nextRemove(0, new VistaAlmacen(anterior));
+        }
+        if (almacen.tamano() > 0) {
+            nextAdd(0, almacen.tamano());
+        }
+        endChange();
+    }
+
+    /**
+     * Lista de sólo lectura sobre un almacén que ya no forma parte de la lista.
+     */
+    private static final class VistaAlmacen extends AbstractList<Departamento> {
+        private final AlmacenDepartamentos almacen;
+
+        private VistaAlmacen(AlmacenDepartamentos almacen) {
+            this.almacen = almacen;
+        }
+
+        @Override
+        public Departamento get(int index) {
+            return almacen.obtener(index);
+        }
+
+        @Override
+        public int size() {
+            return almacen.tamano();
+        }
+    }
+}
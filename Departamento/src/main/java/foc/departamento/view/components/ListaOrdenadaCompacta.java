@@ -0,0 +1,304 @@
+package foc.departamento.view.components;
+
+import foc.departamento.model.Departamento;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.TransformationList;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Vista ordenada de una lista de departamentos que sólo guarda la permutación en {@code int[]}.
+ * Sustituye a {@link javafx.collections.transformation.SortedList}, que conserva una referencia
+ * a cada elemento y obligaría a tener un objeto Departamento por fila.
+ * Sin comparador la vista es la fuente tal cual (ordenada por código) y no ocupa memoria.
+ * Se ordena con un {@link ComparadorFilas} que compara posiciones de la fuente sobre los datos
+ * compactos, sin crear objetos por comparación.
+ */
+class ListaOrdenadaCompacta extends TransformationList<Departamento, Departamento> {
+
+    /**
+     * Compara dos filas de la fuente por su posición.
+     */
+    @FunctionalInterface
+    interface ComparadorFilas {
+        int comparar(int indiceFuenteA, int indiceFuenteB);
+    }
+
+    private final ObjectProperty<ComparadorFilas> comparador =
+            new SimpleObjectProperty<>(this, "comparador") {
+                @Override
+                protected void invalidated() {
+                    reordenar();
+                }
+            };
+    // orden[vista] = índice en la fuente e inversa[fuente] = índice en la vista; null sin comparador
+    private int[] orden;
+    private int[] inversa;
+
+    ListaOrdenadaCompacta(ObservableList<Departamento> fuente) {
+        super(fuente);
+    }
+
+    ObjectProperty<ComparadorFilas> comparadorProperty() {
+        return comparador;
+    }
+
+    @Override
+    public Departamento get(int index) {
+        return getSource().get(getSourceIndex(index));
+    }
+
+    @Override
+    public int size() {
+        return getSource().size();
+    }
+
+    @Override
+    public int getSourceIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return orden == null ? index : orden[index];
+    }
+
+    @Override
+    public int getViewIndex(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return inversa == null ? index : inversa[index];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void sourceChanged(ListChangeListener.Change<? extends Departamento> cambio) {
+        int subcambios = 0;
+        beginChange();
+        while (cambio.next()) {
+            subcambios++;
+            if (orden == null) {
+                reenviar(cambio);
+            } else if (cambio.wasPermutated()) {
+                permutarFuente(cambio);
+            } else if (cambio.wasUpdated()) {
+                for (int i = cambio.getFrom(); i < cambio.getTo(); i++) {
+                    nextUpdate(inversa[i]);
+                }
+            } else {
+                if (cambio.wasRemoved()) {
+                    quitar(cambio.getFrom(), (List<Departamento>) cambio.getRemoved());
+                }
+                if (cambio.wasAdded()) {
+                    anadir(cambio.getFrom(), cambio.getTo());
+                }
+            }
+        }
+        endChange();
+        // Al comparar se leen las filas de la fuente ya modificada; con varios subcambios las
+        // posiciones intermedias no coinciden con las finales, así que se reordena al terminar
+        if (subcambios > 1 && orden != null) {
+            reordenar();
+        }
+    }
+
+    /**
+     * Sin comparador la vista coincide con la fuente y los cambios pasan tal cual.
+     */
+    private void reenviar(ListChangeListener.Change<? extends Departamento> cambio) {
+        if (cambio.wasPermutated()) {
+            int[] permutacion = new int[cambio.getTo() - cambio.getFrom()];
+            for (int i = 0; i < permutacion.length; i++) {
+                permutacion[i] = cambio.getPermutation(cambio.getFrom() + i);
+            }
+            nextPermutation(cambio.getFrom(), cambio.getTo(), permutacion);
+        } else if (cambio.wasUpdated()) {
+            for (int i = cambio.getFrom(); i < cambio.getTo(); i++) {
+                nextUpdate(i);
+            }
+        } else {
+            if (cambio.wasRemoved()) {
+                nextRemove(cambio.getFrom(), cambio.getRemoved());
+            }
+            if (cambio.wasAdded()) {
+                nextAdd(cambio.getFrom(), cambio.getTo());
+            }
+        }
+    }
+
+    /**
+     * La fuente ha cambiado de orden sin cambiar de contenido: la vista sigue igual.
+     */
+    private void permutarFuente(ListChangeListener.Change<? extends Departamento> cambio) {
+        for (int v = 0; v < orden.length; v++) {
+            int fuente = orden[v];
+            if (fuente >= cambio.getFrom() && fuente < cambio.getTo()) {
+                orden[v] = cambio.getPermutation(fuente);
+            }
+        }
+        recalcularInversa();
+    }
+
+    /**
+     * Quita de la vista las filas {@code desde..desde+quitadas.size()} de la fuente (en índices
+     * anteriores al cambio) y desplaza las siguientes.
+     */
+    private void quitar(int desde, List<Departamento> quitadas) {
+        int numQuitadas = quitadas.size();
+        int hasta = desde + numQuitadas;
+        int[] posiciones = new int[numQuitadas];
+        for (int i = 0; i < numQuitadas; i++) {
+            posiciones[i] = inversa[desde + i];
+        }
+        // De mayor a menor para que cada índice siga siendo válido al notificarlo
+        Arrays.sort(posiciones);
+        for (int i = numQuitadas - 1; i >= 0; i--) {
+            nextRemove(posiciones[i], quitadas.get(orden[posiciones[i]] - desde));
+        }
+        int escritos = 0;
+        for (int fuente : orden) {
+            if (fuente < desde) {
+                orden[escritos++] = fuente;
+            } else if (fuente >= hasta) {
+                orden[escritos++] = fuente - numQuitadas;
+            }
+        }
+        orden = Arrays.copyOf(orden, escritos);
+        recalcularInversa();
+    }
+
+    /**
+     * Inserta en la vista las filas {@code desde..hasta} de la fuente: se ordenan entre sí
+     * y cada una se coloca con una búsqueda binaria a partir de la posición de la anterior.
+     */
+    private void anadir(int desde, int hasta) {
+        int numNuevas = hasta - desde;
+        for (int v = 0; v < orden.length; v++) {
+            if (orden[v] >= desde) {
+                orden[v] += numNuevas;
+            }
+        }
+        int[] nuevas = new int[numNuevas];
+        for (int i = 0; i < numNuevas; i++) {
+            nuevas[i] = desde + i;
+        }
+        ordenar(nuevas);
+
+        int[] mezcla = new int[orden.length + numNuevas];
+        int copiadas = 0;
+        for (int i = 0; i < numNuevas; i++) {
+            int posicion = posicionDe(nuevas[i], copiadas);
+            System.arraycopy(orden, copiadas, mezcla, copiadas + i, posicion - copiadas);
+            copiadas = posicion;
+            mezcla[posicion + i] = nuevas[i];
+            nextAdd(posicion + i, posicion + i + 1);
+        }
+        System.arraycopy(orden, copiadas, mezcla, copiadas + numNuevas, orden.length - copiadas);
+        orden = mezcla;
+        recalcularInversa();
+    }
+
+    /**
+     * @return Primera posición de {@link #orden}, a partir de {@code desde}, cuya fila va después de la indicada
+     */
+    private int posicionDe(int fuente, int desde) {
+        int bajo = desde;
+        int alto = orden.length;
+        while (bajo < alto) {
+            int medio = (bajo + alto) >>> 1;
+            if (comparar(fuente, orden[medio]) < 0) {
+                alto = medio;
+            } else {
+                bajo = medio + 1;
+            }
+        }
+        return bajo;
+    }
+
+    /**
+     * Recalcula el orden completo al cambiar el comparador y lo notifica como permutación,
+     * de modo que la tabla conserva la selección.
+     */
+    private void reordenar() {
+        int tamano = size();
+        int[] anterior = orden;
+        if (comparador.get() == null) {
+            orden = null;
+            inversa = null;
+        } else {
+            orden = new int[tamano];
+            for (int i = 0; i < tamano; i++) {
+                orden[i] = i;
+            }
+            ordenar(orden);
+            recalcularInversa();
+        }
+        if (tamano == 0) {
+            return;
+        }
+        // permutacion[posición anterior en la vista] = posición nueva
+        int[] permutacion = new int[tamano];
+        for (int v = 0; v < tamano; v++) {
+            int fuente = anterior == null ? v : anterior[v];
+            permutacion[v] = inversa == null ? fuente : inversa[fuente];
+        }
+        beginChange();
+        nextPermutation(0, tamano, permutacion);
+        endChange();
+    }
+
+    private void recalcularInversa() {
+        if (inversa == null || inversa.length != orden.length) {
+            inversa = new int[orden.length];
+        }
+        for (int v = 0; v < orden.length; v++) {
+            inversa[orden[v]] = v;
+        }
+    }
+
+    /**
+     * Ordenación por mezcla estable de índices de la fuente con {@link #comparar}.
+     */
+    private void ordenar(int[] indices) {
+        int[] auxiliar = new int[indices.length];
+        for (int ancho = 1; ancho < indices.length; ancho *= 2) {
+            for (int izquierda = 0; izquierda < indices.length - ancho; izquierda += 2 * ancho) {
+                int medio = izquierda + ancho;
+                int derecha = Math.min(izquierda + 2 * ancho, indices.length);
+                if (comparar(indices[medio - 1], indices[medio]) <= 0) {
+                    continue;
+                }
+                int i = izquierda;
+                int j = medio;
+                int k = izquierda;
+                while (i < medio && j < derecha) {
+                    auxiliar[k++] = comparar(indices[j], indices[i]) < 0 ? indices[j++] : indices[i++];
+                }
+                while (i < medio) {
+                    auxiliar[k++] = indices[i++];
+                }
+                while (j < derecha) {
+                    auxiliar[k++] = indices[j++];
+                }
+                System.arraycopy(auxiliar, izquierda, indices, izquierda, derecha - izquierda);
+            }
+        }
+    }
+
+    /**
+     * Compara dos filas de la fuente; a igualdad decide la posición en la fuente (por código).
+     */
+    private int comparar(int fuenteA, int fuenteB) {
+        ComparadorFilas actual = comparador.get();
+        if (actual != null) {
+            int resultado = actual.comparar(fuenteA, fuenteB);
+            if (resultado != 0) {
+                return resultado;
+            }
+        }
+        return Integer.compare(fuenteA, fuenteB);
+    }
+}
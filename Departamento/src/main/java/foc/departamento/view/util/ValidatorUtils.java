@@ -69,6 +69,39 @@ public class ValidatorUtils {
         return errores.isEmpty() ? null : errores;
     }
 
+    /**
+     * Valida los valores de un departamento sin campos de formulario, con las mismas reglas que
+     * {@link #validarFormularioDepartamento}. Sirve para validar filas de ficheros sin crear objetos.
+     *
+     * @param codigo Código
+     * @param nombre Nombre
+     * @param localizacion ID de localización
+     * @param manager ID de manager
+     * @return El primer error encontrado, o null si los valores son válidos
+     */
+    @Nullable
+    public static String validarDepartamento(String codigo, String nombre, String localizacion, String manager) {
+        if (codigo == null || codigo.isBlank()) {
+            return "El código no puede estar vacío";
+        }
+        if (nombre == null || nombre.isBlank()) {
+            return "El nombre no puede estar vacío";
+        }
+        if (localizacion == null || localizacion.isBlank()) {
+            return "ID Localización no puede estar vacío";
+        }
+        if (!esNumeroEntero(localizacion.trim())) {
+            return "ID Localización debe ser un número entero";
+        }
+        if (manager == null || manager.isBlank()) {
+            return "ID Manager no puede estar vacío";
+        }
+        if (!esNumeroEntero(manager.trim())) {
+            return "ID Manager debe ser un número entero";
+        }
+        return null;
+    }
+
     /**
      * Verifica si un campo de texto está vacío.
      *
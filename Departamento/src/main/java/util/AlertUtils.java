@@ -1,16 +1,37 @@
 package util;
 
+import javafx.application.Platform;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonBar;
 import javafx.scene.control.ButtonType;
 
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
 
 /**
  * Clase de utilidad para mostrar diálogos y alertas en la aplicación.
  * Centraliza la creación de diálogos para mantener consistencia en la UI.
+ * Los diálogos pueden pedirse desde cualquier hilo: si no es el de JavaFX,
+ * se muestran en él y el hilo que llama espera la respuesta. Como esa espera depende del
+ * usuario, antes se ejecuta la comprobación registrada con {@link #setComprobacionAntesDeEsperar},
+ * que puede rechazarla.
  */
 public class AlertUtils {
+    private static volatile Runnable comprobacionAntesDeEsperar = () -> {
+    };
+
+    /**
+     * Registra una comprobación que se ejecuta antes de mostrar cada diálogo, en el hilo que lo
+     * pide. Puede lanzar una excepción para impedir que ese hilo espere al usuario, por ejemplo
+     * si retiene un recurso compartido.
+     *
+     * @param comprobacion Comprobación a ejecutar
+     */
+    public static void setComprobacionAntesDeEsperar(Runnable comprobacion) {
+        comprobacionAntesDeEsperar = comprobacion;
+    }
 
     /**
      * Muestra un mensaje de información.
@@ -41,20 +62,22 @@ public class AlertUtils {
      * @return true si el usuario presiona Aceptar, false si presiona Cancelar o cierra el diálogo
      */
     public static boolean mostrarAdvertencia(String titulo, String mensaje) {
-        Alert alerta = new Alert(Alert.AlertType.CONFIRMATION);
-        alerta.setTitle(titulo);
-        alerta.setHeaderText(null);
-        alerta.setContentText(mensaje);
+        return enHiloFX(() -> {
+            Alert alerta = new Alert(Alert.AlertType.CONFIRMATION);
+            alerta.setTitle(titulo);
+            alerta.setHeaderText(null);
+            alerta.setContentText(mensaje);
 
-        ButtonType btnAceptar = new ButtonType("Aceptar", ButtonBar.ButtonData.OK_DONE);
-        ButtonType btnCancelar = new ButtonType("Cancelar", ButtonBar.ButtonData.CANCEL_CLOSE);
+            ButtonType btnAceptar = new ButtonType("Aceptar", ButtonBar.ButtonData.OK_DONE);
+            ButtonType btnCancelar = new ButtonType("Cancelar", ButtonBar.ButtonData.CANCEL_CLOSE);
 
-        alerta.getButtonTypes().setAll(btnAceptar, btnCancelar);
+            alerta.getButtonTypes().setAll(btnAceptar, btnCancelar);
 
-        Optional<ButtonType> resultado = alerta.showAndWait();
+            Optional<ButtonType> resultado = alerta.showAndWait();
 
-        // Retorna true SOLO si explícitamente se presionó el botón Aceptar
-        return resultado.isPresent() && resultado.get().getButtonData() == ButtonBar.ButtonData.OK_DONE;
+            // Retorna true SOLO si explícitamente se presionó el botón Aceptar
+            return resultado.isPresent() && resultado.get().getButtonData() == ButtonBar.ButtonData.OK_DONE;
+        });
     }
 
     /**
@@ -65,11 +88,14 @@ public class AlertUtils {
      * @param tipo Tipo de alerta (INFORMATION, ERROR, WARNING, CONFIRMATION)
      */
     public static void mostrarMensaje(String titulo, String mensaje, Alert.AlertType tipo) {
-        Alert alert = new Alert(tipo);
-        alert.setTitle(titulo);
-        alert.setHeaderText(null);
-        alert.setContentText(mensaje);
-        alert.showAndWait();
+        enHiloFX(() -> {
+            Alert alert = new Alert(tipo);
+            alert.setTitle(titulo);
+            alert.setHeaderText(null);
+            alert.setContentText(mensaje);
+            alert.showAndWait();
+            return null;
+        });
     }
 
     /**
@@ -80,13 +106,38 @@ public class AlertUtils {
      * @return true si el usuario confirma, false en caso contrario
      */
     public static boolean mostrarConfirmacion(String titulo, String mensaje) {
-        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
-        alert.setTitle(titulo);
-        alert.setHeaderText(null);
-        alert.setContentText(mensaje);
+        return enHiloFX(() -> {
+            Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+            alert.setTitle(titulo);
+            alert.setHeaderText(null);
+            alert.setContentText(mensaje);
 
-        Optional<ButtonType> result = alert.showAndWait();
-        return result.isPresent() && result.get() == ButtonType.OK;
+            Optional<ButtonType> result = alert.showAndWait();
+            return result.isPresent() && result.get() == ButtonType.OK;
+        });
+    }
+
+    /**
+     * Ejecuta un diálogo en el hilo de JavaFX y espera su resultado.
+     *
+     * @param dialogo Código que muestra el diálogo
+     * @return Resultado del diálogo
+     */
+    private static <T> T enHiloFX(Supplier<T> dialogo) {
+        comprobacionAntesDeEsperar.run();
+        if (Platform.isFxApplicationThread()) {
+            return dialogo.get();
+        }
+        FutureTask<T> tarea = new FutureTask<>(dialogo::get);
+        Platform.runLater(tarea);
+        try {
+            return tarea.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrumpido mientras se esperaba un diálogo", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error al mostrar un diálogo", e.getCause());
+        }
     }
 
     // Constructor privado para evitar instanciación
@@ -0,0 +1,20 @@
+-- Registro de cambios para la sincronización incremental entre clientes (SincronizadorCambios).
+-- Los triggers anotan el código de cada fila insertada, modificada o borrada con una versión
+-- creciente; cada cliente pide sólo las versiones posteriores a la última que vio y relee el
+-- estado actual de esos códigos, así que el coste depende del ritmo de cambios y no del tamaño
+-- de la tabla. Un UPDATE anota el código anterior y el nuevo (el mismo si no cambia): con un
+-- INSERT ... SELECT condicional InnoDB reservaría versiones de más y dejaría huecos.
+CREATE TABLE IF NOT EXISTS departamentos_cambios (
+    version BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    codigo VARCHAR(20) NOT NULL,
+    operacion CHAR(1) NOT NULL,
+    momento TIMESTAMP(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    INDEX idx_departamentos_cambios_momento (momento)
+);
+CREATE OR REPLACE TRIGGER departamentos_cambios_insertar AFTER INSERT ON departamentos FOR EACH ROW
+    INSERT INTO departamentos_cambios (codigo, operacion) VALUES (NEW.codigo, 'I');
+CREATE OR REPLACE TRIGGER departamentos_cambios_modificar AFTER UPDATE ON departamentos FOR EACH ROW
+    INSERT INTO departamentos_cambios (codigo, operacion)
+    VALUES (OLD.codigo, IF(OLD.codigo <> NEW.codigo, 'D', 'U')), (NEW.codigo, 'U');
+CREATE OR REPLACE TRIGGER departamentos_cambios_eliminar AFTER DELETE ON departamentos FOR EACH ROW
+    INSERT INTO departamentos_cambios (codigo, operacion) VALUES (OLD.codigo, 'D');
@@ -0,0 +1,10 @@
+-- Orden binario del código: por puntos de código y sin rellenar con espacios, el mismo que usa el
+-- cliente para las páginas cargadas (AlmacenDepartamentos.ORDEN_CODIGOS) y la copia local. Con la
+-- intercalación por defecto, que no distingue mayúsculas ni acentos, ORDER BY codigo y la
+-- paginación por clave seguían otro orden y las búsquedas del cliente fallaban con códigos que
+-- mezclan mayúsculas y minúsculas o llevan acentos. Desde esta migración, los códigos que sólo
+-- se diferencian en eso son distintos. Volver a ejecutar MODIFY con la misma definición no cambia nada.
+ALTER TABLE departamentos
+    MODIFY codigo VARCHAR(20) CHARACTER SET utf8mb4 COLLATE utf8mb4_nopad_bin NOT NULL;
+ALTER TABLE departamentos_cambios
+    MODIFY codigo VARCHAR(20) CHARACTER SET utf8mb4 COLLATE utf8mb4_nopad_bin NOT NULL;
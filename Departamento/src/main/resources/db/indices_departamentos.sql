@@ -0,0 +1,7 @@
+-- Índices secundarios para el filtrado en servidor (DepartamentoDAO.filtrar).
+-- En InnoDB cada índice secundario incluye la clave primaria (codigo), así que un filtro
+-- por igualdad sobre id_localizacion o id_manager también sirve el ORDER BY codigo
+-- de la paginación por clave sin ordenar en memoria.
+CREATE INDEX IF NOT EXISTS idx_departamentos_nombre ON departamentos (nombre);
+CREATE INDEX IF NOT EXISTS idx_departamentos_localizacion ON departamentos (id_localizacion);
+CREATE INDEX IF NOT EXISTS idx_departamentos_manager ON departamentos (id_manager);
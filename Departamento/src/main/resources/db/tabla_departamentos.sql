@@ -0,0 +1,9 @@
+-- Tabla de departamentos. El código es texto (el formulario y la importación CSV admiten
+-- letras) y es la clave primaria: la paginación por clave y las búsquedas por código la usan
+-- directamente. Los cuatro campos son obligatorios en el formulario, así que no admiten NULL.
+CREATE TABLE IF NOT EXISTS departamentos (
+    codigo VARCHAR(20) NOT NULL PRIMARY KEY,
+    nombre VARCHAR(50) NOT NULL,
+    id_localizacion INT NOT NULL,
+    id_manager INT NOT NULL
+) ENGINE = InnoDB DEFAULT CHARSET = utf8mb4;
@@ -0,0 +1,111 @@
+package foc.departamento.dao;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import foc.departamento.config.DatabaseConfig;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Prepara la base de datos de las pruebas.
+ * Si se indica {@code -Dpruebas.db.url} (y opcionalmente {@code pruebas.db.usuario} y
+ * {@code pruebas.db.password}) se usa esa base de datos; si no, se arranca un MariaDB embebido con
+ * MariaDB4j en un puerto libre, que se detiene al terminar la JVM. La configuración se pasa a la
+ * aplicación mediante las propiedades {@code departamento.db.*}, que deben fijarse antes de usar
+ * el DAO por primera vez: todas las pruebas de la JVM comparten la base de datos y el pool.
+ */
+final class BaseDatosPruebas {
+    private static boolean iniciada;
+
+    private BaseDatosPruebas() {
+        // Esta clase no debe ser instanciada
+    }
+
+    /**
+     * Arranca (o localiza) la base de datos, configura la aplicación para usarla y aplica las
+     * migraciones. Sólo la primera llamada hace algo.
+     */
+    static synchronized void iniciar() throws Exception {
+        if (iniciada) {
+            return;
+        }
+        // Sin caché, para que cada prueba vea lo que hay en la tabla
+        System.setProperty("departamento.cache.tamano", System.getProperty("departamento.cache.tamano", "0"));
+        System.setProperty("departamento.sync.intervaloMs", "0");
+        System.setProperty("departamento.metricas.volcadoMs", "0");
+        // Las pruebas con réplicas esperan a que la comprobación note sus cambios de estado
+        System.setProperty("departamento.db.replicas.comprobacionMs", "200");
+
+        String url = System.getProperty("pruebas.db.url");
+        if (url != null) {
+            System.setProperty("departamento.db.url", url);
+            System.setProperty("departamento.db.usuario", System.getProperty("pruebas.db.usuario", "root"));
+            System.setProperty("departamento.db.password", System.getProperty("pruebas.db.password", ""));
+        } else {
+            DBConfigurationBuilder configuracion = DBConfigurationBuilder.newBuilder();
+            configuracion.setPort(0);
+            if ("root".equals(System.getProperty("user.name"))) {
+                // mariadbd se niega a arrancar como root si no se indica explícitamente
+                configuracion.addArg("--user=root");
+            }
+            DB embebida = DB.newEmbeddedDB(configuracion.build());
+            embebida.start();
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                try {
+                    ConexionBD.getInstancia().cerrarConexion();
+                    embebida.stop();
+                } catch (Exception e) {
+                    // La JVM termina de todos modos
+                }
+            }, "parada-mariadb-pruebas"));
+            String servidor = "jdbc:mariadb://localhost:" + configuracion.getPort() + "/";
+            // Se crea por JDBC: DB.createDB() usa el cliente mariadb, que depende de libncurses
+            try (Connection conn = DriverManager.getConnection(servidor, "root", "");
+                 Statement stmt = conn.createStatement()) {
+                stmt.execute("CREATE DATABASE IF NOT EXISTS departamentos");
+            }
+            // Sin useBulkStmtsForInserts=false: las pruebas usan el protocolo bulk por defecto del
+            // driver, para comprobar que los batches del DAO no dependen de la URL
+            System.setProperty("departamento.db.url", servidor
+                    + "departamentos?useServerPrepStmts=true&useAffectedRows=true");
+            System.setProperty("departamento.db.usuario", "root");
+            System.setProperty("departamento.db.password", "");
+        }
+        new MigracionesBD().migrar();
+        iniciada = true;
+    }
+
+    /**
+     * Crea en el mismo servidor otra base de datos con una tabla de departamentos vacía igual a
+     * la de las pruebas. Sirve de réplica retrasada: sólo tiene lo que la prueba escriba en ella.
+     *
+     * @param nombre Nombre de la base de datos
+     * @return URL JDBC de la base de datos, con los mismos parámetros que la de las pruebas
+     */
+    static String crearCopiaVacia(String nombre) throws SQLException {
+        try (Connection conn = ConexionBD.getInstancia().getConexion();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE DATABASE IF NOT EXISTS " + nombre);
+            stmt.execute("CREATE TABLE IF NOT EXISTS " + nombre + ".departamentos LIKE departamentos");
+            stmt.execute("TRUNCATE TABLE " + nombre + ".departamentos");
+        }
+        String url = DatabaseConfig.URL;
+        int barra = url.indexOf('/', url.indexOf("//") + 2);
+        int parametros = url.indexOf('?', barra);
+        return url.substring(0, barra + 1) + nombre + (parametros < 0 ? "" : url.substring(parametros));
+    }
+
+    /**
+     * Deja vacías la tabla de departamentos y su registro de cambios.
+     */
+    static void vaciarTablas() throws SQLException {
+        try (Connection conn = ConexionBD.getInstancia().getConexion();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("TRUNCATE TABLE departamentos");
+            stmt.execute("TRUNCATE TABLE departamentos_cambios");
+        }
+    }
+}
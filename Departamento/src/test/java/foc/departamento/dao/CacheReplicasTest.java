@@ -0,0 +1,107 @@
+package foc.departamento.dao;
+
+import foc.departamento.config.DatabaseConfig;
+import foc.departamento.model.Departamento;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Lo leído de una réplica retrasada no debe entrar en la caché compartida: sustituiría lo que otra
+ * sesión acaba de escribir, y esa sesión leería de la caché su propio cambio deshecho. La réplica
+ * es otra base de datos del mismo servidor que sólo tiene lo que la prueba copia en ella, y la
+ * caché es propia de la prueba y está activa, aunque {@link BaseDatosPruebas} desactive la de la
+ * aplicación.
+ */
+class CacheReplicasTest {
+    private static final String REPLICA = "departamentos_replica";
+
+    private ConexionBD conexion;
+    private CacheDepartamentos cache;
+    private String urlReplica;
+
+    @BeforeAll
+    static void iniciarBaseDatos() throws Exception {
+        BaseDatosPruebas.iniciar();
+    }
+
+    @BeforeEach
+    void preparar() throws Exception {
+        BaseDatosPruebas.vaciarTablas();
+        urlReplica = BaseDatosPruebas.crearCopiaVacia(REPLICA);
+        conexion = new ConexionBD(DatabaseConfig.URL, List.of(urlReplica));
+        cache = new CacheDepartamentos(100, 60_000);
+    }
+
+    @AfterEach
+    void cerrar() {
+        conexion.cerrarConexion();
+    }
+
+    @Test
+    void lasLecturasDeOtraSesionNoDeshacenLaEscrituraEnLaCache() throws Exception {
+        DepartamentoDAO escritora = dao();
+        DepartamentoDAO lectora = dao();
+        Departamento original = new Departamento("X001", "Original", 1, 1);
+        assertTrue(escritora.insertar(original));
+        copiarAReplica(original);
+        assertTrue(escritora.modificar(new Departamento("X001", "Modificado", 2, 2)));
+
+        // La otra sesión no ha escrito: lee de la réplica, que aún no tiene la modificación
+        assertEquals("Original", lectora.listarPagina("", 10).get(0).getNombre());
+        assertEquals("Original", lectora.listarTodos().get(0).getNombre());
+        assertEquals("Original", lectora.filtrar(new FiltroDepartamentos().nombreEmpiezaPor("Orig"), "", 10)
+                .get(0).getNombre());
+
+        assertEquals("Modificado", escritora.buscarPorCodigo("X001").getNombre());
+        assertEquals("Modificado", cache.obtener("X001").getNombre());
+    }
+
+    @Test
+    void soloSeGuardaEnLaCacheLoLeidoDelPrimario() throws Exception {
+        Departamento dep = new Departamento("Y001", "Leído", 1, 1);
+        insertar(DatabaseConfig.URL, dep);
+        copiarAReplica(dep);
+
+        assertNotNull(dao().buscarPorCodigo("Y001"));
+        assertTrue(dao().buscarPorCodigos(List.of("Y001")).containsKey("Y001"));
+        assertNull(cache.obtener("Y001"), "lo leído de la réplica no se guarda en la caché");
+
+        SesionLectura conEscritura = new SesionLectura();
+        conEscritura.registrarEscritura();
+        assertNotNull(new DepartamentoDAO(conexion, cache, conEscritura).buscarPorCodigo("Y001"));
+        assertNotNull(cache.obtener("Y001"), "lo leído del primario sí se guarda");
+    }
+
+    private DepartamentoDAO dao() {
+        return new DepartamentoDAO(conexion, cache, new SesionLectura());
+    }
+
+    private void copiarAReplica(Departamento dep) throws SQLException {
+        insertar(urlReplica, dep);
+    }
+
+    private static void insertar(String url, Departamento dep) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url, DatabaseConfig.USUARIO, DatabaseConfig.PASSWORD);
+             PreparedStatement stmt = conn.prepareStatement(
+                     "INSERT INTO departamentos (codigo, nombre, id_localizacion, id_manager) VALUES (?, ?, ?, ?)")) {
+            stmt.setString(1, dep.getCodigo());
+            stmt.setString(2, dep.getNombre());
+            stmt.setInt(3, dep.getIdLocalizacion());
+            stmt.setInt(4, dep.getIdManager());
+            stmt.executeUpdate();
+        }
+    }
+}
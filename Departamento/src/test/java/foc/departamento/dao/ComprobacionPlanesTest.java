@@ -0,0 +1,305 @@
+package foc.departamento.dao;
+
+import foc.departamento.model.Departamento;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Comprueba los planes de ejecución de las sentencias que lanza DepartamentoDAO.
+ * Llena la tabla, llama a todos los métodos públicos del DAO con el registro general de MariaDB
+ * activado y pasa cada sentencia distinta registrada (con sus parámetros ya sustituidos) por
+ * {@code EXPLAIN}. Falla si una sentencia con {@code WHERE} recorre una tabla entera (tipo
+ * {@code ALL}) o un índice entero ({@code index}) o no usa el índice que corresponde a sus
+ * condiciones, por ejemplo si falta el índice de una columna de filtrado y la consulta recorre la
+ * clave primaria desde el principio.
+ * <p>
+ * Usa la base de datos de las pruebas ({@link BaseDatosPruebas}); con {@code -Dpruebas.db.url}
+ * el usuario necesita permiso para cambiar {@code general_log}. Los planes se escriben en la
+ * salida estándar y los incorrectos en el mensaje del fallo.
+ */
+class ComprobacionPlanesTest {
+    private static final int FILAS = Integer.getInteger("pruebas.planes.filas", 20_000);
+    private static final Pattern DML = Pattern.compile("^\\s*(SELECT|INSERT|UPDATE|DELETE|REPLACE)\\b.*\\bdepartamentos",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    // El registro general también anota las sentencias de los triggers del registro de cambios
+    private static final Pattern TRIGGER = Pattern.compile("\\b(NEW|OLD)\\.");
+    private static final Pattern WHERE = Pattern.compile("\\bWHERE\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LITERALES = Pattern.compile("'(?:[^'\\\\]|\\\\.|'')*'|\\b\\d+\\b");
+
+    // Índice que debe usar una condición del WHERE. La paginación (codigo > ?) no cuenta: en la
+    // primera página abarca toda la tabla y no dice nada de si se usa el índice del filtro
+    private static final Map<Pattern, String> INDICES_ESPERADOS = new LinkedHashMap<>();
+    // Sentencias con WHERE que recorren la tabla a propósito, con el motivo
+    private static final Map<Pattern, String> EXPLORACIONES_ESPERADAS = Map.of(
+            Pattern.compile("\\bLIKE '%"), "un LIKE con comodín inicial no puede usar el índice de nombre");
+
+    static {
+        INDICES_ESPERADOS.put(Pattern.compile("\\bcodigo\\s*(=|>=|<=|IN\\b)"), "PRIMARY");
+        INDICES_ESPERADOS.put(Pattern.compile("\\bnombre LIKE '(?!%)"), "idx_departamentos_nombre");
+        INDICES_ESPERADOS.put(Pattern.compile("\\bid_localizacion\\s*="), "idx_departamentos_localizacion");
+        INDICES_ESPERADOS.put(Pattern.compile("\\bid_manager\\s*="), "idx_departamentos_manager");
+        INDICES_ESPERADOS.put(Pattern.compile("\\bversion\\s*[<>]"), "PRIMARY");
+        INDICES_ESPERADOS.put(Pattern.compile("\\bmomento\\s*[<>]"), "idx_departamentos_cambios_momento");
+    }
+
+    @BeforeAll
+    static void llenarTabla() throws Exception {
+        BaseDatosPruebas.iniciar();
+        BaseDatosPruebas.vaciarTablas();
+        DepartamentoDAO dao = new DepartamentoDAO();
+        List<Departamento> lote = new ArrayList<>(FILAS);
+        for (int i = 0; i < FILAS; i++) {
+            lote.add(new Departamento(codigo(i), "Departamento " + i, i % 100, i % 1000));
+        }
+        dao.insertarLote(lote);
+        try (Connection conn = ConexionBD.getInstancia().getConexion();
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("ANALYZE TABLE departamentos, departamentos_cambios");
+        }
+    }
+
+    @Test
+    void lasSentenciasDelDAOUsanSusIndices() throws Exception {
+        Map<String, String> sentencias = registrarSentencias(() -> ejercitarDAO(new DepartamentoDAO()));
+        List<String> fallos = comprobar(sentencias);
+        System.out.printf(Locale.ROOT, "%n%d sentencias distintas, %d con un plan incorrecto%n",
+                sentencias.size(), fallos.size());
+
+        assertFalse(sentencias.isEmpty(), "el registro general no ha anotado ninguna sentencia");
+        assertTrue(fallos.isEmpty(), "Planes incorrectos:" + String.join("", fallos));
+    }
+
+    private static String codigo(int i) {
+        return String.format("D%08d", i);
+    }
+
+    @FunctionalInterface
+    private interface Accion {
+        void ejecutar() throws Exception;
+    }
+
+    /**
+     * Ejecuta la acción con el registro general de MariaDB en una tabla y devuelve las
+     * sentencias sobre departamentos que se han ejecutado, una por forma distinta (sin literales).
+     */
+    private static Map<String, String> registrarSentencias(Accion accion) throws Exception {
+        Map<String, String> sentencias = new LinkedHashMap<>();
+        try (Connection conn = ConexionBD.getInstancia().getConexion();
+             Statement stmt = conn.createStatement()) {
+            String salida;
+            try (ResultSet rs = stmt.executeQuery("SELECT @@GLOBAL.log_output")) {
+                rs.next();
+                salida = rs.getString(1);
+            }
+            stmt.execute("SET GLOBAL log_output = 'TABLE'");
+            stmt.execute("TRUNCATE TABLE mysql.general_log");
+            stmt.execute("SET GLOBAL general_log = 1");
+            try {
+                accion.ejecutar();
+            } finally {
+                stmt.execute("SET GLOBAL general_log = 0");
+                stmt.execute("SET GLOBAL log_output = '" + salida + "'");
+            }
+            // Con sentencias preparadas en el servidor, Execute registra el texto con los parámetros
+            try (ResultSet rs = stmt.executeQuery("SELECT argument FROM mysql.general_log "
+                    + "WHERE command_type IN ('Query', 'Execute') ORDER BY event_time")) {
+                while (rs.next()) {
+                    String sql = new String(rs.getBytes(1), StandardCharsets.UTF_8);
+                    if (DML.matcher(sql).find() && !TRIGGER.matcher(sql).find()) {
+                        sentencias.putIfAbsent(normalizar(sql), sql);
+                    }
+                }
+            }
+        }
+        return sentencias;
+    }
+
+    /**
+     * Sustituye los literales por marcadores. Un patrón LIKE con comodín inicial conserva el
+     * comodín, porque no puede usar el índice y su plan es distinto del de un prefijo.
+     */
+    private static String normalizar(String sql) {
+        return LITERALES.matcher(sql)
+                .replaceAll(literal -> literal.group().startsWith("'%") ? "'%?'" : "?")
+                .replaceAll("\\s+", " ")
+                .strip();
+    }
+
+    /**
+     * Llama a todos los métodos públicos del DAO que acceden a la base de datos, con cada
+     * criterio de filtrado y las variantes que cambian el SQL (primera página o siguientes,
+     * modificar una fila que no existe...).
+     */
+    private static void ejercitarDAO(DepartamentoDAO dao) throws Exception {
+        dao.insertar(new Departamento("P0000001", "Plan 1", 1, 1));
+        dao.insertarLote(List.of(new Departamento("P0000002", "Plan 2", 2, 2),
+                new Departamento("P0000003", "Plan 3", 3, 3)));
+        dao.cargarDatosLocales(new ByteArrayInputStream("P0000004\tPlan 4\t4\t4\n".getBytes(StandardCharsets.UTF_8)));
+        dao.modificar(new Departamento("P0000001", "Plan 1 modificado", 1, 1));
+        dao.modificar(new Departamento("P9999999", "No existe", 1, 1));
+        dao.guardar(new Departamento("P0000002", "Plan 2 guardado", 2, 2));
+        dao.guardarLote(List.of(new Departamento("P0000003", "Plan 3 guardado", 3, 3),
+                new Departamento("P0000005", "Plan 5", 5, 5)));
+        dao.eliminar("P0000005");
+
+        UnidadTrabajo unidad = new UnidadTrabajo();
+        unidad.insertar(new Departamento("P0000006", "Plan 6", 6, 6));
+        unidad.modificar(new Departamento("P0000001", "Plan 1 en unidad", 1, 1));
+        unidad.guardar(new Departamento("P0000002", "Plan 2 en unidad", 2, 2));
+        unidad.eliminar("P0000004");
+        unidad.eliminar("P0000003");
+        unidad.insertar(new Departamento("P0000003", "Plan 3 sustituido", 3, 3));
+        dao.aplicar(unidad);
+
+        dao.buscarPorCodigo(codigo(5));
+        List<String> codigos = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            codigos.add(codigo(i * 7));
+        }
+        dao.buscarPorCodigos(codigos);
+        dao.listarTodos();
+        dao.recorrerTodos((codigo, nombre, idLocalizacion, idManager) -> {
+        });
+        dao.listarPagina(null, 200);
+        dao.listarPagina(codigo(FILAS / 2), 200);
+
+        List<FiltroDepartamentos> filtros = List.of(
+                new FiltroDepartamentos().nombreEmpiezaPor("Departamento 123"),
+                new FiltroDepartamentos().nombreContiene("99"),
+                new FiltroDepartamentos().idLocalizacion(42),
+                new FiltroDepartamentos().idManager(420),
+                new FiltroDepartamentos().idLocalizacion(42).idManager(442),
+                new FiltroDepartamentos().codigoEntre(codigo(100), codigo(300)),
+                new FiltroDepartamentos().nombreEmpiezaPor("Departamento 1").idLocalizacion(1));
+        for (FiltroDepartamentos filtro : filtros) {
+            dao.filtrar(filtro, null, 200);
+            dao.filtrar(filtro, codigo(FILAS / 2), 200);
+        }
+
+        long version = dao.versionCambios();
+        dao.versionCambios(1_000);
+        dao.primeraVersionCambios();
+        dao.leerCambios(Math.max(0, version - 10), 500);
+        dao.purgarCambios(86_400_000L);
+    }
+
+    /**
+     * Pasa cada sentencia por EXPLAIN e imprime su plan. Un plan es incorrecto si una sentencia
+     * con WHERE recorre una tabla o un índice enteros sin estar en {@link #EXPLORACIONES_ESPERADAS},
+     * o si ninguna tabla usa alguno de los índices que piden sus condiciones ({@link #INDICES_ESPERADOS}).
+     *
+     * @return Sentencias con un plan incorrecto, con su plan y el problema
+     */
+    private static List<String> comprobar(Map<String, String> sentencias) throws SQLException {
+        List<String> fallos = new ArrayList<>();
+        try (Connection conn = ConexionBD.getInstancia().getConexion();
+             Statement stmt = conn.createStatement()) {
+            for (Map.Entry<String, String> entrada : sentencias.entrySet()) {
+                String sql = entrada.getValue();
+                if (sql.strip().toUpperCase(Locale.ROOT).startsWith("LOAD DATA")) {
+                    // No admite EXPLAIN y no lee la tabla
+                    continue;
+                }
+                List<String> exploraciones = new ArrayList<>();
+                Set<String> claves = new HashSet<>();
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rs = stmt.executeQuery("EXPLAIN " + sql)) {
+                    while (rs.next()) {
+                        String tabla = rs.getString("table");
+                        String tipo = rs.getString("type");
+                        String clave = rs.getString("key");
+                        String extra = rs.getString("Extra");
+                        plan.append(String.format(Locale.ROOT, "%n       %s: %s %s filas=%s %s", tabla, tipo,
+                                clave == null ? "-" : clave, rs.getString("rows"), extra == null ? "" : extra));
+                        if ("ALL".equals(tipo) || "index".equals(tipo)) {
+                            exploraciones.add(tabla);
+                        }
+                        if (clave != null) {
+                            // Con un filtro por rowid aparecen dos índices separados por |
+                            claves.addAll(List.of(clave.split("\\|")));
+                        } else if (tabla == null) {
+                            // Resuelta sin leer filas (Impossible WHERE, Select tables optimized away...)
+                            claves.add(null);
+                        }
+                    }
+                } catch (SQLException e) {
+                    String error = String.format(Locale.ROOT, "ERROR  %s%n       %s", entrada.getKey(), e.getMessage());
+                    fallos.add(System.lineSeparator() + error);
+                    System.out.println(error);
+                    continue;
+                }
+
+                String problema = null;
+                Matcher where = WHERE.matcher(sql);
+                if (where.find()) {
+                    String condiciones = sql.substring(where.end());
+                    Set<String> esperados = indicesEsperados(condiciones);
+                    if (!exploraciones.isEmpty()) {
+                        String motivo = motivoEsperado(condiciones);
+                        if (motivo == null) {
+                            problema = "recorre entera " + exploraciones;
+                        } else {
+                            plan.append(String.format(Locale.ROOT, "%n       recorrido esperado: %s", motivo));
+                        }
+                    } else if (!esperados.isEmpty() && !sinLeerFilas(claves)
+                            && Collections.disjoint(esperados, claves)) {
+                        problema = "usa " + claves + " en lugar de alguno de " + esperados;
+                    }
+                }
+                if (problema != null) {
+                    plan.append(String.format(Locale.ROOT, "%n       %s", problema));
+                }
+                String linea = String.format(Locale.ROOT, "%-6s %s%s", problema == null ? "OK" : "FALLO",
+                        entrada.getKey(), plan);
+                if (problema != null) {
+                    fallos.add(System.lineSeparator() + linea);
+                }
+                System.out.println(linea);
+            }
+        }
+        return fallos;
+    }
+
+    private static boolean sinLeerFilas(Set<String> claves) {
+        return claves.size() == 1 && claves.contains(null);
+    }
+
+    private static Set<String> indicesEsperados(String condiciones) {
+        Set<String> esperados = new HashSet<>();
+        INDICES_ESPERADOS.forEach((condicion, indice) -> {
+            if (condicion.matcher(condiciones).find()) {
+                esperados.add(indice);
+            }
+        });
+        return esperados;
+    }
+
+    private static String motivoEsperado(String condiciones) {
+        for (Map.Entry<Pattern, String> esperada : EXPLORACIONES_ESPERADAS.entrySet()) {
+            if (esperada.getKey().matcher(condiciones).find()) {
+                return esperada.getValue();
+            }
+        }
+        return null;
+    }
+}
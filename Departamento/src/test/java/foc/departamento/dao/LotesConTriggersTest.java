@@ -0,0 +1,88 @@
+package foc.departamento.dao;
+
+import foc.departamento.model.Departamento;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Los batches de inserción no deben perder filas en la tabla con los triggers del registro de
+ * cambios. Con el protocolo bulk del driver MariaDB sólo guardaba la primera fila de cada batch
+ * e informaba de todas como insertadas. {@link BaseDatosPruebas} no desactiva el protocolo bulk en
+ * la URL, así que estas pruebas fallan si el DAO vuelve a enviar los batches con él.
+ */
+class LotesConTriggersTest {
+    private static final int FILAS = 2_500;
+
+    private final DepartamentoDAO dao = new DepartamentoDAO();
+
+    @BeforeAll
+    static void iniciarBaseDatos() throws Exception {
+        BaseDatosPruebas.iniciar();
+    }
+
+    @BeforeEach
+    void vaciar() throws Exception {
+        BaseDatosPruebas.vaciarTablas();
+    }
+
+    @Test
+    void insertarLoteGuardaTodasLasFilas() throws Exception {
+        ResultadoLote resultado = dao.insertarLote(departamentos("L", FILAS), 1_000);
+
+        assertEquals(FILAS, resultado.contar(ResultadoFila.Estado.INSERTADO));
+        assertEquals(FILAS, contar("SELECT COUNT(*) FROM departamentos"));
+        assertEquals(FILAS, contar("SELECT COUNT(*) FROM departamentos_cambios WHERE operacion = 'I'"));
+    }
+
+    @Test
+    void guardarLoteGuardaTodasLasFilas() throws Exception {
+        dao.insertarLote(departamentos("G", FILAS / 2), 1_000);
+        ResultadoLote resultado = dao.guardarLote(departamentos("G", FILAS), 1_000);
+
+        assertEquals(FILAS / 2, resultado.contar(ResultadoFila.Estado.SIN_CAMBIOS));
+        assertEquals(FILAS - FILAS / 2, resultado.contar(ResultadoFila.Estado.INSERTADO));
+        assertEquals(FILAS, contar("SELECT COUNT(*) FROM departamentos"));
+    }
+
+    @Test
+    void aplicarUnidadGuardaTodasLasAltas() throws Exception {
+        UnidadTrabajo unidad = new UnidadTrabajo();
+        for (Departamento dep : departamentos("U", 300)) {
+            unidad.insertar(dep);
+        }
+        for (Departamento dep : departamentos("V", 300)) {
+            unidad.guardar(dep);
+        }
+
+        assertEquals(600, dao.aplicar(unidad));
+        assertEquals(600, contar("SELECT COUNT(*) FROM departamentos"));
+        assertEquals(600, contar("SELECT COUNT(*) FROM departamentos_cambios WHERE operacion = 'I'"));
+    }
+
+    private static List<Departamento> departamentos(String prefijo, int filas) {
+        List<Departamento> departamentos = new ArrayList<>(filas);
+        for (int i = 0; i < filas; i++) {
+            departamentos.add(new Departamento(String.format("%s%07d", prefijo, i), "Departamento " + i, i % 100, i % 1000));
+        }
+        return departamentos;
+    }
+
+    private static long contar(String sql) throws SQLException {
+        try (Connection conn = ConexionBD.getInstancia().getConexion();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package foc.departamento.dao;
+
+import foc.departamento.model.AlmacenDepartamentos;
+import foc.departamento.model.Departamento;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Comprueba que la base de datos, la copia local y el almacén de la tabla ordenan y buscan los
+ * códigos igual: con distinción de mayúsculas y acentos y por puntos de código.
+ */
+class OrdenCodigosTest {
+    private static final List<String> CODIGOS = List.of(
+            "abc", "ABC", "Abc", "ábc", "Ábc", "abd", "a", "A", "á",
+            "n", "N", "ñ", "Ñ", "z", "Z", "ｚ", "𝒜", "D01", "d01", "D01𝒜");
+
+    private final DepartamentoDAO dao = new DepartamentoDAO();
+
+    @BeforeAll
+    static void iniciarBaseDatos() throws Exception {
+        BaseDatosPruebas.iniciar();
+    }
+
+    @BeforeEach
+    void insertarCodigos() throws Exception {
+        BaseDatosPruebas.vaciarTablas();
+        List<Departamento> departamentos = new ArrayList<>();
+        for (String codigo : CODIGOS) {
+            departamentos.add(new Departamento(codigo, "Departamento " + codigo, 1, 1));
+        }
+        ResultadoLote resultado = dao.insertarLote(departamentos);
+        assertEquals(CODIGOS.size(), resultado.contar(ResultadoFila.Estado.INSERTADO),
+                "los códigos que sólo difieren en mayúsculas o acentos son distintos: " + resultado.getRechazadas());
+    }
+
+    @Test
+    void lasPaginasSiguenElOrdenDeLaTabla() throws Exception {
+        List<String> esperados = new ArrayList<>(CODIGOS);
+        esperados.sort(AlmacenDepartamentos.ORDEN_CODIGOS);
+
+        List<String> leidos = new ArrayList<>();
+        String ultimo = null;
+        List<Departamento> pagina;
+        do {
+            pagina = dao.listarPagina(ultimo, 3);
+            for (Departamento dep : pagina) {
+                leidos.add(dep.getCodigo());
+                ultimo = dep.getCodigo();
+            }
+        } while (!pagina.isEmpty());
+
+        assertEquals(esperados, leidos);
+    }
+
+    @Test
+    void buscaElCodigoExacto() throws Exception {
+        for (String codigo : CODIGOS) {
+            Departamento dep = dao.buscarPorCodigo(codigo);
+            assertNotNull(dep, codigo);
+            assertEquals(codigo, dep.getCodigo());
+            assertEquals("Departamento " + codigo, dep.getNombre());
+        }
+        assertNull(dao.buscarPorCodigo("aBc"));
+        assertNull(dao.buscarPorCodigo("é"));
+    }
+
+    @Test
+    void laCopiaLocalBuscaComoLaTabla(@TempDir Path directorio) throws Exception {
+        Path fichero = directorio.resolve("departamentos.instantanea");
+        InstantaneaDepartamentos.guardar(fichero, dao.listarTodos(), dao.versionCambios(), true);
+        InstantaneaDepartamentos instantanea = InstantaneaDepartamentos.abrir(fichero);
+
+        List<String> esperados = new ArrayList<>(CODIGOS);
+        esperados.sort(AlmacenDepartamentos.ORDEN_CODIGOS);
+        List<String> guardados = new ArrayList<>();
+        for (Departamento dep : instantanea.leerTodos()) {
+            guardados.add(dep.getCodigo());
+        }
+        assertEquals(esperados, guardados);
+        for (String codigo : CODIGOS) {
+            Departamento dep = instantanea.buscar(codigo);
+            assertNotNull(dep, codigo);
+            assertEquals(codigo, dep.getCodigo());
+        }
+        assertNull(instantanea.buscar("aBc"));
+    }
+}
@@ -0,0 +1,94 @@
+package foc.departamento.dao;
+
+import foc.departamento.config.DatabaseConfig;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * El arranque y el mantenimiento precalientan el pool a la vez que se piden conexiones: entre
+ * todos no deben pasar del mínimo al precalentar ni del máximo en total.
+ */
+class PrecalentarPoolTest {
+    private static final int MINIMO = 3;
+    private static final int MAXIMO = 4;
+    private static final int HILOS = 8;
+
+    @BeforeAll
+    static void iniciarBaseDatos() throws Exception {
+        BaseDatosPruebas.iniciar();
+    }
+
+    @Test
+    void precalentarALaVezNoPasaDelMinimo() throws Exception {
+        PoolConexiones pool = nuevoPool();
+        try {
+            ejecutarALaVez(pool::precalentar);
+
+            assertEquals(MINIMO, pool.getTotal());
+            assertEquals(MINIMO, pool.getLibres());
+        } finally {
+            pool.cerrar();
+        }
+    }
+
+    @Test
+    void precalentarMientrasSePrestaNoPasaDelMaximo() throws Exception {
+        PoolConexiones pool = nuevoPool();
+        try {
+            ejecutarALaVez(() -> {
+                for (int i = 0; i < 20; i++) {
+                    pool.precalentar();
+                    try (Connection conn = pool.obtener()) {
+                        assertTrue(pool.getTotal() <= MAXIMO, "total " + pool.getTotal());
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+            });
+
+            assertTrue(pool.getTotal() <= MAXIMO, "total " + pool.getTotal());
+            assertEquals(pool.getTotal(), pool.getLibres());
+        } finally {
+            pool.cerrar();
+        }
+    }
+
+    private static PoolConexiones nuevoPool() {
+        // Sin mantenimiento durante la prueba: los hilos de la prueba hacen de él
+        return new PoolConexiones(DatabaseConfig.URL, DatabaseConfig.USUARIO, DatabaseConfig.PASSWORD,
+                MINIMO, MAXIMO, 10_000, 600_000, 1_800_000, 30_000, 0, 0, false, 3_600_000, 0);
+    }
+
+    private static void ejecutarALaVez(Runnable tarea) throws Exception {
+        ExecutorService hilos = Executors.newFixedThreadPool(HILOS);
+        CountDownLatch salida = new CountDownLatch(1);
+        try {
+            List<Future<?>> tareas = new ArrayList<>();
+            for (int i = 0; i < HILOS; i++) {
+                tareas.add(hilos.submit(() -> {
+                    salida.await();
+                    tarea.run();
+                    return null;
+                }));
+            }
+            salida.countDown();
+            for (Future<?> futura : tareas) {
+                futura.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            hilos.shutdownNow();
+        }
+    }
+}
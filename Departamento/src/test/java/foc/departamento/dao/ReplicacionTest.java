@@ -0,0 +1,214 @@
+package foc.departamento.dao;
+
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import foc.departamento.model.Departamento;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Reparto de lecturas entre un primario y una réplica de verdad: dos MariaDB embebidos, el
+ * segundo replicando del primero por binlog. Comprueba que las lecturas van a la réplica salvo las
+ * de la sesión que acaba de escribir, que una réplica que deja de replicar o se cae deja de usarse
+ * y que vuelve a usarse al ponerse al día. La comprobación de las réplicas corre cada 200 ms
+ * ({@link BaseDatosPruebas}). Los dos servidores se arrancan siempre embebidos y se entra en ellos
+ * como root sin contraseña, así que con {@code -Dpruebas.db.url} el usuario configurado debe ser ése.
+ */
+class ReplicacionTest {
+    private static final String PARAMETROS = "/departamentos?useServerPrepStmts=true&useAffectedRows=true";
+    private static final long ESPERA_MAX_MS = 15_000;
+
+    private static DB primario;
+    private static DB replica;
+    private static String urlPrimario;
+    private static String urlReplica;
+
+    private ConexionBD conexion;
+
+    @BeforeAll
+    static void iniciarServidores() throws Exception {
+        BaseDatosPruebas.iniciar();
+        String tabla;
+        try (Connection conn = ConexionBD.getInstancia().getConexion();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SHOW CREATE TABLE departamentos")) {
+            rs.next();
+            tabla = rs.getString(2);
+        }
+
+        DBConfigurationBuilder configPrimario = configuracion("--server-id=1", "--log-bin=binlog", "--binlog-format=ROW");
+        primario = DB.newEmbeddedDB(configPrimario.build());
+        primario.start();
+        DBConfigurationBuilder configReplica = configuracion("--server-id=2");
+        replica = DB.newEmbeddedDB(configReplica.build());
+        replica.start();
+        String servidorPrimario = "jdbc:mariadb://localhost:" + configPrimario.getPort();
+        String servidorReplica = "jdbc:mariadb://localhost:" + configReplica.getPort();
+
+        String fichero;
+        long posicion;
+        try (Connection conn = DriverManager.getConnection(servidorPrimario + "/", "root", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE USER 'replicacion'@'%' IDENTIFIED BY 'replicacion'");
+            stmt.execute("GRANT REPLICATION SLAVE ON *.* TO 'replicacion'@'%'");
+            try (ResultSet rs = stmt.executeQuery("SHOW MASTER STATUS")) {
+                rs.next();
+                fichero = rs.getString("File");
+                posicion = rs.getLong("Position");
+            }
+            // Lo que sigue ya llega a la réplica por replicación
+            stmt.execute("CREATE DATABASE departamentos");
+            stmt.execute("USE departamentos");
+            stmt.execute(tabla);
+        }
+        try (Connection conn = DriverManager.getConnection(servidorReplica + "/", "root", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("CHANGE MASTER TO MASTER_HOST = '127.0.0.1', MASTER_PORT = " + configPrimario.getPort()
+                    + ", MASTER_USER = 'replicacion', MASTER_PASSWORD = 'replicacion', MASTER_LOG_FILE = '"
+                    + fichero + "', MASTER_LOG_POS = " + posicion);
+            stmt.execute("START SLAVE");
+        }
+        urlPrimario = servidorPrimario + PARAMETROS;
+        urlReplica = servidorReplica + PARAMETROS;
+        esperar("la réplica no ha recibido la tabla", () -> contar(urlReplica) >= 0);
+    }
+
+    @AfterAll
+    static void detenerServidores() throws Exception {
+        if (replica != null) {
+            replica.stop();
+        }
+        if (primario != null) {
+            primario.stop();
+        }
+    }
+
+    @BeforeEach
+    void conectar() throws Exception {
+        ejecutar(urlReplica, "START SLAVE");
+        ejecutar(urlPrimario, "DELETE FROM departamentos");
+        esperar("la réplica no se ha puesto al día", () -> contar(urlReplica) == 0);
+        conexion = new ConexionBD(urlPrimario, List.of(urlReplica));
+    }
+
+    @AfterEach
+    void desconectar() {
+        conexion.cerrarConexion();
+    }
+
+    @Test
+    void leeDeLaReplicaSalvoTrasEscribir() throws Exception {
+        DepartamentoDAO escritora = dao();
+        DepartamentoDAO lectora = dao();
+        esperar("la réplica no se usa", () -> leeDeReplica(lectora));
+
+        assertTrue(escritora.insertar(new Departamento("R001", "Replicado", 1, 1)));
+        assertFalse(leeDeReplica(escritora), "tras escribir se lee del primario");
+        assertEquals("Replicado", escritora.buscarPorCodigo("R001").getNombre());
+        assertTrue(leeDeReplica(lectora), "las demás sesiones siguen leyendo de la réplica");
+        esperar("el alta no llega a la réplica", () -> contar(urlReplica) == 1);
+        assertEquals(1, lectora.listarPagina("", 10).size());
+    }
+
+    @Test
+    void unaReplicaQueNoReplicaDejaDeUsarseHastaPonerseAlDia() throws Exception {
+        DepartamentoDAO lectora = dao();
+        esperar("la réplica no se usa", () -> leeDeReplica(lectora));
+
+        ejecutar(urlReplica, "STOP SLAVE SQL_THREAD");
+        esperar("la réplica que no replica se sigue usando", () -> !leeDeReplica(lectora));
+        ejecutar(urlPrimario, "INSERT INTO departamentos VALUES ('R002', 'Sólo en el primario', 1, 1)");
+        assertEquals(1, lectora.listarPagina("", 10).size(), "se lee del primario lo que la réplica no tiene");
+
+        ejecutar(urlReplica, "START SLAVE SQL_THREAD");
+        esperar("la réplica al día no vuelve a usarse", () -> leeDeReplica(lectora));
+        assertEquals(1, lectora.listarPagina("", 10).size());
+    }
+
+    @Test
+    void siLaReplicaSeCaeSeLeeDelPrimario() throws Exception {
+        DepartamentoDAO lectora = dao();
+        ejecutar(urlPrimario, "INSERT INTO departamentos VALUES ('R003', 'Antes de la caída', 1, 1)");
+        esperar("la réplica no se usa", () -> leeDeReplica(lectora) && contar(urlReplica) == 1);
+
+        replica.stop();
+        try {
+            assertEquals(1, lectora.listarPagina("", 10).size(), "la lectura no falla con la réplica caída");
+            esperar("la réplica caída se sigue usando", () -> !leeDeReplica(lectora));
+        } finally {
+            replica.start();
+        }
+        esperar("la réplica recuperada no vuelve a usarse", () -> leeDeReplica(lectora));
+    }
+
+    private DepartamentoDAO dao() {
+        return new DepartamentoDAO(conexion, new CacheDepartamentos(0, 0), new SesionLectura());
+    }
+
+    private boolean leeDeReplica(DepartamentoDAO dao) {
+        try (Connection conn = conexion.getConexionLectura(dao.getSesion())) {
+            return !conexion.esDelPrimario(conn);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static DBConfigurationBuilder configuracion(String... argumentos) {
+        DBConfigurationBuilder configuracion = DBConfigurationBuilder.newBuilder();
+        configuracion.setPort(0);
+        if ("root".equals(System.getProperty("user.name"))) {
+            configuracion.addArg("--user=root");
+        }
+        for (String argumento : argumentos) {
+            configuracion.addArg(argumento);
+        }
+        return configuracion;
+    }
+
+    /**
+     * @return Filas de la tabla, o -1 si aún no existe o no se puede consultar
+     */
+    private static long contar(String url) {
+        try (Connection conn = DriverManager.getConnection(url, "root", "");
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM departamentos")) {
+            rs.next();
+            return rs.getLong(1);
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    private static void ejecutar(String url, String sql) throws SQLException {
+        try (Connection conn = DriverManager.getConnection(url, "root", "");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute(sql);
+        }
+    }
+
+    private static void esperar(String mensaje, BooleanSupplier condicion) throws InterruptedException {
+        long limite = System.currentTimeMillis() + ESPERA_MAX_MS;
+        while (!condicion.getAsBoolean()) {
+            if (System.currentTimeMillis() > limite) {
+                fail(mensaje);
+            }
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package foc.departamento.dao;
+
+import foc.departamento.model.Departamento;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Ninguna operación del DAO debe retener una conexión mientras el usuario decide: se comprueba con
+ * el histograma de retención del pool ({@code ConexionBD.retencion}) tras simular los flujos de
+ * la vista que piden confirmación antes de modificar o eliminar.
+ */
+class RetencionConexionesTest {
+    // Lo que tarda el "usuario" en responder a cada diálogo de confirmación
+    private static final long PENSAR_MS = 300;
+    // Las operaciones interactivas retienen la conexión milisegundos
+    private static final double RETENCION_MAX_MS = 50;
+
+    private final DepartamentoDAO dao = new DepartamentoDAO();
+    private final MetricaOperacion retencion = MetricasDAO.getInstancia().operacion("ConexionBD.retencion");
+
+    @BeforeAll
+    static void iniciarBaseDatos() throws Exception {
+        BaseDatosPruebas.iniciar();
+    }
+
+    @BeforeEach
+    void preparar() throws Exception {
+        BaseDatosPruebas.vaciarTablas();
+        dao.insertarLote(List.of(new Departamento("R001", "Retención 1", 1, 1),
+                new Departamento("R002", "Retención 2", 2, 2)));
+        retencion.reiniciar();
+    }
+
+    @Test
+    void losFlujosConConfirmacionNoRetienenLaConexion() throws Exception {
+        long largasAntes = ConexionBD.getInstancia().getEstadisticas().retencionesLargas();
+
+        // Como DepartamentoView.modificarDepartamento: confirmar, modificar y avisar del resultado
+        confirmar();
+        assertTrue(dao.modificar(new Departamento("R001", "Retención 1 modificado", 1, 1)));
+        confirmar();
+        // Como DepartamentoView.eliminarDepartamento
+        confirmar();
+        assertTrue(dao.eliminar("R002"));
+        confirmar();
+        // Y el resto de operaciones de la vista, entre diálogos
+        assertEquals(ResultadoFila.Estado.INSERTADO, dao.guardar(new Departamento("R003", "Retención 3", 3, 3)));
+        confirmar();
+        assertTrue(dao.insertar(new Departamento("R004", "Retención 4", 4, 4)));
+        confirmar();
+        dao.buscarPorCodigo("R003");
+        dao.listarPagina(null, 200);
+        UnidadTrabajo unidad = new UnidadTrabajo();
+        unidad.modificar(new Departamento("R003", "Retención 3 en unidad", 3, 3));
+        unidad.eliminar("R004");
+        confirmar();
+        assertEquals(2, dao.aplicar(unidad));
+
+        EstadisticasOperacion estadisticas = retencion.getEstadisticas();
+        assertTrue(estadisticas.llamadas() >= 8, "préstamos medidos: " + estadisticas);
+        assertTrue(estadisticas.maxMs() < PENSAR_MS, "una conexión se retuvo durante un diálogo: " + estadisticas);
+        assertTrue(estadisticas.p95Ms() < RETENCION_MAX_MS, "retención: " + estadisticas);
+        assertEquals(largasAntes, ConexionBD.getInstancia().getEstadisticas().retencionesLargas());
+    }
+
+    @Test
+    void noSePuedeEsperarAUnDialogoConUnaConexionPrestada() throws Exception {
+        try (Connection conn = ConexionBD.getInstancia().getConexion()) {
+            assertTrue(conn.isValid(1));
+            assertThrows(IllegalStateException.class, RetencionConexionesTest::confirmar);
+        }
+        confirmar();
+    }
+
+    /**
+     * Simula un diálogo de confirmación: la misma comprobación que registra el controlador en
+     * AlertUtils y la espera a que el usuario responda.
+     */
+    private static void confirmar() throws InterruptedException {
+        ConexionBD.comprobarSinConexionPrestada("esperar a un diálogo");
+        Thread.sleep(PENSAR_MS);
+    }
+}
@@ -0,0 +1,55 @@
+package foc.departamento.dao;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Cada cliente decide con su propia sesión si sus lecturas deben ir al primario.
+ */
+class SesionLecturaTest {
+    private static final long RETRASO_MS = 60_000;
+
+    @Test
+    void unaSesionSinEscriturasLeeDeLasReplicas() {
+        SesionLectura sesion = new SesionLectura();
+
+        assertEquals(0, sesion.getMarcaEscritura());
+        assertFalse(sesion.escribioHaceMenosDe(RETRASO_MS));
+    }
+
+    @Test
+    void lasEscriturasDeUnaSesionNoAfectanAOtra() {
+        SesionLectura escritora = new SesionLectura();
+        SesionLectura lectora = new SesionLectura();
+
+        escritora.registrarEscritura();
+
+        assertTrue(escritora.escribioHaceMenosDe(RETRASO_MS));
+        assertFalse(lectora.escribioHaceMenosDe(RETRASO_MS));
+    }
+
+    @Test
+    void laMarcaDevueltaPorElClienteRehaceLaSesion() {
+        SesionLectura original = new SesionLectura();
+        original.registrarEscritura();
+
+        SesionLectura rehecha = SesionLectura.desde(original.getMarcaEscritura());
+
+        assertEquals(original.getMarcaEscritura(), rehecha.getMarcaEscritura());
+        assertTrue(rehecha.escribioHaceMenosDe(RETRASO_MS));
+        assertFalse(SesionLectura.desde(System.currentTimeMillis() - 2 * RETRASO_MS).escribioHaceMenosDe(RETRASO_MS));
+    }
+
+    @Test
+    void unaMarcaAdelantadaNoSeRetrasa() {
+        long futura = System.currentTimeMillis() + RETRASO_MS;
+        SesionLectura sesion = SesionLectura.desde(futura);
+
+        sesion.registrarEscritura();
+
+        assertEquals(futura, sesion.getMarcaEscritura());
+    }
+}
@@ -0,0 +1,59 @@
+package foc.departamento.dao;
+
+import foc.departamento.model.Departamento;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UnidadTrabajoTest {
+
+    @Test
+    void guardarTrasModificarSigueSiendoUnGuardado() {
+        UnidadTrabajo unidad = new UnidadTrabajo();
+        assertTrue(unidad.modificar(new Departamento("D01", "Modificado", 1, 1)));
+        assertTrue(unidad.guardar(new Departamento("D01", "Guardado", 2, 2)));
+
+        assertEquals(List.of(), unidad.departamentosAModificar());
+        assertEquals(List.of("Guardado"), nombres(unidad.departamentosAGuardar()));
+    }
+
+    @Test
+    void guardarTrasEliminarEsUnaSustitucion() {
+        UnidadTrabajo unidad = new UnidadTrabajo();
+        assertTrue(unidad.eliminar("D01"));
+        assertTrue(unidad.guardar(new Departamento("D01", "Nuevo", 1, 1)));
+
+        assertEquals(List.of("D01"), unidad.codigosAEliminar());
+        assertEquals(List.of("Nuevo"), nombres(unidad.departamentosAInsertar()));
+        assertEquals(List.of(), unidad.departamentosAGuardar());
+    }
+
+    @Test
+    void guardarTrasInsertarCambiaLosDatosDeLaInsercion() {
+        UnidadTrabajo unidad = new UnidadTrabajo();
+        assertTrue(unidad.insertar(new Departamento("D01", "Insertado", 1, 1)));
+        assertTrue(unidad.guardar(new Departamento("D01", "Corregido", 1, 1)));
+        assertFalse(unidad.insertar(new Departamento("D01", "Otra vez", 1, 1)));
+
+        assertEquals(List.of("Corregido"), nombres(unidad.departamentosAInsertar()));
+        assertEquals(1, unidad.tamano());
+    }
+
+    @Test
+    void insertarTrasGuardarSeRechaza() {
+        UnidadTrabajo unidad = new UnidadTrabajo();
+        assertTrue(unidad.guardar(new Departamento("D01", "Guardado", 1, 1)));
+
+        assertFalse(unidad.insertar(new Departamento("D01", "Insertado", 1, 1)));
+        assertTrue(unidad.modificar(new Departamento("D01", "Modificado", 1, 1)));
+        assertEquals(List.of("Modificado"), nombres(unidad.departamentosAGuardar()));
+    }
+
+    private static List<String> nombres(List<Departamento> departamentos) {
+        return departamentos.stream().map(Departamento::getNombre).toList();
+    }
+}
@@ -0,0 +1,133 @@
+package foc.departamento.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AlmacenDepartamentosTest {
+    // Mayúsculas, minúsculas y acentos que una colación sin distinción de mayúsculas y acentos
+    // consideraría iguales, y un carácter de ancho completo (U+FF5A) frente a uno fuera del plano
+    // básico (U+1D49C), que String.compareTo ordena al revés que los bytes UTF-8
+    static final List<String> CODIGOS_MEZCLADOS = List.of(
+            "abc", "ABC", "Abc", "ábc", "Ábc", "abd", "a", "A", "á",
+            "n", "N", "ñ", "Ñ", "z", "Z", "ｚ", "𝒜", "D01", "d01", "D01𝒜");
+
+    @Test
+    void ordenCodigosEsElDeLosBytesUtf8() {
+        List<String> porBytes = new ArrayList<>(CODIGOS_MEZCLADOS);
+        porBytes.sort((a, b) -> Arrays.compareUnsigned(
+                a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8)));
+        List<String> porPuntos = new ArrayList<>(CODIGOS_MEZCLADOS);
+        porPuntos.sort(AlmacenDepartamentos.ORDEN_CODIGOS);
+
+        assertEquals(porBytes, porPuntos);
+        assertTrue(AlmacenDepartamentos.compararCodigos("ｚ", "𝒜") < 0);
+        assertTrue("ｚ".compareTo("𝒜") > 0, "String.compareTo ordena por unidades UTF-16");
+    }
+
+    @Test
+    void buscaCodigosExactosConMayusculasYAcentos() {
+        AlmacenDepartamentos almacen = almacenOrdenado(CODIGOS_MEZCLADOS);
+
+        for (int fila = 0; fila < almacen.tamano(); fila++) {
+            String codigo = almacen.getCodigo(fila);
+            assertEquals(fila, almacen.indiceDe(codigo), codigo);
+            assertEquals(fila, almacen.buscarCodigo(codigo), codigo);
+        }
+        assertEquals(-1, almacen.indiceDe("aBc"));
+        comprobarPuntoInsercion(almacen, "aBc");
+        comprobarPuntoInsercion(almacen, "é");
+        comprobarPuntoInsercion(almacen, "𝒝");
+        comprobarPuntoInsercion(almacen, "");
+    }
+
+    @Test
+    void elIndiceSigueAlDiaTrasInsertarEliminarYReemplazar() {
+        AlmacenDepartamentos almacen = almacenOrdenado(CODIGOS_MEZCLADOS);
+
+        insertarEnOrden(almacen, "aBc");
+        almacen.eliminar(almacen.indiceDe("ABC"));
+        insertarEnOrden(almacen, "é");
+        almacen.reemplazar(almacen.indiceDe("ñ"), new Departamento("ñ", "Sustituido", 7, 7));
+        almacen.eliminar(almacen.indiceDe("a"));
+        insertarEnOrden(almacen, "a");
+        // Muchas sustituciones para que se compacten las columnas de texto
+        for (int i = 0; i < 500; i++) {
+            almacen.reemplazar(almacen.indiceDe("z"), new Departamento("z", "Nombre " + i, i, i));
+        }
+
+        assertEquals(-1, almacen.indiceDe("ABC"));
+        assertEquals("Sustituido", almacen.obtener(almacen.indiceDe("ñ")).getNombre());
+        assertEquals("Nombre 499", almacen.getNombre(almacen.indiceDe("z")));
+        for (int fila = 0; fila < almacen.tamano(); fila++) {
+            assertEquals(fila, almacen.indiceDe(almacen.getCodigo(fila)), almacen.getCodigo(fila));
+            if (fila > 0) {
+                assertTrue(almacen.compararCodigo(fila - 1, fila) < 0);
+                assertTrue(AlmacenDepartamentos.compararCodigos(almacen.getCodigo(fila - 1), almacen.getCodigo(fila)) < 0);
+            }
+        }
+    }
+
+    @Test
+    void comparaNombresSobreLasColumnas() {
+        AlmacenDepartamentos almacen = new AlmacenDepartamentos();
+        List<Departamento> departamentos = new ArrayList<>();
+        for (int i = 0; i < CODIGOS_MEZCLADOS.size(); i++) {
+            departamentos.add(new Departamento("D" + i, CODIGOS_MEZCLADOS.get(i), i, i));
+        }
+        almacen.agregarTodos(departamentos);
+
+        for (int a = 0; a < almacen.tamano(); a++) {
+            for (int b = 0; b < almacen.tamano(); b++) {
+                assertEquals(Integer.signum(AlmacenDepartamentos.compararCodigos(almacen.getNombre(a), almacen.getNombre(b))),
+                        Integer.signum(almacen.compararNombre(a, b)), almacen.getNombre(a) + " / " + almacen.getNombre(b));
+            }
+        }
+    }
+
+    @Test
+    void departamentosIgualesPorCodigo() {
+        Departamento dep = new Departamento("D01", "Ventas", 1, 1);
+        Departamento modificado = new Departamento("D01", "Ventas y marketing", 2, 3);
+
+        assertEquals(dep, modificado);
+        assertEquals(dep.hashCode(), modificado.hashCode());
+        assertNotEquals(dep, new Departamento("d01", "Ventas", 1, 1));
+    }
+
+    private static AlmacenDepartamentos almacenOrdenado(List<String> codigos) {
+        List<Departamento> departamentos = new ArrayList<>();
+        for (String codigo : codigos) {
+            departamentos.add(new Departamento(codigo, "Departamento " + codigo, 1, 1));
+        }
+        departamentos.sort((a, b) -> AlmacenDepartamentos.compararCodigos(a.getCodigo(), b.getCodigo()));
+        AlmacenDepartamentos almacen = new AlmacenDepartamentos();
+        almacen.agregarTodos(departamentos);
+        return almacen;
+    }
+
+    private static void insertarEnOrden(AlmacenDepartamentos almacen, String codigo) {
+        int posicion = almacen.buscarCodigo(codigo);
+        assertTrue(posicion < 0, codigo + " ya está");
+        almacen.insertar(-posicion - 1, new Departamento(codigo, "Departamento " + codigo, 1, 1));
+    }
+
+    private static void comprobarPuntoInsercion(AlmacenDepartamentos almacen, String codigo) {
+        int posicion = almacen.buscarCodigo(codigo);
+        assertTrue(posicion < 0, codigo + " no debería estar");
+        int punto = -posicion - 1;
+        if (punto > 0) {
+            assertTrue(AlmacenDepartamentos.compararCodigos(almacen.getCodigo(punto - 1), codigo) < 0);
+        }
+        if (punto < almacen.tamano()) {
+            assertTrue(AlmacenDepartamentos.compararCodigos(codigo, almacen.getCodigo(punto)) < 0);
+        }
+    }
+}